@@ -1,23 +1,23 @@
 package com.example.demo.config;
 
+import com.example.demo.security.UserPrincipal;
 import com.example.demo.service.JwtService;
-import com.example.demo.service.UserService;
+import com.example.demo.service.UserPrincipalCache;
+import com.example.demo.service.VerifiedTokenCache;
+import com.nimbusds.jwt.JWTClaimsSet;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
 
 @Slf4j
 @Component
@@ -25,8 +25,8 @@ import java.util.Collections;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    @Lazy
-    private final UserService userService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final UserPrincipalCache userPrincipalCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -36,21 +36,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String path = request.getServletPath();
         String uri = request.getRequestURI();
 
-        //  THÊM LOG ĐỂ XEM ĐƯỜNG DẪN THỰC TẾ SERVER NHẬN ĐƯỢC
-        log.warn("### REQUEST URL = {}", request.getRequestURL());
-        log.warn("### REQUEST URI = {}", uri);
-        log.warn("### SERVLET PATH = {}", path);
-
         //  BYPASS JWT CHO CUSTOMER PORTAL
-        if (uri.equals("/api/customer/portal") || uri.startsWith("/api/customer/portal")) {
-            log.warn("### BYPASS BY URI");
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-
-        if (path.startsWith("/api/customer/portal")) {
-            log.warn("### BYPASS BY SERVLET PATH");
+        if (uri.startsWith("/api/customer/portal") || path.startsWith("/api/customer/portal")) {
             filterChain.doFilter(request, response);
             return;
         }
@@ -64,19 +51,23 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         try {
             final String jwt = authHeader.substring(7);
-            final String userEmail = jwtService.extractEmail(jwt);
 
-            if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                if (jwtService.verifyToken(jwt)) {
-                    var user = userService.getUserByEmail(userEmail);
-                    String role = "ROLE_" + user.getRole().name();
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                // Phiên đã verify gần đây -> không parse, không verify HMAC; principal lấy từ cache theo email
+                String email = verifiedTokenCache.get(jwt);
+                if (email == null) {
+                    JWTClaimsSet claims = jwtService.verifyAndParse(jwt);
+                    if (claims != null && claims.getSubject() != null) {
+                        email = claims.getSubject();
+                        verifiedTokenCache.put(jwt, email, claims.getExpirationTime().getTime());
+                    }
+                }
 
+                UserPrincipal principal = email != null ? userPrincipalCache.get(email) : null;
+                if (principal != null) {
+                    request.setAttribute(RequestLoggingFilter.USER_ATTRIBUTE, principal.email());
                     UsernamePasswordAuthenticationToken authToken =
-                            new UsernamePasswordAuthenticationToken(
-                                    user,
-                                    null,
-                                    Collections.singletonList(new SimpleGrantedAuthority(role))
-                            );
+                            new UsernamePasswordAuthenticationToken(principal, null, principal.authorities());
 
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
@@ -0,0 +1,72 @@
+package com.example.demo.config;
+
+import com.example.demo.service.RequestLoggingService;
+import com.example.demo.util.ClientIp;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Một dòng log key=value cho mỗi request được chọn (lấy mẫu, chậm hoặc lỗi 5xx), ghi vào logger REQUEST_LOG
+ * (appender bất đồng bộ trong logback-spring.xml). Đứng ngoài cùng chuỗi filter để đo cả thời gian xác thực.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class RequestLoggingFilter extends OncePerRequestFilter {
+
+    /**
+     * JwtAuthenticationFilter gắn email vào attribute này; SecurityContext đã bị xóa khi request về tới đây
+     */
+    public static final String USER_ATTRIBUTE = RequestLoggingFilter.class.getName() + ".user";
+
+    private static final Logger REQUEST_LOG = LoggerFactory.getLogger("REQUEST_LOG");
+
+    private final RequestLoggingService requestLoggingService;
+    private final ClientIp clientIp;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        if (!REQUEST_LOG.isInfoEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        int status = 500;
+        try {
+            filterChain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            String path = request.getRequestURI();
+            if (requestLoggingService.shouldLog(path, status, durationMs)) {
+                REQUEST_LOG.info(format(request, path, status, durationMs, clientIp.resolve(request)));
+            }
+        }
+    }
+
+    private static String format(HttpServletRequest request, String path, int status, long durationMs, String ip) {
+        Object user = request.getAttribute(USER_ATTRIBUTE);
+        return new StringBuilder(128)
+                .append("method=").append(request.getMethod())
+                .append(" path=").append(path)
+                .append(" status=").append(status)
+                .append(" ms=").append(durationMs)
+                .append(" user=").append(user != null ? user : "-")
+                .append(" ip=").append(ip)
+                .toString();
+    }
+}
@@ -106,6 +106,7 @@ public class SecurityConfig {
 
                         // Protected APIs
                         .requestMatchers("/api/installments/**").authenticated()
+                        .requestMatchers("/api/admin/**").hasRole("ADMIN")
 
                         .anyRequest().authenticated()
                 )
@@ -1,13 +1,14 @@
 package com.example.demo.controller;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.demo.dto.ActivityLogDTO;
+import com.example.demo.dto.CursorPageDTO;
+import com.example.demo.security.UserPrincipal;
 import com.example.demo.service.ActivityService;
 
 import lombok.RequiredArgsConstructor;
@@ -19,12 +20,12 @@ public class ActivityController {
   private final ActivityService activityService;
 
   @GetMapping
-  public Page<com.example.demo.entity.ActivityLog> list(
-      @AuthenticationPrincipal com.example.demo.entity.User me,
+  public CursorPageDTO<ActivityLogDTO> list(
+      @AuthenticationPrincipal UserPrincipal me,
       @RequestParam(required=false) String action,
-      @RequestParam(defaultValue="0") int page,
-      @RequestParam(defaultValue="20") int size) {
-    return activityService.listMine(me.getUserId(), action, PageRequest.of(page, size));
+      @RequestParam(required=false) String cursor,
+      @RequestParam(defaultValue="20") int size,
+      @RequestParam(defaultValue="false") boolean includeMetadata) {
+    return activityService.listMine(me.userId(), action, cursor, size, includeMetadata);
   }
 }
-
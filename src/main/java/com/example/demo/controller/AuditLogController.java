@@ -1,6 +1,7 @@
 package com.example.demo.controller;
 
 import com.example.demo.dto.AuditLogResponseDTO;
+import com.example.demo.dto.AuditWriterStatsDTO;
 import com.example.demo.service.AuditLogService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -65,5 +66,19 @@ public class AuditLogController {
         return ResponseEntity.ok(auditLogService.getEntityHistory(entityType, entityId));
     }
 
+    @GetMapping("/writer-stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Tình trạng bộ ghi audit log", description = "Hàng đợi, số log đã ghi / bỏ / ghi ra file của bộ ghi bất đồng bộ")
+    public ResponseEntity<AuditWriterStatsDTO> getWriterStats() {
+        return ResponseEntity.ok(auditLogService.getWriterStats());
+    }
+
+    @PostMapping("/archive")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Lưu trữ audit log cũ", description = "Chuyển các ngày cũ hơn audit.archive.hot-days ra file segment nén")
+    public ResponseEntity<Integer> archiveOldLogs() {
+        return ResponseEntity.ok(auditLogService.archiveOldLogs());
+    }
+
     
 }
\ No newline at end of file
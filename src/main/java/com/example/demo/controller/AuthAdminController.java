@@ -0,0 +1,29 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.PrincipalCacheStatsDTO;
+import com.example.demo.service.UserService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin/auth")
+@CrossOrigin
+@RequiredArgsConstructor
+@Tag(name = "Authentication Administration", description = "APIs for authentication cache monitoring")
+@SecurityRequirement(name = "bearer-jwt")
+public class AuthAdminController {
+
+    private final UserService userService;
+
+    @GetMapping("/principal-cache-stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Số liệu cache xác thực (hit rate principal theo email, token đã verify)")
+    public ResponseEntity<PrincipalCacheStatsDTO> getPrincipalCacheStats() {
+        return ResponseEntity.ok(userService.getPrincipalCacheStats());
+    }
+}
@@ -2,7 +2,10 @@ package com.example.demo.controller;
 
 // --- Imports từ AuthController cũ ---
 import com.example.demo.dto.LoginDTO;
+import com.example.demo.service.RateLimiter;
 import com.example.demo.service.UserService;
+import com.example.demo.util.ClientIp;
+import jakarta.servlet.http.HttpServletRequest;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -13,20 +16,15 @@ import java.util.Map;
 
 // --- Imports từ ForgotPasswordController ---
 import com.example.demo.dto.Mailbody;
-import com.example.demo.entity.ForgotPassword;
-import com.example.demo.entity.User;
-import com.example.demo.repository.ForgotPasswordRepository;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.service.EmailService;
+import com.example.demo.service.OtpStore;
 import com.example.demo.util.ChangePassword;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
-import java.time.Instant;
-import java.util.Date;
+import java.security.SecureRandom;
 import java.util.Objects;
-import java.util.Random;
 
 @RestController
 @RequestMapping("/api/auth") // <-- Base path cho tất cả
@@ -35,16 +33,21 @@ import java.util.Random;
 @Tag(name = "Authentication", description = "APIs for authentication and password reset") // <-- Sửa lại tên Tag
 public class AuthController {
 
+    private static final SecureRandom OTP_RANDOM = new SecureRandom();
+
     // === GỘP TẤT CẢ DEPENDENCIES ===
     private final UserService userService;
     private final UserRepository userRepository;
     private final EmailService emailService;
-    private final ForgotPasswordRepository forgotPasswordRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final OtpStore otpStore;
+    private final RateLimiter rateLimiter;
+    private final ClientIp clientIp;
 
     @PostMapping("/login")
     @Operation(summary = "Đăng nhập và nhận JWT token")
-    public ResponseEntity<?> login(@RequestBody LoginDTO loginDTO) {
+    public ResponseEntity<?> login(@RequestBody LoginDTO loginDTO, HttpServletRequest request) {
+        // Chặn trước khi chạy BCrypt
+        rateLimiter.acquire("login", rateLimitIp(request), loginDTO.getEmail());
         try {
             String token = userService.loginUser(loginDTO);
             var user = userService.getUserByEmail(loginDTO.getEmail());
@@ -65,9 +68,11 @@ public class AuthController {
 
     @PostMapping("/forgot/verify-mail/{email}") // <-- Đổi path
     @Operation(summary = "Gửi OTP quên mật khẩu qua email")
-    public ResponseEntity<String> verifyMail(@PathVariable String email) {
-        User user = userRepository.findByEmail(email).
-                orElseThrow(() -> new UsernameNotFoundException("Please provide a valid email"));
+    public ResponseEntity<String> verifyMail(@PathVariable String email, HttpServletRequest request) {
+        rateLimiter.acquire("verify-mail", rateLimitIp(request), email);
+        if (!userRepository.existsByEmail(email)) {
+            throw new UsernameNotFoundException("Please provide a valid email");
+        }
 
         int otp = otpGenerator();
         Mailbody mailbody = Mailbody.builder()
@@ -76,32 +81,25 @@ public class AuthController {
                 .subject("OTP for Forgot Password request")
                 .build();
 
-        ForgotPassword fp = ForgotPassword.builder()
-                .otp(otp)
-                .expiryDate(new Date(System.currentTimeMillis()+70*1000)) // 70 giây
-                .user(user)
-                .build();
-
+        otpStore.put(email, otp);
         emailService.sendSimpleMessage(mailbody);
-        forgotPasswordRepository.save(fp);
 
         return ResponseEntity.ok("Email sent for verification successful!");
     }
 
     @PostMapping("/forgot/verify-otp/{otp}/{email}") // <-- Đổi path
     @Operation(summary = "Xác thực OTP")
-    public ResponseEntity<String> verifyOtp(@PathVariable Integer otp, @PathVariable String email) {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new UsernameNotFoundException("Please provide a valid email"));
-
-        ForgotPassword fp = forgotPasswordRepository.findByOtpAndUser(otp,user). orElseThrow(() -> new RuntimeException("Invalid OTP"));
-
-        if (fp.getExpiryDate().before(Date.from(Instant.now()))) {
-            forgotPasswordRepository.delete(fp);
-            return new ResponseEntity<>("OTP expired!", HttpStatus.EXPECTATION_FAILED);
-        }
-
-        return ResponseEntity.ok("OTP verified!");
+    public ResponseEntity<String> verifyOtp(@PathVariable Integer otp, @PathVariable String email,
+                                            HttpServletRequest request) {
+        rateLimiter.acquire("verify-otp", rateLimitIp(request), email);
+
+        return switch (otpStore.verify(email, otp)) {
+            case VERIFIED -> ResponseEntity.ok("OTP verified!");
+            case EXPIRED -> new ResponseEntity<>("OTP expired!", HttpStatus.EXPECTATION_FAILED);
+            case TOO_MANY_ATTEMPTS -> new ResponseEntity<>("Too many wrong attempts, please request a new OTP",
+                    HttpStatus.TOO_MANY_REQUESTS);
+            case INVALID -> throw new RuntimeException("Invalid OTP");
+        };
     }
 
     @PostMapping("/forgot/change-password/{email}") // <-- Đổi path
@@ -110,14 +108,17 @@ public class AuthController {
         if(!Objects.equals(changePassword.password(), changePassword.repeatPassword()))
             return new ResponseEntity<>("Please enter password again", HttpStatus.EXPECTATION_FAILED);
 
-        String encodedPassword = passwordEncoder.encode(changePassword.password());
-        userRepository.updatePassword(email, encodedPassword); // Cần đảm bảo hàm này có trong UserRepository
+        userService.changePassword(email, changePassword.password());
 
         return ResponseEntity.ok("Password changed!");
     }
 
+    // Chưa cấu hình proxy tin cậy thì IP là của proxy, dùng chung cho mọi người -> không giới hạn theo IP
+    private String rateLimitIp(HttpServletRequest request) {
+        return clientIp.isPerClient() ? clientIp.resolve(request) : null;
+    }
+
     private Integer otpGenerator(){
-        Random random = new Random();
-        return random.nextInt(100_000,999_999);
+        return OTP_RANDOM.nextInt(100_000,999_999);
     }
 }
\ No newline at end of file
@@ -1,13 +1,26 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.InventoryAllocationDTO;
+import com.example.demo.dto.InventoryAllocationResultDTO;
 import com.example.demo.dto.InventoryGroupResponseDTO;
+import com.example.demo.dto.InventoryHistoryDTO;
+import com.example.demo.dto.InventoryLedgerDriftDTO;
+import com.example.demo.dto.InventoryShortfallDTO;
+import com.example.demo.dto.InventorySpeedDTO;
+import com.example.demo.dto.InventoryVelocityDTO;
 import com.example.demo.entity.Inventory;
+import com.example.demo.entity.InventorySnapshot;
+import com.example.demo.service.InventoryHistoryService;
 import com.example.demo.service.InventoryService;
+import com.example.demo.service.InventoryVelocityService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
@@ -20,6 +33,8 @@ import java.util.stream.Collectors;
 public class InventoryController {
 
     private final InventoryService inventoryService;
+    private final InventoryHistoryService inventoryHistoryService;
+    private final InventoryVelocityService inventoryVelocityService;
 
     // Tạo kho hãng
     @PostMapping("/factory")
@@ -78,6 +93,96 @@ public class InventoryController {
         return ResponseEntity.ok(available);
     }
 
+    // Kiểm tra kho hãng cho nhiều xe (body: vehicleId -> quantity), trả về các dòng thiếu hàng
+    @PostMapping("/factory/check-batch")
+    public ResponseEntity<List<InventoryShortfallDTO>> checkFactoryInventoryBatch(
+            @RequestBody Map<Integer, Integer> requiredQuantities) {
+        return ResponseEntity.ok(inventoryService.findFactoryShortfalls(requiredQuantities));
+    }
+
+    // Kiểm tra kho đại lý cho nhiều xe
+    @PostMapping("/dealer/{dealerId}/check-batch")
+    public ResponseEntity<List<InventoryShortfallDTO>> checkDealerInventoryBatch(
+            @PathVariable Integer dealerId,
+            @RequestBody Map<Integer, Integer> requiredQuantities) {
+        return ResponseEntity.ok(inventoryService.findDealerShortfalls(dealerId, requiredQuantities));
+    }
+
+
+    // Chuyển kho hãng cho đại lý; có quoteId thì xuất phần quote đã giữ ở kho hãng trước
+    @PostMapping("/factory/transfer")
+    public ResponseEntity<Void> transferFactoryToDealer(
+            @RequestParam(required = false) Integer quoteId,
+            @RequestParam Integer dealerId,
+            @RequestParam Integer vehicleId,
+            @RequestParam Integer quantity) {
+        inventoryService.transferFactoryToDealer(quoteId, dealerId, vehicleId, quantity);
+        return ResponseEntity.ok().build();
+    }
+
+    // Phân bổ theo lô từ kho hãng xuống nhiều đại lý (all-or-nothing); 400 kèm lý do từng dòng nếu lô bị từ chối
+    @PostMapping("/allocations")
+    public ResponseEntity<InventoryAllocationResultDTO> allocateFactoryToDealers(
+            @RequestBody List<InventoryAllocationDTO> allocations) {
+        InventoryAllocationResultDTO result = inventoryService.allocateFactoryToDealers(allocations);
+        return result.isApplied() ? ResponseEntity.ok(result) : ResponseEntity.badRequest().body(result);
+    }
+
+    // Đối soát InventoryLedger với DB (404 nếu ledger không bật)
+    @GetMapping("/ledger/reconcile")
+    public ResponseEntity<List<InventoryLedgerDriftDTO>> reconcileLedger() {
+        return inventoryService.reconcileLedger()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Tồn kho tại một thời điểm trong quá khứ (dựng lại từ snapshot + nhật ký biến động)
+    @GetMapping("/history")
+    public ResponseEntity<List<InventoryHistoryDTO>> getStockAt(
+            @RequestParam(required = false) Integer vehicleId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return ResponseEntity.ok(vehicleId != null
+                ? inventoryHistoryService.getVehicleStockAt(vehicleId, at)
+                : inventoryHistoryService.getStockAt(at));
+    }
+
+    // Tỷ lệ bán hết (sell-through) theo đại lý trong khoảng ngày
+    @GetMapping("/sell-through")
+    public ResponseEntity<List<InventorySpeedDTO>> getDealerSellThrough(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(inventoryHistoryService.getDealerSellThrough(from, to));
+    }
+
+    // Tốc độ bán, số ngày đủ hàng và rủi ro hết hàng theo mẫu xe (toàn hệ thống, có thể lọc theo mức rủi ro)
+    @GetMapping("/velocity")
+    public ResponseEntity<List<InventoryVelocityDTO>> getVelocity(@RequestParam(required = false) String risk) {
+        List<InventoryVelocityDTO> velocity = inventoryVelocityService.getVelocity(null);
+        if (risk != null) {
+            velocity = velocity.stream()
+                    .filter(v -> v.getStockOutRisk().equalsIgnoreCase(risk))
+                    .collect(Collectors.toList());
+        }
+        return ResponseEntity.ok(velocity);
+    }
+
+    @GetMapping("/dealer/{dealerId}/velocity")
+    public ResponseEntity<List<InventoryVelocityDTO>> getDealerVelocity(@PathVariable Integer dealerId) {
+        return ResponseEntity.ok(inventoryVelocityService.getVelocity(dealerId));
+    }
+
+    // Nén nhật ký thành snapshot ngay (ngoài lịch chạy định kỳ)
+    @PostMapping("/snapshots")
+    public ResponseEntity<Map<String, Object>> takeSnapshot() {
+        InventorySnapshot snapshot = inventoryHistoryService.takeSnapshot();
+        Map<String, Object> result = new HashMap<>();
+        result.put("snapshotId", snapshot.getId());
+        result.put("takenAt", snapshot.getTakenAt());
+        result.put("lastMovementId", snapshot.getLastMovementId());
+        result.put("lineCount", snapshot.getLineCount());
+        return ResponseEntity.ok(result);
+    }
+
 
     private Map<String, Object> convertInventoryToMap(Inventory inventory) {
         Map<String, Object> result = new HashMap<>();
@@ -0,0 +1,53 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.RequestLogSettingsDTO;
+import com.example.demo.service.RequestLoggingService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/logging")
+@CrossOrigin
+@RequiredArgsConstructor
+@Tag(name = "Logging Administration", description = "APIs for request logging and runtime log levels")
+@SecurityRequirement(name = "bearer-jwt")
+public class LoggingAdminController {
+
+    private final RequestLoggingService requestLoggingService;
+
+    @GetMapping("/request-log")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Xem cấu hình log request", description = "Tỉ lệ lấy mẫu, ngưỡng chậm, tỉ lệ theo path và số request đã log")
+    public ResponseEntity<RequestLogSettingsDTO> getRequestLogSettings() {
+        return ResponseEntity.ok(requestLoggingService.getSettings());
+    }
+
+    @PutMapping("/request-log")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Cập nhật cấu hình log request", description = "Field bỏ trống giữ nguyên giá trị cũ")
+    public ResponseEntity<RequestLogSettingsDTO> updateRequestLogSettings(@RequestBody RequestLogSettingsDTO settings) {
+        return ResponseEntity.ok(requestLoggingService.updateSettings(settings));
+    }
+
+    @GetMapping("/levels/{logger}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Xem log level của logger", description = "Ví dụ: org.hibernate, com.example.demo, ROOT")
+    public ResponseEntity<Map<String, String>> getLoggerLevel(@PathVariable String logger) {
+        return ResponseEntity.ok(requestLoggingService.getLoggerLevel(logger));
+    }
+
+    @PutMapping("/levels/{logger}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Đổi log level lúc chạy", description = "level rỗng trả logger về kế thừa từ logger cha")
+    public ResponseEntity<Map<String, String>> setLoggerLevel(@PathVariable String logger,
+                                                              @RequestParam(required = false) String level) {
+        return ResponseEntity.ok(requestLoggingService.setLoggerLevel(logger, level));
+    }
+}
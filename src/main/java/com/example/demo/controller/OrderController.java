@@ -1,5 +1,6 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.CursorPageDTO;
 import com.example.demo.dto.OrderDTO;
 import com.example.demo.dto.OrderResponseDTO;
 import com.example.demo.service.OrderService;
@@ -7,9 +8,11 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -28,6 +31,20 @@ public class OrderController {
         return ResponseEntity.ok(orderService.getAllOrders());
     }
 
+    @GetMapping("/page")
+    @Operation(summary = "Lấy đơn hàng theo trang (cursor), lọc theo trạng thái và khoảng ngày")
+    public ResponseEntity<CursorPageDTO<OrderResponseDTO>> getOrdersPage(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String approvalStatus,
+            @RequestParam(required = false) String paymentStatus,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(orderService.getOrdersPage(null, status, approvalStatus, paymentStatus,
+                fromDate, toDate, cursor, size));
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Lấy đơn hàng theo ID")
     public ResponseEntity<OrderResponseDTO> getOrderById(@PathVariable Integer id) {
@@ -46,6 +63,21 @@ public class OrderController {
         return ResponseEntity.ok(orderService.getOrdersByDealerId(dealerId));
     }
 
+    @GetMapping("/dealer/{dealerId}/page")
+    @Operation(summary = "Lấy đơn hàng của đại lý theo trang (cursor)")
+    public ResponseEntity<CursorPageDTO<OrderResponseDTO>> getOrdersPageByDealerId(
+            @PathVariable Integer dealerId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String approvalStatus,
+            @RequestParam(required = false) String paymentStatus,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(orderService.getOrdersPage(dealerId, status, approvalStatus, paymentStatus,
+                fromDate, toDate, cursor, size));
+    }
+
     @GetMapping("/user/{userId}")
     @Operation(summary = "Lấy đơn hàng theo ID người dùng")
     public ResponseEntity<List<OrderResponseDTO>> getOrdersByUserId(@PathVariable Integer userId) {
@@ -8,9 +8,11 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -30,6 +32,21 @@ public class PromotionController {
         return ResponseEntity.ok(promotionService.getAllPromotions());
     }
 
+    @GetMapping("/active")
+    @Operation(summary = "Khuyến mãi đang áp dụng", description = "Các khuyến mãi ACTIVE áp dụng cho đại lý vào một ngày (mặc định hôm nay)")
+    public ResponseEntity<List<PromotionResponseDTO>> getActivePromotions(
+            @RequestParam(required = false) Integer dealerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(promotionService.getActivePromotions(dealerId, date));
+    }
+
+    @PostMapping("/expire-ended")
+    @Operation(summary = "Hết hạn khuyến mãi đã qua ngày kết thúc", description = "Chạy ngay lượt quét hết hạn khuyến mãi")
+    public ResponseEntity<String> expireEndedPromotions() {
+        int expired = promotionService.expireEndedPromotions();
+        return ResponseEntity.ok("Đã chuyển " + expired + " khuyến mãi sang hết hạn");
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Lấy khuyến mãi theo ID", description = "Lấy thông tin chi tiết của một khuyến mãi theo ID")
     public ResponseEntity<PromotionResponseDTO> getPromotionById(@PathVariable Integer id) {
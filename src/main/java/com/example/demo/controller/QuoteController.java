@@ -1,7 +1,11 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.CursorPageDTO;
 import com.example.demo.dto.QuoteDTO;
+import com.example.demo.dto.QuoteExpiryStatsDTO;
 import com.example.demo.dto.QuoteResponseDTO;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.service.QuoteExpiryService;
 import com.example.demo.service.QuoteService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -23,6 +27,7 @@ import java.util.Map;
 public class QuoteController {
 
     private final QuoteService quoteService;
+    private final QuoteExpiryService quoteExpiryService;
 
     @GetMapping
     @Operation(summary = "Lấy tất cả báo giá")
@@ -30,6 +35,15 @@ public class QuoteController {
         return ResponseEntity.ok(quoteService.getAllQuotes());
     }
 
+    @GetMapping("/page")
+    @Operation(summary = "Lấy báo giá theo trang (cursor), lọc theo đại lý")
+    public ResponseEntity<CursorPageDTO<QuoteResponseDTO>> getQuotesPage(
+            @RequestParam(required = false) Integer dealerId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(quoteService.getQuotesPage(null, null, dealerId, cursor, size));
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Lấy báo giá theo ID")
     public ResponseEntity<QuoteResponseDTO> getQuoteById(@PathVariable Integer id) {
@@ -42,18 +56,38 @@ public class QuoteController {
         return ResponseEntity.ok(quoteService.getQuotesByCustomerId(customerId));
     }
 
+    @GetMapping("/customer/{customerId}/page")
+    @Operation(summary = "Lấy báo giá của khách hàng theo trang (cursor)")
+    public ResponseEntity<CursorPageDTO<QuoteResponseDTO>> getQuotesPageByCustomerId(
+            @PathVariable Integer customerId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(quoteService.getQuotesPage(customerId, null, null, cursor, size));
+    }
+
     @GetMapping("/user/{userId}")
     @Operation(summary = "Lấy báo giá theo ID người dùng")
     public ResponseEntity<List<QuoteResponseDTO>> getQuotesByUserId(@PathVariable Integer userId) {
         return ResponseEntity.ok(quoteService.getQuotesByUserId(userId));
     }
 
+    @GetMapping("/user/{userId}/page")
+    @Operation(summary = "Lấy báo giá của người dùng theo trang (cursor)")
+    public ResponseEntity<CursorPageDTO<QuoteResponseDTO>> getQuotesPageByUserId(
+            @PathVariable Integer userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(quoteService.getQuotesPage(null, userId, null, cursor, size));
+    }
+
     @PostMapping
     @Operation(summary = "Tạo báo giá mới")
     public ResponseEntity<?> createQuote(@RequestBody QuoteDTO quoteDTO) {
         try {
             QuoteResponseDTO response = quoteService.createQuote(quoteDTO);
             return ResponseEntity.ok(response); 
+        } catch (BadRequestException e) {
+            throw e;
         } catch (RuntimeException e) {
             return ResponseEntity.ok(Collections.singletonMap("error", e.getMessage()));
         }
@@ -76,7 +110,13 @@ public class QuoteController {
     @PostMapping("/expire-old")
     @Operation(summary = "Cập nhật trạng thái hết hạn cho báo giá cũ")
     public ResponseEntity<String> expireOldQuotes() {
-        quoteService.expireOldQuotes();
-        return ResponseEntity.ok("Đã cập nhật trạng thái hết hạn cho báo giá cũ");
+        int expired = quoteService.expireOldQuotes();
+        return ResponseEntity.ok("Đã cập nhật trạng thái hết hạn cho " + expired + " báo giá cũ");
+    }
+
+    @GetMapping("/expiry-stats")
+    @Operation(summary = "Số liệu job hết hạn báo giá (số dòng đã cập nhật, số chunk, thời gian chạy)")
+    public ResponseEntity<QuoteExpiryStatsDTO> getExpiryStats() {
+        return ResponseEntity.ok(quoteExpiryService.getStats());
     }
 }
\ No newline at end of file
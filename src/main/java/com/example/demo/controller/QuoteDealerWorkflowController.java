@@ -3,6 +3,8 @@ package com.example.demo.controller;
 import com.example.demo.dto.OrderDTO;
 import com.example.demo.dto.OrderResponseDTO;
 import com.example.demo.dto.PaymentRequestDTO;
+import com.example.demo.dto.QuoteApprovalResultDTO;
+import com.example.demo.dto.QuoteBulkApprovalDTO;
 import com.example.demo.entity.*;
 import com.example.demo.service.*;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -28,6 +30,7 @@ public class QuoteDealerWorkflowController {
     private final OrderWorkflowService orderWorkflowService;
     private final PaymentProcessingService paymentProcessingService;
     private final DealerOrderWorkflowService dealerOrderWorkflowService;
+    private final ApprovalInboxService approvalInboxService;
 
 
     @PostMapping("/quotes/{quoteId}/submit-for-approval")
@@ -48,6 +51,15 @@ public class QuoteDealerWorkflowController {
         return ResponseEntity.ok("Quote approved by dealer manager successfully");
     }
 
+    // Manager duyệt nhiều quote một lần, trả kết quả theo từng quote
+    @PostMapping("/quotes/bulk-approve")
+    public ResponseEntity<List<QuoteApprovalResultDTO>> bulkApproveQuotes(
+            @RequestParam Integer managerId,
+            @RequestBody QuoteBulkApprovalDTO request) {
+        return ResponseEntity.ok(quoteDealerManagerService.approveQuotesByManager(
+                request.getQuoteIds(), managerId, request.getNotes()));
+    }
+
     @PostMapping("/quotes/{quoteId}/reject")
     public ResponseEntity<String> rejectQuote(
             @PathVariable Integer quoteId,
@@ -79,6 +91,12 @@ public class QuoteDealerWorkflowController {
         return ResponseEntity.ok(quotes);
     }
 
+    // Hộp việc của manager: chỉ các cột cần hiển thị, đọc một lượt theo chỉ mục
+    @GetMapping("/quotes/inbox")
+    public ResponseEntity<List<ApprovalInboxItem>> getManagerInbox(@RequestParam Integer managerId) {
+        return ResponseEntity.ok(approvalInboxService.getManagerInbox(managerId));
+    }
+
     @GetMapping("/quotes/approved-ready")
     public ResponseEntity<List<Quote>> getApprovedQuotesReadyForOrder(@RequestParam Integer managerId) {
         List<Quote> quotes = quoteDealerManagerService.getApprovedQuotesReadyForOrder(managerId);
@@ -94,8 +112,9 @@ public class QuoteDealerWorkflowController {
     @PostMapping("/orders/create-from-approved-quote")
     public ResponseEntity<OrderResponseDTO> createOrderFromApprovedQuote(
             @RequestBody OrderDTO orderDTO,
-            @RequestParam Integer staffId) {
-        OrderResponseDTO order = dealerOrderWorkflowService.createOrderFromApprovedQuote(orderDTO, staffId);
+            @RequestParam Integer staffId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        OrderResponseDTO order = dealerOrderWorkflowService.createOrderFromApprovedQuote(orderDTO, staffId, idempotencyKey);
         return ResponseEntity.ok(order);
     }
 
@@ -1,8 +1,13 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.ApprovalInboxCountDTO;
 import com.example.demo.dto.OrderDTO;
 import com.example.demo.dto.OrderResponseDTO;
+import com.example.demo.dto.QuoteApprovalResultDTO;
+import com.example.demo.dto.QuoteBulkApprovalDTO;
+import com.example.demo.entity.ApprovalInboxItem;
 import com.example.demo.entity.Quote;
+import com.example.demo.service.ApprovalInboxService;
 import com.example.demo.service.QuoteApprovalService;
 import com.example.demo.service.OrderWorkflowService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -22,6 +27,7 @@ public class QuoteWorkflowController {
 
     private final QuoteApprovalService quoteApprovalService;
     private final OrderWorkflowService orderWorkflowService;
+    private final ApprovalInboxService approvalInboxService;
 
     // Dealer Manager gửi quote cho EVM duyệt
     @PostMapping("/quotes/{quoteId}/submit-for-approval")
@@ -40,6 +46,15 @@ public class QuoteWorkflowController {
         return ResponseEntity.ok("Quote approved by EVM successfully");
     }
 
+    // EVM duyệt nhiều quote một lần, trả kết quả theo từng quote
+    @PostMapping("/quotes/bulk-approve")
+    public ResponseEntity<List<QuoteApprovalResultDTO>> bulkApproveQuotesByEVM(
+            @RequestParam Integer evmUserId,
+            @RequestBody QuoteBulkApprovalDTO request) {
+        return ResponseEntity.ok(quoteApprovalService.approveQuotesByEVM(
+                request.getQuoteIds(), evmUserId, request.getNotes()));
+    }
+
 
     @PostMapping("/quotes/{quoteId}/reject")
     public ResponseEntity<String> rejectQuoteByEVM(
@@ -66,8 +81,10 @@ public class QuoteWorkflowController {
 
     // Dealer tạo order từ quote đã approved
     @PostMapping("/orders/create-from-approved-quote")
-    public ResponseEntity<OrderResponseDTO> createOrderFromApprovedQuote(@RequestBody OrderDTO orderDTO) {
-        OrderResponseDTO order = orderWorkflowService.createOrderFromApprovedQuote(orderDTO);
+    public ResponseEntity<OrderResponseDTO> createOrderFromApprovedQuote(
+            @RequestBody OrderDTO orderDTO,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        OrderResponseDTO order = orderWorkflowService.createOrderFromApprovedQuote(orderDTO, idempotencyKey);
         return ResponseEntity.ok(order);
     }
 
@@ -78,6 +95,20 @@ public class QuoteWorkflowController {
         return ResponseEntity.ok(quotes);
     }
 
+    // Hộp việc chờ duyệt theo hàng đợi (mặc định quote chờ EVM); dealerId bỏ trống -> mọi đại lý
+    @GetMapping("/inbox")
+    public ResponseEntity<List<ApprovalInboxItem>> getInbox(
+            @RequestParam(defaultValue = "EVM_QUOTE") ApprovalInboxItem.Queue queue,
+            @RequestParam(required = false) Integer dealerId) {
+        return ResponseEntity.ok(approvalInboxService.getQueue(queue, dealerId));
+    }
+
+    // Số việc chờ duyệt theo đại lý
+    @GetMapping("/inbox/counts")
+    public ResponseEntity<List<ApprovalInboxCountDTO>> getInboxCounts(@RequestParam(required = false) Integer dealerId) {
+        return ResponseEntity.ok(approvalInboxService.getCounts(dealerId));
+    }
+
     // Lấy quotes đã approved sẵn sàng tạo order
     @GetMapping("/quotes/approved-ready")
     public ResponseEntity<List<Quote>> getApprovedQuotesReadyForOrder() {
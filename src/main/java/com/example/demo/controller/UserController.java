@@ -52,4 +52,4 @@ public class UserController {
         userService.deleteUser(id);
         return ResponseEntity.ok("User deleted successfully");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Một dòng của activity feed; metadata chỉ có khi client yêu cầu
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class ActivityLogDTO {
+    private Long id;
+    private String action;
+    private String targetType;
+    private String targetId;
+    private String message;
+    private Instant createdAt;
+    private Object metadata;
+
+    // Dùng cho projection JPQL (không đọc metadataJson)
+    public ActivityLogDTO(Long id, String action, String targetType, String targetId, String message, Instant createdAt) {
+        this(id, action, targetType, targetId, message, createdAt, null);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+/**
+ * Số việc đang chờ duyệt của một đại lý theo từng hàng đợi
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class ApprovalInboxCountDTO {
+    private Integer dealerId;
+    private Long dealerManagerQuotes;
+    private Long evmQuotes;
+    private Long pendingOrders;
+}
@@ -0,0 +1,18 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+/**
+ * Tình trạng bộ ghi audit log bất đồng bộ: hàng đợi và số log cộng dồn từ khi khởi động
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class AuditWriterStatsDTO {
+    private String overflowMode;
+    private Integer capacity;
+    private Integer queued;
+    private Long enqueued;
+    private Long written;
+    private Long dropped;
+    private Long spilled;
+    private Long replayed;
+}
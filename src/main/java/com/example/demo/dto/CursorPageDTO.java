@@ -0,0 +1,16 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Một trang kết quả phân trang keyset; nextCursor = null khi đã hết dữ liệu
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class CursorPageDTO<T> {
+    private List<T> items;
+    private Integer size;
+    private String nextCursor;
+    private boolean hasMore;
+}
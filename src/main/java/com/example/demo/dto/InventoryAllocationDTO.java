@@ -0,0 +1,13 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+/**
+ * Một ô trong ma trận phân bổ xe từ kho hãng xuống đại lý
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class InventoryAllocationDTO {
+    private Integer dealerId;
+    private Integer vehicleId;
+    private Integer quantity;
+}
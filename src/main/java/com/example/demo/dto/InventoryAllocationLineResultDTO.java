@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+/**
+ * Kết quả của từng dòng phân bổ
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class InventoryAllocationLineResultDTO {
+    private Integer dealerId;
+    private Integer vehicleId;
+    private Integer quantity;
+    private String status;   // ALLOCATED, REJECTED, SKIPPED (dòng hợp lệ nhưng lô bị huỷ vì dòng khác lỗi)
+    private String message;
+}
@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Kết quả phân bổ theo lô: all-or-nothing, kèm thời gian xử lý và kết quả từng dòng
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class InventoryAllocationResultDTO {
+    private boolean applied;
+    private Integer lineCount;
+    private Integer totalQuantity;
+    private Integer rejectedCount;
+    private Long elapsedMs;
+    private Double linesPerSecond;
+    private List<InventoryAllocationLineResultDTO> lines;
+}
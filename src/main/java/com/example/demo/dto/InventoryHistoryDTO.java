@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tồn kho của một dòng kho tại một thời điểm, dựng lại từ snapshot + nhật ký biến động
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class InventoryHistoryDTO {
+    private Integer dealerId;           // null với kho hãng
+    private Integer vehicleId;
+    private String inventoryType;
+    private LocalDateTime at;
+    private Integer availableQuantity;
+    private Integer reservedQuantity;
+    private Long snapshotId;            // snapshot dùng làm gốc, null nếu replay từ đầu
+}
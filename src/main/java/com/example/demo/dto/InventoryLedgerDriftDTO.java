@@ -0,0 +1,16 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+/**
+ * Một dòng lệch giữa InventoryLedger (bộ nhớ) và bảng Inventory
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class InventoryLedgerDriftDTO {
+    private Integer dealerId;           // null với kho hãng
+    private Integer vehicleId;
+    private String inventoryType;
+    private Integer ledgerQuantity;     // null nếu ledger không có dòng này
+    private Integer pendingDelta;       // phần chưa flush xuống DB
+    private Integer databaseQuantity;   // null nếu DB không có dòng này
+}
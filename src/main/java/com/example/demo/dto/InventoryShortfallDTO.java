@@ -0,0 +1,14 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+/**
+ * Một dòng thiếu hàng khi kiểm tra tồn kho cho cả quote
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class InventoryShortfallDTO {
+    private Integer vehicleId;
+    private Integer requestedQuantity;
+    private Integer availableQuantity;  // 0 nếu chưa có dòng kho cho xe này
+    private Integer shortfall;          // requested - available
+}
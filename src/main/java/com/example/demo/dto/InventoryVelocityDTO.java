@@ -0,0 +1,20 @@
+package com.example.demo.dto;
+
+import lombok.*;
+import java.math.BigDecimal;
+
+/**
+ * Tốc độ bán và số ngày đủ hàng theo (đại lý, mẫu xe) trong cửa sổ trượt.
+ * Mẫu xe = Vehicle.modelName: gộp mọi vehicleId cùng modelName của đại lý.
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class InventoryVelocityDTO {
+    private Integer dealerId;
+    private String modelName;
+    private Integer windowDays;
+    private Integer unitsSold;              // số xe giao trong cửa sổ
+    private BigDecimal unitsPerDay;
+    private Integer availableQuantity;
+    private BigDecimal daysOfSupply;        // available / unitsPerDay, null nếu chưa bán được xe nào
+    private String stockOutRisk;            // HIGH, MEDIUM, LOW, NONE
+}
@@ -0,0 +1,18 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+/**
+ * Số liệu cache xác thực cộng dồn từ khi khởi động: principal theo email và token đã verify
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class PrincipalCacheStatsDTO {
+    private Integer capacity;
+    private Integer size;
+    private Long hits;
+    private Long misses;
+    private Double hitRate;
+    private Long invalidations;
+    private Long tokenHits;
+    private Long tokenMisses;
+}
@@ -0,0 +1,13 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+/**
+ * Kết quả duyệt một quote: APPROVED, INSUFFICIENT_INVENTORY, NOT_ALLOWED hoặc NOT_FOUND
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class QuoteApprovalResultDTO {
+    private Integer quoteId;
+    private String status;
+    private String message;
+}
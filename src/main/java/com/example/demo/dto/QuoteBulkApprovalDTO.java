@@ -0,0 +1,14 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Duyệt nhiều quote trong một lần gọi; notes dùng chung cho mọi quote
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class QuoteBulkApprovalDTO {
+    private List<Integer> quoteIds;
+    private String notes;
+}
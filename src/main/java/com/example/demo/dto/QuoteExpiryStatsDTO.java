@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số liệu của job hết hạn báo giá: lần chạy gần nhất và cộng dồn từ khi khởi động
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class QuoteExpiryStatsDTO {
+    private LocalDateTime lastRunAt;
+    private Integer lastExpired;
+    private Integer lastChunks;
+    private Long lastDurationMs;
+    private Long totalExpired;
+    private Long totalRuns;
+    private Long skippedLocked;
+}
@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import lombok.*;
+
+import java.util.Map;
+
+/**
+ * Cấu hình log request đang chạy: tỉ lệ lấy mẫu chung, ngưỡng request chậm (luôn log), tỉ lệ riêng theo
+ * tiền tố path. seen/logged là số đếm cộng dồn từ khi khởi động, bỏ qua khi cập nhật.
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+public class RequestLogSettingsDTO {
+    private Boolean enabled;
+    private Double sampleRate;
+    private Long slowThresholdMs;
+    private Map<String, Double> pathOverrides;
+    private Long seen;
+    private Long logged;
+}
@@ -7,7 +7,10 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.Instant;
 
 @Entity 
-@Table(name = "Activity_log")
+@Table(name = "Activity_log", indexes = {
+        @Index(name = "idx_activity_actor_created", columnList = "actorId, createdAt, id"),
+        @Index(name = "idx_activity_actor_action_created", columnList = "actorId, action, createdAt, id")
+})
 @Getter 
 @Setter 
 @NoArgsConstructor 
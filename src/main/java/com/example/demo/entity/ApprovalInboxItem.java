@@ -0,0 +1,71 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Hộp việc chờ duyệt: mỗi quote/order đang chờ duyệt có đúng một dòng, chỉ gồm các cột màn hình duyệt cần.
+ * Được ghi cùng transaction khi trạng thái duyệt của quote/order thay đổi (ApprovalInboxProjector).
+ */
+@Entity
+@Table(name = "Approval_inbox",
+        uniqueConstraints = @UniqueConstraint(name = "uk_inbox_item", columnNames = {"item_type", "item_id"}),
+        indexes = @Index(name = "idx_inbox_queue_dealer", columnList = "queue, dealer_id, created_date, item_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ApprovalInboxItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "item_type", nullable = false, length = 10)
+    private ItemType itemType;
+
+    @Column(name = "item_id", nullable = false)
+    private Integer itemId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "queue", nullable = false, length = 30)
+    private Queue queue;
+
+    @Column(name = "approval_status", nullable = false, length = 40)
+    private String approvalStatus;
+
+    @Column(name = "dealer_id", nullable = false)
+    private Integer dealerId;
+
+    @Column(name = "customer_id")
+    private Integer customerId;
+
+    @Column(name = "user_id")
+    private Integer userId;
+
+    @Column(name = "total_amount", precision = 15, scale = 2)
+    private BigDecimal totalAmount;
+
+    // Ngày tạo quote / ngày đặt order
+    @Column(name = "created_date", nullable = false)
+    private LocalDate createdDate;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public enum ItemType {
+        QUOTE, ORDER
+    }
+
+    public enum Queue {
+        DEALER_MANAGER_QUOTE, // PENDING_DEALER_MANAGER_APPROVAL, INSUFFICIENT_INVENTORY
+        EVM_QUOTE,            // PENDING_EVM_APPROVAL
+        ORDER_APPROVAL        // order PENDING_APPROVAL
+    }
+}
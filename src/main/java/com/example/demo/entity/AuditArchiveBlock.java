@@ -0,0 +1,49 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Một block audit log đã lưu trữ: tối đa blockRows log của cùng một ngày, JSON mỗi dòng, nén gzip.
+ * Lưu trong DB để mọi node đọc được và không mất theo ổ đĩa của node chạy job.
+ */
+@Entity
+@Table(name = "Audit_archive_block", indexes = {
+        @Index(name = "idx_audit_archive_day", columnList = "archive_day, max_log_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditArchiveBlock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "archive_day", nullable = false)
+    private LocalDate archiveDay;
+
+    // Khoảng logId của cả ngày đã lưu trong lần chạy ghi block này
+    @Column(name = "min_log_id", nullable = false)
+    private Long minLogId;
+
+    @Column(name = "max_log_id", nullable = false)
+    private Long maxLogId;
+
+    @Column(name = "block_no", nullable = false)
+    private Integer blockNo;
+
+    @Column(name = "row_count", nullable = false)
+    private Integer rowCount;
+
+    @Column(name = "data", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] data;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,33 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Chỉ mục của block lưu trữ: mỗi entity có log trong block là một dòng, tra lịch sử chỉ đọc các block này
+ */
+@Entity
+@Table(name = "Audit_archive_key", indexes = {
+        @Index(name = "idx_audit_archive_key_entity", columnList = "entity_type, entity_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AuditArchiveKey {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "block_id", nullable = false)
+    private Long blockId;
+
+    @Column(name = "entity_type", nullable = false, length = 50)
+    private String entityType;
+
+    // Log không có entityId lưu là chuỗi rỗng
+    @Column(name = "entity_id", nullable = false, length = 100)
+    private String entityId;
+}
@@ -15,7 +15,12 @@ import java.time.LocalDateTime;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "AuditLogs")
+@Table(name = "AuditLogs", indexes = {
+        @Index(name = "idx_audit_created", columnList = "createdAt"),
+        @Index(name = "idx_audit_type_created", columnList = "entityType, createdAt"),
+        @Index(name = "idx_audit_action_created", columnList = "action, createdAt"),
+        @Index(name = "idx_audit_entity_created", columnList = "entityType, entityId, createdAt")
+})
 public class AuditLog {
 
     @Id
@@ -22,6 +22,10 @@ public class ForgotPassword {
     @Column(nullable = false)
     private Date expiryDate;
 
+    // Số lần nhập sai; null ở các dòng tạo trước khi có cột này
+    @Column(name = "attempts")
+    private Integer attempts;
+
     @OneToOne
     private User user;
 
@@ -6,7 +6,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "Inventory")
+// Mỗi (đại lý, xe, loại kho) chỉ một dòng; dòng kho hãng có dealer_id NULL nên không bị ràng buộc này chặn
+@Table(name = "Inventory",
+        uniqueConstraints = @UniqueConstraint(name = "uk_inventory_dealer_vehicle_type",
+                columnNames = {"dealer_id", "vehicle_id", "inventory_type"}))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -39,6 +42,12 @@ public class Inventory {
     @Column(name = "last_updated")
     private LocalDateTime lastUpdated;
 
+    // Optimistic lock: các câu UPDATE có điều kiện trong InventoryRepository cũng tăng version,
+    // nên entity cũ (stale) bị save đè sẽ lỗi thay vì làm mất cập nhật
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0")
+    private Long version;
+
     // Enum phân loại kho
     public enum InventoryType {
         FACTORY,    // Kho hãng
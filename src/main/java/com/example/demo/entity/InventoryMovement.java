@@ -0,0 +1,70 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Nhật ký biến động kho (append-only). Mỗi dòng là một thay đổi available/reserved của một dòng Inventory.
+ * Được ghi theo lô bằng InventoryJournal, không cập nhật hay xóa.
+ */
+@Entity
+@Table(name = "Inventory_movement", indexes = {
+        @Index(name = "idx_movement_key_time", columnList = "vehicle_id, dealer_id, inventory_type, occurred_at"),
+        @Index(name = "idx_movement_time", columnList = "occurred_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InventoryMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // null với kho hãng
+    @Column(name = "dealer_id")
+    private Integer dealerId;
+
+    @Column(name = "vehicle_id", nullable = false)
+    private Integer vehicleId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "inventory_type", nullable = false, length = 20)
+    private Inventory.InventoryType inventoryType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "movement_type", nullable = false, length = 20)
+    private MovementType movementType;
+
+    // Thay đổi available_quantity (có dấu)
+    @Column(name = "available_delta", nullable = false)
+    private Integer availableDelta;
+
+    // Thay đổi reserved_quantity (có dấu)
+    @Column(name = "reserved_delta", nullable = false)
+    private Integer reservedDelta;
+
+    @Column(name = "reference_type", length = 20)
+    private String referenceType;   // QUOTE, ORDER...
+
+    @Column(name = "reference_id")
+    private Integer referenceId;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+
+    public enum MovementType {
+        CREATE,         // Tạo dòng kho
+        TRANSFER_OUT,   // Xuất kho hãng sang đại lý
+        TRANSFER_IN,    // Đại lý nhận từ kho hãng
+        DEDUCT,         // Trừ kho (giao xe)
+        RESERVE,        // Giữ hàng cho quote
+        CONSUME,        // Giao xe từ phần đã giữ
+        RELEASE,        // Trả phần giữ (order bị từ chối, duyệt lại)
+        EXPIRE          // Reservation hết hạn
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Giữ hàng có thời hạn cho một dòng báo giá đã được duyệt.
+ * Số lượng giữ đã được chuyển từ available_quantity sang reserved_quantity của dòng Inventory tương ứng.
+ */
+@Entity
+@Table(name = "Inventory_reservation", indexes = {
+        @Index(name = "idx_reservation_quote_status", columnList = "quote_id, status"),
+        @Index(name = "idx_reservation_status_expires", columnList = "status, expires_at"),
+        @Index(name = "idx_reservation_release_token", columnList = "release_token")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InventoryReservation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "quote_id", nullable = false)
+    private Integer quoteId;
+
+    // null với kho hãng
+    @Column(name = "dealer_id")
+    private Integer dealerId;
+
+    @Column(name = "vehicle_id", nullable = false)
+    private Integer vehicleId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "inventory_type", nullable = false)
+    private Inventory.InventoryType inventoryType;
+
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private ReservationStatus status;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "released_at")
+    private LocalDateTime releasedAt;
+
+    // Đánh dấu nhóm reservation được trả hàng trong cùng một câu UPDATE
+    @Column(name = "release_token", length = 36)
+    private String releaseToken;
+
+    public enum ReservationStatus {
+        ACTIVE,     // Đang giữ hàng
+        CONSUMED,   // Đã chuyển thành trừ kho khi giao xe
+        RELEASED,   // Đã trả lại kho (order bị từ chối, duyệt lại...)
+        EXPIRED     // Hết hạn, trả lại kho bởi sweeper
+    }
+}
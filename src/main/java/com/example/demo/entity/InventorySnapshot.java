@@ -0,0 +1,40 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Snapshot tồn kho đã nén: trạng thái mọi dòng kho sau khi áp dụng các movement có occurredAt <= takenAt.
+ * Tồn kho tại thời điểm X = snapshot gần nhất trước X + replay movement có occurredAt trong (takenAt, X].
+ * lastMovementId chỉ để tham khảo (id lớn nhất đã gộp), id IDENTITY không theo thứ tự commit nên không dùng làm mốc.
+ */
+@Entity
+@Table(name = "Inventory_snapshot", indexes = {
+        @Index(name = "idx_snapshot_taken_at", columnList = "taken_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InventorySnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "taken_at", nullable = false)
+    private LocalDateTime takenAt;
+
+    @Column(name = "last_movement_id", nullable = false)
+    private Long lastMovementId;
+
+    @Column(name = "line_count", nullable = false)
+    private Integer lineCount;
+
+    @OneToMany(mappedBy = "snapshot", fetch = FetchType.LAZY)
+    private List<InventorySnapshotLine> lines;
+}
@@ -0,0 +1,43 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Entity
+@Table(name = "Inventory_snapshot_line", indexes = {
+        @Index(name = "idx_snapshot_line_key", columnList = "snapshot_id, vehicle_id, dealer_id, inventory_type")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InventorySnapshotLine {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "snapshot_id", nullable = false)
+    private Long snapshotId;
+
+    @Column(name = "dealer_id")
+    private Integer dealerId;
+
+    @Column(name = "vehicle_id", nullable = false)
+    private Integer vehicleId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "inventory_type", nullable = false, length = 20)
+    private Inventory.InventoryType inventoryType;
+
+    @Column(name = "available_quantity", nullable = false)
+    private Integer availableQuantity;
+
+    @Column(name = "reserved_quantity", nullable = false)
+    private Integer reservedQuantity;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "snapshot_id", referencedColumnName = "id", insertable = false, updatable = false)
+    private InventorySnapshot snapshot;
+}
@@ -0,0 +1,33 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Khóa cho job định kỳ khi chạy nhiều node: node nào giữ dòng (lockedUntil còn hạn) thì node đó chạy job.
+ */
+@Entity
+@Table(name = "Job_lock")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobLock {
+
+    @Id
+    @Column(name = "name", length = 100)
+    private String name;
+
+    @Column(name = "locked_by", nullable = false, length = 100)
+    private String lockedBy;
+
+    @Column(name = "locked_at", nullable = false)
+    private LocalDateTime lockedAt;
+
+    // Hết hạn thì node khác được lấy khóa, kể cả khi node giữ khóa bị chết giữa chừng
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+}
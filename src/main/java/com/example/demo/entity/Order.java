@@ -1,5 +1,6 @@
 package com.example.demo.entity;
 
+import com.example.demo.entity.listener.ApprovalInboxProjector;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -13,19 +14,30 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "Order_table")
+@Table(name = "Order_table",
+        uniqueConstraints = @UniqueConstraint(name = Order.QUOTE_UNIQUE_CONSTRAINT, columnNames = "quote_id"),
+        indexes = {
+        @Index(name = "idx_order_dealer_date", columnList = "dealer_id, order_date, id"),
+        @Index(name = "idx_order_date", columnList = "order_date, id"),
+        @Index(name = "idx_order_status_date", columnList = "status, order_date, id"),
+        @Index(name = "idx_order_approval", columnList = "approval_status")
+})
+@EntityListeners(ApprovalInboxProjector.class)
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order {
 
+    // Mỗi quote tối đa một order; tên constraint dùng để nhận diện lỗi trùng khi tạo order song song
+    public static final String QUOTE_UNIQUE_CONSTRAINT = "uk_order_quote";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
     private Integer id;
 
-    @Column(name = "quote_id", nullable = false, unique = true)
+    @Column(name = "quote_id", nullable = false)
     private Integer quoteId;
 
     @Column(name = "customer_id",nullable = true)
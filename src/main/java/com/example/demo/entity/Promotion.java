@@ -14,7 +14,7 @@ import java.time.LocalDate;
 @Entity
 @Getter
 @Setter
-@Table(name = "Promotion")
+@Table(name = "Promotion", indexes = @Index(name = "idx_promotion_status_end", columnList = "status, end_date"))
 public class Promotion {
 
     @Id
@@ -1,5 +1,6 @@
 package com.example.demo.entity;
 
+import com.example.demo.entity.listener.ApprovalInboxProjector;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -13,7 +14,15 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "Quote")
+@Table(name = "Quote", indexes = {
+        @Index(name = "idx_quote_date", columnList = "created_date, id"),
+        @Index(name = "idx_quote_customer_date", columnList = "customer_id, created_date, id"),
+        @Index(name = "idx_quote_user_date", columnList = "user_id, created_date, id"),
+        @Index(name = "idx_quote_dealer_date", columnList = "dealer_id, created_date, id"),
+        @Index(name = "idx_quote_status_valid", columnList = "status, valid_until"),
+        @Index(name = "idx_quote_approval_dealer", columnList = "approval_status, dealer_id")
+})
+@EntityListeners(ApprovalInboxProjector.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -81,6 +90,11 @@ public class Quote {
     @Column(name = "final_total", precision = 15, scale = 2)
     private BigDecimal finalTotal;
 
+    // Optimistic lock; cũng là khóa cache kết quả tính giá (QuoteCalculationService)
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0")
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "userId", insertable = false, updatable = false)
     @JsonIgnore
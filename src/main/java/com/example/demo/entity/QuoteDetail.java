@@ -9,7 +9,9 @@ import lombok.Setter;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "Quote_detail")
+@Table(name = "Quote_detail",
+        uniqueConstraints = @UniqueConstraint(name = "uk_quote_detail_vehicle", columnNames = {"quote_id", "vehicle_id"}),
+        indexes = @Index(name = "idx_quote_detail_quote", columnList = "quote_id, id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,83 @@
+package com.example.demo.entity.listener;
+
+import com.example.demo.entity.ApprovalInboxItem;
+import com.example.demo.entity.Order;
+import com.example.demo.entity.Quote;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Entity listener của Quote/Order: giữ bảng Approval_inbox khớp với trạng thái duyệt.
+ * Dựng lại toàn bộ bảng nằm ở ApprovalInboxService.rebuild.
+ *
+ * Ghi bằng JdbcTemplate trên cùng connection/transaction với lần flush (không qua EntityManager để không
+ * flush lồng nhau), nên hộp việc commit hoặc rollback cùng quote/order.
+ */
+@Component
+@RequiredArgsConstructor
+public class ApprovalInboxProjector {
+
+    private static final String UPSERT_SQL = "INSERT INTO approval_inbox (item_type, item_id, queue, approval_status, " +
+            "dealer_id, customer_id, user_id, total_amount, created_date, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE queue = VALUES(queue), approval_status = VALUES(approval_status), " +
+            "dealer_id = VALUES(dealer_id), customer_id = VALUES(customer_id), user_id = VALUES(user_id), " +
+            "total_amount = VALUES(total_amount), created_date = VALUES(created_date), updated_at = VALUES(updated_at)";
+
+    private static final String DELETE_SQL = "DELETE FROM approval_inbox WHERE item_type = ? AND item_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(Object entity) {
+        if (entity instanceof Quote quote) {
+            project(ApprovalInboxItem.ItemType.QUOTE, quote.getId(), queueOf(quote.getApprovalStatus()),
+                    String.valueOf(quote.getApprovalStatus()), quote.getDealerId(), quote.getCustomerId(),
+                    quote.getUserId(), quote.getTotalAmount(), quote.getCreatedDate());
+        } else if (entity instanceof Order order) {
+            project(ApprovalInboxItem.ItemType.ORDER, order.getId(),
+                    order.getApprovalStatus() == Order.OrderApprovalStatus.PENDING_APPROVAL ? ApprovalInboxItem.Queue.ORDER_APPROVAL : null,
+                    String.valueOf(order.getApprovalStatus()), order.getDealerId(), order.getCustomerId(),
+                    order.getUserId(), order.getTotalAmount(), order.getOrderDate());
+        }
+    }
+
+    @PostRemove
+    public void onRemoved(Object entity) {
+        if (entity instanceof Quote quote) {
+            jdbcTemplate.update(DELETE_SQL, ApprovalInboxItem.ItemType.QUOTE.name(), quote.getId());
+        } else if (entity instanceof Order order) {
+            jdbcTemplate.update(DELETE_SQL, ApprovalInboxItem.ItemType.ORDER.name(), order.getId());
+        }
+    }
+
+    static ApprovalInboxItem.Queue queueOf(Quote.QuoteApprovalStatus status) {
+        if (status == null) {
+            return null;
+        }
+        return switch (status) {
+            case PENDING_DEALER_MANAGER_APPROVAL, INSUFFICIENT_INVENTORY -> ApprovalInboxItem.Queue.DEALER_MANAGER_QUOTE;
+            case PENDING_EVM_APPROVAL -> ApprovalInboxItem.Queue.EVM_QUOTE;
+            default -> null;
+        };
+    }
+
+    // queue = null -> không còn chờ duyệt, bỏ khỏi hộp việc
+    private void project(ApprovalInboxItem.ItemType type, Integer itemId, ApprovalInboxItem.Queue queue, String approvalStatus,
+                         Integer dealerId, Integer customerId, Integer userId, BigDecimal totalAmount, LocalDate createdDate) {
+        if (queue == null) {
+            jdbcTemplate.update(DELETE_SQL, type.name(), itemId);
+            return;
+        }
+        jdbcTemplate.update(UPSERT_SQL, type.name(), itemId, queue.name(), approvalStatus, dealerId, customerId, userId,
+                totalAmount, createdDate, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.demo.exception;
+
+/**
+ * Kho không đủ để giữ/trừ số lượng yêu cầu (UPDATE có điều kiện không khớp dòng nào)
+ */
+public class InsufficientInventoryException extends RuntimeException {
+    public InsufficientInventoryException(String message) {
+        super(message);
+    }
+}
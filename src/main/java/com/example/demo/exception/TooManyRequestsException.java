@@ -0,0 +1,17 @@
+package com.example.demo.exception;
+
+/**
+ * Ném rất nhiều lần khi bị tấn công nên không ghi stack trace
+ */
+public class TooManyRequestsException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
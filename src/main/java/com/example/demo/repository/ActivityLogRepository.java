@@ -1,13 +1,47 @@
 package com.example.demo.repository;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import com.example.demo.dto.ActivityLogDTO;
 import com.example.demo.entity.ActivityLog;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
 public interface ActivityLogRepository extends JpaRepository<ActivityLog, Long> {
-    Page<ActivityLog> findByActorIdOrderByCreatedAtDesc(Long actorId, Pageable pageable);
-    Page<ActivityLog> findByActorIdAndActionOrderByCreatedAtDesc(Long actorId, String action, Pageable pageable);
-  }
-  
\ No newline at end of file
+
+    /**
+     * Trang keyset của một người, mới nhất trước (idx_activity_actor_created). Pageable chỉ dùng làm LIMIT.
+     */
+    @Query("SELECT new com.example.demo.dto.ActivityLogDTO(a.id, a.action, a.targetType, a.targetId, a.message, a.createdAt) " +
+            "FROM ActivityLog a WHERE a.actorId = :actorId " +
+            "AND (:cursorAt IS NULL OR a.createdAt < :cursorAt OR (a.createdAt = :cursorAt AND a.id < :cursorId)) " +
+            "ORDER BY a.createdAt DESC, a.id DESC")
+    List<ActivityLogDTO> findFeed(@Param("actorId") Long actorId,
+                                  @Param("cursorAt") Instant cursorAt,
+                                  @Param("cursorId") Long cursorId,
+                                  Pageable pageable);
+
+    /**
+     * Như findFeed, lọc theo action (idx_activity_actor_action_created)
+     */
+    @Query("SELECT new com.example.demo.dto.ActivityLogDTO(a.id, a.action, a.targetType, a.targetId, a.message, a.createdAt) " +
+            "FROM ActivityLog a WHERE a.actorId = :actorId AND a.action = :action " +
+            "AND (:cursorAt IS NULL OR a.createdAt < :cursorAt OR (a.createdAt = :cursorAt AND a.id < :cursorId)) " +
+            "ORDER BY a.createdAt DESC, a.id DESC")
+    List<ActivityLogDTO> findFeedByAction(@Param("actorId") Long actorId,
+                                          @Param("action") String action,
+                                          @Param("cursorAt") Instant cursorAt,
+                                          @Param("cursorId") Long cursorId,
+                                          Pageable pageable);
+
+    /**
+     * metadataJson của các dòng trong trang: [id, metadataJson]
+     */
+    @Query("SELECT a.id, a.metadataJson FROM ActivityLog a WHERE a.id IN :ids AND a.metadataJson IS NOT NULL")
+    List<Object[]> findMetadata(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,31 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.ApprovalInboxCountDTO;
+import com.example.demo.entity.ApprovalInboxItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ApprovalInboxRepository extends JpaRepository<ApprovalInboxItem, Long> {
+
+    /**
+     * Hộp việc của một hàng đợi, mới nhất trước; dealerId = null -> mọi đại lý. Đọc theo idx_inbox_queue_dealer
+     */
+    @Query("SELECT i FROM ApprovalInboxItem i WHERE i.queue = :queue " +
+            "AND (:dealerId IS NULL OR i.dealerId = :dealerId) " +
+            "ORDER BY i.createdDate DESC, i.itemId DESC")
+    List<ApprovalInboxItem> findQueue(@Param("queue") ApprovalInboxItem.Queue queue,
+                                      @Param("dealerId") Integer dealerId);
+
+    @Query("SELECT new com.example.demo.dto.ApprovalInboxCountDTO(i.dealerId, " +
+            "SUM(CASE WHEN i.queue = com.example.demo.entity.ApprovalInboxItem.Queue.DEALER_MANAGER_QUOTE THEN 1L ELSE 0L END), " +
+            "SUM(CASE WHEN i.queue = com.example.demo.entity.ApprovalInboxItem.Queue.EVM_QUOTE THEN 1L ELSE 0L END), " +
+            "SUM(CASE WHEN i.queue = com.example.demo.entity.ApprovalInboxItem.Queue.ORDER_APPROVAL THEN 1L ELSE 0L END)) " +
+            "FROM ApprovalInboxItem i WHERE (:dealerId IS NULL OR i.dealerId = :dealerId) " +
+            "GROUP BY i.dealerId ORDER BY i.dealerId")
+    List<ApprovalInboxCountDTO> countByDealer(@Param("dealerId") Integer dealerId);
+}
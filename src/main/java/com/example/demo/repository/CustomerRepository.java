@@ -2,6 +2,7 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.Customer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -13,6 +14,11 @@ import java.util.Optional;
 public interface CustomerRepository extends JpaRepository<Customer, Integer> {
 
     Optional<Customer> findByEmail(String email);
+
+    @Modifying
+    @Query("UPDATE Customer c SET c.isVip = true WHERE c.id = :id AND c.isVip = false")
+    int markVip(@Param("id") Integer id);
+
     Optional<Customer> findByPhone(String phone);
     Optional<Customer> findByCitizenId(String citizenId);
     Optional<Customer> findByIdAndCitizenId(Integer id, String citizenId);
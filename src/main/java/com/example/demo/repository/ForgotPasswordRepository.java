@@ -2,13 +2,32 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.ForgotPassword;
 import com.example.demo.entity.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Date;
 import java.util.Optional;
 
 public interface ForgotPasswordRepository extends JpaRepository<ForgotPassword, Integer> {
 
         @Query("select fp from ForgotPassword fp where fp.otp = ?1 and fp.user = ?2")
         Optional<ForgotPassword> findByOtpAndUser(Integer otp, User user);
+
+        /**
+         * OTP đang chờ của user, khóa dòng để đếm số lần nhập sai đúng khi nhiều node cùng xác thực
+         */
+        @Lock(LockModeType.PESSIMISTIC_WRITE)
+        @Query("select fp from ForgotPassword fp where fp.user.email = ?1")
+        Optional<ForgotPassword> findByUserEmailForUpdate(String email);
+
+        @Modifying
+        @Query("delete from ForgotPassword fp where fp.user = ?1")
+        int deleteByUser(User user);
+
+        @Modifying
+        @Query("delete from ForgotPassword fp where fp.expiryDate < ?1")
+        int deleteExpired(Date now);
 }
@@ -0,0 +1,41 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findByScopeAndIdempotencyKey(String scope, String idempotencyKey);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    // Xoá dòng của key nếu đã hết hạn hoặc IN_PROGRESS quá lease (request giữ chỗ đã chết giữa chừng)
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.scope = :scope AND r.idempotencyKey = :key " +
+            "AND (r.expiresAt < :now OR (r.status = com.example.demo.entity.IdempotencyRecord.Status.IN_PROGRESS " +
+            "AND r.createdAt < :staleBefore))")
+    int deleteReclaimable(@Param("scope") String scope, @Param("key") String key,
+                          @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    // Chỉ request đang giữ chỗ (theo id) mới được hoàn tất / trả key; dòng đã bị request khác giữ lại thì không đụng tới
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.status = com.example.demo.entity.IdempotencyRecord.Status.COMPLETED, " +
+            "r.responseBody = :body, r.completedAt = :now " +
+            "WHERE r.id = :id AND r.status = com.example.demo.entity.IdempotencyRecord.Status.IN_PROGRESS")
+    int complete(@Param("id") Long id, @Param("body") String body, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id " +
+            "AND r.status = com.example.demo.entity.IdempotencyRecord.Status.IN_PROGRESS")
+    int deleteInProgress(@Param("id") Long id);
+}
@@ -0,0 +1,55 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.InventoryMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface InventoryMovementRepository extends JpaRepository<InventoryMovement, Long> {
+
+    @Query("SELECT COALESCE(MAX(m.id), 0) FROM InventoryMovement m WHERE m.occurredAt <= :until")
+    Long findMaxIdUntil(@Param("until") LocalDateTime until);
+
+    // Gộp movement có occurredAt trong (after, until], after = null là từ đầu nhật ký:
+    // [dealerId, vehicleId, inventoryType, SUM(available), SUM(reserved)]
+    @Query("SELECT m.dealerId, m.vehicleId, m.inventoryType, SUM(m.availableDelta), SUM(m.reservedDelta) " +
+            "FROM InventoryMovement m WHERE (:after IS NULL OR m.occurredAt > :after) AND m.occurredAt <= :until " +
+            "GROUP BY m.dealerId, m.vehicleId, m.inventoryType")
+    List<Object[]> sumDeltasBetween(@Param("after") LocalDateTime after, @Param("until") LocalDateTime until);
+
+    // Gộp movement có occurredAt sau after (đã commit tới lúc đọc)
+    @Query("SELECT m.dealerId, m.vehicleId, m.inventoryType, SUM(m.availableDelta), SUM(m.reservedDelta) " +
+            "FROM InventoryMovement m WHERE m.occurredAt > :after " +
+            "GROUP BY m.dealerId, m.vehicleId, m.inventoryType")
+    List<Object[]> sumDeltasAfter(@Param("after") LocalDateTime after);
+
+    @Query("SELECT m.dealerId, m.vehicleId, m.inventoryType, SUM(m.availableDelta), SUM(m.reservedDelta) " +
+            "FROM InventoryMovement m WHERE m.vehicleId = :vehicleId " +
+            "AND (:after IS NULL OR m.occurredAt > :after) AND m.occurredAt <= :until " +
+            "GROUP BY m.dealerId, m.vehicleId, m.inventoryType")
+    List<Object[]> sumDeltasForVehicleBetween(@Param("vehicleId") Integer vehicleId,
+                                              @Param("after") LocalDateTime after,
+                                              @Param("until") LocalDateTime until);
+
+    // Số xe đại lý đã xuất (giao xe) trong khoảng thời gian: [dealerId, SUM(delta)] - delta âm
+    @Query("SELECT m.dealerId, SUM(m.availableDelta + m.reservedDelta) FROM InventoryMovement m " +
+            "WHERE m.inventoryType = com.example.demo.entity.Inventory.InventoryType.DEALER " +
+            "AND m.movementType IN (com.example.demo.entity.InventoryMovement.MovementType.DEDUCT, " +
+            "com.example.demo.entity.InventoryMovement.MovementType.CONSUME) " +
+            "AND m.occurredAt >= :from AND m.occurredAt < :to GROUP BY m.dealerId")
+    List<Object[]> sumDealerOutflowBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Xuất kho đại lý theo mẫu xe và ngày từ thời điểm since: [dealerId, modelName, ngày, SUM(delta)] - delta âm
+    @Query("SELECT m.dealerId, v.modelName, CAST(m.occurredAt AS LocalDate), SUM(m.availableDelta + m.reservedDelta) " +
+            "FROM InventoryMovement m JOIN Vehicle v ON v.id = m.vehicleId " +
+            "WHERE m.inventoryType = com.example.demo.entity.Inventory.InventoryType.DEALER " +
+            "AND m.movementType IN (com.example.demo.entity.InventoryMovement.MovementType.DEDUCT, " +
+            "com.example.demo.entity.InventoryMovement.MovementType.CONSUME) " +
+            "AND m.occurredAt >= :since GROUP BY m.dealerId, v.modelName, CAST(m.occurredAt AS LocalDate)")
+    List<Object[]> sumDealerModelOutflowByDaySince(@Param("since") LocalDateTime since);
+}
@@ -2,10 +2,13 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.Inventory;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -70,4 +73,129 @@ public interface InventoryRepository extends JpaRepository<Inventory, Integer> {
     Optional<Inventory> findFactoryInventoryByVehicleId(@Param("vehicleId") Integer vehicleId);
 
     List<Inventory> findByAvailableQuantityGreaterThanOrderByVehicleIdAsc(int availableQuantity);
-}
\ No newline at end of file
+
+    // Kiểm tra tồn kho theo lô: [vehicleId, availableQuantity] cho nhiều xe trong một query
+    @Query("SELECT i.vehicle.id, i.availableQuantity FROM Inventory i WHERE i.vehicle.id IN :vehicleIds " +
+            "AND i.dealer IS NULL AND i.inventoryType = com.example.demo.entity.Inventory.InventoryType.FACTORY")
+    List<Object[]> findFactoryAvailableByVehicleIds(@Param("vehicleIds") Collection<Integer> vehicleIds);
+
+    @Query("SELECT i.vehicle.id, i.availableQuantity FROM Inventory i WHERE i.vehicle.id IN :vehicleIds " +
+            "AND i.dealer.dealerId = :dealerId AND i.inventoryType = com.example.demo.entity.Inventory.InventoryType.DEALER")
+    List<Object[]> findDealerAvailableByVehicleIds(@Param("dealerId") Integer dealerId,
+                                                   @Param("vehicleIds") Collection<Integer> vehicleIds);
+
+    /**
+     * Trừ kho hãng có điều kiện (atomic) - chỉ trừ khi available_quantity >= quantity.
+     * Trả về số dòng bị cập nhật: 0 nghĩa là không tồn tại hoặc không đủ hàng.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Inventory i SET i.availableQuantity = i.availableQuantity - :quantity, " +
+            "i.lastUpdated = :now, i.version = i.version + 1 " +
+            "WHERE i.vehicle.id = :vehicleId AND i.dealer IS NULL " +
+            "AND i.inventoryType = com.example.demo.entity.Inventory.InventoryType.FACTORY " +
+            "AND i.availableQuantity >= :quantity")
+    int deductFactoryQuantity(@Param("vehicleId") Integer vehicleId,
+                              @Param("quantity") Integer quantity,
+                              @Param("now") LocalDateTime now);
+
+    /**
+     * Trừ kho đại lý có điều kiện (atomic) - chỉ trừ khi available_quantity >= quantity.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Inventory i SET i.availableQuantity = i.availableQuantity - :quantity, " +
+            "i.lastUpdated = :now, i.version = i.version + 1 " +
+            "WHERE i.dealer.dealerId = :dealerId AND i.vehicle.id = :vehicleId " +
+            "AND i.inventoryType = com.example.demo.entity.Inventory.InventoryType.DEALER " +
+            "AND i.availableQuantity >= :quantity")
+    int deductDealerQuantity(@Param("dealerId") Integer dealerId,
+                             @Param("vehicleId") Integer vehicleId,
+                             @Param("quantity") Integer quantity,
+                             @Param("now") LocalDateTime now);
+
+    /**
+     * Cộng kho đại lý (atomic). Trả về 0 nếu đại lý chưa có dòng kho cho xe này.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Inventory i SET i.availableQuantity = i.availableQuantity + :quantity, " +
+            "i.lastUpdated = :now, i.version = i.version + 1 " +
+            "WHERE i.dealer.dealerId = :dealerId AND i.vehicle.id = :vehicleId " +
+            "AND i.inventoryType = com.example.demo.entity.Inventory.InventoryType.DEALER")
+    int addDealerQuantity(@Param("dealerId") Integer dealerId,
+                          @Param("vehicleId") Integer vehicleId,
+                          @Param("quantity") Integer quantity,
+                          @Param("now") LocalDateTime now);
+
+    /**
+     * Giữ hàng (atomic): chuyển số lượng từ available sang reserved nếu đủ hàng
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Inventory i SET i.availableQuantity = i.availableQuantity - :quantity, " +
+            "i.reservedQuantity = i.reservedQuantity + :quantity, " +
+            "i.lastUpdated = :now, i.version = i.version + 1 " +
+            "WHERE i.vehicle.id = :vehicleId AND i.dealer IS NULL " +
+            "AND i.inventoryType = com.example.demo.entity.Inventory.InventoryType.FACTORY " +
+            "AND i.availableQuantity >= :quantity")
+    int reserveFactoryQuantity(@Param("vehicleId") Integer vehicleId,
+                               @Param("quantity") Integer quantity,
+                               @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Inventory i SET i.availableQuantity = i.availableQuantity - :quantity, " +
+            "i.reservedQuantity = i.reservedQuantity + :quantity, " +
+            "i.lastUpdated = :now, i.version = i.version + 1 " +
+            "WHERE i.dealer.dealerId = :dealerId AND i.vehicle.id = :vehicleId " +
+            "AND i.inventoryType = com.example.demo.entity.Inventory.InventoryType.DEALER " +
+            "AND i.availableQuantity >= :quantity")
+    int reserveDealerQuantity(@Param("dealerId") Integer dealerId,
+                              @Param("vehicleId") Integer vehicleId,
+                              @Param("quantity") Integer quantity,
+                              @Param("now") LocalDateTime now);
+
+    /**
+     * Xuất hàng đã giữ của đại lý khi giao xe: chỉ giảm reserved_quantity
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Inventory i SET i.reservedQuantity = i.reservedQuantity - :quantity, " +
+            "i.lastUpdated = :now, i.version = i.version + 1 " +
+            "WHERE i.dealer.dealerId = :dealerId AND i.vehicle.id = :vehicleId " +
+            "AND i.inventoryType = com.example.demo.entity.Inventory.InventoryType.DEALER " +
+            "AND i.reservedQuantity >= :quantity")
+    int consumeReservedDealerQuantity(@Param("dealerId") Integer dealerId,
+                                      @Param("vehicleId") Integer vehicleId,
+                                      @Param("quantity") Integer quantity,
+                                      @Param("now") LocalDateTime now);
+
+    /**
+     * Xuất hàng đã giữ ở kho hãng khi chuyển cho đại lý: chỉ giảm reserved_quantity
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Inventory i SET i.reservedQuantity = i.reservedQuantity - :quantity, " +
+            "i.lastUpdated = :now, i.version = i.version + 1 " +
+            "WHERE i.vehicle.id = :vehicleId AND i.dealer IS NULL " +
+            "AND i.inventoryType = com.example.demo.entity.Inventory.InventoryType.FACTORY " +
+            "AND i.reservedQuantity >= :quantity")
+    int consumeReservedFactoryQuantity(@Param("vehicleId") Integer vehicleId,
+                                       @Param("quantity") Integer quantity,
+                                       @Param("now") LocalDateTime now);
+
+    // Các cặp [dealerId, vehicleId] đã có dòng kho đại lý - dùng cho phân bổ theo lô
+    @Query("SELECT i.dealer.dealerId, i.vehicle.id FROM Inventory i WHERE i.dealer.dealerId IN :dealerIds " +
+            "AND i.vehicle.id IN :vehicleIds AND i.inventoryType = com.example.demo.entity.Inventory.InventoryType.DEALER")
+    List<Object[]> findDealerInventoryKeys(@Param("dealerIds") Collection<Integer> dealerIds,
+                                           @Param("vehicleIds") Collection<Integer> vehicleIds);
+
+    // Tồn kho đại lý kèm tên mẫu xe: [dealerId, vehicleId, modelName, availableQuantity]; dealerId = null -> mọi đại lý
+    @Query("SELECT d.dealerId, v.id, v.modelName, i.availableQuantity FROM Inventory i JOIN i.dealer d JOIN i.vehicle v " +
+            "WHERE i.inventoryType = com.example.demo.entity.Inventory.InventoryType.DEALER " +
+            "AND (:dealerId IS NULL OR d.dealerId = :dealerId)")
+    List<Object[]> findDealerStockRows(@Param("dealerId") Integer dealerId);
+
+    // Dữ liệu nạp InventoryLedger: [dealerId (null với kho hãng), vehicleId, inventoryType, availableQuantity]
+    @Query("SELECT d.dealerId, i.vehicle.id, i.inventoryType, i.availableQuantity FROM Inventory i LEFT JOIN i.dealer d")
+    List<Object[]> findLedgerRows();
+
+    // Baseline cho snapshot đầu tiên: [dealerId, vehicleId, inventoryType, availableQuantity, reservedQuantity]
+    @Query("SELECT d.dealerId, i.vehicle.id, i.inventoryType, i.availableQuantity, i.reservedQuantity " +
+            "FROM Inventory i LEFT JOIN i.dealer d")
+    List<Object[]> findSnapshotRows();
+}
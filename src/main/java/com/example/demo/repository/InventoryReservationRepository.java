@@ -0,0 +1,79 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.Inventory;
+import com.example.demo.entity.InventoryReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface InventoryReservationRepository extends JpaRepository<InventoryReservation, Long> {
+
+    // Điều kiện khớp reservation mang token với dòng kho đang UPDATE (dùng trong restoreStockForToken)
+    String MATCHES_INVENTORY_ROW = "r.release_token = :token AND r.vehicle_id = inventory.vehicle_id " +
+            "AND r.inventory_type = inventory.inventory_type " +
+            "AND (r.dealer_id = inventory.dealer_id OR (r.dealer_id IS NULL AND inventory.dealer_id IS NULL))";
+
+    String RESERVED_FOR_TOKEN = "SELECT COALESCE(SUM(r.quantity), 0) FROM inventory_reservation r WHERE " +
+            MATCHES_INVENTORY_ROW;
+
+    @Query("SELECT r FROM InventoryReservation r WHERE r.quoteId = :quoteId " +
+            "AND r.inventoryType = :inventoryType " +
+            "AND r.status = com.example.demo.entity.InventoryReservation.ReservationStatus.ACTIVE")
+    List<InventoryReservation> findActiveByQuoteId(@Param("quoteId") Integer quoteId,
+                                                   @Param("inventoryType") Inventory.InventoryType inventoryType);
+
+    /**
+     * Chuyển reservation ACTIVE sang CONSUMED - điều kiện status đảm bảo chỉ một luồng (giao xe hoặc sweeper) thắng
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE InventoryReservation r SET r.status = com.example.demo.entity.InventoryReservation.ReservationStatus.CONSUMED, " +
+            "r.releasedAt = :now WHERE r.id = :id " +
+            "AND r.status = com.example.demo.entity.InventoryReservation.ReservationStatus.ACTIVE")
+    int markConsumed(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Đánh dấu các reservation hết hạn bằng một token để trả hàng theo lô
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE InventoryReservation r SET r.status = com.example.demo.entity.InventoryReservation.ReservationStatus.EXPIRED, " +
+            "r.releasedAt = :now, r.releaseToken = :token " +
+            "WHERE r.status = com.example.demo.entity.InventoryReservation.ReservationStatus.ACTIVE " +
+            "AND r.expiresAt < :now")
+    int markExpired(@Param("token") String token, @Param("now") LocalDateTime now);
+
+    /**
+     * Đánh dấu toàn bộ reservation còn hiệu lực của một quote là RELEASED
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE InventoryReservation r SET r.status = com.example.demo.entity.InventoryReservation.ReservationStatus.RELEASED, " +
+            "r.releasedAt = :now, r.releaseToken = :token " +
+            "WHERE r.quoteId = :quoteId " +
+            "AND r.status = com.example.demo.entity.InventoryReservation.ReservationStatus.ACTIVE")
+    int markReleasedByQuoteId(@Param("quoteId") Integer quoteId,
+                              @Param("token") String token,
+                              @Param("now") LocalDateTime now);
+
+    // [dealerId, vehicleId, inventoryType, SUM(quantity)] của các reservation mang token
+    @Query("SELECT r.dealerId, r.vehicleId, r.inventoryType, SUM(r.quantity) FROM InventoryReservation r " +
+            "WHERE r.releaseToken = :token GROUP BY r.dealerId, r.vehicleId, r.inventoryType")
+    List<Object[]> sumQuantityByReleaseToken(@Param("token") String token);
+
+    /**
+     * Trả hàng cho tất cả reservation mang token: một câu UPDATE, mỗi dòng kho cộng tổng số lượng các reservation
+     * khớp (dealer_id NULL = kho hãng). Subquery tương quan + EXISTS để chạy được trên cả MySQL lẫn H2.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "UPDATE inventory SET " +
+            "available_quantity = available_quantity + (" + RESERVED_FOR_TOKEN + "), " +
+            "reserved_quantity = GREATEST(reserved_quantity - (" + RESERVED_FOR_TOKEN + "), 0), " +
+            "version = version + 1, last_updated = :now " +
+            "WHERE EXISTS (SELECT 1 FROM inventory_reservation r WHERE " + MATCHES_INVENTORY_ROW + ")",
+            nativeQuery = true)
+    int restoreStockForToken(@Param("token") String token, @Param("now") LocalDateTime now);
+}
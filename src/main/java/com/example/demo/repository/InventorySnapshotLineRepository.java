@@ -0,0 +1,15 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.InventorySnapshotLine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface InventorySnapshotLineRepository extends JpaRepository<InventorySnapshotLine, Long> {
+
+    List<InventorySnapshotLine> findBySnapshotId(Long snapshotId);
+
+    List<InventorySnapshotLine> findBySnapshotIdAndVehicleId(Long snapshotId, Integer vehicleId);
+}
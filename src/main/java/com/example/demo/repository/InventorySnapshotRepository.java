@@ -0,0 +1,16 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.InventorySnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface InventorySnapshotRepository extends JpaRepository<InventorySnapshot, Long> {
+
+    Optional<InventorySnapshot> findTopByOrderByIdDesc();
+
+    Optional<InventorySnapshot> findTopByTakenAtLessThanEqualOrderByTakenAtDesc(LocalDateTime at);
+}
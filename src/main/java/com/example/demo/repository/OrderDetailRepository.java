@@ -2,10 +2,13 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.OrderDetail;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,8 +18,14 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, Intege
     List<OrderDetail> findByOrderId(Integer orderId);
 
 
-    @Query("DELETE FROM OrderDetail od WHERE od.order.id = :orderId")
-    void deleteByOrderId(Integer orderId);
+    // Nạp chi tiết cho cả trang đơn hàng trong một query
+    @Query("SELECT od FROM OrderDetail od WHERE od.orderId IN :orderIds")
+    List<OrderDetail> findByOrderIdIn(@Param("orderIds") Collection<Integer> orderIds);
+
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM OrderDetail od WHERE od.orderId = :orderId")
+    void deleteByOrderId(@Param("orderId") Integer orderId);
 
 
     @Query("SELECT od.vehicleId, SUM(od.quantity) FROM OrderDetail od WHERE od.order.id IN (SELECT o.id FROM Order o WHERE o.orderDate BETWEEN :from AND :to) GROUP BY od.vehicleId")
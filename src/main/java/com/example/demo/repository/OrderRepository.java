@@ -1,6 +1,7 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Order;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -63,4 +64,28 @@ public interface OrderRepository extends JpaRepository<Order, Integer> {
     List<Order> findByDealerIdAndOrderDateBetween(@Param("dealerId") Integer dealerId,
                                                   @Param("from") LocalDate from,
                                                   @Param("to") LocalDate to);
-}
\ No newline at end of file
+
+    /**
+     * Phân trang keyset theo (orderDate DESC, id DESC): trang sau bắt đầu ngay sau (cursorDate, cursorId).
+     * Pageable chỉ dùng để giới hạn số dòng (LIMIT), luôn là trang 0. Tham số null = không lọc.
+     */
+    @Query("SELECT o FROM Order o WHERE " +
+            "(:dealerId IS NULL OR o.dealerId = :dealerId) " +
+            "AND (:status IS NULL OR o.status = :status) " +
+            "AND (:approvalStatus IS NULL OR o.approvalStatus = :approvalStatus) " +
+            "AND (:paymentStatus IS NULL OR o.paymentStatus = :paymentStatus) " +
+            "AND (:fromDate IS NULL OR o.orderDate >= :fromDate) " +
+            "AND (:toDate IS NULL OR o.orderDate <= :toDate) " +
+            "AND (:cursorDate IS NULL OR o.orderDate < :cursorDate " +
+            "     OR (o.orderDate = :cursorDate AND o.id < :cursorId)) " +
+            "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findPage(@Param("dealerId") Integer dealerId,
+                         @Param("status") Order.OrderStatus status,
+                         @Param("approvalStatus") Order.OrderApprovalStatus approvalStatus,
+                         @Param("paymentStatus") Order.PaymentStatus paymentStatus,
+                         @Param("fromDate") LocalDate fromDate,
+                         @Param("toDate") LocalDate toDate,
+                         @Param("cursorDate") LocalDate cursorDate,
+                         @Param("cursorId") Integer cursorId,
+                         Pageable pageable);
+}
@@ -3,6 +3,7 @@ package com.example.demo.repository;
 import com.example.demo.entity.Promotion;
 import com.example.demo.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -20,11 +21,20 @@ public interface PromotionRepository extends JpaRepository<Promotion, Integer> {
     // Tìm promotions theo user
     List<Promotion> findByCreatedBy(User user);
 
-    @Query("SELECT p FROM Promotion p WHERE p.startDate <= :date AND p.endDate >= :date AND p.status = 'ACTIVE'")
-    List<Promotion> findActivePromotions(@Param("date") LocalDate date);
-
-    @Query("SELECT p FROM Promotion p WHERE p.endDate < :currentDate AND p.status = 'ACTIVE'")
-    List<Promotion> findExpiredPromotions(@Param("currentDate") LocalDate currentDate);
+    /**
+     * Dòng cho PromotionIndex: id, programName, startDate, endDate, discountValue, dealerId của người tạo
+     */
+    @Query("SELECT p.id, p.programName, p.startDate, p.endDate, p.discountValue, u.dealerId " +
+            "FROM Promotion p LEFT JOIN p.createdBy u WHERE p.status = :status")
+    List<Object[]> findIndexRows(@Param("status") Promotion.PromotionStatus status);
+
+    /**
+     * Chuyển mọi khuyến mãi ACTIVE đã qua endDate sang EXPIRED trong một câu UPDATE
+     */
+    @Modifying
+    @Query("UPDATE Promotion p SET p.status = com.example.demo.entity.Promotion.PromotionStatus.EXPIRED " +
+            "WHERE p.endDate < :currentDate AND p.status = com.example.demo.entity.Promotion.PromotionStatus.ACTIVE")
+    int expireEnded(@Param("currentDate") LocalDate currentDate);
 
     boolean existsByProgramName(String programName);
 
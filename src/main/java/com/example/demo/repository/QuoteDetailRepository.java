@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,16 +16,13 @@ public interface QuoteDetailRepository extends JpaRepository<QuoteDetail, Intege
 
     List<QuoteDetail> findByQuoteId(Integer quoteId);
 
+    List<QuoteDetail> findByQuoteIdOrderById(Integer quoteId);
 
-
-    @Query("SELECT qd FROM QuoteDetail qd WHERE qd.quoteId = :quoteId AND qd.id IN (" +
-            "SELECT MIN(qd2.id) FROM QuoteDetail qd2 WHERE qd2.quoteId = :quoteId GROUP BY qd2.vehicleId)")
-    List<QuoteDetail> findUniqueByQuoteId(@Param("quoteId") Integer quoteId);
-
-    @Query("SELECT qd FROM QuoteDetail qd WHERE qd.quoteId = :quoteId AND qd.id IN (" +
-            "SELECT MAX(qd2.id) FROM QuoteDetail qd2 WHERE qd2.quoteId = :quoteId GROUP BY qd2.vehicleId)")
-    List<QuoteDetail> findUniqueLatestByQuoteId(@Param("quoteId") Integer quoteId);
-
+    /**
+     * Chi tiết của nhiều báo giá trong một query, theo id tăng dần
+     */
+    @Query("SELECT qd FROM QuoteDetail qd WHERE qd.quoteId IN :quoteIds ORDER BY qd.quoteId, qd.id")
+    List<QuoteDetail> findByQuoteIdInOrderById(@Param("quoteIds") Collection<Integer> quoteIds);
 
     @Query("SELECT qd FROM QuoteDetail qd WHERE qd.quoteId = :quoteId AND qd.vehicleId = :vehicleId")
     Optional<QuoteDetail> findByQuoteIdAndVehicleId(@Param("quoteId") Integer quoteId, @Param("vehicleId") Integer vehicleId);
@@ -39,15 +37,4 @@ public interface QuoteDetailRepository extends JpaRepository<QuoteDetail, Intege
 
     @Query("SELECT COUNT(qd) > 0 FROM QuoteDetail qd WHERE qd.quoteId = :quoteId AND qd.vehicleId = :vehicleId")
     boolean existsByQuoteIdAndVehicleId(@Param("quoteId") Integer quoteId, @Param("vehicleId") Integer vehicleId);
-
-    @Query("SELECT qd.vehicleId FROM QuoteDetail qd WHERE qd.quoteId = :quoteId " +
-            "GROUP BY qd.vehicleId HAVING COUNT(qd.vehicleId) > 1")
-    List<Integer> findDuplicateVehicleIds(@Param("quoteId") Integer quoteId);
-
-
-    @Modifying
-    @Query("DELETE FROM QuoteDetail qd WHERE qd.quoteId = :quoteId AND qd.id NOT IN (" +
-            "SELECT MIN(qd2.id) FROM QuoteDetail qd2 WHERE qd2.quoteId = :quoteId GROUP BY qd2.vehicleId)")
-    int deleteDuplicateDetails(@Param("quoteId") Integer quoteId);
-
-}
\ No newline at end of file
+}
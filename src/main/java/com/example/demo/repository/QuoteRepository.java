@@ -2,6 +2,7 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.Quote;
 import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
@@ -25,8 +26,10 @@ public interface QuoteRepository extends JpaRepository<Quote, Integer> {
 
     List<Quote> findByUserIdAndApprovalStatus(Integer userId, Quote.QuoteApprovalStatus approvalStatus);
 
-    @Query("SELECT q FROM Quote q WHERE q.validUntil < :currentDate AND q.status = 'SENT'")
-    List<Quote> findExpiredQuotes(@Param("currentDate") LocalDate currentDate);
+    // Khóa cache tính giá: [version, customerId, isVip của khách hàng (null nếu không có khách hàng)]
+    @Query("SELECT q.version, q.customerId, c.isVip FROM Quote q LEFT JOIN Customer c ON c.id = q.customerId " +
+            "WHERE q.id = :quoteId")
+    List<Object[]> findPricingKey(@Param("quoteId") Integer quoteId);
 
     @Query("SELECT q FROM Quote q WHERE q.customerId = :customerId AND q.status = 'ACCEPTED'")
     List<Quote> findAcceptedQuotesByCustomer(@Param("customerId") Integer customerId);
@@ -65,4 +68,21 @@ public interface QuoteRepository extends JpaRepository<Quote, Integer> {
 
     List<Quote> findByCustomerIdIsNull();
 
-}
\ No newline at end of file
+
+    /**
+     * Phân trang keyset theo (createdDate DESC, id DESC): trang sau bắt đầu ngay sau (cursorDate, cursorId).
+     * Pageable chỉ dùng để giới hạn số dòng (LIMIT), luôn là trang 0. Tham số null = không lọc.
+     */
+    @Query("SELECT q FROM Quote q WHERE (:customerId IS NULL OR q.customerId = :customerId) " +
+            "AND (:userId IS NULL OR q.userId = :userId) " +
+            "AND (:dealerId IS NULL OR q.dealerId = :dealerId) " +
+            "AND (:cursorDate IS NULL OR q.createdDate < :cursorDate " +
+            "     OR (q.createdDate = :cursorDate AND q.id < :cursorId)) " +
+            "ORDER BY q.createdDate DESC, q.id DESC")
+    List<Quote> findPage(@Param("customerId") Integer customerId,
+                         @Param("userId") Integer userId,
+                         @Param("dealerId") Integer dealerId,
+                         @Param("cursorDate") LocalDate cursorDate,
+                         @Param("cursorId") Integer cursorId,
+                         Pageable pageable);
+}
@@ -1,6 +1,7 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.User;
+import com.example.demo.security.UserPrincipal;
 import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -23,6 +24,13 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     @Query("SELECT u FROM User u WHERE u.dealerId = :dealerId")
     List<User> findByDealerId(@Param("dealerId") Integer dealerId);
 
+    /**
+     * Chỉ các cột phân quyền cần (UserPrincipalCache nạp khi miss), không nạp cả entity
+     */
+    @Query("SELECT new com.example.demo.security.UserPrincipal(u.userId, u.email, u.role, u.dealerId) " +
+            "FROM User u WHERE u.email = :email")
+    Optional<UserPrincipal> findPrincipalByEmail(@Param("email") String email);
+
     @Transactional
     @Modifying
     @Query("update User u set u.password = ?2 where u.email = ?1")
@@ -0,0 +1,35 @@
+package com.example.demo.security;
+
+import com.example.demo.entity.User;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Principal gọn của request đã xác thực: chỉ những gì phân quyền cần, không giữ entity User.
+ * getName() trả email nên Authentication.getName() (audit log) ra đúng người dùng.
+ */
+public record UserPrincipal(Integer userId, String email, User.Role role, Integer dealerId)
+        implements AuthenticatedPrincipal {
+
+    private static final Map<User.Role, List<GrantedAuthority>> AUTHORITIES = new EnumMap<>(User.Role.class);
+
+    static {
+        Arrays.stream(User.Role.values()).forEach(role ->
+                AUTHORITIES.put(role, List.of(new SimpleGrantedAuthority("ROLE_" + role.name()))));
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return role != null ? AUTHORITIES.get(role) : List.of();
+    }
+}
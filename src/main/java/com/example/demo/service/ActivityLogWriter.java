@@ -0,0 +1,92 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.ActivityLog;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ghi activity log theo lô ngoài luồng request: hàng đợi có giới hạn, job định kỳ insert bằng JDBC batch.
+ * Activity feed chỉ để hiển thị nên hàng đợi đầy thì bỏ dòng mới (có đếm), không chặn nghiệp vụ.
+ */
+@Slf4j
+@Component
+public class ActivityLogWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO activity_log (actor_id, actor_email, action, target_type, " +
+            "target_id, message, metadata_json, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ArrayBlockingQueue<ActivityLog> queue;
+    private final int batchSize;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public ActivityLogWriter(JdbcTemplate jdbcTemplate,
+                             @Value("${activity.writer.capacity:10000}") int capacity,
+                             @Value("${activity.writer.batch-size:200}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public void submit(ActivityLog entry) {
+        if (!queue.offer(entry)) {
+            long total = dropped.incrementAndGet();
+            log.warn("Activity queue full, dropped {} of actor {} ({} dropped so far)", entry.getAction(), entry.getActorId(), total);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${activity.writer.flush-interval-ms:500}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Error flushing activity logs: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Rút hết hàng đợi, insert theo lô; lô lỗi bị bỏ (đã ghi log lỗi) để không chặn các lô sau
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            int total = 0;
+            List<ActivityLog> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                List<Object[]> args = new ArrayList<>(batch.size());
+                for (ActivityLog entry : batch) {
+                    args.add(new Object[]{entry.getActorId(), entry.getActorEmail(), entry.getAction(), entry.getTargetType(),
+                            entry.getTargetId(), entry.getMessage(), entry.getMetadataJson(), Timestamp.from(entry.getCreatedAt())});
+                }
+                try {
+                    jdbcTemplate.batchUpdate(INSERT_SQL, args);
+                    total += batch.size();
+                } catch (RuntimeException e) {
+                    dropped.addAndGet(batch.size());
+                    log.error("Could not insert {} activity logs: {}", batch.size(), e.getMessage());
+                }
+                batch.clear();
+            }
+            return total;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+}
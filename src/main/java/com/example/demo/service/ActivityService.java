@@ -1,9 +1,7 @@
 package com.example.demo.service;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-
-import com.example.demo.entity.ActivityLog;
+import com.example.demo.dto.ActivityLogDTO;
+import com.example.demo.dto.CursorPageDTO;
 
 import java.util.Map;
 
@@ -12,5 +10,5 @@ public interface ActivityService {
                 String action, String targetType, String targetId,
                 String message, Map<String, Object> metadata);
 
-    Page<ActivityLog> listMine(Integer actorId, String action, Pageable pageable);
+    CursorPageDTO<ActivityLogDTO> listMine(Integer actorId, String action, String cursor, int size, boolean includeMetadata);
 }
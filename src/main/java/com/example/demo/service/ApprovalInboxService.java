@@ -0,0 +1,108 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ApprovalInboxCountDTO;
+import com.example.demo.entity.ApprovalInboxItem;
+import com.example.demo.entity.User;
+import com.example.demo.repository.ApprovalInboxRepository;
+import com.example.demo.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Đọc hộp việc chờ duyệt (Approval_inbox) thay cho việc quét quote/order theo trạng thái.
+ * Khi khởi động dựng lại từ bảng gốc để bù các thay đổi không đi qua JPA; khóa Job_lock để các node
+ * khởi động cùng lúc không xoá/nạp lại bảng chồng lên nhau.
+ */
+@Slf4j
+@Service
+public class ApprovalInboxService {
+
+    private static final String JOB_NAME = "approval-inbox-rebuild";
+
+    private static final String CLEAR_SQL = "DELETE FROM approval_inbox";
+
+    private static final String REBUILD_QUOTES_SQL = "INSERT INTO approval_inbox (item_type, item_id, queue, approval_status, " +
+            "dealer_id, customer_id, user_id, total_amount, created_date, updated_at) " +
+            "SELECT 'QUOTE', id, CASE WHEN approval_status = 'PENDING_EVM_APPROVAL' THEN 'EVM_QUOTE' " +
+            "ELSE 'DEALER_MANAGER_QUOTE' END, approval_status, dealer_id, customer_id, user_id, total_amount, created_date, ? " +
+            "FROM quote WHERE approval_status IN ('PENDING_DEALER_MANAGER_APPROVAL', 'INSUFFICIENT_INVENTORY', 'PENDING_EVM_APPROVAL')";
+
+    private static final String REBUILD_ORDERS_SQL = "INSERT INTO approval_inbox (item_type, item_id, queue, approval_status, " +
+            "dealer_id, customer_id, user_id, total_amount, created_date, updated_at) " +
+            "SELECT 'ORDER', id, 'ORDER_APPROVAL', approval_status, dealer_id, customer_id, user_id, total_amount, order_date, ? " +
+            "FROM order_table WHERE approval_status = 'PENDING_APPROVAL'";
+
+    private final ApprovalInboxRepository inboxRepository;
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLockService jobLockService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration lockLease;
+
+    public ApprovalInboxService(ApprovalInboxRepository inboxRepository,
+                                UserRepository userRepository,
+                                JdbcTemplate jdbcTemplate,
+                                JobLockService jobLockService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${approval-inbox.rebuild.lock-lease-minutes:10}") long lockLeaseMinutes) {
+        this.inboxRepository = inboxRepository;
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobLockService = jobLockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lockLease = Duration.ofMinutes(lockLeaseMinutes);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * Xoá và dựng lại toàn bộ hộp việc trong một transaction; trả về số dòng, -1 nếu node khác đang dựng lại
+     */
+    public int rebuild() {
+        int[] rows = {-1};
+        boolean ran = jobLockService.runLocked(JOB_NAME, lockLease, () -> rows[0] = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.update(CLEAR_SQL);
+            return jdbcTemplate.update(REBUILD_QUOTES_SQL, now) + jdbcTemplate.update(REBUILD_ORDERS_SQL, now);
+        }));
+        if (ran) {
+            log.info("Approval inbox rebuilt with {} pending items", rows[0]);
+        } else {
+            log.info("Approval inbox rebuild skipped - another node holds the lock");
+        }
+        return rows[0];
+    }
+
+    /**
+     * Quote chờ manager duyệt (kể cả INSUFFICIENT_INVENTORY) của đại lý manager đang quản lý
+     */
+    public List<ApprovalInboxItem> getManagerInbox(Integer managerId) {
+        User manager = userRepository.findById(managerId)
+                .orElseThrow(() -> new RuntimeException("Manager not found: " + managerId));
+        return inboxRepository.findQueue(ApprovalInboxItem.Queue.DEALER_MANAGER_QUOTE, manager.getDealerId());
+    }
+
+    /**
+     * Một hàng đợi bất kỳ; dealerId = null -> mọi đại lý
+     */
+    public List<ApprovalInboxItem> getQueue(ApprovalInboxItem.Queue queue, Integer dealerId) {
+        return inboxRepository.findQueue(queue, dealerId);
+    }
+
+    public List<ApprovalInboxCountDTO> getCounts(Integer dealerId) {
+        return inboxRepository.countByDealer(dealerId);
+    }
+}
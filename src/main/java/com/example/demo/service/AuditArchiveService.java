@@ -0,0 +1,276 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Lưu trữ audit log theo ngày.
+ *
+ * Bảng AuditLogs chỉ giữ hotDays ngày gần nhất. Mỗi ngày cũ hơn được chuyển vào bảng Audit_archive_block
+ * (DB dùng chung nên mọi node đều đọc được, không phụ thuộc ổ đĩa của node chạy job):
+ *  - mỗi block nén gzip tối đa blockRows log (JSON mỗi dòng), log sắp theo (entityType, entityId, createdAt)
+ *    để log của một entity nằm gọn trong ít block
+ *  - Audit_archive_key ghi các entity có trong từng block; tra lịch sử một entity chỉ giải nén các block đó
+ * Các block của một ngày insert trong một transaction, sau đó mới xoá dòng gốc; maxLogId đã lưu của ngày
+ * cho biết phần nào đã lưu nên chạy lại sau khi bị ngắt giữa chừng không lưu trùng. Job chạy trên một node
+ * nhờ JobLockService.
+ */
+@Slf4j
+@Service
+public class AuditArchiveService {
+
+    private static final String JOB_NAME = "audit-archive";
+
+    private static final String OLDEST_SQL = "SELECT MIN(created_at) FROM audit_logs WHERE created_at >= ? AND created_at < ?";
+
+    private static final String SELECT_DAY_SQL = "SELECT log_id, action, entity_type, entity_id, username, ip_address, " +
+            "details, created_at FROM audit_logs WHERE created_at >= ? AND created_at < ? AND log_id > ? ORDER BY log_id";
+
+    private static final String DELETE_DAY_CHUNK_SQL = "DELETE FROM audit_logs WHERE created_at >= ? AND created_at < ? " +
+            "AND log_id <= ? LIMIT ?";
+
+    private static final String ARCHIVED_UP_TO_SQL = "SELECT COALESCE(MAX(max_log_id), 0) FROM audit_archive_block " +
+            "WHERE archive_day = ?";
+
+    private static final String INSERT_BLOCK_SQL = "INSERT INTO audit_archive_block (archive_day, min_log_id, max_log_id, " +
+            "block_no, row_count, data, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_KEY_SQL = "INSERT INTO audit_archive_key (block_id, entity_type, entity_id) " +
+            "VALUES (?, ?, ?)";
+
+    private static final String SELECT_ENTITY_BLOCKS_SQL = "SELECT b.data FROM audit_archive_block b WHERE b.id IN " +
+            "(SELECT k.block_id FROM audit_archive_key k WHERE k.entity_type = ? AND k.entity_id = ?)";
+
+    private static final int DELETE_CHUNK = 1000;
+
+    private static final RowMapper<AuditLog> ROW_MAPPER = (rs, rowNum) -> AuditLog.builder()
+            .logId(rs.getLong("log_id"))
+            .action(rs.getString("action"))
+            .entityType(rs.getString("entity_type"))
+            .entityId(rs.getString("entity_id"))
+            .username(rs.getString("username"))
+            .ipAddress(rs.getString("ip_address"))
+            .details(rs.getString("details"))
+            .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+            .build();
+
+    private static final Comparator<AuditLog> SEGMENT_ORDER = Comparator.comparing((AuditLog entry) -> keyOf(entry))
+            .thenComparing(AuditLog::getCreatedAt)
+            .thenComparing(AuditLog::getLogId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLockService jobLockService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate requiresNew;
+    private final int hotDays;
+    private final int blockRows;
+    private final int maxDaysPerRun;
+    private final Duration lockLease;
+
+    public AuditArchiveService(JdbcTemplate jdbcTemplate,
+                               JobLockService jobLockService,
+                               ObjectMapper objectMapper,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${audit.archive.hot-days:90}") int hotDays,
+                               @Value("${audit.archive.block-rows:256}") int blockRows,
+                               @Value("${audit.archive.max-days-per-run:31}") int maxDaysPerRun,
+                               @Value("${audit.archive.lock-lease-minutes:60}") long lockLeaseMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobLockService = jobLockService;
+        this.objectMapper = objectMapper;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.hotDays = Math.max(1, hotDays);
+        this.blockRows = Math.max(1, blockRows);
+        this.maxDaysPerRun = Math.max(1, maxDaysPerRun);
+        this.lockLease = Duration.ofMinutes(lockLeaseMinutes);
+    }
+
+    @Scheduled(cron = "${audit.archive.cron:0 30 1 * * *}")
+    public void scheduledArchive() {
+        archiveOldLogs();
+    }
+
+    /**
+     * Chuyển các ngày cũ hơn hotDays vào bảng lưu trữ; trả về số log đã lưu trữ (0 nếu node khác đang chạy)
+     */
+    public int archiveOldLogs() {
+        int[] archived = new int[1];
+        boolean ran = jobLockService.runLocked(JOB_NAME, lockLease, () -> archived[0] = archiveDays());
+        if (!ran) {
+            log.info("Audit archive skipped - another node holds the lock");
+        }
+        return archived[0];
+    }
+
+    /**
+     * Log đã lưu trữ của một entity, mới nhất trước
+     */
+    public List<AuditLog> findEntityHistory(String entityType, String entityId) {
+        String key = keyOf(entityType, entityId);
+        List<AuditLog> result = new ArrayList<>();
+        // Collation của DB có thể so khớp rộng hơn (không phân biệt hoa thường) -> lọc lại theo khóa chính xác
+        for (byte[] block : jdbcTemplate.queryForList(SELECT_ENTITY_BLOCKS_SQL, byte[].class,
+                entityType, entityId != null ? entityId : "")) {
+            for (AuditLog entry : readBlock(block)) {
+                if (key.equals(keyOf(entry))) {
+                    result.add(entry);
+                }
+            }
+        }
+        result.sort(Comparator.comparing(AuditLog::getCreatedAt).thenComparing(AuditLog::getLogId).reversed());
+        return result;
+    }
+
+    // ===== ARCHIVING =====
+
+    private int archiveDays() {
+        LocalDateTime cutoff = LocalDate.now().minusDays(hotDays).atStartOfDay();
+        LocalDateTime from = LocalDateTime.of(1970, 1, 1, 0, 0);
+        int archived = 0;
+        for (int days = 0; days < maxDaysPerRun; days++) {
+            Timestamp oldest = jdbcTemplate.queryForObject(OLDEST_SQL, Timestamp.class,
+                    Timestamp.valueOf(from), Timestamp.valueOf(cutoff));
+            if (oldest == null) {
+                break;
+            }
+            LocalDate day = oldest.toLocalDateTime().toLocalDate();
+            archived += archiveDay(day);
+            from = day.plusDays(1).atStartOfDay();
+        }
+        log.info("Archived {} audit logs older than {}", archived, cutoff.toLocalDate());
+        return archived;
+    }
+
+    private int archiveDay(LocalDate day) {
+        Timestamp start = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+
+        // Lần chạy trước đã lưu block nhưng chưa kịp xoá dòng -> xoá nốt, không lưu lại
+        Long archivedUpTo = jdbcTemplate.queryForObject(ARCHIVED_UP_TO_SQL, Long.class, java.sql.Date.valueOf(day));
+        if (archivedUpTo > 0) {
+            deleteArchived(start, end, archivedUpTo);
+        }
+
+        List<AuditLog> rows = jdbcTemplate.query(SELECT_DAY_SQL, ROW_MAPPER, start, end, archivedUpTo);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        long minLogId = rows.get(0).getLogId();
+        long maxLogId = rows.get(rows.size() - 1).getLogId();
+        rows.sort(SEGMENT_ORDER);
+
+        Integer blocks = requiresNew.execute(status -> writeBlocks(day, minLogId, maxLogId, rows));
+        int deleted = deleteArchived(start, end, maxLogId);
+        log.info("Audit logs of {} archived (log {}-{}, {} rows, {} blocks, {} deleted)",
+                day, minLogId, maxLogId, rows.size(), blocks, deleted);
+        return rows.size();
+    }
+
+    private int deleteArchived(Timestamp start, Timestamp end, long maxLogId) {
+        int deleted = 0;
+        int affected;
+        do {
+            affected = jdbcTemplate.update(DELETE_DAY_CHUNK_SQL, start, end, maxLogId, DELETE_CHUNK);
+            deleted += affected;
+        } while (affected == DELETE_CHUNK);
+        return deleted;
+    }
+
+    /**
+     * Ghi các block của một ngày cùng chỉ mục entity (gọi trong transaction: có đủ cả ngày hoặc không có gì)
+     */
+    private int writeBlocks(LocalDate day, long minLogId, long maxLogId, List<AuditLog> rows) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int blockNo = 0;
+        for (int from = 0; from < rows.size(); from += blockRows, blockNo++) {
+            List<AuditLog> blockRowsList = rows.subList(from, Math.min(rows.size(), from + blockRows));
+            byte[] data = compress(blockRowsList);
+            int no = blockNo;
+
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(INSERT_BLOCK_SQL, new String[]{"id"});
+                ps.setDate(1, java.sql.Date.valueOf(day));
+                ps.setLong(2, minLogId);
+                ps.setLong(3, maxLogId);
+                ps.setInt(4, no);
+                ps.setInt(5, blockRowsList.size());
+                ps.setBytes(6, data);
+                ps.setTimestamp(7, now);
+                return ps;
+            }, keyHolder);
+            long blockId = keyHolder.getKey().longValue();
+
+            Set<String> seen = new HashSet<>();
+            List<Object[]> keys = new ArrayList<>();
+            for (AuditLog entry : blockRowsList) {
+                if (seen.add(keyOf(entry))) {
+                    keys.add(new Object[]{blockId, entry.getEntityType(),
+                            entry.getEntityId() != null ? entry.getEntityId() : ""});
+                }
+            }
+            jdbcTemplate.batchUpdate(INSERT_KEY_SQL, keys);
+        }
+        return blockNo;
+    }
+
+    private byte[] compress(List<AuditLog> entries) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(buffer), StandardCharsets.UTF_8)) {
+            for (AuditLog entry : entries) {
+                writer.write(objectMapper.writeValueAsString(entry));
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compress audit block", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    // ===== READING =====
+
+    private List<AuditLog> readBlock(byte[] data) {
+        List<AuditLog> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(data)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                entries.add(objectMapper.readValue(line, AuditLog.class));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read audit archive block", e);
+        }
+        return entries;
+    }
+
+    private static String keyOf(AuditLog entry) {
+        return keyOf(entry.getEntityType(), entry.getEntityId());
+    }
+
+    private static String keyOf(String entityType, String entityId) {
+        return entityType + '\u0000' + (entityId != null ? entityId : "");
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.demo.service;
 
 import com.example.demo.dto.AuditLogResponseDTO;
+import com.example.demo.dto.AuditWriterStatsDTO;
 import org.springframework.data.domain.Page;
 
 import java.util.List;
 
 public interface AuditLogService {
     void log(String action, String entityType, String entityId, Object details);
+    AuditWriterStatsDTO getWriterStats();
+    int archiveOldLogs();
     Page<AuditLogResponseDTO> getAllLogs(int page, int size);
     Page<AuditLogResponseDTO> getLogsByEntityType(String entityType, int page, int size);
     Page<AuditLogResponseDTO> getLogsByAction(String action, int page, int size);
@@ -0,0 +1,226 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.AuditWriterStatsDTO;
+import com.example.demo.entity.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ghi audit log bất đồng bộ theo lô.
+ *
+ * Log đã dựng sẵn (username, IP, details lấy trên thread gọi) được đưa vào hàng đợi vòng có giới hạn,
+ * job định kỳ rút ra và insert bằng JDBC batch. Khi hàng đợi đầy, xử lý theo audit.writer.overflow:
+ *  - BLOCK: chờ tối đa block-timeout-ms, quá hạn thì bỏ log
+ *  - DROP_OLDEST: bỏ log cũ nhất để nhận log mới
+ *  - SPILL: ghi log ra file cục bộ (JSON mỗi dòng), nạp lại vào DB khi hàng đợi rảnh
+ * Lô insert lỗi cũng được ghi ra file spill để không mất. Khi tắt ứng dụng thì ghi hết hàng đợi.
+ */
+@Slf4j
+@Component
+public class AuditLogWriter {
+
+    private static final String INSERT_SQL = "INSERT INTO audit_logs (action, entity_type, entity_id, username, " +
+            "ip_address, details, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    public enum Overflow {
+        BLOCK, DROP_OLDEST, SPILL
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ArrayBlockingQueue<AuditLog> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final Overflow overflow;
+    private final long blockTimeoutMs;
+    private final Path spillFile;
+    private final Path replayFile;
+    // flush định kỳ và flush khi tắt không chạy xen nhau
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Object spillLock = new Object();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          ObjectMapper objectMapper,
+                          @Value("${audit.writer.capacity:10000}") int capacity,
+                          @Value("${audit.writer.batch-size:200}") int batchSize,
+                          @Value("${audit.writer.overflow:BLOCK}") Overflow overflow,
+                          @Value("${audit.writer.block-timeout-ms:500}") long blockTimeoutMs,
+                          @Value("${audit.writer.spill-file:audit-spill.jsonl}") String spillFile) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.overflow = overflow;
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.spillFile = Path.of(spillFile);
+        this.replayFile = Path.of(spillFile + ".replay");
+    }
+
+    /**
+     * Đưa log vào hàng đợi; không bao giờ ném lỗi cho nghiệp vụ
+     */
+    public void submit(AuditLog entry) {
+        enqueued.incrementAndGet();
+        if (queue.offer(entry)) {
+            return;
+        }
+        switch (overflow) {
+            case BLOCK -> {
+                try {
+                    if (queue.offer(entry, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                dropped.incrementAndGet();
+                log.warn("Audit queue full, dropped {} {} {}", entry.getAction(), entry.getEntityType(), entry.getEntityId());
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(entry)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+            }
+            case SPILL -> spill(List.of(entry));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${audit.writer.flush-interval-ms:200}")
+    public void scheduledFlush() {
+        try {
+            flush();
+            if (queue.isEmpty()) {
+                replaySpill();
+            }
+        } catch (Exception e) {
+            log.error("Error flushing audit logs: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int count = flush();
+        log.info("Audit writer flushed {} logs on shutdown", count);
+    }
+
+    /**
+     * Rút hết hàng đợi, insert theo lô batchSize; lô lỗi được ghi ra file spill
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            int total = 0;
+            List<AuditLog> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                try {
+                    insert(batch);
+                    written.addAndGet(batch.size());
+                    total += batch.size();
+                } catch (RuntimeException e) {
+                    log.error("Could not insert {} audit logs, spilling to {}: {}", batch.size(), spillFile, e.getMessage());
+                    spill(batch);
+                }
+                batch.clear();
+            }
+            return total;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public AuditWriterStatsDTO getStats() {
+        return new AuditWriterStatsDTO(overflow.name(), capacity, queue.size(), enqueued.get(), written.get(),
+                dropped.get(), spilled.get(), replayed.get());
+    }
+
+    /**
+     * Nạp lại file spill vào DB. File được đổi tên trước khi đọc để log mới spill sang file khác;
+     * nạp lỗi thì giữ file .replay để lần sau thử lại (có thể trùng các lô đã insert trước khi lỗi).
+     */
+    private void replaySpill() throws IOException {
+        synchronized (spillLock) {
+            if (!Files.exists(replayFile)) {
+                if (!Files.exists(spillFile)) {
+                    return;
+                }
+                Files.move(spillFile, replayFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        int count = 0;
+        for (String line : Files.readAllLines(replayFile, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            batch.add(objectMapper.readValue(line, AuditLog.class));
+            if (batch.size() == batchSize) {
+                insert(batch);
+                count += batch.size();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            insert(batch);
+            count += batch.size();
+        }
+        Files.delete(replayFile);
+        replayed.addAndGet(count);
+        written.addAndGet(count);
+        log.info("Replayed {} spilled audit logs", count);
+    }
+
+    private void insert(List<AuditLog> batch) {
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (AuditLog entry : batch) {
+            args.add(new Object[]{entry.getAction(), entry.getEntityType(), entry.getEntityId(), entry.getUsername(),
+                    entry.getIpAddress(), entry.getDetails(), Timestamp.valueOf(entry.getCreatedAt())});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+    }
+
+    private void spill(List<AuditLog> entries) {
+        synchronized (spillLock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (AuditLog entry : entries) {
+                    writer.write(objectMapper.writeValueAsString(entry));
+                    writer.newLine();
+                }
+                spilled.addAndGet(entries.size());
+            } catch (IOException e) {
+                dropped.addAndGet(entries.size());
+                log.error("Could not spill {} audit logs to {}: {}", entries.size(), spillFile, e.getMessage());
+            }
+        }
+    }
+}
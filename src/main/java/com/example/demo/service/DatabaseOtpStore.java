@@ -0,0 +1,94 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.ForgotPassword;
+import com.example.demo.entity.User;
+import com.example.demo.repository.ForgotPasswordRepository;
+import com.example.demo.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+/**
+ * OTP trong bảng ForgotPassword, dùng khi nhiều node cùng phục vụ quên mật khẩu (otp.store=database).
+ * Mỗi user một dòng (cấp OTP mới xóa dòng cũ), số lần sai đếm dưới khóa dòng, dòng hết hạn được job xóa định kỳ.
+ * Email chuẩn hóa bằng OtpStore.normalizeEmail như InMemoryOtpStore.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "otp.store", havingValue = "database")
+public class DatabaseOtpStore implements OtpStore {
+
+    private final ForgotPasswordRepository forgotPasswordRepository;
+    private final UserRepository userRepository;
+    private final long ttlMillis;
+    private final int maxAttempts;
+
+    public DatabaseOtpStore(ForgotPasswordRepository forgotPasswordRepository,
+                            UserRepository userRepository,
+                            @Value("${otp.ttl-seconds:70}") long ttlSeconds,
+                            @Value("${otp.max-attempts:5}") int maxAttempts) {
+        this.forgotPasswordRepository = forgotPasswordRepository;
+        this.userRepository = userRepository;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    @Transactional
+    public void put(String email, int otp) {
+        User user = userRepository.findByEmail(OtpStore.normalizeEmail(email))
+                .orElseThrow(() -> new UsernameNotFoundException("Please provide a valid email"));
+        forgotPasswordRepository.deleteByUser(user);
+        forgotPasswordRepository.save(ForgotPassword.builder()
+                .otp(otp)
+                .expiryDate(new Date(System.currentTimeMillis() + ttlMillis))
+                .attempts(0)
+                .user(user)
+                .build());
+    }
+
+    @Override
+    @Transactional
+    public Result verify(String email, int otp) {
+        ForgotPassword fp = forgotPasswordRepository.findByUserEmailForUpdate(OtpStore.normalizeEmail(email)).orElse(null);
+        if (fp == null) {
+            return Result.INVALID;
+        }
+        if (fp.getExpiryDate().getTime() <= System.currentTimeMillis()) {
+            forgotPasswordRepository.delete(fp);
+            return Result.EXPIRED;
+        }
+        int attempt = (fp.getAttempts() != null ? fp.getAttempts() : 0) + 1;
+        if (attempt > maxAttempts) {
+            forgotPasswordRepository.delete(fp);
+            return Result.TOO_MANY_ATTEMPTS;
+        }
+        if (fp.getOtp() == otp) {
+            forgotPasswordRepository.delete(fp);
+            return Result.VERIFIED;
+        }
+        if (attempt == maxAttempts) {
+            forgotPasswordRepository.delete(fp);
+            return Result.TOO_MANY_ATTEMPTS;
+        }
+        fp.setAttempts(attempt);
+        forgotPasswordRepository.save(fp);
+        return Result.INVALID;
+    }
+
+    @Scheduled(fixedDelayString = "${otp.purge-interval-ms:600000}")
+    @Transactional
+    public int purgeExpired() {
+        int deleted = forgotPasswordRepository.deleteExpired(new Date());
+        if (deleted > 0) {
+            log.info("Purged {} expired OTP rows", deleted);
+        }
+        return deleted;
+    }
+}
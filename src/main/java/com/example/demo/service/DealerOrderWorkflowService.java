@@ -4,6 +4,7 @@ import com.example.demo.dto.OrderDTO;
 import com.example.demo.dto.OrderResponseDTO;
 import com.example.demo.dto.PaymentRequestDTO;
 import com.example.demo.entity.*;
+import com.example.demo.exception.ConflictException;
 import com.example.demo.repository.OrderRepository;
 import com.example.demo.repository.QuoteRepository;
 import com.example.demo.repository.UserRepository;
@@ -14,6 +15,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -30,8 +32,17 @@ public class DealerOrderWorkflowService {
     private final CustomerRepository customerRepository;
     private final PaymentProcessingService paymentProcessingService;
     private final AuditLogService auditLogService;
+    private final IdempotencyService idempotencyService;
 
 
+    /**
+     * Như createOrderFromApprovedQuote(OrderDTO, Integer); gửi lại cùng Idempotency-Key sẽ nhận lại order đã tạo
+     */
+    public OrderResponseDTO createOrderFromApprovedQuote(OrderDTO orderDTO, Integer staffId, String idempotencyKey) {
+        return idempotencyService.execute("DEALER_ORDER_FROM_QUOTE", idempotencyKey, List.of(orderDTO, staffId),
+                OrderResponseDTO.class, () -> createOrderFromApprovedQuote(orderDTO, staffId));
+    }
+
     public OrderResponseDTO createOrderFromApprovedQuote(OrderDTO orderDTO, Integer staffId) {
         log.info("=== DEALER WORKFLOW - CREATE ORDER WITH PAYMENT - quoteId: {}, staffId: {}, paymentMethod: {}, paymentPercentage: {}%",
                 orderDTO.getQuoteId(), staffId, orderDTO.getPaymentMethod(), orderDTO.getPaymentPercentage());
@@ -48,7 +59,7 @@ public class DealerOrderWorkflowService {
             if (existingOrder.isPresent()) {
                 Order existing = existingOrder.get();
                 if (existing.getStatus() != Order.OrderStatus.CANCELLED) {
-                    throw new RuntimeException("Order already exists for this quote: " + existing.getId());
+                    throw new ConflictException("Order already exists for this quote: " + existing.getId());
                 }
             }
 
@@ -138,6 +149,8 @@ public class DealerOrderWorkflowService {
 
             return orderResponse;
 
+        } catch (ConflictException e) {
+            throw e;
         } catch (Exception e) {
             log.error("DEALER WORKFLOW - Error creating order from approved quote: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to create order from quote in dealer workflow: " + e.getMessage(), e);
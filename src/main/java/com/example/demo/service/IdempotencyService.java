@@ -0,0 +1,206 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.IdempotencyRecord;
+import com.example.demo.exception.ConflictException;
+import com.example.demo.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key cho các request tạo dữ liệu.
+ *
+ * Lần đầu: giữ chỗ key bằng một dòng IN_PROGRESS (unique (scope, key) chặn request song song),
+ * chạy action rồi lưu response. Lặp lại: trả response đã lưu - ưu tiên LRU trong bộ nhớ, sau đó tới bảng.
+ * Action lỗi thì xoá dòng giữ chỗ để client thử lại với cùng key.
+ * Dòng IN_PROGRESS quá lease (node chết sau khi action commit, trước khi lưu response) được giữ chỗ lại,
+ * nên client không bị 409 suốt ttl; đổi lại action có thể chạy lần nữa - action cần tự chặn trùng
+ * (vd. unique quote_id của order).
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate requiresNew;
+    private final long ttlHours;
+    private final long leaseSeconds;
+    private final Map<String, CachedResponse> recent;
+
+    private record CachedResponse(String requestHash, String responseBody, LocalDateTime expiresAt) {
+    }
+
+    // owned = true: request này vừa giữ chỗ record; false: record của request trước
+    private record Claim(IdempotencyRecord record, boolean owned) {
+    }
+
+    public IdempotencyService(IdempotencyRecordRepository recordRepository,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${idempotency.in-progress-lease-seconds:120}") long leaseSeconds,
+                              @Value("${idempotency.cache-size:10000}") int cacheSize) {
+        this.recordRepository = recordRepository;
+        this.objectMapper = objectMapper;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ttlHours = ttlHours;
+        this.leaseSeconds = leaseSeconds;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Chạy action một lần cho mỗi (scope, key). key = null -> chạy bình thường, không ghi nhận.
+     * request: nội dung request (trước khi action sửa), dùng để kiểm tra key không bị dùng cho request khác.
+     */
+    public <T> T execute(String scope, String key, Object request, Class<T> responseType, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > 100) {
+            throw new RuntimeException("Idempotency-Key must be at most 100 characters");
+        }
+
+        String cacheKey = scope + ":" + key;
+        String requestHash = hash(request);
+
+        CachedResponse cached;
+        synchronized (recent) {
+            cached = recent.get(cacheKey);
+        }
+        if (cached != null && cached.expiresAt().isAfter(LocalDateTime.now())) {
+            return replay(cached, requestHash, key, responseType);
+        }
+
+        Claim claim = claim(scope, key, requestHash);
+        if (!claim.owned()) {
+            IdempotencyRecord record = claim.record();
+            if (record.getStatus() == IdempotencyRecord.Status.IN_PROGRESS) {
+                throw new ConflictException("Request with Idempotency-Key " + key + " is still in progress");
+            }
+            CachedResponse stored = new CachedResponse(record.getRequestHash(), record.getResponseBody(), record.getExpiresAt());
+            remember(cacheKey, stored);
+            return replay(stored, requestHash, key, responseType);
+        }
+
+        Long claimedId = claim.record().getId();
+        T response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            requiresNew.executeWithoutResult(status -> recordRepository.deleteInProgress(claimedId));
+            throw e;
+        }
+
+        String body = toJson(response);
+        Integer completed = requiresNew.execute(status -> recordRepository.complete(claimedId, body, LocalDateTime.now()));
+        if (completed == null || completed == 0) {
+            log.warn("Idempotency-Key {} was reclaimed before the response was stored", key);
+        }
+        remember(cacheKey, new CachedResponse(requestHash, body, LocalDateTime.now().plusHours(ttlHours)));
+        return response;
+    }
+
+    /**
+     * Xoá các key đã hết hạn
+     */
+    @Scheduled(fixedDelayString = "${idempotency.sweep-interval-ms:3600000}")
+    public void purgeExpired() {
+        Integer deleted = requiresNew.execute(status -> recordRepository.deleteExpired(LocalDateTime.now()));
+        if (deleted != null && deleted > 0) {
+            log.info("Purged {} expired idempotency records", deleted);
+        }
+    }
+
+    /**
+     * Giữ chỗ key. Trả về dòng vừa giữ chỗ (owned) hoặc dòng đã có nếu key đã được dùng.
+     * Dòng cũ đã hết hạn (chưa bị purge), IN_PROGRESS quá lease hoặc vừa bị xoá do request trước lỗi -> giữ chỗ lại.
+     */
+    private Claim claim(String scope, String key, String requestHash) {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                IdempotencyRecord claimed = requiresNew.execute(status -> recordRepository.saveAndFlush(IdempotencyRecord.builder()
+                        .scope(scope)
+                        .idempotencyKey(key)
+                        .requestHash(requestHash)
+                        .status(IdempotencyRecord.Status.IN_PROGRESS)
+                        .createdAt(now)
+                        .expiresAt(now.plusHours(ttlHours))
+                        .build()));
+                return new Claim(claimed, true);
+            } catch (DataIntegrityViolationException e) {
+                Optional<IdempotencyRecord> existing = requiresNew.execute(status -> {
+                    if (recordRepository.deleteReclaimable(scope, key, now, now.minusSeconds(leaseSeconds)) > 0) {
+                        log.warn("Reclaimed expired or stale Idempotency-Key {} in scope {}", key, scope);
+                        return Optional.<IdempotencyRecord>empty();
+                    }
+                    return recordRepository.findByScopeAndIdempotencyKey(scope, key);
+                });
+                if (existing != null && existing.isPresent()) {
+                    return new Claim(existing.get(), false);
+                }
+            }
+        }
+        throw new ConflictException("Could not claim Idempotency-Key " + key + ", please retry");
+    }
+
+    private <T> T replay(CachedResponse cached, String requestHash, String key, Class<T> responseType) {
+        if (!cached.requestHash().equals(requestHash)) {
+            throw new ConflictException("Idempotency-Key " + key + " was already used for a different request");
+        }
+        log.info("Replaying stored response for Idempotency-Key {}", key);
+        try {
+            return objectMapper.readValue(cached.responseBody(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not read stored response for Idempotency-Key " + key, e);
+        }
+    }
+
+    private void remember(String cacheKey, CachedResponse response) {
+        synchronized (recent) {
+            recent.put(cacheKey, response);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize response", e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(toJson(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OTP trong bộ nhớ, không ghi/đọc DB trên endpoint công khai.
+ *
+ * Hết hạn bằng hashed timing wheel: mỗi OTP được bỏ vào ô (tick hết hạn mod size); ttl dài hơn một vòng
+ * wheel thì entry nằm lại qua các vòng tới khi tới tick hết hạn. Mỗi tick chỉ duyệt đúng một ô nên chi phí
+ * dọn không phụ thuộc tổng số OTP. verify vẫn so với đồng hồ nên độ trễ của tick không làm OTP hết hạn sống lâu hơn ttl.
+ * Chỉ đúng khi một node phục vụ quên mật khẩu; nhiều node dùng otp.store=database.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "otp.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryOtpStore implements OtpStore {
+
+    private static final class Entry {
+        private final String email;
+        private final int otp;
+        private final long expiresAtMillis;
+        private final AtomicInteger attempts = new AtomicInteger();
+        // tick mà entry hết hạn; ô của wheel được duyệt mỗi vòng, entry chưa tới tick này thì bỏ qua
+        private volatile long deadlineTick;
+
+        private Entry(String email, int otp, long expiresAtMillis) {
+            this.email = email;
+            this.otp = otp;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry>[] wheel;
+    private final int mask;
+    private final long tickMillis;
+    private final long ttlMillis;
+    private final int maxAttempts;
+    private final AtomicLong currentTick = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public InMemoryOtpStore(@Value("${otp.ttl-seconds:70}") long ttlSeconds,
+                            @Value("${otp.max-attempts:5}") int maxAttempts,
+                            @Value("${otp.wheel.tick-ms:1000}") long tickMillis,
+                            @Value("${otp.wheel.size:128}") int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new ConcurrentLinkedQueue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+        this.tickMillis = tickMillis;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public void put(String email, int otp) {
+        Entry entry = new Entry(OtpStore.normalizeEmail(email), otp, System.currentTimeMillis() + ttlMillis);
+        entries.put(entry.email, entry);
+        schedule(entry, ttlMillis);
+    }
+
+    @Override
+    public Result verify(String email, int otp) {
+        String key = OtpStore.normalizeEmail(email);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return Result.INVALID;
+        }
+        if (System.currentTimeMillis() >= entry.expiresAtMillis) {
+            entries.remove(key, entry);
+            return Result.EXPIRED;
+        }
+        // Đếm cả lần đúng: tối đa maxAttempts lần so sánh cho mỗi OTP, kể cả khi đoán song song
+        int attempt = entry.attempts.incrementAndGet();
+        if (attempt > maxAttempts) {
+            entries.remove(key, entry);
+            return Result.TOO_MANY_ATTEMPTS;
+        }
+        if (entry.otp == otp) {
+            return entries.remove(key, entry) ? Result.VERIFIED : Result.INVALID;
+        }
+        if (attempt == maxAttempts) {
+            entries.remove(key, entry);
+            return Result.TOO_MANY_ATTEMPTS;
+        }
+        return Result.INVALID;
+    }
+
+    /**
+     * Quay wheel một ô: entry tới tick hết hạn thì bỏ khỏi ô, xóa khỏi map nếu vẫn là OTP hiện hành của email
+     * (OTP đã dùng/bị thay thế thì map không còn trỏ tới nó)
+     */
+    @Scheduled(fixedRateString = "${otp.wheel.tick-ms:1000}")
+    public int tick() {
+        long tick = currentTick.incrementAndGet();
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        Iterator<Entry> slot = wheel[(int) (tick & mask)].iterator();
+        while (slot.hasNext()) {
+            Entry entry = slot.next();
+            if (entry.deadlineTick > tick) {
+                continue;
+            }
+            slot.remove();
+            if (entry.expiresAtMillis > now) {
+                // put chạy song song với tick nên có thể vào ô sớm một tick; xếp lại phần còn thiếu
+                schedule(entry, entry.expiresAtMillis - now);
+            } else if (entries.remove(entry.email, entry)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void schedule(Entry entry, long delayMillis) {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        entry.deadlineTick = currentTick.get() + ticks;
+        wheel[(int) (entry.deadlineTick & mask)].offer(entry);
+    }
+}
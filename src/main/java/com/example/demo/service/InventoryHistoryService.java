@@ -0,0 +1,218 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.InventoryHistoryDTO;
+import com.example.demo.dto.InventorySpeedDTO;
+import com.example.demo.entity.Dealer;
+import com.example.demo.entity.Inventory;
+import com.example.demo.entity.InventorySnapshot;
+import com.example.demo.entity.InventorySnapshotLine;
+import com.example.demo.repository.DealerRepository;
+import com.example.demo.repository.InventoryMovementRepository;
+import com.example.demo.repository.InventoryRepository;
+import com.example.demo.repository.InventorySnapshotLineRepository;
+import com.example.demo.repository.InventorySnapshotRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Dựng lại tồn kho theo thời điểm từ nhật ký biến động (InventoryMovement) và snapshot đã nén.
+ * Snapshot mới = snapshot trước + movement phát sinh sau nó, nên chi phí replay chỉ phụ thuộc khoảng cách tới snapshot gần nhất.
+ *
+ * Mốc snapshot theo thời gian chứ không theo id: id IDENTITY được cấp lúc insert nên transaction commit muộn có thể
+ * mang id nhỏ hơn id đã thấy. Snapshot chỉ gộp movement có occurredAt <= now - snapshot-lag; transaction nào
+ * ngắn hơn độ trễ này thì đã commit trước khi mốc của nó được chốt.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryHistoryService {
+
+    private static final String INSERT_LINE_SQL = "INSERT INTO inventory_snapshot_line " +
+            "(snapshot_id, dealer_id, vehicle_id, inventory_type, available_quantity, reserved_quantity) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final InventoryMovementRepository movementRepository;
+    private final InventorySnapshotRepository snapshotRepository;
+    private final InventorySnapshotLineRepository snapshotLineRepository;
+    private final InventoryRepository inventoryRepository;
+    private final DealerRepository dealerRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${inventory.journal.snapshot-lag-minutes:15}")
+    private long snapshotLagMinutes;
+
+    private record StockKey(Integer dealerId, Integer vehicleId, Inventory.InventoryType type) {
+    }
+
+    /**
+     * Nén nhật ký thành snapshot mới tại mốc now - snapshot-lag.
+     * Snapshot đầu tiên lấy gốc từ bảng Inventory rồi trừ các movement sau mốc (đọc trong cùng transaction).
+     */
+    @Scheduled(cron = "${inventory.journal.snapshot-cron:0 0 2 * * *}")
+    @Transactional
+    public InventorySnapshot takeSnapshot() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(snapshotLagMinutes);
+        Optional<InventorySnapshot> previous = snapshotRepository.findTopByOrderByIdDesc();
+
+        if (previous.isPresent() && !previous.get().getTakenAt().isBefore(cutoff)) {
+            log.info("Snapshot {} already covers movements up to {}", previous.get().getId(), cutoff);
+            return previous.get();
+        }
+
+        Map<StockKey, int[]> state = new HashMap<>();
+        if (previous.isPresent()) {
+            List<Object[]> deltas = movementRepository.sumDeltasBetween(previous.get().getTakenAt(), cutoff);
+            if (deltas.isEmpty()) {
+                log.info("No new inventory movements since snapshot {}", previous.get().getId());
+                return previous.get();
+            }
+            loadLines(state, snapshotLineRepository.findBySnapshotId(previous.get().getId()));
+            applyDeltas(state, deltas);
+        } else {
+            for (Object[] row : inventoryRepository.findSnapshotRows()) {
+                int[] quantities = state.computeIfAbsent(
+                        new StockKey((Integer) row[0], (Integer) row[1], (Inventory.InventoryType) row[2]), k -> new int[2]);
+                quantities[0] += row[3] != null ? (Integer) row[3] : 0;
+                quantities[1] += row[4] != null ? (Integer) row[4] : 0;
+            }
+            // Bảng Inventory đã gồm cả movement sau mốc -> trừ ra; movement sau mốc chưa commit thì chưa có ở cả hai
+            subtractDeltas(state, movementRepository.sumDeltasAfter(cutoff));
+        }
+
+        Long upToId = movementRepository.findMaxIdUntil(cutoff);
+        InventorySnapshot snapshot = snapshotRepository.save(InventorySnapshot.builder()
+                .takenAt(cutoff)
+                .lastMovementId(upToId)
+                .lineCount(state.size())
+                .build());
+
+        List<Map.Entry<StockKey, int[]>> lines = new ArrayList<>(state.entrySet());
+        jdbcTemplate.batchUpdate(INSERT_LINE_SQL, lines, 500, (ps, e) -> {
+            ps.setLong(1, snapshot.getId());
+            ps.setObject(2, e.getKey().dealerId());
+            ps.setInt(3, e.getKey().vehicleId());
+            ps.setString(4, e.getKey().type().name());
+            ps.setInt(5, e.getValue()[0]);
+            ps.setInt(6, e.getValue()[1]);
+        });
+
+        log.info("Inventory snapshot {} taken at {} - Lines: {}, Last movement: {}",
+                snapshot.getId(), cutoff, state.size(), upToId);
+        return snapshot;
+    }
+
+    /**
+     * Tồn kho của một xe (mọi kho) tại thời điểm at
+     */
+    @Transactional(readOnly = true)
+    public List<InventoryHistoryDTO> getVehicleStockAt(Integer vehicleId, LocalDateTime at) {
+        Optional<InventorySnapshot> snapshot = snapshotRepository.findTopByTakenAtLessThanEqualOrderByTakenAtDesc(at);
+
+        Map<StockKey, int[]> state = new HashMap<>();
+        LocalDateTime after = null;
+        if (snapshot.isPresent()) {
+            loadLines(state, snapshotLineRepository.findBySnapshotIdAndVehicleId(snapshot.get().getId(), vehicleId));
+            after = snapshot.get().getTakenAt();
+        }
+        applyDeltas(state, movementRepository.sumDeltasForVehicleBetween(vehicleId, after, at));
+
+        return toHistory(state, at, snapshot.map(InventorySnapshot::getId).orElse(null));
+    }
+
+    /**
+     * Tồn kho toàn hệ thống tại thời điểm at
+     */
+    @Transactional(readOnly = true)
+    public List<InventoryHistoryDTO> getStockAt(LocalDateTime at) {
+        Optional<InventorySnapshot> snapshot = snapshotRepository.findTopByTakenAtLessThanEqualOrderByTakenAtDesc(at);
+
+        Map<StockKey, int[]> state = new HashMap<>();
+        LocalDateTime after = null;
+        if (snapshot.isPresent()) {
+            loadLines(state, snapshotLineRepository.findBySnapshotId(snapshot.get().getId()));
+            after = snapshot.get().getTakenAt();
+        }
+        applyDeltas(state, movementRepository.sumDeltasBetween(after, at));
+
+        return toHistory(state, at, snapshot.map(InventorySnapshot::getId).orElse(null));
+    }
+
+    /**
+     * Tốc độ bán theo đại lý trong [from, to]: số xe xuất kho từ nhật ký, tồn kho cuối kỳ dựng lại từ snapshot
+     */
+    @Transactional(readOnly = true)
+    public List<InventorySpeedDTO> getDealerSellThrough(LocalDate from, LocalDate to) {
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+
+        Map<Integer, Integer> soldByDealer = new HashMap<>();
+        for (Object[] row : movementRepository.sumDealerOutflowBetween(from.atStartOfDay(), end)) {
+            soldByDealer.put((Integer) row[0], -((Number) row[1]).intValue());
+        }
+
+        Map<Integer, Integer> availableByDealer = getStockAt(end).stream()
+                .filter(h -> h.getDealerId() != null)
+                .collect(Collectors.groupingBy(InventoryHistoryDTO::getDealerId,
+                        Collectors.summingInt(InventoryHistoryDTO::getAvailableQuantity)));
+
+        Set<Integer> dealerIds = new TreeSet<>(availableByDealer.keySet());
+        dealerIds.addAll(soldByDealer.keySet());
+        Map<Integer, String> dealerNames = dealerRepository.findAllById(dealerIds).stream()
+                .collect(Collectors.toMap(Dealer::getDealerId, Dealer::getName));
+
+        return dealerIds.stream()
+                .map(dealerId -> {
+                    int available = availableByDealer.getOrDefault(dealerId, 0);
+                    int sold = soldByDealer.getOrDefault(dealerId, 0);
+                    BigDecimal rate = available + sold > 0
+                            ? BigDecimal.valueOf(sold).divide(BigDecimal.valueOf(available + sold), 4, RoundingMode.HALF_UP)
+                            : null;
+                    return new InventorySpeedDTO(dealerId, dealerNames.get(dealerId), available, sold, rate);
+                })
+                .collect(Collectors.toList());
+    }
+
+    private void loadLines(Map<StockKey, int[]> state, List<InventorySnapshotLine> lines) {
+        for (InventorySnapshotLine line : lines) {
+            state.put(new StockKey(line.getDealerId(), line.getVehicleId(), line.getInventoryType()),
+                    new int[]{line.getAvailableQuantity(), line.getReservedQuantity()});
+        }
+    }
+
+    private void applyDeltas(Map<StockKey, int[]> state, List<Object[]> deltas) {
+        addDeltas(state, deltas, 1);
+    }
+
+    private void subtractDeltas(Map<StockKey, int[]> state, List<Object[]> deltas) {
+        addDeltas(state, deltas, -1);
+    }
+
+    private void addDeltas(Map<StockKey, int[]> state, List<Object[]> deltas, int sign) {
+        for (Object[] row : deltas) {
+            int[] quantities = state.computeIfAbsent(
+                    new StockKey((Integer) row[0], (Integer) row[1], (Inventory.InventoryType) row[2]), k -> new int[2]);
+            quantities[0] += sign * ((Number) row[3]).intValue();
+            quantities[1] += sign * ((Number) row[4]).intValue();
+        }
+    }
+
+    private List<InventoryHistoryDTO> toHistory(Map<StockKey, int[]> state, LocalDateTime at, Long snapshotId) {
+        return state.entrySet().stream()
+                .map(e -> new InventoryHistoryDTO(e.getKey().dealerId(), e.getKey().vehicleId(),
+                        e.getKey().type().name(), at, e.getValue()[0], e.getValue()[1], snapshotId))
+                .sorted(Comparator.comparing(InventoryHistoryDTO::getVehicleId)
+                        .thenComparing(h -> h.getDealerId() == null ? 0 : h.getDealerId()))
+                .collect(Collectors.toList());
+    }
+}
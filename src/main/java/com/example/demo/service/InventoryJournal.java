@@ -0,0 +1,107 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Inventory;
+import com.example.demo.entity.InventoryMovement;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ghi nhật ký biến động kho (InventoryMovement).
+ * Trong transaction: gom movement và insert một lô JDBC ngay trước commit, cùng connection với thay đổi kho.
+ * Ngoài transaction: insert ngay.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InventoryJournal {
+
+    private static final String INSERT_SQL = "INSERT INTO inventory_movement " +
+            "(dealer_id, vehicle_id, inventory_type, movement_type, available_delta, reserved_delta, " +
+            "reference_type, reference_id, occurred_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void record(Integer dealerId, Integer vehicleId, Inventory.InventoryType inventoryType,
+                       InventoryMovement.MovementType movementType, int availableDelta, int reservedDelta,
+                       String referenceType, Integer referenceId) {
+        record(InventoryMovement.builder()
+                .dealerId(inventoryType == Inventory.InventoryType.FACTORY ? null : dealerId)
+                .vehicleId(vehicleId)
+                .inventoryType(inventoryType)
+                .movementType(movementType)
+                .availableDelta(availableDelta)
+                .reservedDelta(reservedDelta)
+                .referenceType(referenceType)
+                .referenceId(referenceId)
+                .occurredAt(LocalDateTime.now())
+                .build());
+    }
+
+    public void record(InventoryMovement movement) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            insertBatch(List.of(movement));
+            return;
+        }
+
+        PendingMovements pending = (PendingMovements) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingMovements();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.movements.add(movement);
+    }
+
+    private void insertBatch(List<InventoryMovement> movements) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, movements, movements.size(), (ps, m) -> {
+            ps.setObject(1, m.getDealerId());
+            ps.setInt(2, m.getVehicleId());
+            ps.setString(3, m.getInventoryType().name());
+            ps.setString(4, m.getMovementType().name());
+            ps.setInt(5, m.getAvailableDelta());
+            ps.setInt(6, m.getReservedDelta());
+            ps.setString(7, m.getReferenceType());
+            ps.setObject(8, m.getReferenceId());
+            ps.setTimestamp(9, Timestamp.valueOf(m.getOccurredAt()));
+        });
+        log.debug("Journaled {} inventory movements", movements.size());
+    }
+
+    /**
+     * Movement đang chờ của transaction hiện tại; tách riêng khi transaction bị suspend (REQUIRES_NEW)
+     */
+    private class PendingMovements implements TransactionSynchronization {
+        private final List<InventoryMovement> movements = new ArrayList<>();
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(InventoryJournal.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(InventoryJournal.this, this);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!movements.isEmpty()) {
+                insertBatch(movements);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(InventoryJournal.this);
+        }
+    }
+}
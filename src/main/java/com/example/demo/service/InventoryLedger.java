@@ -0,0 +1,453 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.InventoryLedgerDriftDTO;
+import com.example.demo.entity.Inventory;
+import com.example.demo.repository.InventoryRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Sổ cái tồn kho trong bộ nhớ (tùy chọn, bật bằng inventory.ledger.enabled=true).
+ *
+ * Giữ available_quantity theo (dealerId, vehicleId, type) trong các bảng băm khóa long, chia stripe,
+ * mỗi stripe một StampedLock: đọc theo điểm dùng optimistic read (không khóa), ghi khóa theo stripe.
+ * Ledger là nơi chặn trừ kho duy nhất trên node này:
+ *  - tryDeduct: trừ trong bộ nhớ, phần chênh được flush xuống bảng Inventory theo lô (write-behind)
+ *  - tryDeductInline: trừ trong bộ nhớ, caller tự ghi DB trong transaction; rollback thì hoàn lại
+ *  - creditAfterCommit: cộng lại sau khi transaction ghi DB commit
+ * Chỉ đúng khi một node ghi kho; reconcile() báo cáo độ lệch so với DB.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "inventory.ledger.enabled", havingValue = "true")
+public class InventoryLedger {
+
+    private static final String FLUSH_DEALER_SQL = "UPDATE inventory SET available_quantity = available_quantity + ?, " +
+            "last_updated = ?, version = version + 1 WHERE dealer_id = ? AND vehicle_id = ? AND inventory_type = 'DEALER'";
+    private static final String FLUSH_FACTORY_SQL = "UPDATE inventory SET available_quantity = available_quantity + ?, " +
+            "last_updated = ?, version = version + 1 WHERE dealer_id IS NULL AND vehicle_id = ? AND inventory_type = 'FACTORY'";
+
+    private final InventoryRepository inventoryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate requiresNew;
+    private final Stripe[] stripes;
+    // flush và reconcile không được chạy xen nhau
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile boolean warm;
+
+    public InventoryLedger(InventoryRepository inventoryRepository,
+                           JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${inventory.ledger.stripes:32}") int stripeCount) {
+        this.inventoryRepository = inventoryRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        int rows = 0;
+        for (Object[] row : inventoryRepository.findLedgerRows()) {
+            long key = key((Integer) row[0], (Integer) row[1], (Inventory.InventoryType) row[2]);
+            stripeFor(key).add(key, row[3] != null ? (Integer) row[3] : 0, 0);
+            rows++;
+        }
+        warm = true;
+        log.info("Inventory ledger warmed with {} rows across {} stripes", rows, stripes.length);
+    }
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    // ===== READ (lock-free) =====
+
+    public boolean contains(Integer dealerId, Integer vehicleId, Inventory.InventoryType type) {
+        long key = key(dealerId, vehicleId, type);
+        return stripeFor(key).get(key) != null;
+    }
+
+    /**
+     * Số lượng available; 0 nếu chưa có dòng kho
+     */
+    public int getAvailable(Integer dealerId, Integer vehicleId, Inventory.InventoryType type) {
+        long key = key(dealerId, vehicleId, type);
+        Integer value = stripeFor(key).get(key);
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Các vehicleId còn hàng ở bất kỳ kho nào
+     */
+    public Set<Integer> vehicleIdsInStock() {
+        Set<Integer> vehicleIds = new TreeSet<>();
+        for (Stripe stripe : stripes) {
+            stripe.forEach((key, value, pending) -> {
+                if (value > 0) {
+                    vehicleIds.add(vehicleIdOf(key));
+                }
+            });
+        }
+        return vehicleIds;
+    }
+
+    // ===== WRITE =====
+
+    /**
+     * Trừ kho write-behind: chỉ thành công khi đủ hàng, DB được cập nhật ở lần flush kế tiếp.
+     * Transaction hiện tại rollback thì cộng lại cả số tồn lẫn phần chênh chờ flush (nếu phần trừ đã được flush,
+     * phần cộng lại sẽ được flush bù).
+     */
+    public boolean tryDeduct(Integer dealerId, Integer vehicleId, Inventory.InventoryType type, int quantity) {
+        long key = key(dealerId, vehicleId, type);
+        Stripe stripe = stripeFor(key);
+        if (!stripe.tryAdd(key, -quantity, -quantity)) {
+            return false;
+        }
+        compensateOnRollback(stripe, key, quantity, quantity);
+        return true;
+    }
+
+    /**
+     * Trừ kho trong bộ nhớ khi caller tự ghi DB; nếu transaction hiện tại rollback thì hoàn lại
+     */
+    public boolean tryDeductInline(Integer dealerId, Integer vehicleId, Inventory.InventoryType type, int quantity) {
+        long key = key(dealerId, vehicleId, type);
+        Stripe stripe = stripeFor(key);
+        if (!stripe.tryAdd(key, -quantity, 0)) {
+            return false;
+        }
+        compensateOnRollback(stripe, key, quantity, 0);
+        return true;
+    }
+
+    private static void compensateOnRollback(Stripe stripe, long key, int quantity, int pending) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        stripe.add(key, quantity, pending);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Cộng kho đã được ghi thẳng xuống DB - áp dụng sau khi transaction commit
+     */
+    public void creditAfterCommit(Integer dealerId, Integer vehicleId, Inventory.InventoryType type, int quantity) {
+        long key = key(dealerId, vehicleId, type);
+        Stripe stripe = stripeFor(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stripe.add(key, quantity, 0);
+                }
+            });
+        } else {
+            stripe.add(key, quantity, 0);
+        }
+    }
+
+    // ===== WRITE-BEHIND FLUSH =====
+
+    @Scheduled(fixedDelayString = "${inventory.ledger.flush-interval-ms:200}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Error flushing inventory ledger: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Ghi các phần chênh đang chờ xuống bảng Inventory bằng JDBC batch. Hai lô (đại lý, kho hãng) chạy trong
+     * cùng một transaction riêng: lỗi thì cả hai rollback và toàn bộ phần chênh được trả về để flush lại.
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            List<long[]> drained = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                stripe.drainPending(drained);
+            }
+            if (drained.isEmpty()) {
+                return 0;
+            }
+
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> dealerArgs = new ArrayList<>();
+            List<Object[]> factoryArgs = new ArrayList<>();
+            for (long[] entry : drained) {
+                long key = entry[0];
+                int delta = (int) entry[1];
+                int dealerId = dealerIdOf(key);
+                if (dealerId == 0) {
+                    factoryArgs.add(new Object[]{delta, now, vehicleIdOf(key)});
+                } else {
+                    dealerArgs.add(new Object[]{delta, now, dealerId, vehicleIdOf(key)});
+                }
+            }
+
+            try {
+                requiresNew.executeWithoutResult(status -> {
+                    if (!dealerArgs.isEmpty()) {
+                        jdbcTemplate.batchUpdate(FLUSH_DEALER_SQL, dealerArgs);
+                    }
+                    if (!factoryArgs.isEmpty()) {
+                        jdbcTemplate.batchUpdate(FLUSH_FACTORY_SQL, factoryArgs);
+                    }
+                });
+            } catch (RuntimeException e) {
+                for (long[] entry : drained) {
+                    stripeFor(entry[0]).add(entry[0], 0, (int) entry[1]);
+                }
+                throw e;
+            }
+
+            log.debug("Flushed {} inventory ledger deltas", drained.size());
+            return drained.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // ===== RECONCILIATION =====
+
+    /**
+     * So sánh ledger (trừ phần chưa flush) với bảng Inventory, trả về các dòng lệch
+     */
+    public List<InventoryLedgerDriftDTO> reconcile() {
+        flushLock.lock();
+        try {
+            Map<Long, Integer> database = new HashMap<>();
+            for (Object[] row : inventoryRepository.findLedgerRows()) {
+                long key = key((Integer) row[0], (Integer) row[1], (Inventory.InventoryType) row[2]);
+                database.merge(key, row[3] != null ? (Integer) row[3] : 0, Integer::sum);
+            }
+
+            List<InventoryLedgerDriftDTO> drift = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                stripe.forEach((key, value, pending) -> {
+                    Integer dbValue = database.remove(key);
+                    if (dbValue == null || dbValue != value - pending) {
+                        drift.add(toDrift(key, value, pending, dbValue));
+                    }
+                });
+            }
+            database.forEach((key, dbValue) -> drift.add(toDrift(key, null, null, dbValue)));
+
+            if (!drift.isEmpty()) {
+                log.warn("Inventory ledger drift detected on {} rows", drift.size());
+            }
+            return drift;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private InventoryLedgerDriftDTO toDrift(long key, Integer value, Integer pending, Integer dbValue) {
+        int dealerId = dealerIdOf(key);
+        return new InventoryLedgerDriftDTO(
+                dealerId == 0 ? null : dealerId,
+                vehicleIdOf(key),
+                (dealerId == 0 ? Inventory.InventoryType.FACTORY : Inventory.InventoryType.DEALER).name(),
+                value, pending, dbValue);
+    }
+
+    // ===== KEY ENCODING =====
+
+    // dealerId ở 32 bit cao (0 = kho hãng, dealerId IDENTITY bắt đầu từ 1), vehicleId ở 32 bit thấp
+    private static long key(Integer dealerId, Integer vehicleId, Inventory.InventoryType type) {
+        long dealerPart = type == Inventory.InventoryType.FACTORY || dealerId == null ? 0L : dealerId;
+        return (dealerPart << 32) | (vehicleId & 0xFFFFFFFFL);
+    }
+
+    private static int dealerIdOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int vehicleIdOf(long key) {
+        return (int) key;
+    }
+
+    private Stripe stripeFor(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (h >>> 40) & (stripes.length - 1)];
+    }
+
+    @FunctionalInterface
+    private interface EntryVisitor {
+        void visit(long key, int value, int pending);
+    }
+
+    /**
+     * Bảng băm địa chỉ mở khóa long (0 = ô trống), giá trị int; mảng được gói trong Table để đọc nhất quán
+     */
+    private static final class Stripe {
+        private final StampedLock lock = new StampedLock();
+        private volatile Table table = new Table(16);
+
+        private static final class Table {
+            final long[] keys;
+            final int[] values;
+            final int[] pending;
+            int size;
+
+            Table(int capacity) {
+                keys = new long[capacity];
+                values = new int[capacity];
+                pending = new int[capacity];
+            }
+
+            int indexOf(long key) {
+                int mask = keys.length - 1;
+                int i = (int) (key ^ (key >>> 29)) * 0x9E3779B1 & mask;
+                for (int probes = 0; probes < keys.length; probes++) {
+                    long k = keys[i];
+                    if (k == key || k == 0L) {
+                        return i;
+                    }
+                    i = (i + 1) & mask;
+                }
+                return -1;
+            }
+        }
+
+        Integer get(long key) {
+            long stamp = lock.tryOptimisticRead();
+            Integer result = read(table, key);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    result = read(table, key);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return result;
+        }
+
+        private static Integer read(Table t, long key) {
+            int i = t.indexOf(key);
+            return i >= 0 && t.keys[i] == key ? t.values[i] : null;
+        }
+
+        /**
+         * Cộng delta nếu dòng tồn tại và kết quả không âm
+         */
+        boolean tryAdd(long key, int delta, int pendingDelta) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                int i = t.indexOf(key);
+                if (i < 0 || t.keys[i] != key || t.values[i] + delta < 0) {
+                    return false;
+                }
+                t.values[i] += delta;
+                t.pending[i] += pendingDelta;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Cộng vô điều kiện, tạo dòng nếu chưa có
+         */
+        void add(long key, int delta, int pendingDelta) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                if ((t.size + 1) * 2 > t.keys.length) {
+                    t = resize(t);
+                }
+                int i = t.indexOf(key);
+                if (t.keys[i] == 0L) {
+                    t.keys[i] = key;
+                    t.size++;
+                }
+                t.values[i] += delta;
+                t.pending[i] += pendingDelta;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private Table resize(Table old) {
+            Table t = new Table(old.keys.length << 1);
+            for (int j = 0; j < old.keys.length; j++) {
+                if (old.keys[j] != 0L) {
+                    int i = t.indexOf(old.keys[j]);
+                    t.keys[i] = old.keys[j];
+                    t.values[i] = old.values[j];
+                    t.pending[i] = old.pending[j];
+                    t.size++;
+                }
+            }
+            table = t;
+            return t;
+        }
+
+        void drainPending(List<long[]> out) {
+            long stamp = lock.writeLock();
+            try {
+                Table t = table;
+                for (int i = 0; i < t.keys.length; i++) {
+                    if (t.keys[i] != 0L && t.pending[i] != 0) {
+                        out.add(new long[]{t.keys[i], t.pending[i]});
+                        t.pending[i] = 0;
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void forEach(EntryVisitor visitor) {
+            long stamp = lock.readLock();
+            try {
+                Table t = table;
+                for (int i = 0; i < t.keys.length; i++) {
+                    if (t.keys[i] != 0L) {
+                        visitor.visit(t.keys[i], t.values[i], t.pending[i]);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
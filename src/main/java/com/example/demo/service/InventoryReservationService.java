@@ -0,0 +1,220 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Inventory;
+import com.example.demo.entity.InventoryMovement;
+import com.example.demo.entity.InventoryReservation;
+import com.example.demo.entity.QuoteDetail;
+import com.example.demo.exception.InsufficientInventoryException;
+import com.example.demo.repository.InventoryRepository;
+import com.example.demo.repository.InventoryReservationRepository;
+import com.example.demo.repository.QuoteDetailRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Giữ hàng có thời hạn cho quote đã duyệt.
+ * Duyệt quote -> giữ hàng; giao xe (kho đại lý) / chuyển kho hãng cho đại lý (kho hãng) -> chuyển phần giữ
+ * thành trừ kho;
+ * hết hạn / order bị từ chối -> trả hàng theo lô bằng câu UPDATE set-based.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryReservationService {
+
+    private final InventoryReservationRepository reservationRepository;
+    private final InventoryRepository inventoryRepository;
+    private final QuoteDetailRepository quoteDetailRepository;
+    private final Optional<InventoryLedger> inventoryLedger;
+    private final InventoryJournal inventoryJournal;
+
+    @Value("${inventory.reservation.ttl-hours:72}")
+    private long ttlHours;
+
+    /**
+     * Giữ hàng cho toàn bộ dòng của quote. Nếu một dòng không đủ hàng thì rollback tất cả và ném lỗi.
+     * dealerId = null nghĩa là giữ kho hãng.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<InventoryReservation> reserveForQuote(Integer quoteId, Integer dealerId, Inventory.InventoryType inventoryType) {
+        return reserveForQuote(quoteId, dealerId, inventoryType, quoteDetailRepository.findByQuoteId(quoteId));
+    }
+
+    /**
+     * Như trên với các dòng quote đã load sẵn (pipeline duyệt quote)
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<InventoryReservation> reserveForQuote(Integer quoteId, Integer dealerId, Inventory.InventoryType inventoryType,
+                                                      List<QuoteDetail> quoteDetails) {
+        // Duyệt lại quote (vd. sau INSUFFICIENT_INVENTORY) -> trả phần giữ cũ trước
+        releaseForQuote(quoteId);
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusHours(ttlHours);
+
+        List<InventoryReservation> reservations = new ArrayList<>();
+        Optional<InventoryLedger> ledger = inventoryLedger.filter(InventoryLedger::isWarm);
+        for (QuoteDetail detail : quoteDetails) {
+            // Ledger bật: chặn trong bộ nhớ trước (tự hoàn lại nếu transaction rollback)
+            if (ledger.isPresent() && !ledger.get().tryDeductInline(
+                    dealerId, detail.getVehicleId(), inventoryType, detail.getQuantity())) {
+                throw new InsufficientInventoryException("Insufficient " + inventoryType + " inventory to reserve vehicle: " +
+                        detail.getVehicleId() + ", Requested: " + detail.getQuantity());
+            }
+
+            int updated = inventoryType == Inventory.InventoryType.FACTORY
+                    ? inventoryRepository.reserveFactoryQuantity(detail.getVehicleId(), detail.getQuantity(), now)
+                    : inventoryRepository.reserveDealerQuantity(dealerId, detail.getVehicleId(), detail.getQuantity(), now);
+
+            if (updated == 0) {
+                throw new InsufficientInventoryException("Insufficient " + inventoryType + " inventory to reserve vehicle: " +
+                        detail.getVehicleId() + ", Requested: " + detail.getQuantity());
+            }
+            inventoryJournal.record(dealerId, detail.getVehicleId(), inventoryType,
+                    InventoryMovement.MovementType.RESERVE, -detail.getQuantity(), detail.getQuantity(), "QUOTE", quoteId);
+
+            reservations.add(InventoryReservation.builder()
+                    .quoteId(quoteId)
+                    .dealerId(inventoryType == Inventory.InventoryType.FACTORY ? null : dealerId)
+                    .vehicleId(detail.getVehicleId())
+                    .inventoryType(inventoryType)
+                    .quantity(detail.getQuantity())
+                    .status(InventoryReservation.ReservationStatus.ACTIVE)
+                    .expiresAt(expiresAt)
+                    .createdAt(now)
+                    .build());
+        }
+
+        List<InventoryReservation> saved = reservationRepository.saveAll(reservations);
+
+        log.info("Reserved {} inventory for quote {} - Dealer: {}, Lines: {}, Expires: {}",
+                inventoryType, quoteId, dealerId, saved.size(), expiresAt);
+        return saved;
+    }
+
+    /**
+     * Số lượng đang giữ tại kho đại lý cho quote, theo vehicleId
+     */
+    public Map<Integer, Integer> getActiveDealerReservations(Integer quoteId) {
+        return getActiveReservations(quoteId, Inventory.InventoryType.DEALER);
+    }
+
+    /**
+     * Số lượng đang giữ cho quote ở loại kho cho trước, theo vehicleId
+     */
+    public Map<Integer, Integer> getActiveReservations(Integer quoteId, Inventory.InventoryType inventoryType) {
+        return reservationRepository.findActiveByQuoteId(quoteId, inventoryType).stream()
+                .collect(Collectors.groupingBy(InventoryReservation::getVehicleId,
+                        Collectors.summingInt(InventoryReservation::getQuantity)));
+    }
+
+    /**
+     * Giao xe: chuyển các reservation kho đại lý của quote/vehicle thành trừ kho.
+     * Trả về số lượng đã được phủ bởi reservation; phần còn lại caller tự trừ từ available.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int consumeForDelivery(Integer quoteId, Integer dealerId, Integer vehicleId, Integer quantity) {
+        return consume(quoteId, Inventory.InventoryType.DEALER, dealerId, vehicleId, quantity);
+    }
+
+    /**
+     * Chuyển kho hãng cho đại lý theo quote EVM đã duyệt: chuyển reservation kho hãng thành xuất kho.
+     * Trả về số lượng đã được phủ bởi reservation; phần còn lại caller tự trừ từ available.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int consumeForTransfer(Integer quoteId, Integer vehicleId, Integer quantity) {
+        return consume(quoteId, Inventory.InventoryType.FACTORY, null, vehicleId, quantity);
+    }
+
+    private int consume(Integer quoteId, Inventory.InventoryType inventoryType, Integer dealerId,
+                        Integer vehicleId, Integer quantity) {
+        LocalDateTime now = LocalDateTime.now();
+        int consumed = 0;
+
+        for (InventoryReservation reservation : reservationRepository.findActiveByQuoteId(quoteId, inventoryType)) {
+            if (!reservation.getVehicleId().equals(vehicleId) || reservation.getQuantity() > quantity - consumed) {
+                continue;
+            }
+            // Sweeper có thể vừa cho hết hạn reservation này
+            if (reservationRepository.markConsumed(reservation.getId(), now) == 0) {
+                continue;
+            }
+            int updated = inventoryType == Inventory.InventoryType.FACTORY
+                    ? inventoryRepository.consumeReservedFactoryQuantity(vehicleId, reservation.getQuantity(), now)
+                    : inventoryRepository.consumeReservedDealerQuantity(dealerId, vehicleId, reservation.getQuantity(), now);
+            if (updated == 0) {
+                throw new RuntimeException("Reserved quantity out of sync for " + inventoryType +
+                        " inventory, dealer: " + dealerId + ", vehicle: " + vehicleId);
+            }
+            inventoryJournal.record(dealerId, vehicleId, inventoryType,
+                    InventoryMovement.MovementType.CONSUME, 0, -reservation.getQuantity(), "QUOTE", quoteId);
+            consumed += reservation.getQuantity();
+        }
+
+        if (consumed > 0) {
+            log.info("Consumed {} reservations - Quote: {}, Dealer: {}, Vehicle: {}, Quantity: {}",
+                    inventoryType, quoteId, dealerId, vehicleId, consumed);
+        }
+        return consumed;
+    }
+
+    /**
+     * Trả lại toàn bộ hàng đang giữ cho quote (order bị từ chối, duyệt lại)
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int releaseForQuote(Integer quoteId) {
+        String token = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+
+        int released = reservationRepository.markReleasedByQuoteId(quoteId, token, now);
+        if (released > 0) {
+            reservationRepository.restoreStockForToken(token, now);
+            afterRestore(token, InventoryMovement.MovementType.RELEASE, quoteId);
+            log.info("Released {} reservations for quote {}", released, quoteId);
+        }
+        return released;
+    }
+
+    /**
+     * Trả hàng cho toàn bộ reservation hết hạn: 1 UPDATE đánh dấu + 1 UPDATE ... JOIN trả kho
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public int releaseExpired() {
+        String token = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+
+        int expired = reservationRepository.markExpired(token, now);
+        if (expired > 0) {
+            int inventoryRows = reservationRepository.restoreStockForToken(token, now);
+            afterRestore(token, InventoryMovement.MovementType.EXPIRE, null);
+            log.info("Expired {} inventory reservations, restored {} inventory rows", expired, inventoryRows);
+        }
+        return expired;
+    }
+
+    // Ghi nhật ký + cộng lại ledger cho phần hàng vừa trả theo token
+    private void afterRestore(String token, InventoryMovement.MovementType movementType, Integer quoteId) {
+        Optional<InventoryLedger> ledger = inventoryLedger.filter(InventoryLedger::isWarm);
+        for (Object[] row : reservationRepository.sumQuantityByReleaseToken(token)) {
+            Integer dealerId = (Integer) row[0];
+            Integer vehicleId = (Integer) row[1];
+            Inventory.InventoryType type = (Inventory.InventoryType) row[2];
+            int quantity = ((Number) row[3]).intValue();
+
+            ledger.ifPresent(l -> l.creditAfterCommit(dealerId, vehicleId, type, quantity));
+            inventoryJournal.record(dealerId, vehicleId, type, movementType, quantity, -quantity,
+                    quoteId != null ? "QUOTE" : null, quoteId);
+        }
+    }
+}
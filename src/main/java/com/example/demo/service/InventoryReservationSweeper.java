@@ -0,0 +1,26 @@
+package com.example.demo.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Định kỳ trả hàng cho các reservation đã hết hạn
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InventoryReservationSweeper {
+
+    private final InventoryReservationService inventoryReservationService;
+
+    @Scheduled(fixedDelayString = "${inventory.reservation.sweep-interval-ms:60000}")
+    public void sweepExpiredReservations() {
+        try {
+            inventoryReservationService.releaseExpired();
+        } catch (Exception e) {
+            log.error("Error releasing expired inventory reservations: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -1,23 +1,38 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.InventoryAllocationDTO;
+import com.example.demo.dto.InventoryAllocationLineResultDTO;
+import com.example.demo.dto.InventoryAllocationResultDTO;
 import com.example.demo.dto.InventoryGroupResponseDTO;
+import com.example.demo.dto.InventoryLedgerDriftDTO;
+import com.example.demo.dto.InventoryShortfallDTO;
 import com.example.demo.dto.VehicleInventoryDetailDTO;
 import com.example.demo.entity.Inventory;
+import com.example.demo.entity.InventoryMovement;
+import com.example.demo.entity.Dealer;
+import com.example.demo.entity.QuoteDetail;
 import com.example.demo.entity.Vehicle;
 import com.example.demo.repository.InventoryRepository;
 import com.example.demo.repository.DealerRepository;
 import com.example.demo.repository.VehicleRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -25,10 +40,33 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class InventoryService {
 
+    private static final String ALLOCATE_FACTORY_SQL = "UPDATE inventory SET available_quantity = available_quantity - ?, " +
+            "last_updated = ?, version = version + 1 WHERE vehicle_id = ? AND dealer_id IS NULL " +
+            "AND inventory_type = 'FACTORY' AND available_quantity >= ?";
+    private static final String ALLOCATE_DEALER_UPDATE_SQL = "UPDATE inventory SET available_quantity = available_quantity + ?, " +
+            "last_updated = ?, version = version + 1 WHERE dealer_id = ? AND vehicle_id = ? AND inventory_type = 'DEALER'";
+    private static final String ALLOCATE_DEALER_INSERT_SQL = "INSERT INTO inventory " +
+            "(dealer_id, vehicle_id, available_quantity, reserved_quantity, inventory_type, last_updated, version) " +
+            "VALUES (?, ?, ?, 0, 'DEALER', ?, 0) " +
+            "ON DUPLICATE KEY UPDATE available_quantity = available_quantity + VALUES(available_quantity), " +
+            "last_updated = VALUES(last_updated), version = version + 1";
+
     private final InventoryRepository inventoryRepository;
     private final DealerRepository dealerRepository;
     private final VehicleRepository vehicleRepository;
+    private final Optional<InventoryLedger> inventoryLedger;
+    private final InventoryJournal inventoryJournal;
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryReservationService inventoryReservationService;
 
+    // Khóa (đại lý, xe) của một dòng phân bổ
+    private record DealerVehicle(Integer dealerId, Integer vehicleId) {
+    }
+
+    // Ledger chỉ dùng khi được bật và đã nạp xong dữ liệu
+    private Optional<InventoryLedger> ledger() {
+        return inventoryLedger.filter(InventoryLedger::isWarm);
+    }
 
     @Transactional
     public Inventory createFactoryInventory(Integer vehicleId, Integer initialQuantity) {
@@ -48,7 +86,11 @@ public class InventoryService {
                 .lastUpdated(LocalDateTime.now())
                 .build();
 
-        return inventoryRepository.save(factoryInventory);
+        Inventory saved = inventoryRepository.save(factoryInventory);
+        ledger().ifPresent(l -> l.creditAfterCommit(null, vehicleId, Inventory.InventoryType.FACTORY, initialQuantity));
+        inventoryJournal.record(null, vehicleId, Inventory.InventoryType.FACTORY,
+                InventoryMovement.MovementType.CREATE, initialQuantity, 0, null, null);
+        return saved;
     }
 
 
@@ -77,11 +119,20 @@ public class InventoryService {
         log.info("Added unique vehicle to dealer inventory - Dealer: {}, Vehicle: {}",
                 dealerId, vehicleId);
 
-        return inventoryRepository.save(dealerInventory);
+        Inventory saved = inventoryRepository.save(dealerInventory);
+        ledger().ifPresent(l -> l.creditAfterCommit(dealerId, vehicleId, Inventory.InventoryType.DEALER, saved.getAvailableQuantity()));
+        inventoryJournal.record(dealerId, vehicleId, Inventory.InventoryType.DEALER,
+                InventoryMovement.MovementType.CREATE, saved.getAvailableQuantity(), 0, null, null);
+        return saved;
     }
 
 
     public boolean checkFactoryInventory(Integer vehicleId, Integer requiredQuantity) {
+        if (ledger().isPresent()) {
+            InventoryLedger l = ledger().get();
+            return l.contains(null, vehicleId, Inventory.InventoryType.FACTORY)
+                    && l.getAvailable(null, vehicleId, Inventory.InventoryType.FACTORY) >= requiredQuantity;
+        }
         return inventoryRepository.findFactoryInventoryByVehicleId(vehicleId)
                 .map(inventory -> inventory.hasSufficientQuantity(requiredQuantity))
                 .orElse(false);
@@ -89,6 +140,11 @@ public class InventoryService {
 
 
     public boolean checkDealerInventory(Integer dealerId, Integer vehicleId, Integer requiredQuantity) {
+        if (ledger().isPresent()) {
+            InventoryLedger l = ledger().get();
+            return l.contains(dealerId, vehicleId, Inventory.InventoryType.DEALER)
+                    && l.getAvailable(dealerId, vehicleId, Inventory.InventoryType.DEALER) >= requiredQuantity;
+        }
         return inventoryRepository.findByDealerIdAndVehicleIdAndInventoryType(
                         dealerId, vehicleId, Inventory.InventoryType.DEALER)
                 .map(inventory -> inventory.hasSufficientQuantity(requiredQuantity))
@@ -96,61 +152,321 @@ public class InventoryService {
     }
 
 
+    /**
+     * Kiểm tra kho hãng cho nhiều xe trong một query IN (...).
+     * requiredQuantities: vehicleId -> số lượng cần. Trả về danh sách dòng thiếu (rỗng = đủ hàng).
+     */
+    public List<InventoryShortfallDTO> findFactoryShortfalls(Map<Integer, Integer> requiredQuantities) {
+        if (requiredQuantities.isEmpty()) {
+            return List.of();
+        }
+        if (ledger().isPresent()) {
+            return toShortfalls(requiredQuantities, ledgerRows(null, Inventory.InventoryType.FACTORY, requiredQuantities));
+        }
+        return toShortfalls(requiredQuantities,
+                inventoryRepository.findFactoryAvailableByVehicleIds(requiredQuantities.keySet()));
+    }
+
+    /**
+     * Kiểm tra kho đại lý cho nhiều xe trong một query IN (...)
+     */
+    public List<InventoryShortfallDTO> findDealerShortfalls(Integer dealerId, Map<Integer, Integer> requiredQuantities) {
+        if (requiredQuantities.isEmpty()) {
+            return List.of();
+        }
+        if (ledger().isPresent()) {
+            return toShortfalls(requiredQuantities, ledgerRows(dealerId, Inventory.InventoryType.DEALER, requiredQuantities));
+        }
+        return toShortfalls(requiredQuantities,
+                inventoryRepository.findDealerAvailableByVehicleIds(dealerId, requiredQuantities.keySet()));
+    }
+
+    private List<Object[]> ledgerRows(Integer dealerId, Inventory.InventoryType type, Map<Integer, Integer> requiredQuantities) {
+        InventoryLedger l = ledger().get();
+        return requiredQuantities.keySet().stream()
+                .map(vehicleId -> new Object[]{vehicleId, l.getAvailable(dealerId, vehicleId, type)})
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gộp số lượng theo vehicleId cho các dòng quote (một xe có thể xuất hiện nhiều dòng)
+     */
+    public Map<Integer, Integer> requiredQuantities(List<QuoteDetail> quoteDetails) {
+        return quoteDetails.stream()
+                .collect(Collectors.toMap(QuoteDetail::getVehicleId, QuoteDetail::getQuantity, Integer::sum));
+    }
+
+    private List<InventoryShortfallDTO> toShortfalls(Map<Integer, Integer> requiredQuantities, List<Object[]> availableRows) {
+        Map<Integer, Integer> available = new HashMap<>();
+        for (Object[] row : availableRows) {
+            available.merge((Integer) row[0], (Integer) row[1], Integer::sum);
+        }
+
+        List<InventoryShortfallDTO> shortfalls = new ArrayList<>();
+        requiredQuantities.forEach((vehicleId, required) -> {
+            int availableQuantity = available.getOrDefault(vehicleId, 0);
+            if (availableQuantity < required) {
+                shortfalls.add(new InventoryShortfallDTO(vehicleId, required, availableQuantity, required - availableQuantity));
+            }
+        });
+        return shortfalls;
+    }
+
+
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void deductFactoryInventory(Integer vehicleId, Integer quantity) {
         if (quantity == null || quantity <= 0) {
             throw new RuntimeException("Invalid quantity: " + quantity);
         }
 
-        Inventory factoryInventory = inventoryRepository.findFactoryInventoryByVehicleId(vehicleId)
-                .orElseThrow(() -> new RuntimeException("Factory inventory not found for vehicle: " + vehicleId));
-
-        if (!factoryInventory.hasSufficientQuantity(quantity)) {
-            throw new RuntimeException("Factory insufficient inventory for vehicle: " + vehicleId +
-                    ". Available: " + factoryInventory.getAvailableQuantity() + ", Requested: " + quantity);
+        if (ledger().isPresent()) {
+            InventoryLedger l = ledger().get();
+            if (!l.tryDeduct(null, vehicleId, Inventory.InventoryType.FACTORY, quantity)) {
+                throw insufficientFromLedger(l, "Factory", null, vehicleId, Inventory.InventoryType.FACTORY, quantity);
+            }
+            inventoryJournal.record(null, vehicleId, Inventory.InventoryType.FACTORY,
+                    InventoryMovement.MovementType.DEDUCT, -quantity, 0, null, null);
+            log.info("Deducted factory inventory (ledger) - Vehicle: {}, Quantity: {}", vehicleId, quantity);
+            return;
         }
 
-        factoryInventory.setAvailableQuantity(factoryInventory.getAvailableQuantity() - quantity);
-        factoryInventory.setLastUpdated(LocalDateTime.now());
-        inventoryRepository.save(factoryInventory);
+        int updated = inventoryRepository.deductFactoryQuantity(vehicleId, quantity, LocalDateTime.now());
+        if (updated == 0) {
+            throw factoryDeductionFailure(vehicleId, quantity);
+        }
+        inventoryJournal.record(null, vehicleId, Inventory.InventoryType.FACTORY,
+                InventoryMovement.MovementType.DEDUCT, -quantity, 0, null, null);
 
-        log.info("Deducted factory inventory - Vehicle: {}, Quantity: {}, Remaining: {}",
-                vehicleId, quantity, factoryInventory.getAvailableQuantity());
+        log.info("Deducted factory inventory - Vehicle: {}, Quantity: {}, Rows: {}",
+                vehicleId, quantity, updated);
     }
 
 
     @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
     public void transferFactoryToDealer(Integer dealerId, Integer vehicleId, Integer quantity) {
-        log.info("Starting inventory transfer - Dealer: {}, Vehicle: {}, Quantity: {}",
-                dealerId, vehicleId, quantity);
+        transferFactoryToDealer(null, dealerId, vehicleId, quantity);
+    }
+
+    /**
+     * Chuyển kho hãng cho đại lý theo quote: phần hàng quote đã giữ ở kho hãng (duyệt EVM) được xuất từ
+     * reserved, chỉ phần còn lại mới trừ từ available. quoteId = null -> chuyển thuần từ available.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    public void transferFactoryToDealer(Integer quoteId, Integer dealerId, Integer vehicleId, Integer quantity) {
+        log.info("Starting inventory transfer - Quote: {}, Dealer: {}, Vehicle: {}, Quantity: {}",
+                quoteId, dealerId, vehicleId, quantity);
 
         if (quantity == null || quantity <= 0) {
             throw new RuntimeException("Invalid transfer quantity: " + quantity);
         }
 
-        Inventory factoryInventory = inventoryRepository.findFactoryInventoryByVehicleId(vehicleId)
-                .orElseThrow(() -> new RuntimeException("Factory inventory not found for vehicle: " + vehicleId));
+        LocalDateTime now = LocalDateTime.now();
+        int reserved = quoteId != null ? inventoryReservationService.consumeForTransfer(quoteId, vehicleId, quantity) : 0;
+        int uncovered = quantity - reserved;
+
+        if (ledger().isPresent()) {
+            InventoryLedger l = ledger().get();
+            if (uncovered > 0 && !l.tryDeductInline(null, vehicleId, Inventory.InventoryType.FACTORY, uncovered)) {
+                throw insufficientFromLedger(l, "Factory", null, vehicleId, Inventory.InventoryType.FACTORY, uncovered);
+            }
+            l.creditAfterCommit(dealerId, vehicleId, Inventory.InventoryType.DEALER, quantity);
+        }
+
+        if (uncovered > 0 && inventoryRepository.deductFactoryQuantity(vehicleId, uncovered, now) == 0) {
+            throw factoryDeductionFailure(vehicleId, uncovered);
+        }
+
+        log.info("Deducted factory inventory - Vehicle: {}, Reserved: {}, Available: {}", vehicleId, reserved, uncovered);
+
+        // Đại lý chưa có dòng kho cho xe này -> tạo mới qua entity (optimistic lock qua @Version)
+        if (inventoryRepository.addDealerQuantity(dealerId, vehicleId, quantity, now) == 0) {
+            Inventory dealerInventory = getOrCreateDealerInventoryInternal(dealerId, vehicleId);
+            dealerInventory.setAvailableQuantity(dealerInventory.getAvailableQuantity() + quantity);
+            dealerInventory.setLastUpdated(now);
+            inventoryRepository.save(dealerInventory);
+        }
+
+        if (uncovered > 0) {
+            inventoryJournal.record(null, vehicleId, Inventory.InventoryType.FACTORY,
+                    InventoryMovement.MovementType.TRANSFER_OUT, -uncovered, 0, "DEALER", dealerId);
+        }
+        inventoryJournal.record(dealerId, vehicleId, Inventory.InventoryType.DEALER,
+                InventoryMovement.MovementType.TRANSFER_IN, quantity, 0, null, null);
+
+        log.info("Successfully transferred inventory - Dealer: {}, Vehicle: {}, Quantity: {}",
+                dealerId, vehicleId, quantity);
+    }
+
+    /**
+     * Phân bổ cả ma trận (dealer x vehicle) từ kho hãng trong một transaction.
+     * Kiểm tra toàn bộ ma trận trước (dealer, xe, tổng số lượng theo xe so với kho hãng) bằng vài query IN (...);
+     * có dòng lỗi thì không ghi gì và trả về lý do từng dòng. Hợp lệ thì ghi bằng 3 lô JDBC:
+     * trừ kho hãng theo xe, cộng dòng kho đại lý đã có, insert dòng kho đại lý mới.
+     * Insert dùng ON DUPLICATE KEY UPDATE trên uk_inventory_dealer_vehicle_type: hai lô song song cùng tạo
+     * một dòng đại lý mới thì lô sau cộng dồn vào dòng lô trước vừa tạo, không sinh dòng trùng.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public InventoryAllocationResultDTO allocateFactoryToDealers(List<InventoryAllocationDTO> allocations) {
+        long start = System.nanoTime();
+
+        Set<Integer> dealerIds = new HashSet<>();
+        Set<Integer> vehicleIds = new HashSet<>();
+        for (InventoryAllocationDTO a : allocations) {
+            dealerIds.add(a.getDealerId());
+            vehicleIds.add(a.getVehicleId());
+        }
+        dealerIds.remove(null);
+        vehicleIds.remove(null);
+
+        Set<Integer> knownDealers = dealerRepository.findAllById(dealerIds).stream()
+                .map(Dealer::getDealerId)
+                .collect(Collectors.toSet());
+        Set<Integer> knownVehicles = vehicleRepository.findAllById(vehicleIds).stream()
+                .map(Vehicle::getId)
+                .collect(Collectors.toSet());
+
+        // Lượt 1: lỗi theo từng dòng + tổng số lượng theo xe
+        List<InventoryAllocationLineResultDTO> lines = new ArrayList<>(allocations.size());
+        Map<Integer, Integer> totalByVehicle = new LinkedHashMap<>();
+        Set<DealerVehicle> seen = new HashSet<>();
+        for (InventoryAllocationDTO a : allocations) {
+            String error = null;
+            if (a.getDealerId() == null || a.getVehicleId() == null) {
+                error = "dealerId and vehicleId are required";
+            } else if (a.getQuantity() == null || a.getQuantity() <= 0) {
+                error = "Invalid quantity: " + a.getQuantity();
+            } else if (!knownDealers.contains(a.getDealerId())) {
+                error = "Dealer not found: " + a.getDealerId();
+            } else if (!knownVehicles.contains(a.getVehicleId())) {
+                error = "Vehicle not found: " + a.getVehicleId();
+            } else if (!seen.add(new DealerVehicle(a.getDealerId(), a.getVehicleId()))) {
+                error = "Duplicate allocation for dealer " + a.getDealerId() + " and vehicle " + a.getVehicleId();
+            } else {
+                totalByVehicle.merge(a.getVehicleId(), a.getQuantity(), Integer::sum);
+            }
+            lines.add(new InventoryAllocationLineResultDTO(a.getDealerId(), a.getVehicleId(), a.getQuantity(),
+                    error == null ? "ALLOCATED" : "REJECTED", error));
+        }
+
+        // Lượt 2: một query kiểm tra kho hãng cho tất cả xe
+        Map<Integer, InventoryShortfallDTO> shortfalls = findFactoryShortfalls(totalByVehicle).stream()
+                .collect(Collectors.toMap(InventoryShortfallDTO::getVehicleId, s -> s));
+        for (InventoryAllocationLineResultDTO line : lines) {
+            InventoryShortfallDTO shortfall = shortfalls.get(line.getVehicleId());
+            if (shortfall != null && "ALLOCATED".equals(line.getStatus())) {
+                line.setStatus("REJECTED");
+                line.setMessage("Factory insufficient inventory for vehicle: " + line.getVehicleId() +
+                        ". Available: " + shortfall.getAvailableQuantity() +
+                        ", Allocated in batch: " + shortfall.getRequestedQuantity());
+            }
+        }
+
+        int rejected = (int) lines.stream().filter(l -> "REJECTED".equals(l.getStatus())).count();
+        int totalQuantity = totalByVehicle.values().stream().mapToInt(Integer::intValue).sum();
+        if (rejected > 0) {
+            lines.stream()
+                    .filter(l -> "ALLOCATED".equals(l.getStatus()))
+                    .forEach(l -> {
+                        l.setStatus("SKIPPED");
+                        l.setMessage("Batch not applied");
+                    });
+            log.warn("Rejected allocation batch - Lines: {}, Rejected: {}", lines.size(), rejected);
+            return allocationResult(false, lines, totalQuantity, rejected, start);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp nowTs = Timestamp.valueOf(now);
+
+        if (ledger().isPresent()) {
+            InventoryLedger l = ledger().get();
+            totalByVehicle.forEach((vehicleId, total) -> {
+                if (!l.tryDeductInline(null, vehicleId, Inventory.InventoryType.FACTORY, total)) {
+                    throw insufficientFromLedger(l, "Factory", null, vehicleId, Inventory.InventoryType.FACTORY, total);
+                }
+            });
+            allocations.forEach(a -> l.creditAfterCommit(a.getDealerId(), a.getVehicleId(),
+                    Inventory.InventoryType.DEALER, a.getQuantity()));
+        }
+
+        // Trừ kho hãng: một câu UPDATE có điều kiện cho mỗi xe; dòng nào không cập nhật được -> rollback cả lô
+        List<Map.Entry<Integer, Integer>> factoryRows = new ArrayList<>(totalByVehicle.entrySet());
+        int[][] factoryCounts = jdbcTemplate.batchUpdate(ALLOCATE_FACTORY_SQL, factoryRows, factoryRows.size(), (ps, e) -> {
+            ps.setInt(1, e.getValue());
+            ps.setTimestamp(2, nowTs);
+            ps.setInt(3, e.getKey());
+            ps.setInt(4, e.getValue());
+        });
+        for (int i = 0; i < factoryRows.size(); i++) {
+            if (factoryCounts[0][i] == 0) {
+                throw factoryDeductionFailure(factoryRows.get(i).getKey(), factoryRows.get(i).getValue());
+            }
+        }
 
-        if (!factoryInventory.hasSufficientQuantity(quantity)) {
-            throw new RuntimeException("Factory insufficient inventory for vehicle: " + vehicleId +
-                    ". Available: " + factoryInventory.getAvailableQuantity() + ", Requested: " + quantity);
+        Set<DealerVehicle> existingDealerRows = new HashSet<>();
+        for (Object[] row : inventoryRepository.findDealerInventoryKeys(knownDealers, totalByVehicle.keySet())) {
+            existingDealerRows.add(new DealerVehicle((Integer) row[0], (Integer) row[1]));
+        }
+        List<InventoryAllocationDTO> updates = new ArrayList<>();
+        List<InventoryAllocationDTO> inserts = new ArrayList<>();
+        for (InventoryAllocationDTO a : allocations) {
+            (existingDealerRows.contains(new DealerVehicle(a.getDealerId(), a.getVehicleId()))
+                    ? updates : inserts).add(a);
         }
 
-        factoryInventory.setAvailableQuantity(factoryInventory.getAvailableQuantity() - quantity);
-        factoryInventory.setLastUpdated(LocalDateTime.now());
-        inventoryRepository.save(factoryInventory);
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(ALLOCATE_DEALER_UPDATE_SQL, updates, updates.size(), (ps, a) -> {
+                ps.setInt(1, a.getQuantity());
+                ps.setTimestamp(2, nowTs);
+                ps.setInt(3, a.getDealerId());
+                ps.setInt(4, a.getVehicleId());
+            });
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(ALLOCATE_DEALER_INSERT_SQL, inserts, inserts.size(), (ps, a) -> {
+                ps.setInt(1, a.getDealerId());
+                ps.setInt(2, a.getVehicleId());
+                ps.setInt(3, a.getQuantity());
+                ps.setTimestamp(4, nowTs);
+            });
+        }
 
-        log.info("Deducted factory inventory - Vehicle: {}, Quantity: {}, Remaining: {}",
-                vehicleId, quantity, factoryInventory.getAvailableQuantity());
+        totalByVehicle.forEach((vehicleId, total) -> inventoryJournal.record(null, vehicleId, Inventory.InventoryType.FACTORY,
+                InventoryMovement.MovementType.TRANSFER_OUT, -total, 0, "ALLOCATION", null));
+        allocations.forEach(a -> inventoryJournal.record(a.getDealerId(), a.getVehicleId(), Inventory.InventoryType.DEALER,
+                InventoryMovement.MovementType.TRANSFER_IN, a.getQuantity(), 0, "ALLOCATION", null));
 
-        Inventory dealerInventory = getOrCreateDealerInventoryInternal(dealerId, vehicleId);
+        InventoryAllocationResultDTO result = allocationResult(true, lines, totalQuantity, 0, start);
+        log.info("Applied allocation batch - Lines: {}, Vehicles: {}, Quantity: {}, New dealer rows: {}, Elapsed: {} ms",
+                lines.size(), totalByVehicle.size(), totalQuantity, inserts.size(), result.getElapsedMs());
+        return result;
+    }
 
-        dealerInventory.setAvailableQuantity(dealerInventory.getAvailableQuantity() + quantity);
-        dealerInventory.setLastUpdated(LocalDateTime.now());
-        inventoryRepository.save(dealerInventory);
+    private InventoryAllocationResultDTO allocationResult(boolean applied, List<InventoryAllocationLineResultDTO> lines,
+                                                         int totalQuantity, int rejected, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        double linesPerSecond = elapsedNanos > 0 ? lines.size() * 1_000_000_000d / elapsedNanos : 0d;
+        return new InventoryAllocationResultDTO(applied, lines.size(), totalQuantity, rejected,
+                elapsedNanos / 1_000_000, Math.round(linesPerSecond * 10) / 10d, lines);
+    }
 
-        log.info("Successfully transferred inventory - Dealer: {}, Vehicle: {}, Quantity: {}, New Dealer Stock: {}",
-                dealerId, vehicleId, quantity, dealerInventory.getAvailableQuantity());
+    private RuntimeException insufficientFromLedger(InventoryLedger l, String label, Integer dealerId, Integer vehicleId,
+                                                    Inventory.InventoryType type, Integer quantity) {
+        if (!l.contains(dealerId, vehicleId, type)) {
+            return new RuntimeException(label + " inventory not found for vehicle: " + vehicleId);
+        }
+        return new RuntimeException(label + " insufficient inventory for vehicle: " + vehicleId +
+                ". Available: " + l.getAvailable(dealerId, vehicleId, type) + ", Requested: " + quantity);
+    }
+
+    /**
+     * Chỉ gọi khi UPDATE có điều kiện không cập nhật dòng nào - đọc lại để trả lỗi rõ ràng
+     */
+    private RuntimeException factoryDeductionFailure(Integer vehicleId, Integer quantity) {
+        return inventoryRepository.findFactoryInventoryByVehicleId(vehicleId)
+                .<RuntimeException>map(inventory -> new RuntimeException(
+                        "Factory insufficient inventory for vehicle: " + vehicleId +
+                        ". Available: " + inventory.getAvailableQuantity() + ", Requested: " + quantity))
+                .orElseGet(() -> new RuntimeException("Factory inventory not found for vehicle: " + vehicleId));
     }
 
     private Inventory getOrCreateDealerInventoryInternal(Integer dealerId, Integer vehicleId) {
@@ -253,6 +569,9 @@ public class InventoryService {
     }
 
     public Integer getFactoryInventoryQuantity(Integer vehicleId) {
+        if (ledger().isPresent()) {
+            return ledger().get().getAvailable(null, vehicleId, Inventory.InventoryType.FACTORY);
+        }
         return inventoryRepository.getFactoryInventoryQuantity(vehicleId).orElse(0);
     }
 
@@ -265,21 +584,32 @@ public class InventoryService {
             throw new RuntimeException("Invalid quantity: " + quantity);
         }
 
-        Inventory dealerInventory = inventoryRepository.findByDealerIdAndVehicleIdAndInventoryType(
-                        dealerId, vehicleId, Inventory.InventoryType.DEALER)
-                .orElseThrow(() -> new RuntimeException("Dealer inventory not found for vehicle: " + vehicleId));
-
-        if (!dealerInventory.hasSufficientQuantity(quantity)) {
-            throw new RuntimeException("Dealer insufficient inventory for vehicle: " + vehicleId +
-                    ". Available: " + dealerInventory.getAvailableQuantity() + ", Requested: " + quantity);
+        if (ledger().isPresent()) {
+            InventoryLedger l = ledger().get();
+            if (!l.tryDeduct(dealerId, vehicleId, Inventory.InventoryType.DEALER, quantity)) {
+                throw insufficientFromLedger(l, "Dealer", dealerId, vehicleId, Inventory.InventoryType.DEALER, quantity);
+            }
+            inventoryJournal.record(dealerId, vehicleId, Inventory.InventoryType.DEALER,
+                    InventoryMovement.MovementType.DEDUCT, -quantity, 0, null, null);
+            log.info("Deducted dealer inventory (ledger) - Dealer: {}, Vehicle: {}, Quantity: {}",
+                    dealerId, vehicleId, quantity);
+            return;
         }
 
-        dealerInventory.setAvailableQuantity(dealerInventory.getAvailableQuantity() - quantity);
-        dealerInventory.setLastUpdated(LocalDateTime.now());
-        inventoryRepository.save(dealerInventory);
+        int updated = inventoryRepository.deductDealerQuantity(dealerId, vehicleId, quantity, LocalDateTime.now());
+        if (updated == 0) {
+            throw inventoryRepository.findByDealerIdAndVehicleIdAndInventoryType(
+                            dealerId, vehicleId, Inventory.InventoryType.DEALER)
+                    .<RuntimeException>map(inventory -> new RuntimeException(
+                            "Dealer insufficient inventory for vehicle: " + vehicleId +
+                            ". Available: " + inventory.getAvailableQuantity() + ", Requested: " + quantity))
+                    .orElseGet(() -> new RuntimeException("Dealer inventory not found for vehicle: " + vehicleId));
+        }
+        inventoryJournal.record(dealerId, vehicleId, Inventory.InventoryType.DEALER,
+                InventoryMovement.MovementType.DEDUCT, -quantity, 0, null, null);
 
-        log.info("Deducted dealer inventory - Dealer: {}, Vehicle: {}, Quantity: {}, Remaining: {}",
-                dealerId, vehicleId, quantity, dealerInventory.getAvailableQuantity());
+        log.info("Deducted dealer inventory - Dealer: {}, Vehicle: {}, Quantity: {}, Rows: {}",
+                dealerId, vehicleId, quantity, updated);
     }
 
     public Map<String, Integer> getDealerInventorySummary(Integer dealerId) {
@@ -293,6 +623,13 @@ public class InventoryService {
     }
 
 
+    /**
+     * Đối soát ledger với bảng Inventory; rỗng nếu ledger không bật
+     */
+    public Optional<List<InventoryLedgerDriftDTO>> reconcileLedger() {
+        return ledger().map(InventoryLedger::reconcile);
+    }
+
     public List<Map<String, Object>> getDealerInventoryDetails(Integer dealerId) {
         List<Inventory> inventories = inventoryRepository.findByDealerIdAndInventoryType(dealerId, Inventory.InventoryType.DEALER);
 
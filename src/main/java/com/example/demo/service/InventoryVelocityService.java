@@ -0,0 +1,201 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.InventoryVelocityDTO;
+import com.example.demo.entity.Vehicle;
+import com.example.demo.repository.InventoryMovementRepository;
+import com.example.demo.repository.InventoryRepository;
+import com.example.demo.repository.VehicleRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Tốc độ bán theo (đại lý, mẫu xe) trên cửa sổ trượt windowDays ngày; mẫu xe = Vehicle.modelName,
+ * nên các vehicleId cùng modelName dồn chung một vòng bucket.
+ *
+ * Mỗi cặp giữ một vòng bucket theo ngày; giao xe cộng vào bucket của ngày hiện tại (sau khi commit),
+ * bucket cũ tự bị ghi đè khi vòng quay lại. Đọc chỉ cộng windowDays ô cho mỗi cặp nên chi phí
+ * không phụ thuộc số đơn hàng đã có. Khi khởi động nạp lại cửa sổ từ nhật ký biến động kho.
+ */
+@Slf4j
+@Service
+public class InventoryVelocityService {
+
+    private final InventoryMovementRepository movementRepository;
+    private final InventoryRepository inventoryRepository;
+    private final VehicleRepository vehicleRepository;
+    private final int windowDays;
+    private final int leadTimeDays;
+    private final Map<DealerModel, DailyBuckets> buckets = new ConcurrentHashMap<>();
+    // vehicleId -> modelName cho recordDelivery (modelName của một xe không đổi)
+    private final Map<Integer, String> modelNames = new ConcurrentHashMap<>();
+
+    private record DealerModel(Integer dealerId, String modelName) {
+    }
+
+    public InventoryVelocityService(InventoryMovementRepository movementRepository,
+                                    InventoryRepository inventoryRepository,
+                                    VehicleRepository vehicleRepository,
+                                    @Value("${inventory.velocity.window-days:30}") int windowDays,
+                                    @Value("${inventory.velocity.lead-time-days:7}") int leadTimeDays) {
+        this.movementRepository = movementRepository;
+        this.inventoryRepository = inventoryRepository;
+        this.vehicleRepository = vehicleRepository;
+        this.windowDays = Math.max(1, windowDays);
+        this.leadTimeDays = Math.max(1, leadTimeDays);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        LocalDate since = LocalDate.now().minusDays(windowDays - 1);
+        // Nhật ký đã chứa mọi lần giao xe đã commit -> nạp lại từ đầu
+        buckets.clear();
+        int rows = 0;
+        for (Object[] row : movementRepository.sumDealerModelOutflowByDaySince(since.atStartOfDay())) {
+            add(new DealerModel((Integer) row[0], (String) row[1]), (LocalDate) row[2], -((Number) row[3]).intValue());
+            rows++;
+        }
+        log.info("Inventory velocity warmed with {} daily buckets since {}", rows, since);
+    }
+
+    /**
+     * Ghi nhận xe đã giao. Trong transaction thì chỉ cộng sau khi commit.
+     */
+    public void recordDelivery(Integer dealerId, Integer vehicleId, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        String modelName = modelNames.computeIfAbsent(vehicleId, id -> vehicleRepository.findById(id)
+                .map(Vehicle::getModelName)
+                .orElse(null));
+        if (modelName == null) {
+            return;
+        }
+        DealerModel key = new DealerModel(dealerId, modelName);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(key, LocalDate.now(), quantity);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(key, LocalDate.now(), quantity);
+            }
+        });
+    }
+
+    /**
+     * Tốc độ bán, số ngày đủ hàng và rủi ro hết hàng; dealerId = null -> mọi đại lý
+     */
+    public List<InventoryVelocityDTO> getVelocity(Integer dealerId) {
+        long today = LocalDate.now().toEpochDay();
+
+        Map<DealerModel, Integer> availableByModel = new LinkedHashMap<>();
+        for (Object[] row : inventoryRepository.findDealerStockRows(dealerId)) {
+            int available = row[3] != null ? (Integer) row[3] : 0;
+            availableByModel.merge(new DealerModel((Integer) row[0], (String) row[2]), available, Integer::sum);
+        }
+
+        Map<DealerModel, InventoryVelocityDTO> result = new LinkedHashMap<>();
+        availableByModel.forEach((key, available) -> {
+            DailyBuckets b = buckets.get(key);
+            result.put(key, toVelocity(key, b != null ? b.sum(today, windowDays) : 0, available));
+        });
+
+        // Đã bán nhưng không còn dòng kho (vd. bị xoá) -> available = 0
+        buckets.forEach((key, b) -> {
+            if (!result.containsKey(key) && (dealerId == null || dealerId.equals(key.dealerId()))) {
+                int sold = b.sum(today, windowDays);
+                if (sold > 0) {
+                    result.put(key, toVelocity(key, sold, 0));
+                }
+            }
+        });
+
+        return result.values().stream()
+                .sorted(Comparator.comparing((InventoryVelocityDTO v) -> riskRank(v.getStockOutRisk()))
+                        .thenComparing(InventoryVelocityDTO::getDealerId)
+                        .thenComparing(InventoryVelocityDTO::getModelName, Comparator.nullsLast(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+    }
+
+    private InventoryVelocityDTO toVelocity(DealerModel key, int sold, int available) {
+        BigDecimal unitsPerDay = BigDecimal.valueOf(sold).divide(BigDecimal.valueOf(windowDays), 2, RoundingMode.HALF_UP);
+        BigDecimal daysOfSupply = null;
+        String risk = "NONE";
+        if (sold > 0) {
+            daysOfSupply = BigDecimal.valueOf((long) available * windowDays)
+                    .divide(BigDecimal.valueOf(sold), 1, RoundingMode.HALF_UP);
+            if (daysOfSupply.compareTo(BigDecimal.valueOf(leadTimeDays)) < 0) {
+                risk = "HIGH";
+            } else if (daysOfSupply.compareTo(BigDecimal.valueOf(2L * leadTimeDays)) < 0) {
+                risk = "MEDIUM";
+            } else {
+                risk = "LOW";
+            }
+        }
+        return new InventoryVelocityDTO(key.dealerId(), key.modelName(), windowDays, sold, unitsPerDay,
+                available, daysOfSupply, risk);
+    }
+
+    private static int riskRank(String risk) {
+        return switch (risk) {
+            case "HIGH" -> 0;
+            case "MEDIUM" -> 1;
+            case "LOW" -> 2;
+            default -> 3;
+        };
+    }
+
+    private void add(DealerModel key, LocalDate day, int quantity) {
+        buckets.computeIfAbsent(key, k -> new DailyBuckets(windowDays)).add(day.toEpochDay(), quantity);
+    }
+
+    /**
+     * Vòng bucket theo ngày: ô (epochDay % size) giữ số xe của đúng ngày ghi trong days[]
+     */
+    private static final class DailyBuckets {
+        private final long[] days;
+        private final int[] units;
+
+        DailyBuckets(int size) {
+            days = new long[size];
+            units = new int[size];
+            Arrays.fill(days, Long.MIN_VALUE);
+        }
+
+        synchronized void add(long epochDay, int quantity) {
+            int slot = (int) Math.floorMod(epochDay, (long) days.length);
+            if (days[slot] != epochDay) {
+                // Ngày cũ hơn cửa sổ so với ô hiện có -> bỏ qua
+                if (days[slot] > epochDay) {
+                    return;
+                }
+                days[slot] = epochDay;
+                units[slot] = 0;
+            }
+            units[slot] += quantity;
+        }
+
+        synchronized int sum(long today, int window) {
+            int total = 0;
+            for (int i = 0; i < days.length; i++) {
+                if (days[i] > today - window && days[i] <= today) {
+                    total += units[i];
+                }
+            }
+            return total;
+        }
+    }
+}
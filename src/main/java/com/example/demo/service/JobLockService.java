@@ -0,0 +1,78 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.JobLockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Chạy job định kỳ trên đúng một node: khóa là một dòng Job_lock có hạn (lease).
+ * Lấy khóa = UPDATE có điều kiện lockedUntil <= now, nên hai node không thể cùng lấy được.
+ */
+@Slf4j
+@Service
+public class JobLockService {
+
+    private final JobLockRepository jobLockRepository;
+    private final TransactionTemplate requiresNew;
+    private final String owner;
+
+    public JobLockService(JobLockRepository jobLockRepository, PlatformTransactionManager transactionManager) {
+        this.jobLockRepository = jobLockRepository;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.owner = hostName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Chạy task nếu lấy được khóa name trong thời hạn lease; trả về false nếu node khác đang giữ khóa.
+     * lease phải dài hơn thời gian chạy tối đa của task.
+     */
+    public boolean runLocked(String name, Duration lease, Runnable task) {
+        if (!tryAcquire(name, lease)) {
+            log.debug("Job lock {} is held by another node, skipping", name);
+            return false;
+        }
+        try {
+            task.run();
+            return true;
+        } finally {
+            requiresNew.executeWithoutResult(status ->
+                    jobLockRepository.release(name, owner, LocalDateTime.now()));
+        }
+    }
+
+    private boolean tryAcquire(String name, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer updated = requiresNew.execute(status ->
+                jobLockRepository.tryAcquire(name, owner, now, now.plus(lease)));
+        if (updated != null && updated > 0) {
+            return true;
+        }
+        // Lần đầu chạy job: chưa có dòng khóa -> tạo mới; node khác tạo trước thì coi như không lấy được
+        try {
+            Integer inserted = requiresNew.execute(status ->
+                    jobLockRepository.existsById(name) ? 0 : jobLockRepository.insertLock(name, owner, now, now.plus(lease)));
+            return inserted != null && inserted > 0;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
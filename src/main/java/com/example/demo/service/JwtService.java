@@ -19,6 +19,17 @@ public class JwtService {
 
     private static final String SIGNER_KEY = "eQ0elqeCs4ul76KFSm5/1qycbAsHYBG8eQ0elqeCs4ul76KFSm5/1qycbAsHYBG8";
 
+    // MACVerifier không giữ trạng thái giữa các lần verify -> dựng một lần, dùng chung mọi request
+    private final JWSVerifier verifier;
+
+    public JwtService() {
+        try {
+            this.verifier = new MACVerifier(SIGNER_KEY);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Invalid JWT signer key", e);
+        }
+    }
+
     public String generateToken(String email, String role) {
         try {
             byte[] keyBytes = SIGNER_KEY.getBytes();
@@ -47,18 +58,24 @@ public class JwtService {
     }
 
     public boolean verifyToken(String token) {
+        return verifyAndParse(token) != null;
+    }
+
+    /**
+     * Parse token một lần, kiểm tra chữ ký và hạn dùng; trả về claims nếu hợp lệ, null nếu không
+     */
+    public JWTClaimsSet verifyAndParse(String token) {
         try {
             SignedJWT signedJWT = SignedJWT.parse(token);
-            JWSVerifier verifier = new MACVerifier(SIGNER_KEY);
-            boolean isValidSignature = signedJWT.verify(verifier);
-
-            Date expirationTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-            boolean isNotExpired = new Date().before(expirationTime);
-
-            return isValidSignature && isNotExpired;
+            if (!signedJWT.verify(verifier)) {
+                return null;
+            }
+            JWTClaimsSet claims = signedJWT.getJWTClaimsSet();
+            Date expirationTime = claims.getExpirationTime();
+            return expirationTime != null && new Date().before(expirationTime) ? claims : null;
         } catch (Exception e) {
-            log.error("Token verification failed", e);
-            return false;
+            log.error("Token verification failed: {}", e.getMessage());
+            return null;
         }
     }
 
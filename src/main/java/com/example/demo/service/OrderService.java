@@ -1,7 +1,9 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CursorPageDTO;
 import com.example.demo.dto.OrderDTO;
 import com.example.demo.dto.OrderResponseDTO;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface OrderService {
@@ -16,4 +18,7 @@ public interface OrderService {
     void deleteOrder(Integer id);
     OrderResponseDTO confirmDelivery(Integer orderId);
     List<OrderResponseDTO> getOrdersByCreatedByRole(String createdByRole);
+    CursorPageDTO<OrderResponseDTO> getOrdersPage(Integer dealerId, String status, String approvalStatus,
+                                                  String paymentStatus, LocalDate fromDate, LocalDate toDate,
+                                                  String cursor, int size);
 }
@@ -1,9 +1,11 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.InventoryShortfallDTO;
 import com.example.demo.dto.OrderDTO;
 import com.example.demo.dto.OrderResponseDTO;
 import com.example.demo.dto.PaymentRequestDTO;
 import com.example.demo.entity.*;
+import com.example.demo.exception.ConflictException;
 import com.example.demo.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,13 +30,23 @@ public class OrderWorkflowService {
     private final OrderRepository orderRepository;
     private final OrderService orderService;
     private final InventoryService inventoryService;
+    private final InventoryReservationService inventoryReservationService;
     private final AuditLogService auditLogService;
     private final UserRepository userRepository;
     private final DealerService dealerService;
     private final DealerRepository dealerRepository;
     private final PaymentProcessingService paymentProcessingService;
+    private final IdempotencyService idempotencyService;
 
 
+    /**
+     * Như createOrderFromApprovedQuote(OrderDTO); gửi lại cùng Idempotency-Key sẽ nhận lại order đã tạo
+     */
+    public OrderResponseDTO createOrderFromApprovedQuote(OrderDTO orderDTO, String idempotencyKey) {
+        return idempotencyService.execute("ORDER_FROM_QUOTE", idempotencyKey, orderDTO, OrderResponseDTO.class,
+                () -> createOrderFromApprovedQuote(orderDTO));
+    }
+
     public OrderResponseDTO createOrderFromApprovedQuote(OrderDTO orderDTO) {
         log.info("=== START createOrderFromApprovedQuote - quoteId: {}, paymentMethod: {}, paymentPercentage: {}%",
                 orderDTO.getQuoteId(), orderDTO.getPaymentMethod(), orderDTO.getPaymentPercentage());
@@ -124,6 +136,8 @@ public class OrderWorkflowService {
 
             return order;
 
+        } catch (ConflictException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error creating order from approved quote: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to create order from quote: " + e.getMessage(), e);
@@ -278,6 +292,9 @@ public class OrderWorkflowService {
             order.setApprovalNotes(reason);
             orderRepository.save(order);
 
+            // Trả lại hàng đang giữ cho quote của order
+            inventoryReservationService.releaseForQuote(order.getQuoteId());
+
             auditLogService.log("ORDER_REJECTED", "ORDER", orderId.toString(),
                     Map.of("rejectedBy", rejectedBy, "reason", reason));
 
@@ -289,26 +306,27 @@ public class OrderWorkflowService {
         }
     }
 
-    private boolean checkInventoryAvailability(List<QuoteDetail> quoteDetails) {
-        for (QuoteDetail detail : quoteDetails) {
-            try {
-                if (!inventoryService.checkFactoryInventory(detail.getVehicleId(), detail.getQuantity())) {
-                    log.warn("Factory insufficient inventory - Vehicle: {}, Required: {}",
-                            detail.getVehicleId(), detail.getQuantity());
-                    return false;
-                }
-            } catch (Exception e) {
-                log.error("Error checking inventory for vehicle {}: {}",
-                        detail.getVehicleId(), e.getMessage());
-                return false;
+    private boolean checkInventoryAvailability(Integer quoteId, List<QuoteDetail> quoteDetails) {
+        try {
+            // Phần quote đã giữ ở kho hãng lúc duyệt EVM không còn nằm trong available -> chỉ kiểm tra phần còn thiếu
+            Map<Integer, Integer> required = new HashMap<>(inventoryService.requiredQuantities(quoteDetails));
+            inventoryReservationService.getActiveReservations(quoteId, Inventory.InventoryType.FACTORY)
+                    .forEach((vehicleId, held) -> required.computeIfPresent(vehicleId, (k, q) -> q > held ? q - held : null));
+            List<InventoryShortfallDTO> shortfalls = inventoryService.findFactoryShortfalls(required);
+            for (InventoryShortfallDTO shortfall : shortfalls) {
+                log.warn("Factory insufficient inventory - Vehicle: {}, Required: {}, Available: {}",
+                        shortfall.getVehicleId(), shortfall.getRequestedQuantity(), shortfall.getAvailableQuantity());
             }
+            return shortfalls.isEmpty();
+        } catch (Exception e) {
+            log.error("Error checking factory inventory: {}", e.getMessage());
+            return false;
         }
-        return true;
     }
 
     private boolean checkFactoryInventoryForOrder(Quote quote) {
         List<QuoteDetail> quoteDetails = quoteDetailRepository.findByQuoteId(quote.getId());
-        return checkInventoryAvailability(quoteDetails);
+        return checkInventoryAvailability(quote.getId(), quoteDetails);
     }
 
     public List<Order> getOrdersPendingApproval() {
@@ -0,0 +1,31 @@
+package com.example.demo.service;
+
+import java.util.Locale;
+
+/**
+ * Nơi giữ OTP quên mật khẩu theo email. Mỗi email chỉ có một OTP hiệu lực (cấp mới thay cái cũ),
+ * OTP dùng một lần và bị hủy sau max-attempts lần nhập sai.
+ *
+ * otp.store=memory (mặc định, InMemoryOtpStore) cho một node; otp.store=database (DatabaseOtpStore)
+ * khi chạy nhiều node sau load balancer.
+ */
+public interface OtpStore {
+
+    enum Result {
+        VERIFIED,
+        INVALID,
+        EXPIRED,
+        TOO_MANY_ATTEMPTS
+    }
+
+    void put(String email, int otp);
+
+    Result verify(String email, int otp);
+
+    /**
+     * Khóa email dùng chung cho mọi store: bỏ khoảng trắng, chữ thường
+     */
+    static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
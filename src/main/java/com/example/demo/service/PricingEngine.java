@@ -0,0 +1,114 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.QuoteDetail;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Công thức tính giá dùng chung cho báo giá và đơn hàng.
+ *
+ * Dòng: gross = đơn giá x số lượng, trừ khuyến mãi theo % (làm tròn 2 số lẻ).
+ * Báo giá: subtotal (tổng gross) -> VAT -> giảm giá VIP, các bước dựng sẵn một lần từ cấu hình thành pipeline,
+ * mỗi lần tính chỉ duyệt danh sách dòng một lượt.
+ */
+@Component
+public class PricingEngine {
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private final BigDecimal vatRate;
+    private final BigDecimal vipDiscountRate;
+    private final BigDecimal vipThreshold;
+    private final List<QuoteRule> quoteRules;
+
+    /**
+     * Kết quả tính một dòng; discount = 0 khi không có khuyến mãi
+     */
+    public record LinePrice(BigDecimal gross, BigDecimal discount, BigDecimal net) {
+    }
+
+    /**
+     * Kết quả tính cả báo giá
+     */
+    public record QuotePrice(BigDecimal subtotal, BigDecimal vatAmount, BigDecimal vatRate,
+                             BigDecimal discountAmount, BigDecimal discountRate, BigDecimal finalTotal,
+                             boolean qualifiesForVip) {
+    }
+
+    private interface QuoteRule {
+        void apply(QuoteState state);
+    }
+
+    private static final class QuoteState {
+        private final boolean vipCustomer;
+        private BigDecimal subtotal = BigDecimal.ZERO;
+        private BigDecimal vatAmount = BigDecimal.ZERO;
+        private BigDecimal discountAmount = BigDecimal.ZERO;
+        private BigDecimal discountRate = BigDecimal.ZERO;
+        private BigDecimal total = BigDecimal.ZERO;
+        private boolean qualifiesForVip;
+
+        private QuoteState(boolean vipCustomer) {
+            this.vipCustomer = vipCustomer;
+        }
+    }
+
+    public PricingEngine(@Value("${pricing.vat-rate:0.10}") BigDecimal vatRate,
+                         @Value("${pricing.vip-discount-rate:0.05}") BigDecimal vipDiscountRate,
+                         @Value("${pricing.vip-threshold:5000000000}") BigDecimal vipThreshold) {
+        this.vatRate = vatRate;
+        this.vipDiscountRate = vipDiscountRate;
+        this.vipThreshold = vipThreshold;
+        this.quoteRules = List.of(this::applyVat, this::applyVip);
+    }
+
+    public LinePrice priceLine(BigDecimal unitPrice, int quantity, BigDecimal promotionPercent) {
+        BigDecimal gross = unitPrice.multiply(BigDecimal.valueOf(quantity));
+        if (promotionPercent == null || promotionPercent.compareTo(BigDecimal.ZERO) <= 0) {
+            return new LinePrice(gross, BigDecimal.ZERO, gross);
+        }
+        BigDecimal discountPercent = promotionPercent.divide(HUNDRED, 4, RoundingMode.HALF_UP);
+        BigDecimal discount = gross.multiply(discountPercent).setScale(2, RoundingMode.HALF_UP);
+        return new LinePrice(gross, discount, gross.subtract(discount).setScale(2, RoundingMode.HALF_UP));
+    }
+
+    public LinePrice priceLine(QuoteDetail detail) {
+        return priceLine(detail.getUnitPrice(), detail.getQuantity(), detail.getPromotionDiscount());
+    }
+
+    /**
+     * Tính báo giá từ các dòng đã lưu: subtotal theo gross (chưa trừ khuyến mãi dòng), rồi chạy pipeline VAT/VIP
+     */
+    public QuotePrice priceQuote(List<QuoteDetail> details, boolean vipCustomer) {
+        QuoteState state = new QuoteState(vipCustomer);
+        for (QuoteDetail detail : details) {
+            BigDecimal unitPrice = detail.getUnitPrice() != null ? detail.getUnitPrice() : BigDecimal.ZERO;
+            int quantity = detail.getQuantity() != null ? detail.getQuantity() : 0;
+            state.subtotal = state.subtotal.add(unitPrice.multiply(BigDecimal.valueOf(quantity)));
+        }
+        state.total = state.subtotal;
+        for (QuoteRule rule : quoteRules) {
+            rule.apply(state);
+        }
+        return new QuotePrice(state.subtotal, state.vatAmount, vatRate, state.discountAmount, state.discountRate,
+                state.total, state.qualifiesForVip);
+    }
+
+    private void applyVat(QuoteState state) {
+        state.vatAmount = state.subtotal.multiply(vatRate);
+        state.total = state.total.add(state.vatAmount);
+    }
+
+    private void applyVip(QuoteState state) {
+        state.qualifiesForVip = state.subtotal.compareTo(vipThreshold) >= 0;
+        if (state.vipCustomer) {
+            state.discountRate = vipDiscountRate;
+            state.discountAmount = state.total.multiply(vipDiscountRate);
+            state.total = state.total.subtract(state.discountAmount);
+        }
+    }
+}
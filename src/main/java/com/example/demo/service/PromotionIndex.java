@@ -0,0 +1,237 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Promotion;
+import com.example.demo.repository.PromotionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Chỉ mục trong bộ nhớ của các khuyến mãi ACTIVE theo khoảng hiệu lực [startDate, endDate].
+ *
+ * Trục ngày được chia thành các đoạn liên tiếp tại mọi startDate và endDate + 1; mỗi đoạn giữ sẵn danh sách
+ * khuyến mãi hiệu lực trong đoạn đó, nên tra "ngày X" chỉ là một floorEntry trên TreeMap (log n).
+ * Thay đổi từ PromotionServiceIMPL cập nhật sau khi commit và chỉ sửa các đoạn nằm trong khoảng hiệu lực của khuyến mãi đó;
+ * định kỳ nạp lại từ DB để nhận thay đổi của node khác.
+ * Khuyến mãi do user không thuộc đại lý (EVM/Admin) tạo áp dụng cho mọi đại lý.
+ */
+@Slf4j
+@Component
+public class PromotionIndex {
+
+    private final PromotionRepository promotionRepository;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private volatile NavigableMap<LocalDate, List<Entry>> segments = new TreeMap<>();
+
+    public record Entry(Integer id, String programName, LocalDate startDate, LocalDate endDate,
+                        Double discountValue, Integer dealerId) {
+    }
+
+    public PromotionIndex(PromotionRepository promotionRepository) {
+        this.promotionRepository = promotionRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${promotion.index.refresh-interval-ms:300000}",
+            fixedDelayString = "${promotion.index.refresh-interval-ms:300000}")
+    public void reload() {
+        // Đọc DB khi đang giữ khóa: onSaved/onDeleted chạy sau commit nên hoặc đã nằm trong kết quả đọc,
+        // hoặc phải chờ và được áp lên bảng mới, không bị bảng cũ ghi đè
+        int count;
+        synchronized (entries) {
+            List<Entry> loaded = new ArrayList<>();
+            for (Object[] row : promotionRepository.findIndexRows(Promotion.PromotionStatus.ACTIVE)) {
+                loaded.add(new Entry((Integer) row[0], (String) row[1], (LocalDate) row[2], (LocalDate) row[3],
+                        (Double) row[4], (Integer) row[5]));
+            }
+            entries.clear();
+            loaded.forEach(e -> entries.put(e.id(), e));
+            rebuildSegments();
+            count = loaded.size();
+        }
+        log.debug("Promotion index reloaded with {} active promotions", count);
+    }
+
+    /**
+     * Ghi nhận khuyến mãi vừa tạo/sửa (sau khi commit): ACTIVE thì đưa vào chỉ mục, trạng thái khác thì bỏ ra
+     */
+    public void onSaved(Promotion promotion) {
+        Entry entry = promotion.getStatus() == Promotion.PromotionStatus.ACTIVE
+                ? new Entry(promotion.getId(), promotion.getProgramName(), promotion.getStartDate(), promotion.getEndDate(),
+                promotion.getDiscountValue(), promotion.getCreatedBy() != null ? promotion.getCreatedBy().getDealerId() : null)
+                : null;
+        afterCommit(() -> {
+            synchronized (entries) {
+                Entry previous = entry != null ? entries.put(entry.id(), entry) : entries.remove(promotion.getId());
+                if (previous != null || entry != null) {
+                    NavigableMap<LocalDate, List<Entry>> updated = new TreeMap<>(segments);
+                    if (previous != null) {
+                        removeFromSegments(updated, previous);
+                    }
+                    if (entry != null) {
+                        addToSegments(updated, entry);
+                    }
+                    segments = updated;
+                }
+            }
+        });
+    }
+
+    public void onDeleted(Integer promotionId) {
+        afterCommit(() -> {
+            synchronized (entries) {
+                Entry previous = entries.remove(promotionId);
+                if (previous != null) {
+                    NavigableMap<LocalDate, List<Entry>> updated = new TreeMap<>(segments);
+                    removeFromSegments(updated, previous);
+                    segments = updated;
+                }
+            }
+        });
+    }
+
+    /**
+     * Các khuyến mãi áp dụng cho đại lý vào ngày date; dealerId = null -> mọi khuyến mãi hiệu lực
+     */
+    public List<Entry> findActive(Integer dealerId, LocalDate date) {
+        Map.Entry<LocalDate, List<Entry>> segment = segments.floorEntry(date);
+        if (segment == null) {
+            return List.of();
+        }
+        if (dealerId == null) {
+            return segment.getValue();
+        }
+        List<Entry> result = new ArrayList<>();
+        for (Entry e : segment.getValue()) {
+            if (e.dealerId() == null || e.dealerId().equals(dealerId)) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * % giảm lớn nhất trong các khuyến mãi áp dụng (không cộng dồn); 0 nếu không có
+     */
+    public BigDecimal bestDiscount(Integer dealerId, LocalDate date) {
+        return findActive(dealerId, date).stream()
+                .map(Entry::discountValue)
+                .filter(Objects::nonNull)
+                .max(Double::compare)
+                .map(BigDecimal::valueOf)
+                .orElse(BigDecimal.ZERO);
+    }
+
+    /**
+     * Dựng lại các đoạn từ entries (gọi khi đang giữ khóa entries), rồi thay cả bảng một lần cho người đọc
+     */
+    private void rebuildSegments() {
+        TreeMap<LocalDate, List<Entry>> starts = new TreeMap<>();
+        TreeMap<LocalDate, List<Entry>> ends = new TreeMap<>();
+        for (Entry e : entries.values()) {
+            if (!isIndexable(e)) {
+                continue;
+            }
+            starts.computeIfAbsent(e.startDate(), k -> new ArrayList<>()).add(e);
+            ends.computeIfAbsent(e.endDate().plusDays(1), k -> new ArrayList<>()).add(e);
+        }
+
+        TreeSet<LocalDate> boundaries = new TreeSet<>(starts.keySet());
+        boundaries.addAll(ends.keySet());
+
+        NavigableMap<LocalDate, List<Entry>> rebuilt = new TreeMap<>();
+        Map<Integer, Entry> active = new LinkedHashMap<>();
+        for (LocalDate boundary : boundaries) {
+            ends.getOrDefault(boundary, List.of()).forEach(e -> active.remove(e.id()));
+            starts.getOrDefault(boundary, List.of()).forEach(e -> active.put(e.id(), e));
+            rebuilt.put(boundary, List.copyOf(active.values()));
+        }
+        segments = rebuilt;
+    }
+
+    /**
+     * Thêm entry vào các đoạn trong [startDate, endDate + 1), tách đoạn tại hai mốc nếu chưa có
+     */
+    private static void addToSegments(NavigableMap<LocalDate, List<Entry>> target, Entry e) {
+        if (!isIndexable(e)) {
+            return;
+        }
+        LocalDate end = e.endDate().plusDays(1);
+        splitAt(target, e.startDate());
+        splitAt(target, end);
+        for (Map.Entry<LocalDate, List<Entry>> segment : target.subMap(e.startDate(), true, end, false).entrySet()) {
+            List<Entry> list = new ArrayList<>(segment.getValue());
+            list.add(e);
+            segment.setValue(List.copyOf(list));
+        }
+    }
+
+    /**
+     * Bỏ entry khỏi các đoạn trong khoảng hiệu lực của nó, rồi gộp các đoạn liền kề giống nhau ở hai mốc
+     */
+    private static void removeFromSegments(NavigableMap<LocalDate, List<Entry>> target, Entry e) {
+        if (!isIndexable(e)) {
+            return;
+        }
+        LocalDate end = e.endDate().plusDays(1);
+        for (Map.Entry<LocalDate, List<Entry>> segment : target.subMap(e.startDate(), true, end, false).entrySet()) {
+            List<Entry> list = new ArrayList<>(segment.getValue());
+            list.removeIf(x -> x.id().equals(e.id()));
+            segment.setValue(List.copyOf(list));
+        }
+        mergeAt(target, end);
+        mergeAt(target, e.startDate());
+    }
+
+    private static void splitAt(NavigableMap<LocalDate, List<Entry>> target, LocalDate boundary) {
+        if (!target.containsKey(boundary)) {
+            Map.Entry<LocalDate, List<Entry>> floor = target.floorEntry(boundary);
+            target.put(boundary, floor != null ? floor.getValue() : List.of());
+        }
+    }
+
+    private static void mergeAt(NavigableMap<LocalDate, List<Entry>> target, LocalDate boundary) {
+        List<Entry> list = target.get(boundary);
+        if (list == null) {
+            return;
+        }
+        Map.Entry<LocalDate, List<Entry>> lower = target.lowerEntry(boundary);
+        if (lower != null ? sameIds(lower.getValue(), list) : list.isEmpty()) {
+            target.remove(boundary);
+        }
+    }
+
+    private static boolean sameIds(List<Entry> a, List<Entry> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        Set<Integer> ids = new HashSet<>();
+        a.forEach(x -> ids.add(x.id()));
+        return b.stream().allMatch(x -> ids.contains(x.id()));
+    }
+
+    private static boolean isIndexable(Entry e) {
+        return e.startDate() != null && e.endDate() != null && !e.startDate().isAfter(e.endDate());
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
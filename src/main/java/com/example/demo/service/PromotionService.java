@@ -3,6 +3,7 @@ package com.example.demo.service;
 
 import com.example.demo.dto.PromotionDTO;
 import com.example.demo.dto.PromotionResponseDTO;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface PromotionService {
@@ -12,4 +13,7 @@ public interface PromotionService {
     PromotionResponseDTO createPromotion(PromotionDTO promotionDTO);
     PromotionResponseDTO updatePromotion(Integer id, PromotionDTO promotionDTO);
     void deletePromotion(Integer id);
+
+    List<PromotionResponseDTO> getActivePromotions(Integer dealerId, LocalDate date);
+    int expireEndedPromotions();
 }
\ No newline at end of file
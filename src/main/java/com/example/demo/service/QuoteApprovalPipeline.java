@@ -0,0 +1,358 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.InventoryShortfallDTO;
+import com.example.demo.dto.QuoteApprovalResultDTO;
+import com.example.demo.entity.Customer;
+import com.example.demo.entity.Inventory;
+import com.example.demo.entity.Quote;
+import com.example.demo.entity.QuoteDetail;
+import com.example.demo.entity.User;
+import com.example.demo.exception.ConflictException;
+import com.example.demo.exception.InsufficientInventoryException;
+import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.repository.CustomerRepository;
+import com.example.demo.repository.QuoteDetailRepository;
+import com.example.demo.repository.QuoteRepository;
+import com.example.demo.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Duyệt quote theo các bước, dùng cho cả duyệt một quote lẫn duyệt hàng loạt:
+ * load (user, quote, dòng, khách hàng - mỗi loại một query) -> kiểm tra quyền -> kiểm tra kho theo lô
+ * (một query cho mỗi đại lý / kho hãng) -> chốt từng quote trong transaction riêng (giữ hàng, tính giá, lưu) ->
+ * tác vụ phụ (audit log, nâng VIP) đẩy sang executor, không chờ.
+ */
+@Slf4j
+@Service
+public class QuoteApprovalPipeline {
+
+    public static final int MAX_BULK_SIZE = 500;
+
+    public static final String APPROVED = "APPROVED";
+    public static final String INSUFFICIENT_INVENTORY = "INSUFFICIENT_INVENTORY";
+    public static final String NOT_ALLOWED = "NOT_ALLOWED";
+    public static final String NOT_FOUND = "NOT_FOUND";
+    // Quote bị sửa đồng thời (optimistic lock) -> tải lại rồi duyệt lại
+    public static final String CONFLICT = "CONFLICT";
+    // Lỗi ngoài dự kiến, message là lỗi thật
+    public static final String ERROR = "ERROR";
+
+    private static final String DEALER_SHORTAGE = "Kho đại lý không đủ mẫu xe đang được đặt";
+    private static final String FACTORY_SHORTAGE = "Kho hãng không đủ mẫu xe đang được đặt";
+
+    private final QuoteRepository quoteRepository;
+    private final QuoteDetailRepository quoteDetailRepository;
+    private final CustomerRepository customerRepository;
+    private final UserRepository userRepository;
+    private final InventoryService inventoryService;
+    private final InventoryReservationService inventoryReservationService;
+    private final QuoteCalculationService quoteCalculationService;
+    private final AuditLogService auditLogService;
+    private final TaskExecutor taskExecutor;
+    private final TransactionTemplate requiresNew;
+
+    /**
+     * Cấp duyệt: quản lý đại lý giữ kho đại lý và chốt giá; EVM giữ kho hãng
+     */
+    public enum Level {
+        DEALER_MANAGER,
+        EVM
+    }
+
+    /**
+     * Trạng thái của một quote khi đi qua các bước
+     */
+    private static final class ApprovalContext {
+        private final Integer quoteId;
+        private Quote quote;
+        private List<QuoteDetail> details = List.of();
+        private Customer customer;
+        private QuoteCalculationService.QuoteCalculationResult pricing;
+        private QuoteApprovalResultDTO result;
+
+        private ApprovalContext(Integer quoteId) {
+            this.quoteId = quoteId;
+        }
+
+        private boolean pending() {
+            return result == null;
+        }
+
+        private void finish(String status, String message) {
+            result = new QuoteApprovalResultDTO(quoteId, status, message);
+        }
+    }
+
+    public QuoteApprovalPipeline(QuoteRepository quoteRepository,
+                                 QuoteDetailRepository quoteDetailRepository,
+                                 CustomerRepository customerRepository,
+                                 UserRepository userRepository,
+                                 InventoryService inventoryService,
+                                 InventoryReservationService inventoryReservationService,
+                                 QuoteCalculationService quoteCalculationService,
+                                 AuditLogService auditLogService,
+                                 @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+                                 PlatformTransactionManager transactionManager) {
+        this.quoteRepository = quoteRepository;
+        this.quoteDetailRepository = quoteDetailRepository;
+        this.customerRepository = customerRepository;
+        this.userRepository = userRepository;
+        this.inventoryService = inventoryService;
+        this.inventoryReservationService = inventoryReservationService;
+        this.quoteCalculationService = quoteCalculationService;
+        this.auditLogService = auditLogService;
+        this.taskExecutor = taskExecutor;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Duyệt các quote theo thứ tự truyền vào; kho được chia cho quote đứng trước khi không đủ cho tất cả.
+     * Mỗi quote có kết quả riêng, quote lỗi không ảnh hưởng quote khác.
+     */
+    public List<QuoteApprovalResultDTO> approve(Level level, List<Integer> quoteIds, Integer approverId, String notes) {
+        if (quoteIds == null || quoteIds.isEmpty()) {
+            return List.of();
+        }
+        if (quoteIds.size() > MAX_BULK_SIZE) {
+            throw new RuntimeException("Tối đa " + MAX_BULK_SIZE + " quote mỗi lần duyệt");
+        }
+
+        User approver = level == Level.DEALER_MANAGER
+                ? userRepository.findById(approverId).orElseThrow(() -> new RuntimeException("Manager not found: " + approverId))
+                : null;
+
+        List<ApprovalContext> contexts = load(level, new LinkedHashSet<>(quoteIds));
+        authorize(level, contexts, approver);
+        checkInventory(level, contexts);
+        for (ApprovalContext ctx : contexts) {
+            if (ctx.pending() || INSUFFICIENT_INVENTORY.equals(ctx.result.getStatus())) {
+                commit(level, ctx, approverId, notes);
+            }
+        }
+
+        long approved = contexts.stream().filter(c -> APPROVED.equals(c.result.getStatus())).count();
+        log.info("{} approval pipeline finished - Approver: {}, Quotes: {}, Approved: {}",
+                level, approverId, contexts.size(), approved);
+        return contexts.stream().map(c -> c.result).collect(Collectors.toList());
+    }
+
+    // ========================= STAGES ========================= //
+
+    private List<ApprovalContext> load(Level level, Collection<Integer> quoteIds) {
+        Map<Integer, Quote> quotes = quoteRepository.findAllById(quoteIds).stream()
+                .collect(Collectors.toMap(Quote::getId, Function.identity()));
+        Map<Integer, List<QuoteDetail>> details = quoteDetailRepository.findByQuoteIdInOrderById(quotes.keySet()).stream()
+                .collect(Collectors.groupingBy(QuoteDetail::getQuoteId));
+        Map<Integer, Customer> customers = level == Level.DEALER_MANAGER
+                ? customerRepository.findAllById(quotes.values().stream()
+                        .map(Quote::getCustomerId).filter(Objects::nonNull).collect(Collectors.toSet())).stream()
+                        .collect(Collectors.toMap(Customer::getId, Function.identity()))
+                : Collections.<Integer, Customer>emptyMap(); // get(null) hợp lệ với quote không có khách hàng
+
+        List<ApprovalContext> contexts = new ArrayList<>();
+        for (Integer quoteId : quoteIds) {
+            ApprovalContext ctx = new ApprovalContext(quoteId);
+            ctx.quote = quotes.get(quoteId);
+            if (ctx.quote == null) {
+                ctx.finish(NOT_FOUND, "Quote not found: " + quoteId);
+            } else {
+                ctx.details = details.getOrDefault(quoteId, List.of());
+                ctx.customer = customers.get(ctx.quote.getCustomerId());
+            }
+            contexts.add(ctx);
+        }
+        return contexts;
+    }
+
+    private void authorize(Level level, List<ApprovalContext> contexts, User approver) {
+        for (ApprovalContext ctx : contexts) {
+            if (!ctx.pending()) {
+                continue;
+            }
+            if (level == Level.DEALER_MANAGER && !ctx.quote.canBeApprovedByDealerManager(approver)) {
+                ctx.finish(NOT_ALLOWED, "Manager can only approve quotes from staff in the same dealer");
+            } else if (level == Level.EVM && !canBeApprovedByEVM(ctx.quote)) {
+                ctx.finish(NOT_ALLOWED, "Quote cannot be approved by EVM. Current approval status: "
+                        + ctx.quote.getApprovalStatus());
+            }
+        }
+    }
+
+    /**
+     * Kiểm tra kho theo lô: cộng nhu cầu của mọi quote cùng kho, một query cho mỗi kho, rồi chia phần thiếu
+     * lần lượt theo thứ tự quote. Việc giữ hàng thật (UPDATE có điều kiện) vẫn quyết định cuối cùng ở bước commit.
+     */
+    private void checkInventory(Level level, List<ApprovalContext> contexts) {
+        Map<Integer, List<ApprovalContext>> byStock = new LinkedHashMap<>();
+        for (ApprovalContext ctx : contexts) {
+            if (!ctx.pending()) {
+                continue;
+            }
+            if (ctx.details.isEmpty() && level == Level.DEALER_MANAGER) {
+                log.warn("No quote details found for quote: {}", ctx.quoteId);
+                ctx.finish(INSUFFICIENT_INVENTORY, DEALER_SHORTAGE);
+                continue;
+            }
+            // Kho hãng dùng chung -> một nhóm khóa 0
+            byStock.computeIfAbsent(level == Level.EVM ? 0 : ctx.quote.getDealerId(), k -> new ArrayList<>()).add(ctx);
+        }
+
+        for (Map.Entry<Integer, List<ApprovalContext>> group : byStock.entrySet()) {
+            Map<Integer, Integer> totals = new HashMap<>();
+            for (ApprovalContext ctx : group.getValue()) {
+                inventoryService.requiredQuantities(ctx.details).forEach((vehicleId, qty) -> totals.merge(vehicleId, qty, Integer::sum));
+            }
+            List<InventoryShortfallDTO> shortfalls = level == Level.EVM
+                    ? inventoryService.findFactoryShortfalls(totals)
+                    : inventoryService.findDealerShortfalls(group.getKey(), totals);
+            if (shortfalls.isEmpty()) {
+                continue;
+            }
+
+            // Chỉ các xe thiếu mới cần theo dõi phần còn lại
+            Map<Integer, Integer> remaining = new HashMap<>();
+            shortfalls.forEach(s -> remaining.put(s.getVehicleId(), Math.max(0, s.getAvailableQuantity())));
+            for (ApprovalContext ctx : group.getValue()) {
+                Map<Integer, Integer> required = inventoryService.requiredQuantities(ctx.details);
+                boolean fits = required.entrySet().stream()
+                        .allMatch(e -> !remaining.containsKey(e.getKey()) || remaining.get(e.getKey()) >= e.getValue());
+                if (fits) {
+                    required.forEach((vehicleId, qty) -> remaining.computeIfPresent(vehicleId, (k, left) -> left - qty));
+                } else {
+                    log.warn("{} inventory insufficient for quote {} - Stock: {}", level, ctx.quoteId, group.getKey());
+                    ctx.finish(INSUFFICIENT_INVENTORY, level == Level.EVM ? FACTORY_SHORTAGE : DEALER_SHORTAGE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Chốt một quote trong transaction riêng: giữ hàng + tính giá + lưu cùng commit hoặc cùng rollback.
+     * Không đủ hàng -> lưu INSUFFICIENT_INVENTORY ở transaction khác (không bị rollback theo).
+     */
+    private void commit(Level level, ApprovalContext ctx, Integer approverId, String notes) {
+        if (ctx.pending()) {
+            try {
+                Quote saved = requiresNew.execute(status -> {
+                    try {
+                        reserve(level, ctx);
+                    } catch (InsufficientInventoryException e) {
+                        log.warn("Could not reserve {} inventory for quote {}: {}", level, ctx.quoteId, e.getMessage());
+                        ctx.finish(INSUFFICIENT_INVENTORY, level == Level.EVM ? FACTORY_SHORTAGE : DEALER_SHORTAGE);
+                        status.setRollbackOnly();
+                        return null;
+                    }
+                    if (level == Level.DEALER_MANAGER) {
+                        ctx.pricing = quoteCalculationService.calculateQuoteTotal(ctx.quote, requireCustomer(ctx), ctx.details);
+                    }
+                    markApproved(level, ctx.quote, approverId, notes, ctx.pricing);
+                    return quoteRepository.save(ctx.quote);
+                });
+                if (saved != null) {
+                    ctx.quote = saved;
+                    ctx.finish(APPROVED, "Quote approved");
+                    afterApproved(level, ctx, approverId, notes);
+                    return;
+                }
+            } catch (OptimisticLockingFailureException e) {
+                log.warn("Quote {} was modified concurrently during approval: {}", ctx.quoteId, e.getMessage());
+                ctx.finish(CONFLICT, "Quote was modified by another request, reload and approve again");
+                return;
+            } catch (ResourceNotFoundException e) {
+                ctx.finish(NOT_FOUND, e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                log.error("Approval of quote {} failed", ctx.quoteId, e);
+                ctx.finish(ERROR, e.getMessage());
+                return;
+            }
+        }
+
+        // INSUFFICIENT_INVENTORY: đánh dấu trên quote như luồng duyệt cũ
+        ctx.quote = requiresNew.execute(status -> {
+            Quote quote = quoteRepository.findById(ctx.quoteId).orElseThrow();
+            quote.setApprovalStatus(Quote.QuoteApprovalStatus.INSUFFICIENT_INVENTORY);
+            quote.setApprovalNotes(ctx.result.getMessage());
+            return quoteRepository.save(quote);
+        });
+    }
+
+    private void reserve(Level level, ApprovalContext ctx) {
+        if (level == Level.EVM) {
+            inventoryReservationService.reserveForQuote(ctx.quoteId, null, Inventory.InventoryType.FACTORY, ctx.details);
+        } else {
+            inventoryReservationService.reserveForQuote(ctx.quoteId, ctx.quote.getDealerId(),
+                    Inventory.InventoryType.DEALER, ctx.details);
+        }
+    }
+
+    private void markApproved(Level level, Quote quote, Integer approverId, String notes,
+                              QuoteCalculationService.QuoteCalculationResult pricing) {
+        quote.setApprovalStatus(Quote.QuoteApprovalStatus.APPROVED);
+        quote.setStatus(Quote.QuoteStatus.ACCEPTED);
+        quote.setApprovedBy(approverId);
+        quote.setApprovedAt(LocalDateTime.now());
+        quote.setApprovalNotes(notes);
+        if (level == Level.DEALER_MANAGER) {
+            quote.setCurrentApproverRole(null);
+            quote.setSubtotal(pricing.subtotal());
+            quote.setVatAmount(pricing.vatAmount());
+            quote.setDiscountAmount(pricing.discountAmount());
+            quote.setFinalTotal(pricing.finalTotal());
+        }
+    }
+
+    /**
+     * Tác vụ phụ sau commit, không chờ: audit log (thông tin request lấy ngay), nâng VIP cho khách hàng
+     */
+    private void afterApproved(Level level, ApprovalContext ctx, Integer approverId, String notes) {
+        Map<String, Object> details = new HashMap<>();
+        if (level == Level.DEALER_MANAGER) {
+            details.put("managerId", approverId);
+            details.put("dealerId", ctx.quote.getDealerId());
+        } else {
+            details.put("approvedBy", approverId);
+            details.put("inventoryChecked", true);
+        }
+        details.put("notes", notes);
+        auditLogService.log(level == Level.DEALER_MANAGER ? "QUOTE_APPROVED_BY_DEALER_MANAGER" : "QUOTE_APPROVED_BY_EVM",
+                "QUOTE", ctx.quoteId.toString(), details);
+
+        if (ctx.pricing != null && ctx.pricing.qualifiesForVip() && !ctx.pricing.isVipCustomer()) {
+            Integer customerId = ctx.pricing.customerId();
+            taskExecutor.execute(() -> {
+                try {
+                    requiresNew.executeWithoutResult(status -> customerRepository.markVip(customerId));
+                } catch (RuntimeException e) {
+                    log.error("Could not mark customer {} as VIP: {}", customerId, e.getMessage());
+                }
+            });
+        }
+        log.info("{} {} approved quote {} from staff {}", level, approverId, ctx.quoteId, ctx.quote.getUserId());
+    }
+
+    private Customer requireCustomer(ApprovalContext ctx) {
+        if (ctx.customer == null) {
+            throw new ResourceNotFoundException("Customer not found: " + ctx.quote.getCustomerId());
+        }
+        return ctx.customer;
+    }
+
+    private boolean canBeApprovedByEVM(Quote quote) {
+        return quote.getApprovalStatus() == Quote.QuoteApprovalStatus.PENDING_EVM_APPROVAL ||
+                quote.getApprovalStatus() == Quote.QuoteApprovalStatus.INSUFFICIENT_INVENTORY;
+    }
+}
@@ -1,7 +1,10 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.InventoryShortfallDTO;
+import com.example.demo.dto.QuoteApprovalResultDTO;
 import com.example.demo.entity.Quote;
 import com.example.demo.entity.QuoteDetail;
+import com.example.demo.exception.ConflictException;
 import com.example.demo.repository.QuoteRepository;
 import com.example.demo.repository.QuoteDetailRepository;
 import lombok.RequiredArgsConstructor;
@@ -22,6 +25,7 @@ public class QuoteApprovalService {
     private final QuoteDetailRepository quoteDetailRepository;
     private final InventoryService inventoryService;
     private final AuditLogService auditLogService;
+    private final QuoteApprovalPipeline quoteApprovalPipeline;
 
     public void submitForEVMApproval(Integer quoteId) {
         Quote quote = quoteRepository.findById(quoteId)
@@ -43,33 +47,23 @@ public class QuoteApprovalService {
 
 
     public void approveQuoteByEVM(Integer quoteId, Integer evmUserId, String notes) {
-        Quote quote = quoteRepository.findById(quoteId)
-                .orElseThrow(() -> new RuntimeException("Quote not found: " + quoteId));
-        if (!canBeApprovedByEVM(quote)) {
-            throw new RuntimeException("Quote cannot be approved by EVM. Current approval status: " + quote.getApprovalStatus());
+        QuoteApprovalResultDTO result = quoteApprovalPipeline
+                .approve(QuoteApprovalPipeline.Level.EVM, List.of(quoteId), evmUserId, notes).get(0);
+        if (QuoteApprovalPipeline.CONFLICT.equals(result.getStatus())) {
+            throw new ConflictException(result.getMessage());
         }
-
-        boolean hasSufficientInventory = checkFactoryInventoryForQuote(quoteId);
-
-        if (!hasSufficientInventory) {
-            quote.setApprovalStatus(Quote.QuoteApprovalStatus.INSUFFICIENT_INVENTORY);
-            quote.setApprovalNotes("Kho hãng không đủ mẫu xe đang được đặt");
-            quoteRepository.save(quote);
-
-            throw new RuntimeException("Không thể duyệt quote: Kho hãng không đủ mẫu xe đang được đặt");
+        if (!QuoteApprovalPipeline.APPROVED.equals(result.getStatus())) {
+            throw new RuntimeException(QuoteApprovalPipeline.INSUFFICIENT_INVENTORY.equals(result.getStatus())
+                    ? "Không thể duyệt quote: " + result.getMessage()
+                    : result.getMessage());
         }
+    }
 
-        quote.setApprovalStatus(Quote.QuoteApprovalStatus.APPROVED);
-        quote.setStatus(Quote.QuoteStatus.ACCEPTED);
-        quote.setApprovedBy(evmUserId);
-        quote.setApprovedAt(LocalDateTime.now());
-        quote.setApprovalNotes(notes);
-        quoteRepository.save(quote);
-
-        auditLogService.log("QUOTE_APPROVED_BY_EVM", "QUOTE", quoteId.toString(),
-                Map.of("approvedBy", evmUserId, "notes", notes, "inventoryChecked", true));
-
-        log.info("Quote {} approved by EVM user {} with inventory check", quoteId, evmUserId);
+    /**
+     * EVM duyệt nhiều quote một lần, kiểm tra kho hãng một lượt cho cả lô
+     */
+    public List<QuoteApprovalResultDTO> approveQuotesByEVM(List<Integer> quoteIds, Integer evmUserId, String notes) {
+        return quoteApprovalPipeline.approve(QuoteApprovalPipeline.Level.EVM, quoteIds, evmUserId, notes);
     }
 
     public void rejectQuoteByEVM(Integer quoteId, Integer evmUserId, String reason) {
@@ -92,14 +86,13 @@ public class QuoteApprovalService {
     public boolean checkFactoryInventoryForQuote(Integer quoteId) {
         List<QuoteDetail> quoteDetails = quoteDetailRepository.findByQuoteId(quoteId);
 
-        for (QuoteDetail detail : quoteDetails) {
-            if (!inventoryService.checkFactoryInventory(detail.getVehicleId(), detail.getQuantity())) {
-                log.warn("Factory insufficient inventory for quote {} - Vehicle: {}, Required: {}",
-                        quoteId, detail.getVehicleId(), detail.getQuantity());
-                return false;
-            }
+        List<InventoryShortfallDTO> shortfalls =
+                inventoryService.findFactoryShortfalls(inventoryService.requiredQuantities(quoteDetails));
+        for (InventoryShortfallDTO shortfall : shortfalls) {
+            log.warn("Factory insufficient inventory for quote {} - Vehicle: {}, Required: {}, Available: {}",
+                    quoteId, shortfall.getVehicleId(), shortfall.getRequestedQuantity(), shortfall.getAvailableQuantity());
         }
-        return true;
+        return shortfalls.isEmpty();
     }
 
     public List<Quote> getQuotesPendingEVMApproval() {
@@ -109,9 +102,4 @@ public class QuoteApprovalService {
     public List<Quote> getApprovedQuotesReadyForOrder() {
         return quoteRepository.findApprovedQuotesReadyForOrder();
     }
-
-    private boolean canBeApprovedByEVM(Quote quote) {
-        return quote.getApprovalStatus() == Quote.QuoteApprovalStatus.PENDING_EVM_APPROVAL ||
-                quote.getApprovalStatus() == Quote.QuoteApprovalStatus.INSUFFICIENT_INVENTORY;
-    }
 }
\ No newline at end of file
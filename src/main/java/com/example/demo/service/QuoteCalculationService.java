@@ -6,28 +6,99 @@ import com.example.demo.entity.Customer;
 import com.example.demo.repository.QuoteDetailRepository;
 import com.example.demo.repository.CustomerRepository;
 import com.example.demo.repository.QuoteRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Tính tổng báo giá bằng PricingEngine, nhớ kết quả theo (quoteId, version).
+ * Quote có @Version nên mọi thay đổi đã lưu đều đổi khóa; QuoteServiceImpl còn gọi invalidate khi sửa/xoá chi tiết
+ * (áp dụng sau commit, để request đọc dữ liệu cũ giữa chừng không nhớ lại kết quả cũ).
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class QuoteCalculationService {
 
     private final QuoteDetailRepository quoteDetailRepository;
     private final CustomerRepository customerRepository;
     private final QuoteRepository quoteRepository;
+    private final PricingEngine pricingEngine;
+    private final Map<Integer, CachedCalculation> calculations;
+
+    private record CachedCalculation(Long version, boolean vipCustomer, QuoteCalculationResult result) {
+    }
 
-    private static final BigDecimal VAT_RATE = new BigDecimal("0.10");
-    private static final BigDecimal VIP_DISCOUNT_RATE = new BigDecimal("0.05");
-    private static final BigDecimal VIP_THRESHOLD = new BigDecimal("5000000000");
+    public QuoteCalculationService(QuoteDetailRepository quoteDetailRepository,
+                                   CustomerRepository customerRepository,
+                                   QuoteRepository quoteRepository,
+                                   PricingEngine pricingEngine,
+                                   @Value("${pricing.cache-size:5000}") int cacheSize) {
+        this.quoteDetailRepository = quoteDetailRepository;
+        this.customerRepository = customerRepository;
+        this.quoteRepository = quoteRepository;
+        this.pricingEngine = pricingEngine;
+        this.calculations = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CachedCalculation> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
 
+    /**
+     * Cache hit chỉ tốn một query lấy (version, customerId, isVip); miss mới load quote, khách hàng và các dòng
+     */
     public QuoteCalculationResult calculateQuoteTotal(Integer quoteId) {
-        List<QuoteDetail> quoteDetails = quoteDetailRepository.findByQuoteId(quoteId);
+        List<Object[]> keys = quoteRepository.findPricingKey(quoteId);
+        if (keys.isEmpty()) {
+            throw new RuntimeException("Quote not found: " + quoteId);
+        }
+        Object[] key = keys.get(0);
+        if (key[1] != null && key[2] != null) {
+            QuoteCalculationResult cached = cached(quoteId, (Long) key[0], Boolean.TRUE.equals(key[2]));
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        Quote quote = quoteRepository.findById(quoteId)
+                .orElseThrow(() -> new RuntimeException("Quote not found: " + quoteId));
+        return calculateQuoteTotal(quote);
+    }
+
+    /**
+     * Tính cho quote đã load sẵn (tránh đọc lại quote)
+     */
+    public QuoteCalculationResult calculateQuoteTotal(Quote quote) {
+        if (quote.getCustomerId() == null) {
+            throw new RuntimeException("Customer not found: null");
+        }
+        Customer customer = customerRepository.findById(quote.getCustomerId())
+                .orElseThrow(() -> new RuntimeException("Customer not found: " + quote.getCustomerId()));
+        return calculateQuoteTotal(quote, customer, null);
+    }
+
+    /**
+     * Tính với khách hàng (và các dòng, nếu khác null) đã load sẵn; preloadedDetails = null -> đọc khi cache miss
+     */
+    public QuoteCalculationResult calculateQuoteTotal(Quote quote, Customer customer, List<QuoteDetail> preloadedDetails) {
+        Integer quoteId = quote.getId();
+        boolean vipCustomer = Boolean.TRUE.equals(customer.getIsVip());
+
+        QuoteCalculationResult cached = cached(quoteId, quote.getVersion(), vipCustomer);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<QuoteDetail> quoteDetails = preloadedDetails != null ? preloadedDetails : quoteDetailRepository.findByQuoteId(quoteId);
         if (quoteDetails == null || quoteDetails.isEmpty()) {
             log.error("No quote details found for quote: {}", quoteId);
             throw new RuntimeException("Không thể tính toán quote: Chưa có chi tiết xe nào trong báo giá. Vui lòng thêm xe vào báo giá trước.");
@@ -42,46 +113,60 @@ public class QuoteCalculationService {
             }
         }
 
-        BigDecimal subtotal = quoteDetails.stream()
-                .map(detail -> {
-                    BigDecimal unitPrice = detail.getUnitPrice() != null ? detail.getUnitPrice() : BigDecimal.ZERO;
-                    Integer quantity = detail.getQuantity() != null ? detail.getQuantity() : 0;
-                    return unitPrice.multiply(BigDecimal.valueOf(quantity));
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        PricingEngine.QuotePrice price = pricingEngine.priceQuote(quoteDetails, vipCustomer);
 
-        Quote quote = quoteRepository.findById(quoteId)
-                .orElseThrow(() -> new RuntimeException("Quote not found: " + quoteId));
-
-        Customer customer = customerRepository.findById(quote.getCustomerId())
-                .orElseThrow(() -> new RuntimeException("Customer not found: " + quote.getCustomerId()));
-
-        boolean qualifiesForVip = subtotal.compareTo(VIP_THRESHOLD) >= 0;
-        BigDecimal vatAmount = subtotal.multiply(VAT_RATE);
-        BigDecimal totalAfterVat = subtotal.add(vatAmount);
+        log.info("Quote calculation completed - Quote: {}, Subtotal: {}, VAT: {}, Discount: {}, Final: {}, VIP Qualified: {}",
+                quoteId, price.subtotal(), price.vatAmount(), price.discountAmount(), price.finalTotal(), price.qualifiesForVip());
+
+        QuoteCalculationResult result = new QuoteCalculationResult(
+                price.subtotal(),
+                price.vatAmount(),
+                price.vatRate(),
+                price.discountAmount(),
+                price.discountRate(),
+                price.finalTotal(),
+                price.qualifiesForVip(),
+                vipCustomer,
+                customer.getId()
+        );
+        synchronized (calculations) {
+            calculations.put(quoteId, new CachedCalculation(quote.getVersion(), vipCustomer, result));
+        }
+        return result;
+    }
 
-        BigDecimal discountAmount = BigDecimal.ZERO;
-        BigDecimal finalTotal = totalAfterVat;
+    /**
+     * Bỏ kết quả đã nhớ của quote (chi tiết bị sửa/xoá). Trong transaction thì chỉ bỏ sau khi commit.
+     */
+    public void invalidate(Integer quoteId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(quoteId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(quoteId);
+            }
+        });
+    }
 
-        if (customer.getIsVip()) {
-            discountAmount = totalAfterVat.multiply(VIP_DISCOUNT_RATE);
-            finalTotal = totalAfterVat.subtract(discountAmount);
+    private QuoteCalculationResult cached(Integer quoteId, Long version, boolean vipCustomer) {
+        CachedCalculation cached;
+        synchronized (calculations) {
+            cached = calculations.get(quoteId);
+        }
+        if (cached != null && Objects.equals(cached.version(), version) && cached.vipCustomer() == vipCustomer) {
+            log.debug("Quote calculation cache hit - Quote: {}, Version: {}", quoteId, version);
+            return cached.result();
         }
+        return null;
+    }
 
-        log.info("Quote calculation completed - Quote: {}, Subtotal: {}, VAT: {}, Discount: {}, Final: {}, VIP Qualified: {}",
-                quoteId, subtotal, vatAmount, discountAmount, finalTotal, qualifiesForVip);
-
-        return new QuoteCalculationResult(
-                subtotal,
-                vatAmount,
-                VAT_RATE,
-                discountAmount,
-                customer.getIsVip() ? VIP_DISCOUNT_RATE : BigDecimal.ZERO,
-                finalTotal,
-                qualifiesForVip,
-                customer.getIsVip(),
-                customer.getId()
-        );
+    private void evict(Integer quoteId) {
+        synchronized (calculations) {
+            calculations.remove(quoteId);
+        }
     }
 
     public record QuoteCalculationResult(
@@ -1,12 +1,13 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.InventoryShortfallDTO;
+import com.example.demo.dto.QuoteApprovalResultDTO;
 import com.example.demo.entity.Quote;
 import com.example.demo.entity.QuoteDetail;
-import com.example.demo.entity.Customer;
 import com.example.demo.entity.User;
+import com.example.demo.exception.ConflictException;
 import com.example.demo.repository.QuoteRepository;
 import com.example.demo.repository.QuoteDetailRepository;
-import com.example.demo.repository.CustomerRepository;
 import com.example.demo.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,62 +25,33 @@ public class QuoteDealerManagerService {
 
     private final QuoteRepository quoteRepository;
     private final QuoteDetailRepository quoteDetailRepository;
-    private final CustomerRepository customerRepository;
     private final UserRepository userRepository;
-    private final QuoteCalculationService quoteCalculationService;
     private final InventoryService inventoryService;
     private final AuditLogService auditLogService;
+    private final QuoteApprovalPipeline quoteApprovalPipeline;
 
     /**
      * 🔥 MANAGER DUYỆT QUOTE CỦA STAFF CÙNG DEALER
      */
 
     public void approveQuoteByManager(Integer quoteId, Integer managerId, String notes) {
-        User manager = userRepository.findById(managerId)
-                .orElseThrow(() -> new RuntimeException("Manager not found: " + managerId));
-
-        Quote quote = quoteRepository.findById(quoteId)
-                .orElseThrow(() -> new RuntimeException("Quote not found: " + quoteId));
-
-        if (!quote.canBeApprovedByDealerManager(manager)) {
-            throw new RuntimeException("Manager can only approve quotes from staff in the same dealer");
-        }
-
-        boolean hasSufficientInventory = checkDealerInventoryForQuote(quoteId, quote.getDealerId());
-
-        if (!hasSufficientInventory) {
-            quote.setApprovalStatus(Quote.QuoteApprovalStatus.INSUFFICIENT_INVENTORY);
-            quote.setApprovalNotes("Kho đại lý không đủ mẫu xe đang được đặt");
-            quoteRepository.save(quote);
-            throw new RuntimeException("Không thể duyệt quote: Kho đại lý không đủ mẫu xe đang được đặt");
+        QuoteApprovalResultDTO result = quoteApprovalPipeline
+                .approve(QuoteApprovalPipeline.Level.DEALER_MANAGER, List.of(quoteId), managerId, notes).get(0);
+        if (QuoteApprovalPipeline.CONFLICT.equals(result.getStatus())) {
+            throw new ConflictException(result.getMessage());
         }
-
-        var calculationResult = quoteCalculationService.calculateQuoteTotal(quoteId);
-
-        if (calculationResult.qualifiesForVip() && !quote.getCustomer().getIsVip()) {
-            Customer customer = quote.getCustomer();
-            customer.setIsVip(true);
-            customerRepository.save(customer);
+        if (!QuoteApprovalPipeline.APPROVED.equals(result.getStatus())) {
+            throw new RuntimeException(QuoteApprovalPipeline.INSUFFICIENT_INVENTORY.equals(result.getStatus())
+                    ? "Không thể duyệt quote: " + result.getMessage()
+                    : result.getMessage());
         }
+    }
 
-        quote.setApprovalStatus(Quote.QuoteApprovalStatus.APPROVED);
-        quote.setStatus(Quote.QuoteStatus.ACCEPTED);
-        quote.setCurrentApproverRole(null);
-        quote.setApprovedBy(managerId);
-        quote.setApprovedAt(LocalDateTime.now());
-        quote.setApprovalNotes(notes);
-
-        quote.setSubtotal(calculationResult.subtotal());
-        quote.setVatAmount(calculationResult.vatAmount());
-        quote.setDiscountAmount(calculationResult.discountAmount());
-        quote.setFinalTotal(calculationResult.finalTotal());
-
-        quoteRepository.save(quote);
-
-        auditLogService.log("QUOTE_APPROVED_BY_DEALER_MANAGER", "QUOTE", quoteId.toString(),
-                Map.of("managerId", managerId, "dealerId", quote.getDealerId(), "notes", notes));
-
-        log.info("Manager {} approved quote {} from staff {}", managerId, quoteId, quote.getUserId());
+    /**
+     * Duyệt nhiều quote của staff cùng dealer trong một lần; mỗi quote có kết quả riêng
+     */
+    public List<QuoteApprovalResultDTO> approveQuotesByManager(List<Integer> quoteIds, Integer managerId, String notes) {
+        return quoteApprovalPipeline.approve(QuoteApprovalPipeline.Level.DEALER_MANAGER, quoteIds, managerId, notes);
     }
 
     /**
@@ -123,12 +95,15 @@ public class QuoteDealerManagerService {
             return false;
         }
 
-        for (QuoteDetail detail : quoteDetails) {
-            if (!inventoryService.checkDealerInventory(dealerId, detail.getVehicleId(), detail.getQuantity())) {
-                log.warn("Dealer insufficient inventory for quote {} - Vehicle: {}, Required: {}, Dealer: {}",
-                        quoteId, detail.getVehicleId(), detail.getQuantity(), dealerId);
-                return false;
+        List<InventoryShortfallDTO> shortfalls =
+                inventoryService.findDealerShortfalls(dealerId, inventoryService.requiredQuantities(quoteDetails));
+        if (!shortfalls.isEmpty()) {
+            for (InventoryShortfallDTO shortfall : shortfalls) {
+                log.warn("Dealer insufficient inventory for quote {} - Vehicle: {}, Required: {}, Available: {}, Dealer: {}",
+                        quoteId, shortfall.getVehicleId(), shortfall.getRequestedQuantity(),
+                        shortfall.getAvailableQuantity(), dealerId);
             }
+            return false;
         }
 
         log.info("Dealer inventory sufficient for quote {} - Dealer: {}", quoteId, dealerId);
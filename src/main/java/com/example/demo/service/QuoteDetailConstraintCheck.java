@@ -0,0 +1,51 @@
+package com.example.demo.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.Locale;
+
+/**
+ * Kiểm tra unique (quote_id, vehicle_id) của quote_detail khi khởi động.
+ * ddl-auto=update chỉ log cảnh báo khi không tạo được constraint (bảng cũ còn dòng trùng xe), trong khi cập nhật
+ * quote theo diff dựa vào mỗi xe một dòng -> thiếu constraint thì dừng khởi động, dọn bằng db/scripts/quote_detail_dedup.sql.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QuoteDetailConstraintCheck {
+
+    static final String CONSTRAINT_NAME = "uk_quote_detail_vehicle";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyUniqueConstraint() {
+        Boolean present = jdbcTemplate.execute((Connection connection) -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String table : new String[]{"quote_detail", "QUOTE_DETAIL"}) {
+                try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, table, true, false)) {
+                    while (rs.next()) {
+                        String indexName = rs.getString("INDEX_NAME");
+                        if (indexName != null && indexName.toLowerCase(Locale.ROOT).contains(CONSTRAINT_NAME)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        });
+        if (!Boolean.TRUE.equals(present)) {
+            throw new IllegalStateException("Unique constraint " + CONSTRAINT_NAME + " is missing on quote_detail. " +
+                    "Merge duplicate (quote_id, vehicle_id) lines with db/scripts/quote_detail_dedup.sql, then restart.");
+        }
+        log.debug("Unique constraint {} present on quote_detail", CONSTRAINT_NAME);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.QuoteExpiryStatsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chuyển báo giá SENT quá validUntil sang EXPIRED bằng các lệnh UPDATE ... LIMIT chunkSize.
+ * Mỗi chunk tự commit nên không giữ khóa dòng lâu; job chạy trên một node nhờ JobLockService.
+ */
+@Slf4j
+@Service
+public class QuoteExpiryService {
+
+    private static final String JOB_NAME = "quote-expiry";
+
+    private static final String EXPIRE_CHUNK_SQL = "UPDATE quote SET status = 'EXPIRED', version = version + 1 " +
+            "WHERE valid_until < ? AND status = 'SENT' LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLockService jobLockService;
+    private final int chunkSize;
+    private final int maxChunks;
+    private final Duration lockLease;
+
+    private final AtomicLong totalExpired = new AtomicLong();
+    private final AtomicLong totalRuns = new AtomicLong();
+    private final AtomicLong skippedLocked = new AtomicLong();
+    private volatile QuoteExpiryStatsDTO lastRun;
+
+    public QuoteExpiryService(JdbcTemplate jdbcTemplate,
+                              JobLockService jobLockService,
+                              @Value("${quote.expiry.chunk-size:500}") int chunkSize,
+                              @Value("${quote.expiry.max-chunks:1000}") int maxChunks,
+                              @Value("${quote.expiry.lock-lease-minutes:30}") long lockLeaseMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobLockService = jobLockService;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxChunks = Math.max(1, maxChunks);
+        this.lockLease = Duration.ofMinutes(lockLeaseMinutes);
+    }
+
+    @Scheduled(cron = "${quote.expiry.cron:0 5 0 * * *}")
+    public void scheduledExpire() {
+        expireOldQuotes();
+    }
+
+    /**
+     * Chạy một lượt hết hạn; trả về số báo giá đã hết hạn (0 nếu node khác đang chạy)
+     */
+    public int expireOldQuotes() {
+        int[] expired = new int[1];
+        boolean ran = jobLockService.runLocked(JOB_NAME, lockLease, () -> expired[0] = expireInChunks());
+        if (!ran) {
+            skippedLocked.incrementAndGet();
+            log.info("Quote expiry skipped - another node holds the lock");
+        }
+        return expired[0];
+    }
+
+    public QuoteExpiryStatsDTO getStats() {
+        QuoteExpiryStatsDTO last = lastRun;
+        return new QuoteExpiryStatsDTO(
+                last != null ? last.getLastRunAt() : null,
+                last != null ? last.getLastExpired() : null,
+                last != null ? last.getLastChunks() : null,
+                last != null ? last.getLastDurationMs() : null,
+                totalExpired.get(), totalRuns.get(), skippedLocked.get());
+    }
+
+    private int expireInChunks() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+
+        int expired = 0;
+        int chunks = 0;
+        int affected;
+        do {
+            affected = jdbcTemplate.update(EXPIRE_CHUNK_SQL, today, chunkSize);
+            expired += affected;
+            chunks++;
+            log.debug("Quote expiry chunk {} - Rows: {}", chunks, affected);
+        } while (affected == chunkSize && chunks < maxChunks);
+
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        totalExpired.addAndGet(expired);
+        totalRuns.incrementAndGet();
+        lastRun = new QuoteExpiryStatsDTO(startedAt, expired, chunks, durationMs, null, null, null);
+
+        if (affected == chunkSize) {
+            log.warn("Quote expiry stopped after {} chunks, remaining quotes are expired on the next run", maxChunks);
+        }
+        log.info("Expired {} old quotes in {} chunks ({} ms)", expired, chunks, durationMs);
+        return expired;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CursorPageDTO;
 import com.example.demo.dto.QuoteDTO;
 import com.example.demo.dto.QuoteResponseDTO;
 
@@ -10,8 +11,10 @@ public interface QuoteService {
     QuoteResponseDTO getQuoteById(Integer id);
     List<QuoteResponseDTO> getQuotesByCustomerId(Integer customerId);
     List<QuoteResponseDTO> getQuotesByUserId(Integer userId);
+    CursorPageDTO<QuoteResponseDTO> getQuotesPage(Integer customerId, Integer userId, Integer dealerId,
+                                                  String cursor, int size);
     QuoteResponseDTO createQuote(QuoteDTO quoteDTO);
     QuoteResponseDTO updateQuote(Integer id, QuoteDTO quoteDTO);
     void deleteQuote(Integer id);
-    void expireOldQuotes();
+    int expireOldQuotes();
 }
\ No newline at end of file
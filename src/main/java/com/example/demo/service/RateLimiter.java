@@ -0,0 +1,180 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.TooManyRequestsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rate limit token bucket trong bộ nhớ cho các endpoint công khai tốn kém (login, gửi/xác thực OTP).
+ *
+ * Mỗi endpoint có ba bucket: theo IP + email, theo IP và theo email (không phụ thuộc IP, chặn dò mật khẩu/OTP
+ * của một tài khoản từ nhiều IP), cấu hình ở rate-limit.endpoints.{endpoint}.*
+ * (endpoint chưa cấu hình dùng rate-limit.default.*; capacity = 0 tắt bucket đó). Bucket cập nhật bằng CAS,
+ * không khóa. Bucket đã nạp đầy lại tương đương bucket mới nên job dọn xóa khỏi map, map chỉ giữ các key
+ * đang bị giới hạn.
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    private record Rule(int capacity, double tokensPerNano) {
+        static final Rule DISABLED = new Rule(0, 0);
+
+        /**
+         * Thời gian để bucket còn tokens nạp lại đầy
+         */
+        long nanosToFull(double tokens) {
+            return (long) Math.ceil((capacity - tokens) / tokensPerNano);
+        }
+    }
+
+    private record State(double tokens, long refilledAtNanos) {
+    }
+
+    private static final class Bucket {
+        private final Rule rule;
+        private final AtomicReference<State> state;
+
+        private Bucket(Rule rule, long now) {
+            this.rule = rule;
+            this.state = new AtomicReference<>(new State(rule.capacity(), now));
+        }
+
+        /**
+         * Lấy một token; trả 0 nếu được, ngược lại số nano phải chờ tới khi có token
+         */
+        private long tryAcquire(long now) {
+            while (true) {
+                State current = state.get();
+                double tokens = available(current, now);
+                if (tokens < 1) {
+                    return (long) Math.ceil((1 - tokens) / rule.tokensPerNano());
+                }
+                if (state.compareAndSet(current, new State(tokens - 1, now))) {
+                    return 0;
+                }
+            }
+        }
+
+        private boolean isFull(long now) {
+            State current = state.get();
+            return now - current.refilledAtNanos() >= rule.nanosToFull(current.tokens());
+        }
+
+        private double available(State current, long now) {
+            long elapsed = Math.max(0, now - current.refilledAtNanos());
+            return Math.min(rule.capacity(), current.tokens() + elapsed * rule.tokensPerNano());
+        }
+    }
+
+    private final Environment environment;
+    private final boolean enabled;
+    private final Map<String, Rule[]> rules = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RateLimiter(Environment environment,
+                       @Value("${rate-limit.enabled:true}") boolean enabled) {
+        this.environment = environment;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Trừ token của endpoint cho IP, IP + email và email; hết token thì ném TooManyRequestsException (429, Retry-After).
+     * clientIp = null (không phân biệt được IP client, xem ClientIp.isPerClient) -> bỏ bucket theo IP,
+     * bucket IP + email khi đó chỉ còn theo email.
+     */
+    public void acquire(String endpoint, String clientIp, String email) {
+        if (!enabled) {
+            return;
+        }
+        Rule[] endpointRules = rules.computeIfAbsent(endpoint, this::loadRules);
+        String normalizedEmail = email != null ? email.trim().toLowerCase(Locale.ROOT) : "";
+        long now = System.nanoTime();
+
+        long waitNanos = clientIp != null ? tryAcquire(endpoint + "|ip|" + clientIp, endpointRules[1], now) : 0;
+        if (waitNanos == 0) {
+            waitNanos = tryAcquire(endpoint + "|" + (clientIp != null ? clientIp : "-") + "|" + normalizedEmail,
+                    endpointRules[0], now);
+        }
+        if (waitNanos == 0 && !normalizedEmail.isEmpty()) {
+            waitNanos = tryAcquire(endpoint + "|email|" + normalizedEmail, endpointRules[2], now);
+        }
+        if (waitNanos > 0) {
+            rejected.incrementAndGet();
+            long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999));
+            log.debug("Rate limited {} ip={} email={} retryAfter={}s", endpoint, clientIp, normalizedEmail, retryAfterSeconds);
+            throw new TooManyRequestsException("Quá nhiều yêu cầu, vui lòng thử lại sau " + retryAfterSeconds + " giây",
+                    retryAfterSeconds);
+        }
+    }
+
+    /**
+     * Xóa bucket đã nạp đầy (không còn khác bucket mới). Request lọt vào giữa lúc kiểm tra và xóa
+     * có thể được trả lại một token - chấp nhận được cho rate limit.
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval-ms:60000}")
+    public int sweep() {
+        long now = System.nanoTime();
+        int removed = 0;
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            if (entry.getValue().isFull(now) && buckets.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int getTrackedKeys() {
+        return buckets.size();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private long tryAcquire(String key, Rule rule, long now) {
+        if (rule.capacity() <= 0) {
+            return 0;
+        }
+        return buckets.computeIfAbsent(key, k -> new Bucket(rule, now)).tryAcquire(now);
+    }
+
+    /**
+     * [0] = theo IP + email, [1] = theo IP, [2] = theo email
+     */
+    private Rule[] loadRules(String endpoint) {
+        return new Rule[]{
+                loadRule(endpoint, "capacity", "refill-per-minute"),
+                loadRule(endpoint, "ip-capacity", "ip-refill-per-minute"),
+                loadRule(endpoint, "email-capacity", "email-refill-per-minute")
+        };
+    }
+
+    private Rule loadRule(String endpoint, String capacityKey, String refillKey) {
+        int capacity = property(endpoint, capacityKey, 0);
+        int refillPerMinute = property(endpoint, refillKey, capacity);
+        if (capacity <= 0 || refillPerMinute <= 0) {
+            return Rule.DISABLED;
+        }
+        return new Rule(capacity, refillPerMinute / (double) TimeUnit.MINUTES.toNanos(1));
+    }
+
+    private int property(String endpoint, String key, int fallback) {
+        Integer value = environment.getProperty("rate-limit.endpoints." + endpoint + "." + key, Integer.class);
+        if (value == null) {
+            value = environment.getProperty("rate-limit.default." + key, Integer.class);
+        }
+        return value != null ? value : fallback;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.RequestLogSettingsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chính sách log request của RequestLoggingFilter và đổi log level lúc chạy.
+ *
+ * Cấu hình là một snapshot bất biến đổi nguyên khối khi admin cập nhật, nên mỗi request chỉ đọc một field
+ * volatile. Request lỗi 5xx hoặc chậm hơn ngưỡng luôn được log; còn lại lấy mẫu theo tỉ lệ của tiền tố path
+ * dài nhất khớp, không khớp thì theo tỉ lệ chung.
+ */
+@Slf4j
+@Service
+public class RequestLoggingService {
+
+    private record PathRate(String prefix, double rate) {
+    }
+
+    private record Policy(boolean enabled, double sampleRate, long slowThresholdMs, List<PathRate> overrides) {
+    }
+
+    private final LoggingSystem loggingSystem;
+    private volatile Policy policy;
+    private final AtomicLong seen = new AtomicLong();
+    private final AtomicLong logged = new AtomicLong();
+
+    public RequestLoggingService(LoggingSystem loggingSystem,
+                                 @Value("${request-log.enabled:true}") boolean enabled,
+                                 @Value("${request-log.sample-rate:0.01}") double sampleRate,
+                                 @Value("${request-log.slow-threshold-ms:1000}") long slowThresholdMs,
+                                 @Value("${request-log.path-overrides:}") String pathOverrides) {
+        this.loggingSystem = loggingSystem;
+        this.policy = new Policy(enabled, clampRate(sampleRate), slowThresholdMs,
+                toPathRates(parseOverrides(pathOverrides)));
+    }
+
+    /**
+     * Quyết định có ghi dòng log cho request vừa xong hay không
+     */
+    public boolean shouldLog(String path, int status, long durationMs) {
+        Policy current = policy;
+        if (!current.enabled()) {
+            return false;
+        }
+        seen.incrementAndGet();
+        boolean log = status >= 500 || durationMs >= current.slowThresholdMs()
+                || sample(rateFor(current, path));
+        if (log) {
+            logged.incrementAndGet();
+        }
+        return log;
+    }
+
+    public RequestLogSettingsDTO getSettings() {
+        Policy current = policy;
+        Map<String, Double> overrides = new LinkedHashMap<>();
+        current.overrides().forEach(o -> overrides.put(o.prefix(), o.rate()));
+        return new RequestLogSettingsDTO(current.enabled(), current.sampleRate(), current.slowThresholdMs(),
+                overrides, seen.get(), logged.get());
+    }
+
+    /**
+     * Cập nhật cấu hình; field null giữ giá trị cũ, pathOverrides khác null thay toàn bộ danh sách
+     */
+    public RequestLogSettingsDTO updateSettings(RequestLogSettingsDTO settings) {
+        Policy current = policy;
+        policy = new Policy(
+                settings.getEnabled() != null ? settings.getEnabled() : current.enabled(),
+                settings.getSampleRate() != null ? clampRate(settings.getSampleRate()) : current.sampleRate(),
+                settings.getSlowThresholdMs() != null ? settings.getSlowThresholdMs() : current.slowThresholdMs(),
+                settings.getPathOverrides() != null ? toPathRates(settings.getPathOverrides()) : current.overrides());
+        log.info("Request log settings updated: {}", getSettings());
+        return getSettings();
+    }
+
+    /**
+     * Level hiệu lực của logger (root nếu name là ROOT)
+     */
+    public Map<String, String> getLoggerLevel(String name) {
+        LoggerConfiguration config = loggingSystem.getLoggerConfiguration(name);
+        if (config == null) {
+            throw new RuntimeException("Không tìm thấy logger: " + name);
+        }
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put("logger", config.getName());
+        result.put("configuredLevel", config.getConfiguredLevel() != null ? config.getConfiguredLevel().name() : null);
+        result.put("effectiveLevel", config.getEffectiveLevel().name());
+        return result;
+    }
+
+    /**
+     * Đổi level của logger lúc chạy; level rỗng trả logger về kế thừa từ cha
+     */
+    public Map<String, String> setLoggerLevel(String name, String level) {
+        LogLevel logLevel = null;
+        if (level != null && !level.isBlank()) {
+            try {
+                logLevel = LogLevel.valueOf(level.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Level không hợp lệ: " + level);
+            }
+        }
+        loggingSystem.setLogLevel(name, logLevel);
+        log.info("Logger {} level set to {}", name, logLevel);
+        return getLoggerLevel(name);
+    }
+
+    private static double rateFor(Policy policy, String path) {
+        for (PathRate override : policy.overrides()) {
+            if (path.startsWith(override.prefix())) {
+                return override.rate();
+            }
+        }
+        return policy.sampleRate();
+    }
+
+    private static boolean sample(double rate) {
+        return rate >= 1.0 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private static double clampRate(double rate) {
+        return Math.max(0.0, Math.min(1.0, rate));
+    }
+
+    /**
+     * Sắp theo độ dài tiền tố giảm dần để lần khớp đầu tiên là tiền tố dài nhất
+     */
+    private static List<PathRate> toPathRates(Map<String, Double> overrides) {
+        List<PathRate> rates = new ArrayList<>();
+        overrides.forEach((prefix, rate) -> {
+            if (prefix != null && !prefix.isBlank() && rate != null) {
+                rates.add(new PathRate(prefix.trim(), clampRate(rate)));
+            }
+        });
+        rates.sort(Comparator.comparingInt((PathRate rate) -> rate.prefix().length()).reversed());
+        return List.copyOf(rates);
+    }
+
+    /**
+     * Dạng cấu hình: /api/auth/=1.0,/api/payments/=0.5
+     */
+    private static Map<String, Double> parseOverrides(String value) {
+        Map<String, Double> overrides = new LinkedHashMap<>();
+        for (String pair : value.split(",")) {
+            int eq = pair.lastIndexOf('=');
+            if (eq > 0) {
+                overrides.put(pair.substring(0, eq).trim(), Double.parseDouble(pair.substring(eq + 1).trim()));
+            }
+        }
+        return overrides;
+    }
+}
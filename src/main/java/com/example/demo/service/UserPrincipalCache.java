@@ -0,0 +1,110 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.UserPrincipal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * email -> UserPrincipal (userId, role, dealerId) cho JwtAuthenticationFilter, để mỗi request đã xác thực
+ * không phải nạp lại entity User.
+ *
+ * LRU giới hạn size mục, mỗi mục sống tối đa ttl-seconds (giới hạn độ cũ khi user bị sửa ở instance khác).
+ * UserServiceIMPL gọi invalidate khi sửa/xóa user hoặc đổi mật khẩu. Bộ đếm generation chặn trường hợp
+ * một request nạp bản cũ trước khi invalidate rồi ghi đè vào cache sau đó.
+ */
+@Component
+public class UserPrincipalCache {
+
+    private record Entry(UserPrincipal principal, long expiresAtMillis) {
+    }
+
+    private final UserRepository userRepository;
+    private final int capacity;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public UserPrincipalCache(UserRepository userRepository,
+                              @Value("${auth.principal-cache.size:10000}") int size,
+                              @Value("${auth.principal-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.capacity = size;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * Principal của email, nạp từ DB khi miss/hết hạn; null nếu không còn user này
+     */
+    public UserPrincipal get(String email) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(email);
+            if (entry != null) {
+                if (entry.expiresAtMillis() > now) {
+                    hits.incrementAndGet();
+                    return entry.principal();
+                }
+                entries.remove(email);
+            }
+        }
+        misses.incrementAndGet();
+
+        long loadedAt = generation.get();
+        UserPrincipal principal = userRepository.findPrincipalByEmail(email).orElse(null);
+        if (principal != null) {
+            synchronized (entries) {
+                if (generation.get() == loadedAt) {
+                    entries.put(email, new Entry(principal, now + ttlMillis));
+                }
+            }
+        }
+        return principal;
+    }
+
+    public void invalidate(String email) {
+        if (email == null) {
+            return;
+        }
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.remove(email);
+        }
+        invalidations.incrementAndGet();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+}
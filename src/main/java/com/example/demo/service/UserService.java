@@ -1,6 +1,7 @@
 
 package com.example.demo.service;
 
+import com.example.demo.dto.PrincipalCacheStatsDTO;
 import com.example.demo.dto.UserResponseDTO;
 import com.example.demo.entity.User;
 import com.example.demo.dto.LoginDTO;
@@ -17,4 +18,6 @@ public interface UserService {
     // Authentication
     String loginUser(LoginDTO loginDTO);
     User getUserByEmail(String email);
+    void changePassword(String email, String rawPassword);
+    PrincipalCacheStatsDTO getPrincipalCacheStats();
 }
\ No newline at end of file
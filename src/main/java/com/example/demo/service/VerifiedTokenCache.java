@@ -0,0 +1,85 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token đã verify -> email (subject), để request lặp lại của cùng phiên bỏ qua parse và verify HMAC.
+ * Thông tin user (role, dealer) nằm ở UserPrincipalCache theo email, nên sửa user chỉ cần invalidate ở đó.
+ *
+ * Khóa là SHA-256 của token (không giữ token trong bộ nhớ). Mỗi mục hết hạn ở thời điểm sớm hơn giữa
+ * hạn của token và ttl-seconds; LRU giới hạn size mục.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private record VerifiedToken(String subject, long expiresAtMillis) {
+    }
+
+    private final long ttlMillis;
+    private final Map<String, VerifiedToken> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public VerifiedTokenCache(@Value("${jwt.cache.size:10000}") int size,
+                              @Value("${jwt.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * Subject của token nếu đã verify và chưa hết hạn, null nếu phải verify lại
+     */
+    public String get(String token) {
+        String key = digest(token);
+        long now = System.currentTimeMillis();
+        VerifiedToken verified;
+        synchronized (entries) {
+            verified = entries.get(key);
+            if (verified != null && verified.expiresAtMillis() <= now) {
+                entries.remove(key);
+                verified = null;
+            }
+        }
+        (verified != null ? hits : misses).incrementAndGet();
+        return verified != null ? verified.subject() : null;
+    }
+
+    public void put(String token, String subject, long tokenExpiresAtMillis) {
+        VerifiedToken verified = new VerifiedToken(subject,
+                Math.min(tokenExpiresAtMillis, System.currentTimeMillis() + ttlMillis));
+        synchronized (entries) {
+            entries.put(digest(token), verified);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
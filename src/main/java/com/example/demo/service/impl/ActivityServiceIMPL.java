@@ -1,16 +1,23 @@
 package com.example.demo.service.impl;
 
+import com.example.demo.dto.ActivityLogDTO;
+import com.example.demo.dto.CursorPageDTO;
 import com.example.demo.entity.ActivityLog;
 import com.example.demo.repository.ActivityLogRepository;
+import com.example.demo.service.ActivityLogWriter;
 import com.example.demo.service.ActivityService;
+import com.example.demo.util.KeysetCursor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -18,40 +25,97 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class ActivityServiceIMPL implements ActivityService {
 
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final ActivityLogRepository repo;
+    private final ActivityLogWriter activityLogWriter;
     private final ObjectMapper objectMapper; // inject từ Spring
 
+    /**
+     * Dựng dòng log ngay (thời điểm, metadata), insert do ActivityLogWriter làm theo lô.
+     * Trong transaction thì chỉ ghi sau khi commit: nghiệp vụ rollback thì không có activity.
+     */
     @Override
-    @Transactional(noRollbackFor = Exception.class) // log lỗi không rollback nghiệp vụ chính
     public void record(Long actorId, String actorEmail,
                        String action, String targetType, String targetId,
                        String message, Map<String, Object> metadata) {
+        ActivityLog entry;
         try {
             String json = (metadata == null || metadata.isEmpty())
                     ? null
                     : objectMapper.writeValueAsString(metadata);
 
-            var log = ActivityLog.builder()
+            entry = ActivityLog.builder()
                     .actorId(actorId)
                     .actorEmail(actorEmail)
                     .action(action)
                     .targetType(targetType)
                     .targetId(targetId)
                     .message(message)
-                    .metadataJson(json)      // NVARCHAR(MAX) cho SQL Server
+                    .metadataJson(json)
+                    .createdAt(Instant.now())
                     .build();
-
-            repo.save(log);
         } catch (Exception e) {
             // Không để logging làm hỏng flow - chỉ log error nếu cần thiết
             log.debug("Activity log record failed: {}", e.getMessage());
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            activityLogWriter.submit(entry);
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                activityLogWriter.submit(entry);
+            }
+        });
     }
 
-    
     @Override
-    public Page<ActivityLog> listMine(Integer actorId, String action, Pageable pageable) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'listMine'");
+    public CursorPageDTO<ActivityLogDTO> listMine(Integer actorId, String action, String cursor, int size,
+                                                  boolean includeMetadata) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        String[] keys = KeysetCursor.decode(cursor, 2);
+        Instant cursorAt = KeysetCursor.key(keys, 0, Instant::parse);
+        Long cursorId = KeysetCursor.key(keys, 1, Long::valueOf);
+
+        // Lấy thừa 1 dòng để biết còn trang sau hay không
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        List<ActivityLogDTO> items = (action == null || action.isBlank())
+                ? repo.findFeed(actorId.longValue(), cursorAt, cursorId, limit)
+                : repo.findFeedByAction(actorId.longValue(), action, cursorAt, cursorId, limit);
+
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items = items.subList(0, pageSize);
+        }
+        if (includeMetadata && !items.isEmpty()) {
+            attachMetadata(items);
+        }
+
+        ActivityLogDTO last = items.isEmpty() ? null : items.get(items.size() - 1);
+        String nextCursor = hasMore ? KeysetCursor.encode(last.getCreatedAt(), last.getId()) : null;
+        return new CursorPageDTO<>(items, items.size(), nextCursor, hasMore);
+    }
+
+    // metadataJson của cả trang đọc một lần theo khóa chính
+    private void attachMetadata(List<ActivityLogDTO> items) {
+        Map<Long, String> metadata = new HashMap<>();
+        for (Object[] row : repo.findMetadata(items.stream().map(ActivityLogDTO::getId).toList())) {
+            metadata.put((Long) row[0], (String) row[1]);
+        }
+        for (ActivityLogDTO item : items) {
+            String json = metadata.get(item.getId());
+            if (json == null) {
+                continue;
+            }
+            try {
+                item.setMetadata(objectMapper.readValue(json, Object.class));
+            } catch (Exception e) {
+                item.setMetadata(json);
+            }
+        }
     }
 }
@@ -1,9 +1,13 @@
 package com.example.demo.service.impl;
 
 import com.example.demo.dto.AuditLogResponseDTO;
+import com.example.demo.dto.AuditWriterStatsDTO;
 import com.example.demo.entity.AuditLog;
 import com.example.demo.repository.AuditLogRepository;
+import com.example.demo.service.AuditArchiveService;
 import com.example.demo.service.AuditLogService;
+import com.example.demo.service.AuditLogWriter;
+import com.example.demo.util.ClientIp;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,41 +18,64 @@ import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
+@RequiredArgsConstructor
 public class AuditLogServiceImpl implements AuditLogService {
 
     private final AuditLogRepository auditLogRepository;
     private final ObjectMapper objectMapper;
-
+    private final AuditLogWriter auditLogWriter;
+    private final AuditArchiveService auditArchiveService;
+    private final ClientIp clientIp;
+
+    /**
+     * Dựng log ngay trên thread gọi (username, IP, details), insert do AuditLogWriter làm theo lô.
+     * Trong transaction thì chỉ đưa vào hàng đợi sau khi commit, như khi log còn insert cùng transaction.
+     */
     @Override
     public void log(String action, String entityType, String entityId, Object details) {
+        AuditLog auditLog;
         try {
-            HttpServletRequest request = getCurrentRequest();
-            String username = getCurrentUsername();
-
-            AuditLog auditLog = AuditLog.builder()
-                    .action(action)
-                    .entityType(entityType)
-                    .entityId(entityId)
-                    .username(username)
-                    .ipAddress(request != null ? getClientIp(request) : "unknown")
-                    .details(objectMapper.writeValueAsString(details))
-                    .build();
-
-            auditLogRepository.save(auditLog);
-            log.debug("Audit log created: {} {} by {}", action, entityType, username);
+            auditLog = buildLog(action, entityType, entityId, details);
         } catch (Exception e) {
             log.error("Failed to create audit log: {}", e.getMessage(), e);
+            return;
         }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            auditLogWriter.submit(auditLog);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                auditLogWriter.submit(auditLog);
+            }
+        });
+    }
+
+    private AuditLog buildLog(String action, String entityType, String entityId, Object details) throws Exception {
+        HttpServletRequest request = getCurrentRequest();
+        return AuditLog.builder()
+                .action(action)
+                .entityType(entityType)
+                .entityId(entityId)
+                .username(getCurrentUsername())
+                .ipAddress(request != null ? clientIp.resolve(request) : "unknown")
+                .details(objectMapper.writeValueAsString(details))
+                .createdAt(LocalDateTime.now())
+                .build();
     }
 
     @Override
@@ -69,10 +96,22 @@ public class AuditLogServiceImpl implements AuditLogService {
         return auditLogRepository.findByAction(action, pageable).map(this::convertToDTO);
     }
 
+    @Override
+    public AuditWriterStatsDTO getWriterStats() {
+        return auditLogWriter.getStats();
+    }
+
+    @Override
+    public int archiveOldLogs() {
+        return auditArchiveService.archiveOldLogs();
+    }
+
     @Override
     public List<AuditLogResponseDTO> getEntityHistory(String entityType, String entityId) {
-        return auditLogRepository.findByEntityTypeAndEntityId(entityType, entityId)
-                .stream()
+        // Bảng chỉ giữ các ngày gần đây, phần cũ hơn nằm trong segment lưu trữ
+        return Stream.concat(
+                        auditLogRepository.findByEntityTypeAndEntityId(entityType, entityId).stream(),
+                        auditArchiveService.findEntityHistory(entityType, entityId).stream())
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
@@ -108,15 +147,4 @@ public class AuditLogServiceImpl implements AuditLogService {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         return auth != null ? auth.getName() : "system";
     }
-
-    private String getClientIp(HttpServletRequest request) {
-        String ip = request.getHeader("X-Forwarded-For");
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getHeader("X-Real-IP");
-        }
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getRemoteAddr();
-        }
-        return ip;
-    }
 }
\ No newline at end of file
@@ -1,25 +1,42 @@
 package com.example.demo.service.impl;
 
 import com.example.demo.service.InstallmentService;
+import com.example.demo.dto.CursorPageDTO;
 import com.example.demo.dto.InstallmentRequest;
 import com.example.demo.dto.OrderDTO;
 import com.example.demo.dto.OrderDetailResponseDTO;
 import com.example.demo.dto.OrderResponseDTO;
 import com.example.demo.entity.*;
 import com.example.demo.repository.*;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.ConflictException;
+import com.example.demo.service.InventoryReservationService;
 import com.example.demo.service.InventoryService;
+import com.example.demo.service.InventoryVelocityService;
 import com.example.demo.service.OrderService;
+import com.example.demo.service.PricingEngine;
+import com.example.demo.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,6 +45,9 @@ import java.util.stream.Collectors;
 public class OrderServiceImpl implements OrderService {
 
     private static final Logger log = LoggerFactory.getLogger(OrderServiceImpl.class);
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final String INSERT_DETAIL_SQL = "INSERT INTO order_detail " +
+            "(order_id, vehicle_id, vin, engine_number, quantity, unit_price, total_amount) VALUES (?, ?, ?, ?, ?, ?, ?)";
 
     private final OrderRepository orderRepository;
     private final OrderDetailRepository orderDetailRepository;
@@ -35,6 +55,10 @@ public class OrderServiceImpl implements OrderService {
     private final QuoteRepository quoteRepository;
     private final VehicleRepository vehicleRepository;
     private final InventoryService  inventoryService;
+    private final InventoryReservationService inventoryReservationService;
+    private final InventoryVelocityService inventoryVelocityService;
+    private final PricingEngine pricingEngine;
+    private final JdbcTemplate jdbcTemplate;
 
     @Override
     public List<OrderResponseDTO> getAllOrders() {
@@ -42,6 +66,57 @@ public class OrderServiceImpl implements OrderService {
                 .map(this::convertToResponseDTO)
                 .collect(Collectors.toList());
     }
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDTO<OrderResponseDTO> getOrdersPage(Integer dealerId, String status, String approvalStatus,
+                                                         String paymentStatus, LocalDate fromDate, LocalDate toDate,
+                                                         String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        String[] keys = KeysetCursor.decode(cursor, 2);
+
+        // Lấy thừa 1 dòng để biết còn trang sau hay không
+        List<Order> orders = orderRepository.findPage(dealerId,
+                parseFilter(Order.OrderStatus.class, "status", status),
+                parseFilter(Order.OrderApprovalStatus.class, "approvalStatus", approvalStatus),
+                parseFilter(Order.PaymentStatus.class, "paymentStatus", paymentStatus),
+                fromDate, toDate,
+                KeysetCursor.key(keys, 0, LocalDate::parse),
+                KeysetCursor.key(keys, 1, Integer::valueOf),
+                PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = orders.size() > pageSize;
+        if (hasMore) {
+            orders = orders.subList(0, pageSize);
+        }
+
+        // Chi tiết của cả trang trong một query thay vì một query mỗi đơn
+        Map<Integer, List<OrderDetail>> detailsByOrder = orders.isEmpty() ? Map.of()
+                : orderDetailRepository.findByOrderIdIn(orders.stream().map(Order::getId).collect(Collectors.toList()))
+                        .stream()
+                        .collect(Collectors.groupingBy(OrderDetail::getOrderId));
+
+        List<OrderResponseDTO> items = orders.stream()
+                .map(o -> convertToResponseDTO(o, detailsByOrder.getOrDefault(o.getId(), List.of())))
+                .collect(Collectors.toList());
+
+        Order last = orders.isEmpty() ? null : orders.get(orders.size() - 1);
+        String nextCursor = hasMore ? KeysetCursor.encode(last.getOrderDate(), last.getId()) : null;
+        return new CursorPageDTO<>(items, items.size(), nextCursor, hasMore);
+    }
+
+    // Giá trị lọc không thuộc enum -> 400 kèm danh sách giá trị hợp lệ
+    private static <E extends Enum<E>> E parseFilter(Class<E> type, String param, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid " + param + ": " + value + ". Allowed: "
+                    + Arrays.toString(type.getEnumConstants()));
+        }
+    }
+
     @Override
     public OrderResponseDTO getOrderById(Integer id) {
         Order order = orderRepository.findById(id)
@@ -109,15 +184,18 @@ public class OrderServiceImpl implements OrderService {
             BigDecimal totalDiscount = BigDecimal.ZERO;
             List<OrderDetail> orderDetails = new ArrayList<>();
 
-            for (QuoteDetail quoteDetail : quoteDetails) {
-                OrderDetail orderDetail = new OrderDetail();
-                orderDetail.setVehicleId(quoteDetail.getVehicleId());
-                orderDetail.setQuantity(quoteDetail.getQuantity());
-                orderDetail.setUnitPrice(quoteDetail.getUnitPrice());
+            // Nạp toàn bộ xe của quote trong một query, định giá trong bộ nhớ
+            Map<Integer, Vehicle> vehicles = vehicleRepository.findAllById(quoteDetails.stream()
+                            .map(QuoteDetail::getVehicleId)
+                            .collect(Collectors.toSet()))
+                    .stream()
+                    .collect(Collectors.toMap(Vehicle::getId, v -> v));
 
-                // LẤY THÔNG TIN VEHICLE VÀ GÁN VIN, ENGINE NUMBER
-                Vehicle vehicle = vehicleRepository.findById(quoteDetail.getVehicleId())
-                        .orElseThrow(() -> new RuntimeException("Không tìm thấy xe với ID: " + quoteDetail.getVehicleId()));
+            for (QuoteDetail quoteDetail : quoteDetails) {
+                Vehicle vehicle = vehicles.get(quoteDetail.getVehicleId());
+                if (vehicle == null) {
+                    throw new RuntimeException("Không tìm thấy xe với ID: " + quoteDetail.getVehicleId());
+                }
 
                 // KIỂM TRA VÀ GÁN VIN, ENGINE NUMBER
                 if (vehicle.getVin() == null || vehicle.getVin().trim().isEmpty()) {
@@ -127,27 +205,14 @@ public class OrderServiceImpl implements OrderService {
                     throw new RuntimeException("Xe với ID " + quoteDetail.getVehicleId() + " chưa có số máy (Engine Number)");
                 }
 
+                PricingEngine.LinePrice price = pricingEngine.priceLine(quoteDetail);
+                OrderDetail orderDetail = toOrderDetail(quoteDetail, price);
                 orderDetail.setVin(vehicle.getVin());
                 orderDetail.setEngineNumber(vehicle.getEngineNumber());
 
-                BigDecimal promotionDiscount = quoteDetail.getPromotionDiscount();
-                BigDecimal grossAmount = quoteDetail.getUnitPrice().multiply(BigDecimal.valueOf(quoteDetail.getQuantity()));
-                BigDecimal discountAmount = BigDecimal.ZERO;
-                BigDecimal netAmount = grossAmount;
-
-                if (promotionDiscount != null && promotionDiscount.compareTo(BigDecimal.ZERO) > 0) {
-                    BigDecimal discountPercent = promotionDiscount.divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_UP);
-                    discountAmount = grossAmount.multiply(discountPercent).setScale(2, RoundingMode.HALF_UP);
-                    netAmount = grossAmount.subtract(discountAmount).setScale(2, RoundingMode.HALF_UP);
-                }
-
-                orderDetail.setTotalAmount(netAmount);
-                totalAmount = totalAmount.add(netAmount);
-                totalDiscount = totalDiscount.add(discountAmount);
+                totalAmount = totalAmount.add(orderDetail.getTotalAmount());
+                totalDiscount = totalDiscount.add(price.discount());
                 orderDetails.add(orderDetail);
-
-                log.info("Đã gán thông tin xe - Vehicle ID: {}, VIN: {}, Engine: {}",
-                        vehicle.getId(), vehicle.getVin(), vehicle.getEngineNumber());
             }
 
             order.setTotalAmount(totalAmount);
@@ -179,18 +244,35 @@ public class OrderServiceImpl implements OrderService {
             for (OrderDetail detail : orderDetails) {
                 detail.setOrderId(savedOrder.getId());
             }
-            orderDetailRepository.saveAll(orderDetails);
+            insertDetails(orderDetails);
 
             log.info("Order created successfully - ID: {}, Quote ID: {}, Customer ID: {}, Total Vehicles: {}",
                     savedOrder.getId(), orderDTO.getQuoteId(), customerId, orderDetails.size());
-            return convertToResponseDTO(savedOrder);
+            return convertToResponseDTO(savedOrder, orderDetails);
 
+        } catch (DataIntegrityViolationException e) {
+            // Chỉ lỗi trùng unique quote_id (request song song đã tạo order cho quote này) mới là 409
+            if (isQuoteUniqueViolation(e)) {
+                throw new ConflictException("Order already exists for quote: " + orderDTO.getQuoteId());
+            }
+            log.error("Error creating order: {}", e.getMessage(), e);
+            throw e;
         } catch (Exception e) {
             log.error("Error creating order: {}", e.getMessage(), e);
             throw new RuntimeException("Lỗi server khi tạo đơn hàng: " + e.getMessage());
         }
     }
 
+    static boolean isQuoteUniqueViolation(DataIntegrityViolationException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException cve) {
+                String name = cve.getConstraintName();
+                return name != null && name.toLowerCase().contains(Order.QUOTE_UNIQUE_CONSTRAINT);
+            }
+        }
+        return false;
+    }
+
     @Transactional
     public OrderResponseDTO confirmDelivery(Integer orderId) {
         Order order = orderRepository.findById(orderId)
@@ -201,6 +283,9 @@ public class OrderServiceImpl implements OrderService {
             throw new RuntimeException("Order must be COMPLETED or APPROVED before delivery confirmation");
         }
 
+        // Hàng đã giữ khi duyệt quote (nếu reservation chưa hết hạn)
+        Map<Integer, Integer> reservedByVehicle = inventoryReservationService.getActiveDealerReservations(order.getQuoteId());
+
         // Kiểm tra VIN và Engine Number
         List<OrderDetail> orderDetails = orderDetailRepository.findByOrderId(orderId);
         for (OrderDetail detail : orderDetails) {
@@ -208,9 +293,10 @@ public class OrderServiceImpl implements OrderService {
                 throw new RuntimeException("Vehicle VIN and Engine Number must be assigned before delivery");
             }
 
-            // Kiểm tra tồn kho đại lý
-            boolean hasSufficientInventory = inventoryService.checkDealerInventory(
-                    order.getDealerId(), detail.getVehicleId(), detail.getQuantity());
+            // Kiểm tra tồn kho đại lý cho phần chưa được giữ
+            int uncovered = detail.getQuantity() - reservedByVehicle.getOrDefault(detail.getVehicleId(), 0);
+            boolean hasSufficientInventory = uncovered <= 0 || inventoryService.checkDealerInventory(
+                    order.getDealerId(), detail.getVehicleId(), uncovered);
 
             if (!hasSufficientInventory) {
                 throw new RuntimeException("Insufficient inventory for vehicle: " + detail.getVehicleId() +
@@ -218,9 +304,14 @@ public class OrderServiceImpl implements OrderService {
             }
         }
 
-        // Trừ tồn kho đại lý
+        // Trừ tồn kho đại lý: ưu tiên phần đã giữ, phần còn lại trừ từ available
         for (OrderDetail detail : orderDetails) {
-            inventoryService.deductDealerInventory(order.getDealerId(), detail.getVehicleId(), detail.getQuantity());
+            int consumed = inventoryReservationService.consumeForDelivery(
+                    order.getQuoteId(), order.getDealerId(), detail.getVehicleId(), detail.getQuantity());
+            if (detail.getQuantity() > consumed) {
+                inventoryService.deductDealerInventory(order.getDealerId(), detail.getVehicleId(), detail.getQuantity() - consumed);
+            }
+            inventoryVelocityService.recordDelivery(order.getDealerId(), detail.getVehicleId(), detail.getQuantity());
 
             log.info("Deducted inventory for delivery - Order: {}, Vehicle: {}, Dealer: {}, VIN: {}, Quantity: {}",
                     orderId, detail.getVehicleId(), order.getDealerId(), detail.getVin(), detail.getQuantity());
@@ -272,30 +363,16 @@ public class OrderServiceImpl implements OrderService {
         List<OrderDetail> orderDetails = new ArrayList<>();
 
         for (QuoteDetail quoteDetail : quoteDetails) {
-            OrderDetail orderDetail = new OrderDetail();
+            PricingEngine.LinePrice price = pricingEngine.priceLine(quoteDetail);
+            OrderDetail orderDetail = toOrderDetail(quoteDetail, price);
             orderDetail.setOrderId(id);
-            orderDetail.setVehicleId(quoteDetail.getVehicleId());
-            orderDetail.setQuantity(quoteDetail.getQuantity());
-            orderDetail.setUnitPrice(quoteDetail.getUnitPrice());
-
-            BigDecimal promotionDiscount = quoteDetail.getPromotionDiscount();
-            BigDecimal grossAmount = quoteDetail.getUnitPrice().multiply(BigDecimal.valueOf(quoteDetail.getQuantity()));
-            BigDecimal discountAmount = BigDecimal.ZERO;
-            BigDecimal netAmount = grossAmount;
-
-            if (promotionDiscount != null && promotionDiscount.compareTo(BigDecimal.ZERO) > 0) {
-                BigDecimal discountPercent = promotionDiscount.divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_UP);
-                discountAmount = grossAmount.multiply(discountPercent).setScale(2, RoundingMode.HALF_UP);
-                netAmount = grossAmount.subtract(discountAmount).setScale(2, RoundingMode.HALF_UP);
-            }
 
-            orderDetail.setTotalAmount(netAmount);
-            totalAmount = totalAmount.add(netAmount);
-            totalDiscount = totalDiscount.add(discountAmount);
+            totalAmount = totalAmount.add(orderDetail.getTotalAmount());
+            totalDiscount = totalDiscount.add(price.discount());
             orderDetails.add(orderDetail);
         }
 
-        orderDetailRepository.saveAll(orderDetails);
+        insertDetails(orderDetails);
         existingOrder.setTotalAmount(totalAmount);
         existingOrder.setTotalDiscount(totalDiscount);
 
@@ -306,7 +383,7 @@ public class OrderServiceImpl implements OrderService {
         existingOrder.setRemainingAmount(remainingAmount);
 
         Order updatedOrder = orderRepository.save(existingOrder);
-        return convertToResponseDTO(updatedOrder);
+        return convertToResponseDTO(updatedOrder, orderDetails);
     }
 
     @Override
@@ -323,7 +400,63 @@ public class OrderServiceImpl implements OrderService {
         return List.of();
     }
 
+    /**
+     * Dòng đơn hàng từ dòng báo giá: thành tiền sau khuyến mãi (promotionDiscount là %)
+     */
+    private OrderDetail toOrderDetail(QuoteDetail quoteDetail, PricingEngine.LinePrice price) {
+        OrderDetail orderDetail = new OrderDetail();
+        orderDetail.setVehicleId(quoteDetail.getVehicleId());
+        orderDetail.setQuantity(quoteDetail.getQuantity());
+        orderDetail.setUnitPrice(quoteDetail.getUnitPrice());
+        orderDetail.setTotalAmount(price.net());
+        return orderDetail;
+    }
+
+    /**
+     * Insert các dòng đơn hàng bằng một lô JDBC (rewriteBatchedStatements -> một câu INSERT nhiều dòng),
+     * id IDENTITY lấy lại qua generated keys để dựng response không cần đọc lại
+     */
+    private void insertDetails(List<OrderDetail> details) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_DETAIL_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        OrderDetail d = details.get(i);
+                        ps.setInt(1, d.getOrderId());
+                        ps.setInt(2, d.getVehicleId());
+                        ps.setString(3, d.getVin());
+                        ps.setString(4, d.getEngineNumber());
+                        ps.setInt(5, d.getQuantity());
+                        ps.setBigDecimal(6, d.getUnitPrice());
+                        ps.setBigDecimal(7, d.getTotalAmount());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return details.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < keys.size() && i < details.size(); i++) {
+            Object key = keys.get(i).values().iterator().next();
+            details.get(i).setId(((Number) key).intValue());
+        }
+    }
+
     private OrderResponseDTO convertToResponseDTO(Order order) {
+        List<OrderDetail> details;
+        try {
+            details = orderDetailRepository.findByOrderId(order.getId());
+        } catch (Exception e) {
+            log.warn("Could not fetch orderDetails for order {}: {}", order.getId(), e.getMessage());
+            details = List.of();
+        }
+        return convertToResponseDTO(order, details);
+    }
+
+    private OrderResponseDTO convertToResponseDTO(Order order, List<OrderDetail> details) {
         OrderResponseDTO dto = new OrderResponseDTO();
         dto.setId(order.getId());
         dto.setQuoteId(order.getQuoteId());
@@ -345,16 +478,9 @@ public class OrderServiceImpl implements OrderService {
         dto.setApprovedAt(order.getApprovedAt());
         dto.setApprovalNotes(order.getApprovalNotes());
         
-        try {
-            List<OrderDetail> details = orderDetailRepository.findByOrderId(order.getId());
-            List<OrderDetailResponseDTO> detailDTOs = details.stream()
-                    .map(this::convertToDetailResponseDTO)
-                    .collect(Collectors.toList());
-            dto.setOrderDetails(detailDTOs);
-        } catch (Exception e) {
-            log.warn("Could not fetch orderDetails for order {}: {}", order.getId(), e.getMessage());
-            dto.setOrderDetails(new ArrayList<>());
-        }
+        dto.setOrderDetails(details.stream()
+                .map(this::convertToDetailResponseDTO)
+                .collect(Collectors.toList()));
 
         return dto;
     }
@@ -6,12 +6,17 @@ import com.example.demo.entity.Promotion;
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.repository.PromotionRepository;
+import com.example.demo.service.PromotionIndex;
 import com.example.demo.service.PromotionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -22,6 +27,7 @@ public class PromotionServiceIMPL implements PromotionService {
 
     private final PromotionRepository promotionRepository;
     private final UserRepository userRepository;
+    private final PromotionIndex promotionIndex;
 
     @Override
     @Transactional(readOnly = true)
@@ -70,6 +76,7 @@ public class PromotionServiceIMPL implements PromotionService {
             promotion.setCreatedBy(creator);
 
             Promotion savedPromotion = promotionRepository.save(promotion);
+            promotionIndex.onSaved(savedPromotion);
             return convertToResponseDTO(savedPromotion);
 
         } catch (Exception e) {
@@ -116,6 +123,7 @@ public class PromotionServiceIMPL implements PromotionService {
             }
 
             Promotion updatedPromotion = promotionRepository.save(existingPromotion);
+            promotionIndex.onSaved(updatedPromotion);
             return convertToResponseDTO(updatedPromotion);
 
         } catch (Exception e) {
@@ -131,9 +139,44 @@ public class PromotionServiceIMPL implements PromotionService {
                 .orElseThrow(() -> new RuntimeException("Khuyến mãi không tồn tại với ID: " + id));
 
         promotionRepository.delete(promotion);
+        promotionIndex.onDeleted(id);
         log.debug("Deleted promotion with ID: {}", id);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<PromotionResponseDTO> getActivePromotions(Integer dealerId, LocalDate date) {
+        List<Integer> ids = promotionIndex.findActive(dealerId, date != null ? date : LocalDate.now()).stream()
+                .map(PromotionIndex.Entry::id)
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return promotionRepository.findAllById(ids).stream()
+                .map(this::convertToResponseDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Quét hằng ngày: khuyến mãi ACTIVE đã qua ngày kết thúc -> EXPIRED bằng một câu UPDATE, rồi nạp lại chỉ mục
+     */
+    @Override
+    @Scheduled(cron = "${promotion.expiry.cron:0 1 0 * * *}")
+    @Transactional
+    public int expireEndedPromotions() {
+        int expired = promotionRepository.expireEnded(LocalDate.now());
+        if (expired > 0) {
+            log.info("Expired {} ended promotions", expired);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    promotionIndex.reload();
+                }
+            });
+        }
+        return expired;
+    }
+
     private PromotionResponseDTO convertToResponseDTO(Promotion promotion) {
         PromotionResponseDTO dto = new PromotionResponseDTO();
         dto.setId(promotion.getId());
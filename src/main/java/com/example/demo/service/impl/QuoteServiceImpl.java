@@ -1,26 +1,37 @@
 package com.example.demo.service.impl;
 
+import com.example.demo.dto.CursorPageDTO;
 import com.example.demo.dto.QuoteDTO;
 import com.example.demo.dto.QuoteDetailDTO;
 import com.example.demo.dto.QuoteDetailResponseDTO;
 import com.example.demo.dto.QuoteResponseDTO;
 import com.example.demo.entity.*;
+import com.example.demo.exception.BadRequestException;
 import com.example.demo.repository.CustomerRepository;
 import com.example.demo.repository.QuoteDetailRepository;
 import com.example.demo.repository.QuoteRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.service.PricingEngine;
+import com.example.demo.service.PromotionIndex;
+import com.example.demo.service.QuoteCalculationService;
+import com.example.demo.service.QuoteExpiryService;
 import com.example.demo.service.QuoteService;
+import com.example.demo.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -32,12 +43,40 @@ public class QuoteServiceImpl implements QuoteService {
     private final QuoteDetailRepository quoteDetailRepository;
     private final UserRepository userRepository;
     private final CustomerRepository customerRepository;
+    private final QuoteExpiryService quoteExpiryService;
+    private final QuoteCalculationService quoteCalculationService;
+    private final PricingEngine pricingEngine;
+    private final PromotionIndex promotionIndex;
+
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int DETAIL_BATCH_SIZE = 500;
 
     @Override
     public List<QuoteResponseDTO> getAllQuotes() {
-        return quoteRepository.findAll().stream()
-                .map(this::convertToResponseDTO)
-                .collect(Collectors.toList());
+        return convertToResponseDTOs(quoteRepository.findAll());
+    }
+
+    @Override
+    public CursorPageDTO<QuoteResponseDTO> getQuotesPage(Integer customerId, Integer userId, Integer dealerId,
+                                                         String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        String[] keys = KeysetCursor.decode(cursor, 2);
+
+        // Lấy thừa 1 dòng để biết còn trang sau hay không
+        List<Quote> quotes = quoteRepository.findPage(customerId, userId, dealerId,
+                KeysetCursor.key(keys, 0, LocalDate::parse),
+                KeysetCursor.key(keys, 1, Integer::valueOf),
+                PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = quotes.size() > pageSize;
+        if (hasMore) {
+            quotes = quotes.subList(0, pageSize);
+        }
+
+        List<QuoteResponseDTO> items = convertToResponseDTOs(quotes);
+        Quote last = quotes.isEmpty() ? null : quotes.get(quotes.size() - 1);
+        String nextCursor = hasMore ? KeysetCursor.encode(last.getCreatedDate(), last.getId()) : null;
+        return new CursorPageDTO<>(items, items.size(), nextCursor, hasMore);
     }
 
     @Override
@@ -50,20 +89,14 @@ public class QuoteServiceImpl implements QuoteService {
     @Override
     public List<QuoteResponseDTO> getQuotesByCustomerId(Integer customerId) {
         if (customerId == null) {
-            return quoteRepository.findByCustomerIdIsNull().stream()
-                    .map(this::convertToResponseDTO)
-                    .collect(Collectors.toList());
+            return convertToResponseDTOs(quoteRepository.findByCustomerIdIsNull());
         }
-        return quoteRepository.findByCustomerId(customerId).stream()
-                .map(this::convertToResponseDTO)
-                .collect(Collectors.toList());
+        return convertToResponseDTOs(quoteRepository.findByCustomerId(customerId));
     }
 
     @Override
     public List<QuoteResponseDTO> getQuotesByUserId(Integer userId) {
-        return quoteRepository.findByUserId(userId).stream()
-                .map(this::convertToResponseDTO)
-                .collect(Collectors.toList());
+        return convertToResponseDTOs(quoteRepository.findByUserId(userId));
     }
 
     @Override
@@ -135,10 +168,13 @@ public class QuoteServiceImpl implements QuoteService {
             processQuoteDetailsForUpdate(id, quoteDTO, existingQuote);
 
             Quote updatedQuote = quoteRepository.save(existingQuote);
+            quoteCalculationService.invalidate(id);
             log.debug("Quote updated successfully - ID: {}, Total Amount: {}", id, existingQuote.getTotalAmount());
 
             return convertToResponseDTO(updatedQuote);
 
+        } catch (BadRequestException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error updating quote ID {}: {}", id, e.getMessage(), e);
             throw new RuntimeException("Lỗi server khi cập nhật báo giá: " + e.getMessage());
@@ -154,6 +190,7 @@ public class QuoteServiceImpl implements QuoteService {
         Integer customerId = quote.getCustomerId();
         quoteDetailRepository.deleteByQuoteId(id);
         quoteRepository.deleteById(id);
+        quoteCalculationService.invalidate(id);
 
         log.info("Quote deleted successfully - ID: {}", id);
         if (customerId != null) {
@@ -184,16 +221,8 @@ public class QuoteServiceImpl implements QuoteService {
     }
 
     @Override
-    public void expireOldQuotes() {
-        LocalDate today = LocalDate.now();
-        List<Quote> expiredQuotes = quoteRepository.findExpiredQuotes(today);
-
-        for (Quote quote : expiredQuotes) {
-            quote.setStatus(Quote.QuoteStatus.EXPIRED);
-        }
-
-        quoteRepository.saveAll(expiredQuotes);
-        log.info("Expired {} old quotes", expiredQuotes.size());
+    public int expireOldQuotes() {
+        return quoteExpiryService.expireOldQuotes();
     }
 
     // ========================= PRIVATE METHODS =========================
@@ -250,8 +279,9 @@ public class QuoteServiceImpl implements QuoteService {
             List<QuoteDetail> quoteDetails = new ArrayList<>();
             BigDecimal totalAmount = BigDecimal.ZERO;
 
+            BigDecimal defaultPromotion = promotionIndex.bestDiscount(quote.getDealerId(), quote.getCreatedDate());
             for (QuoteDetailDTO detailDTO : quoteDTO.getQuoteDetails()) {
-                QuoteDetail detail = createQuoteDetail(detailDTO);
+                QuoteDetail detail = createQuoteDetail(detailDTO, defaultPromotion);
                 quoteDetails.add(detail);
                 totalAmount = totalAmount.add(detail.getTotalAmount());
             }
@@ -271,50 +301,67 @@ public class QuoteServiceImpl implements QuoteService {
         }
     }
 
+    /**
+     * Cập nhật chi tiết theo diff với dòng đã lưu (khóa vehicleId): chỉ insert xe mới, update dòng thay đổi
+     * (dirty checking bỏ qua dòng không đổi) và xoá xe không còn trong DTO.
+     */
     private void processQuoteDetailsForUpdate(Integer quoteId, QuoteDTO quoteDTO, Quote existingQuote) {
-        // Xóa details cũ
-        quoteDetailRepository.deleteByQuoteId(quoteId);
-
-        if (quoteDTO.getQuoteDetails() != null && !quoteDTO.getQuoteDetails().isEmpty()) {
-            List<QuoteDetail> quoteDetails = new ArrayList<>();
-            BigDecimal totalAmount = BigDecimal.ZERO;
+        Map<Integer, QuoteDetail> storedByVehicle = new HashMap<>();
+        List<QuoteDetail> toDelete = new ArrayList<>();
+        for (QuoteDetail stored : quoteDetailRepository.findByQuoteId(quoteId)) {
+            if (storedByVehicle.putIfAbsent(stored.getVehicleId(), stored) != null) {
+                toDelete.add(stored);
+            }
+        }
 
+        List<QuoteDetail> toInsert = new ArrayList<>();
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        if (quoteDTO.getQuoteDetails() != null) {
+            BigDecimal defaultPromotion = promotionIndex.bestDiscount(existingQuote.getDealerId(), existingQuote.getCreatedDate());
             for (QuoteDetailDTO detailDTO : quoteDTO.getQuoteDetails()) {
-                QuoteDetail detail = createQuoteDetail(detailDTO);
-                detail.setQuoteId(quoteId);
-                quoteDetails.add(detail);
+                QuoteDetail detail = storedByVehicle.remove(detailDTO.getVehicleId());
+                if (detail == null) {
+                    detail = new QuoteDetail();
+                    detail.setQuoteId(quoteId);
+                    toInsert.add(detail);
+                    applyQuoteDetail(detail, detailDTO, defaultPromotion);
+                } else {
+                    // Dòng đã lưu không ghi khuyến mãi thì giữ % cũ, không tự gán khuyến mãi đang chạy
+                    applyQuoteDetail(detail, detailDTO, detail.getPromotionDiscount());
+                }
                 totalAmount = totalAmount.add(detail.getTotalAmount());
             }
+        }
+        toDelete.addAll(storedByVehicle.values());
 
-            quoteDetailRepository.saveAll(quoteDetails);
-            existingQuote.setTotalAmount(totalAmount);
-        } else {
-            existingQuote.setTotalAmount(BigDecimal.ZERO);
+        if (!toDelete.isEmpty()) {
+            quoteDetailRepository.deleteAllInBatch(toDelete);
+        }
+        if (!toInsert.isEmpty()) {
+            quoteDetailRepository.saveAll(toInsert);
         }
+        existingQuote.setTotalAmount(totalAmount);
+
+        log.debug("Quote {} details diffed - Inserted: {}, Deleted: {}", quoteId, toInsert.size(), toDelete.size());
     }
 
-    private QuoteDetail createQuoteDetail(QuoteDetailDTO detailDTO) {
+    private QuoteDetail createQuoteDetail(QuoteDetailDTO detailDTO, BigDecimal defaultPromotion) {
         QuoteDetail detail = new QuoteDetail();
+        applyQuoteDetail(detail, detailDTO, defaultPromotion);
+        return detail;
+    }
+
+    /**
+     * defaultPromotion: % dùng khi DTO không ghi khuyến mãi — khuyến mãi đang áp dụng (PromotionIndex) với dòng mới,
+     * % đã lưu với dòng cũ
+     */
+    private void applyQuoteDetail(QuoteDetail detail, QuoteDetailDTO detailDTO, BigDecimal defaultPromotion) {
         detail.setVehicleId(detailDTO.getVehicleId());
         detail.setQuantity(detailDTO.getQuantity());
         detail.setUnitPrice(detailDTO.getUnitPrice());
         detail.setPromotionDiscount(detailDTO.getPromotionDiscount() != null ?
-                detailDTO.getPromotionDiscount() : BigDecimal.ZERO);
-
-        // Tính toán tổng tiền
-        BigDecimal grossAmount = detailDTO.getUnitPrice()
-                .multiply(BigDecimal.valueOf(detailDTO.getQuantity()));
-        BigDecimal netAmount = grossAmount;
-
-        if (detail.getPromotionDiscount().compareTo(BigDecimal.ZERO) > 0) {
-            BigDecimal discountPercent = detail.getPromotionDiscount()
-                    .divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_UP);
-            BigDecimal discountAmount = grossAmount.multiply(discountPercent).setScale(2, RoundingMode.HALF_UP);
-            netAmount = grossAmount.subtract(discountAmount).setScale(2, RoundingMode.HALF_UP);
-        }
-
-        detail.setTotalAmount(netAmount);
-        return detail;
+                detailDTO.getPromotionDiscount() : defaultPromotion);
+        detail.setTotalAmount(pricingEngine.priceLine(detail).net());
     }
 
     private void updateBasicQuoteInfo(Quote quote, QuoteDTO quoteDTO) {
@@ -334,18 +381,43 @@ public class QuoteServiceImpl implements QuoteService {
             return;
         }
 
-        List<Integer> vehicleIds = quoteDTO.getQuoteDetails().stream()
-                .map(QuoteDetailDTO::getVehicleId)
-                .collect(Collectors.toList());
-
-        boolean hasDuplicates = vehicleIds.size() != vehicleIds.stream().distinct().count();
+        // Mỗi xe một dòng (uk_quote_detail_vehicle): trùng xe trả 400 thay vì để insert vi phạm constraint
+        Set<Integer> vehicleIds = new HashSet<>();
+        for (QuoteDetailDTO detail : quoteDTO.getQuoteDetails()) {
+            if (detail.getVehicleId() == null) {
+                throw new BadRequestException("Vehicle ID is required for every quote detail.");
+            }
+            if (!vehicleIds.add(detail.getVehicleId())) {
+                throw new BadRequestException("Duplicate vehicle ID " + detail.getVehicleId()
+                        + " found in quote details. Each vehicle can only appear once.");
+            }
+        }
+    }
 
-        if (hasDuplicates) {
-            throw new RuntimeException("Duplicate vehicle IDs found in quote details. Each vehicle can only appear once.");
+    /**
+     * Chuyển nhiều báo giá: chi tiết lấy theo lô DETAIL_BATCH_SIZE quote id mỗi query rồi gom theo quoteId
+     */
+    private List<QuoteResponseDTO> convertToResponseDTOs(List<Quote> quotes) {
+        Map<Integer, List<QuoteDetail>> detailsByQuote = new HashMap<>();
+        for (int from = 0; from < quotes.size(); from += DETAIL_BATCH_SIZE) {
+            List<Integer> quoteIds = quotes.subList(from, Math.min(from + DETAIL_BATCH_SIZE, quotes.size())).stream()
+                    .map(Quote::getId)
+                    .collect(Collectors.toList());
+            for (QuoteDetail detail : quoteDetailRepository.findByQuoteIdInOrderById(quoteIds)) {
+                detailsByQuote.computeIfAbsent(detail.getQuoteId(), k -> new ArrayList<>()).add(detail);
+            }
         }
+
+        return quotes.stream()
+                .map(q -> convertToResponseDTO(q, detailsByQuote.getOrDefault(q.getId(), List.of())))
+                .collect(Collectors.toList());
     }
 
     private QuoteResponseDTO convertToResponseDTO(Quote quote) {
+        return convertToResponseDTO(quote, quoteDetailRepository.findByQuoteIdOrderById(quote.getId()));
+    }
+
+    private QuoteResponseDTO convertToResponseDTO(Quote quote, List<QuoteDetail> details) {
         QuoteResponseDTO dto = new QuoteResponseDTO();
         dto.setId(quote.getId());
         dto.setCustomerId(quote.getCustomerId());
@@ -359,9 +431,7 @@ public class QuoteServiceImpl implements QuoteService {
         dto.setApprovedAt(quote.getApprovedAt());
         dto.setApprovalNotes(quote.getApprovalNotes());
 
-        // Lấy quote details
-        List<QuoteDetail> uniqueDetails = quoteDetailRepository.findUniqueByQuoteId(quote.getId());
-        List<QuoteDetailResponseDTO> detailDTOs = uniqueDetails.stream()
+        List<QuoteDetailResponseDTO> detailDTOs = details.stream()
                 .map(this::convertToDetailResponseDTO)
                 .collect(Collectors.toList());
         dto.setQuoteDetails(detailDTOs);
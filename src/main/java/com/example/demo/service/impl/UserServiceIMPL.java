@@ -1,12 +1,15 @@
 package com.example.demo.service.impl;
 
 import com.example.demo.dto.LoginDTO;
+import com.example.demo.dto.PrincipalCacheStatsDTO;
 import com.example.demo.dto.UserDTO;
 import com.example.demo.dto.UserResponseDTO;
 import com.example.demo.entity.User;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.service.JwtService;
+import com.example.demo.service.UserPrincipalCache;
 import com.example.demo.service.UserService;
+import com.example.demo.service.VerifiedTokenCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
@@ -23,6 +26,8 @@ public class UserServiceIMPL implements UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserPrincipalCache userPrincipalCache;
+    private final VerifiedTokenCache verifiedTokenCache;
 
     @Lazy
     private final JwtService jwtService;
@@ -81,6 +86,7 @@ public class UserServiceIMPL implements UserService {
     public UserResponseDTO updateUser(Integer userId, UserDTO userDTO) {
         User existingUser = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng"));
+        String previousEmail = existingUser.getEmail();
 
         if (userDTO.getUsername() != null && !userDTO.getUsername().isEmpty()) {
             existingUser.setUsername(userDTO.getUsername());
@@ -108,6 +114,8 @@ public class UserServiceIMPL implements UserService {
         }
 
         User updatedUser = userRepository.save(existingUser);
+        userPrincipalCache.invalidate(previousEmail);
+        userPrincipalCache.invalidate(updatedUser.getEmail());
         return convertToResponseDTO(updatedUser);
     }
 
@@ -116,6 +124,13 @@ public class UserServiceIMPL implements UserService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng"));
         userRepository.delete(user);
+        userPrincipalCache.invalidate(user.getEmail());
+    }
+
+    @Override
+    public void changePassword(String email, String rawPassword) {
+        userRepository.updatePassword(email, passwordEncoder.encode(rawPassword));
+        userPrincipalCache.invalidate(email);
     }
 
     @Override
@@ -137,6 +152,16 @@ public class UserServiceIMPL implements UserService {
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng với email: " + email));
     }
 
+    @Override
+    public PrincipalCacheStatsDTO getPrincipalCacheStats() {
+        long hits = userPrincipalCache.getHits();
+        long misses = userPrincipalCache.getMisses();
+        double hitRate = hits + misses > 0 ? (double) hits / (hits + misses) : 0.0;
+        return new PrincipalCacheStatsDTO(userPrincipalCache.getCapacity(), userPrincipalCache.size(),
+                hits, misses, hitRate, userPrincipalCache.getInvalidations(),
+                verifiedTokenCache.getHits(), verifiedTokenCache.getMisses());
+    }
+
     private UserResponseDTO convertToResponseDTO(User user) {
         UserResponseDTO dto = new UserResponseDTO();
         dto.setUserId(user.getUserId());
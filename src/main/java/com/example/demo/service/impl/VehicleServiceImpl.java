@@ -11,6 +11,7 @@ import com.example.demo.entity.VehicleType;
 import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.repository.VehicleRepository;
 import com.example.demo.repository.VehicleTypeRepository;
+import com.example.demo.service.InventoryLedger;
 import com.example.demo.service.VehicleService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -19,6 +20,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,6 +32,7 @@ public class VehicleServiceImpl implements VehicleService {
     private final VehicleTypeRepository vtRepo;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final InventoryRepository inventoryRepo;
+    private final Optional<InventoryLedger> inventoryLedger;
 
     @Override
     public VehicleResponseDTO create(VehicleDTO req) {
@@ -84,10 +87,13 @@ public class VehicleServiceImpl implements VehicleService {
 
     @Override
     public List<VehicleResponseDTO> getAll() {
-        List<Inventory> availableInventories = inventoryRepo
-                .findByAvailableQuantityGreaterThanOrderByVehicleIdAsc(0);
-        Map<String, Vehicle> uniqueModels = availableInventories.stream()
-                .map(Inventory::getVehicle)
+        // Ledger bật: lấy danh sách xe còn hàng từ bộ nhớ thay vì quét bảng Inventory
+        List<Vehicle> availableVehicles = inventoryLedger.filter(InventoryLedger::isWarm)
+                .map(ledger -> repo.findAllById(ledger.vehicleIdsInStock()))
+                .orElseGet(() -> inventoryRepo.findByAvailableQuantityGreaterThanOrderByVehicleIdAsc(0).stream()
+                        .map(Inventory::getVehicle)
+                        .collect(Collectors.toList()));
+        Map<String, Vehicle> uniqueModels = availableVehicles.stream()
                 .collect(Collectors.toMap(
                         Vehicle::getModelName,
                         vehicle -> vehicle,
@@ -0,0 +1,150 @@
+package com.example.demo.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * IP client để khóa rate limit và ghi log.
+ *
+ * X-Forwarded-For chỉ được tin khi request đến trực tiếp từ một proxy trong client-ip.trusted-proxies
+ * (IP hoặc CIDR, cách nhau bởi dấu phẩy). Khi đó duyệt XFF từ phải sang trái, bỏ qua các proxy tin cậy,
+ * phần tử đầu tiên không phải proxy là IP client; các phần tử bên trái nó do client tự gửi nên bỏ qua.
+ * Danh sách rỗng (mặc định) -> luôn dùng địa chỉ kết nối.
+ *
+ * Sau reverse proxy (Railway...) mà chưa cấu hình trusted-proxies thì địa chỉ kết nối là của proxy, mọi người dùng
+ * chung một IP: isPerClient() = false để rate limit bỏ bucket theo IP. Chạy không qua proxy thì đặt
+ * client-ip.direct-connections=true.
+ */
+@Slf4j
+@Component
+public class ClientIp {
+
+    private record Cidr(byte[] network, int prefixLength) {
+        boolean contains(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int fullBytes = prefixLength / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixLength % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = (0xFF << (8 - remainingBits)) & 0xFF;
+            return (address[fullBytes] & mask) == (network[fullBytes] & mask);
+        }
+    }
+
+    private static final Pattern IPV4 = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+    private static final Pattern IPV6_CHARS = Pattern.compile("[0-9a-fA-F:.]+");
+
+    private final List<Cidr> trustedProxies;
+    private final boolean directConnections;
+
+    public ClientIp(@Value("${client-ip.trusted-proxies:}") String trustedProxies,
+                    @Value("${client-ip.direct-connections:false}") boolean directConnections) {
+        this.trustedProxies = parse(trustedProxies);
+        this.directConnections = directConnections;
+        if (!isPerClient()) {
+            log.warn("client-ip.trusted-proxies is empty and client-ip.direct-connections=false: "
+                    + "client IPs are not distinguishable, per-IP rate limit buckets are disabled");
+        }
+    }
+
+    /**
+     * true nếu resolve() phân biệt được từng client: có proxy tin cậy, hoặc client kết nối thẳng
+     */
+    public boolean isPerClient() {
+        return directConnections || !trustedProxies.isEmpty();
+    }
+
+    public String resolve(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (forwarded == null || forwarded.isBlank()) {
+            return remoteAddr;
+        }
+        String[] hops = forwarded.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) {
+                continue;
+            }
+            if (!isTrustedProxy(hop)) {
+                return hop;
+            }
+        }
+        // Toàn bộ chuỗi là proxy của mình -> lấy phần tử trái cùng
+        String first = hops[0].trim();
+        return first.isEmpty() ? remoteAddr : first;
+    }
+
+    private boolean isTrustedProxy(String ip) {
+        if (trustedProxies.isEmpty()) {
+            return false;
+        }
+        byte[] address = toBytes(ip);
+        if (address == null) {
+            return false;
+        }
+        for (Cidr cidr : trustedProxies) {
+            if (cidr.contains(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Cidr> parse(String value) {
+        List<Cidr> result = new ArrayList<>();
+        if (value == null || value.isBlank()) {
+            return result;
+        }
+        for (String entry : value.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int slash = trimmed.indexOf('/');
+            byte[] network = toBytes(slash >= 0 ? trimmed.substring(0, slash) : trimmed);
+            if (network == null) {
+                throw new IllegalArgumentException("Invalid client-ip.trusted-proxies entry: " + trimmed);
+            }
+            int prefixLength = slash >= 0 ? Integer.parseInt(trimmed.substring(slash + 1)) : network.length * 8;
+            if (prefixLength < 0 || prefixLength > network.length * 8) {
+                throw new IllegalArgumentException("Invalid prefix length in client-ip.trusted-proxies: " + trimmed);
+            }
+            result.add(new Cidr(network, prefixLength));
+        }
+        return List.copyOf(result);
+    }
+
+    /**
+     * Byte của IP literal; null nếu không phải IP (không tra DNS với giá trị do client gửi)
+     */
+    private static byte[] toBytes(String ip) {
+        if (ip == null || !(IPV4.matcher(ip).matches() || ip.indexOf(':') >= 0 && IPV6_CHARS.matcher(ip).matches())) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(ip).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.util;
+
+import com.example.demo.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Cursor cho phân trang keyset: các giá trị khóa sắp xếp của dòng cuối trang, nối bằng '|' rồi base64 (url-safe).
+ * Client chỉ gửi lại nguyên chuỗi, không cần biết cấu trúc bên trong.
+ */
+public final class KeysetCursor {
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(Object... keys) {
+        String raw = Arrays.stream(keys).map(String::valueOf).collect(Collectors.joining("|"));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Trả về null nếu cursor rỗng (trang đầu); ném BadRequestException (400) nếu cursor không đúng số phần tử
+     */
+    public static String[] decode(String cursor, int expectedParts) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor: " + cursor);
+        }
+        if (parts.length != expectedParts) {
+            throw new BadRequestException("Invalid cursor: " + cursor);
+        }
+        return parts;
+    }
+
+    /**
+     * Đọc khóa thứ index của cursor đã decode bằng parser; null nếu là trang đầu.
+     * Giá trị không parse được (cursor bị sửa tay) -> BadRequestException thay vì lỗi 500.
+     */
+    public static <T> T key(String[] keys, int index, Function<String, T> parser) {
+        if (keys == null) {
+            return null;
+        }
+        try {
+            return parser.apply(keys[index]);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor key: " + keys[index]);
+        }
+    }
+}
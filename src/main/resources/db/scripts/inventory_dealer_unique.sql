@@ -0,0 +1,48 @@
+-- Chạy một lần trên MySQL trước khi deploy bản có uk_inventory_dealer_vehicle_type.
+-- Phân bổ song song cho cặp (đại lý, xe) chưa có dòng kho có thể đã insert nhiều dòng cùng (dealer_id, vehicle_id, inventory_type).
+-- Script gộp các dòng trùng vào dòng id nhỏ nhất (cộng available/reserved), rồi tạo unique constraint.
+-- Chạy từng bước, xem kết quả SELECT trước khi COMMIT.
+
+START TRANSACTION;
+
+-- 1. Các nhóm trùng sẽ được gộp
+SELECT dealer_id, vehicle_id, inventory_type, COUNT(*) AS row_count,
+       SUM(available_quantity) AS merged_available, SUM(reserved_quantity) AS merged_reserved, MIN(id) AS keep_id
+FROM inventory
+WHERE dealer_id IS NOT NULL
+GROUP BY dealer_id, vehicle_id, inventory_type
+HAVING COUNT(*) > 1;
+
+CREATE TEMPORARY TABLE inventory_merge AS
+SELECT MIN(id) AS keep_id, dealer_id, vehicle_id, inventory_type,
+       SUM(available_quantity) AS available_quantity, SUM(reserved_quantity) AS reserved_quantity
+FROM inventory
+WHERE dealer_id IS NOT NULL
+GROUP BY dealer_id, vehicle_id, inventory_type
+HAVING COUNT(*) > 1;
+
+-- 2. Dòng giữ lại nhận tổng số lượng của cả nhóm
+UPDATE inventory i
+JOIN inventory_merge m ON m.keep_id = i.id
+SET i.available_quantity = m.available_quantity,
+    i.reserved_quantity = m.reserved_quantity,
+    i.version = i.version + 1,
+    i.last_updated = NOW();
+
+-- 3. Xoá các dòng trùng còn lại
+DELETE i FROM inventory i
+JOIN inventory_merge m ON m.dealer_id = i.dealer_id AND m.vehicle_id = i.vehicle_id
+    AND m.inventory_type = i.inventory_type
+WHERE i.id <> m.keep_id;
+
+-- Phải trả về 0 trước khi COMMIT
+SELECT COUNT(*) AS remaining_duplicate_groups
+FROM (SELECT 1 FROM inventory WHERE dealer_id IS NOT NULL
+      GROUP BY dealer_id, vehicle_id, inventory_type HAVING COUNT(*) > 1) g;
+
+COMMIT;
+
+DROP TEMPORARY TABLE inventory_merge;
+
+-- 4. Tạo constraint; lỗi ở đây nghĩa là còn dòng trùng -> dừng và kiểm tra lại, không bỏ qua
+ALTER TABLE inventory ADD CONSTRAINT uk_inventory_dealer_vehicle_type UNIQUE (dealer_id, vehicle_id, inventory_type);
@@ -0,0 +1,22 @@
+-- Chạy một lần trên MySQL trước khi deploy bản đặt tên constraint uk_order_quote.
+-- Bản cũ khai báo unique = true trên cột nên unique key của order_table.quote_id mang tên Hibernate tự sinh;
+-- OrderServiceImpl chỉ đổi lỗi trùng thành 409 khi tên constraint là uk_order_quote, nên đổi key cũ sang tên này.
+
+SET @legacy_key = (
+    SELECT s.index_name
+    FROM information_schema.statistics s
+    WHERE s.table_schema = DATABASE()
+      AND s.table_name = 'order_table'
+      AND s.non_unique = 0
+      AND s.index_name <> 'PRIMARY'
+      AND s.index_name <> 'uk_order_quote'
+    GROUP BY s.index_name
+    HAVING COUNT(*) = 1 AND MAX(s.column_name) = 'quote_id'
+    LIMIT 1);
+
+SET @sql = IF(@legacy_key IS NULL,
+    'SELECT ''no legacy quote_id unique key'' AS result',
+    CONCAT('ALTER TABLE order_table RENAME INDEX `', @legacy_key, '` TO uk_order_quote'));
+PREPARE stmt FROM @sql;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,57 @@
+-- Chạy một lần trên MySQL khi QuoteDetailConstraintCheck báo thiếu uk_quote_detail_vehicle.
+-- Cách cập nhật quote cũ (xoá hết rồi insert lại) để sót nhiều dòng cùng (quote_id, vehicle_id).
+-- Script gộp các dòng trùng vào dòng id nhỏ nhất (cộng số lượng, tính lại thành tiền dòng như PricingEngine.priceLine),
+-- tính lại quote.total_amount = tổng thành tiền các dòng, rồi tạo unique constraint.
+-- Chạy từng bước, xem kết quả SELECT trước khi COMMIT.
+
+START TRANSACTION;
+
+-- 1. Các nhóm trùng sẽ được gộp
+SELECT quote_id, vehicle_id, COUNT(*) AS line_count, SUM(quantity) AS merged_quantity, MIN(id) AS keep_id
+FROM quote_detail
+GROUP BY quote_id, vehicle_id
+HAVING COUNT(*) > 1;
+
+CREATE TEMPORARY TABLE quote_detail_merge AS
+SELECT MIN(id) AS keep_id, quote_id, vehicle_id, SUM(quantity) AS quantity
+FROM quote_detail
+GROUP BY quote_id, vehicle_id
+HAVING COUNT(*) > 1;
+
+-- 2. Dòng giữ lại: cộng số lượng, giữ đơn giá và % khuyến mãi của dòng đó, tính lại thành tiền
+UPDATE quote_detail d
+JOIN quote_detail_merge m ON m.keep_id = d.id
+SET d.quantity = m.quantity,
+    d.total_amount = ROUND(d.unit_price * m.quantity
+        - CASE WHEN d.promotion_discount IS NULL OR d.promotion_discount <= 0 THEN 0
+               ELSE ROUND(d.unit_price * m.quantity * ROUND(d.promotion_discount / 100, 4), 2) END, 2);
+
+-- 3. Xoá các dòng trùng còn lại
+DELETE d FROM quote_detail d
+JOIN quote_detail_merge m ON m.quote_id = d.quote_id AND m.vehicle_id = d.vehicle_id
+WHERE d.id <> m.keep_id;
+
+-- 4. Tính lại tổng của các quote bị ảnh hưởng
+UPDATE quote q
+JOIN (SELECT d.quote_id, SUM(d.total_amount) AS total_amount
+      FROM quote_detail d
+      WHERE d.quote_id IN (SELECT quote_id FROM quote_detail_merge)
+      GROUP BY d.quote_id) t ON t.quote_id = q.id
+SET q.total_amount = t.total_amount;
+
+-- 5. Quote đã duyệt có subtotal/VAT/final_total chốt lúc duyệt: không tự sửa, cần duyệt lại bằng tay
+SELECT q.id, q.approval_status, q.total_amount, q.final_total
+FROM quote q
+WHERE q.id IN (SELECT quote_id FROM quote_detail_merge)
+  AND q.final_total IS NOT NULL;
+
+-- Phải trả về 0 trước khi COMMIT
+SELECT COUNT(*) AS remaining_duplicate_groups
+FROM (SELECT 1 FROM quote_detail GROUP BY quote_id, vehicle_id HAVING COUNT(*) > 1) g;
+
+COMMIT;
+
+DROP TEMPORARY TABLE quote_detail_merge;
+
+-- 6. Tạo constraint; lỗi ở đây nghĩa là còn dòng trùng -> dừng và kiểm tra lại, không bỏ qua
+ALTER TABLE quote_detail ADD CONSTRAINT uk_quote_detail_vehicle UNIQUE (quote_id, vehicle_id);
@@ -0,0 +1,130 @@
+package com.example.demo.config;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.UserPrincipal;
+import com.example.demo.service.JwtService;
+import com.example.demo.service.UserPrincipalCache;
+import com.example.demo.service.VerifiedTokenCache;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.security.SecureRandom;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Đo chi phí xác thực JWT mỗi request (vòng lặp đã warm, một thread; lookup user được stub nên không gồm round trip DB).
+ * Không chạy trong build thường: mvn test -Dtest=JwtAuthenticationFilterBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class JwtAuthenticationFilterBenchmarkTest {
+
+    private static final int ROUNDS = 3;
+    private static final int ITERATIONS = 200_000;
+
+    private final JwtService jwtService = new JwtService();
+    private final String token = jwtService.generateToken("bench@example.com", "DEALER_STAFF");
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void verifyPath() throws Exception {
+        // Đường cũ: parse hai lần (lấy email, rồi verify) và dựng MACVerifier mỗi request
+        byte[] legacyKey = new byte[64];
+        new SecureRandom().nextBytes(legacyKey);
+        SignedJWT legacyJwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256),
+                new JWTClaimsSet.Builder().subject("bench@example.com").expirationTime(new Date(System.currentTimeMillis() + 3_600_000)).build());
+        legacyJwt.sign(new MACSigner(legacyKey));
+        String legacyToken = legacyJwt.serialize();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            int verified = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                String email = SignedJWT.parse(legacyToken).getJWTClaimsSet().getSubject();
+                if (SignedJWT.parse(legacyToken).verify(new MACVerifier(legacyKey)) && email != null) {
+                    verified++;
+                }
+            }
+            long legacyNanos = (System.nanoTime() - start) / ITERATIONS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                if (jwtService.verifyAndParse(token) != null) {
+                    verified++;
+                }
+            }
+            long singleParseNanos = (System.nanoTime() - start) / ITERATIONS;
+
+            assertEquals(2 * ITERATIONS, verified);
+            System.out.printf("round %d: parse x2 + new MACVerifier %.1f us, verifyAndParse %.1f us%n",
+                    round, legacyNanos / 1000.0, singleParseNanos / 1000.0);
+        }
+    }
+
+    @Test
+    void filterWithAndWithoutCache() throws Exception {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findPrincipalByEmail(anyString()))
+                .thenReturn(Optional.of(new UserPrincipal(1, "bench@example.com", User.Role.DEALER_STAFF, 1)));
+
+        // ttl 0: mọi request đều miss -> parse, verify và lookup user
+        JwtAuthenticationFilter uncached = new JwtAuthenticationFilter(jwtService,
+                new VerifiedTokenCache(10_000, 0), new UserPrincipalCache(userRepository, 10_000, 0));
+        VerifiedTokenCache tokenCache = new VerifiedTokenCache(10_000, 300);
+        JwtAuthenticationFilter cached = new JwtAuthenticationFilter(jwtService,
+                tokenCache, new UserPrincipalCache(userRepository, 10_000, 60));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long missNanos = run(uncached, ITERATIONS);
+            long hitNanos = run(cached, ITERATIONS);
+            System.out.printf("round %d: filter cache miss %.1f us, cache hit %.1f us per request%n",
+                    round, missNanos / 1000.0, hitNanos / 1000.0);
+        }
+        assertEquals(1, tokenCache.getMisses());
+
+        // Chữ ký bị sửa không lọt qua cache
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        assertTrue(authenticate(cached, tampered) == null);
+    }
+
+    private long run(JwtAuthenticationFilter filter, int iterations) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            assertEquals("bench@example.com", authenticate(filter, token).getName());
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static Authentication authenticate(JwtAuthenticationFilter filter, String jwt) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/quotes");
+        request.setServletPath("/api/quotes");
+        request.addHeader("Authorization", "Bearer " + jwt);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
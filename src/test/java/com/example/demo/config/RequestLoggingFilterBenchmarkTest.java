@@ -0,0 +1,121 @@
+package com.example.demo.config;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.ConsoleAppender;
+import com.example.demo.dto.RequestLogSettingsDTO;
+import com.example.demo.service.RequestLoggingService;
+import com.example.demo.support.IntegrationTest;
+import jakarta.servlet.Filter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Đo thông lượng của RequestLoggingFilter + JwtAuthenticationFilter với cấu hình logback-spring.xml của ứng dụng,
+ * so với kiểu cũ (3 dòng WARN mỗi request, console đồng bộ). Vòng lặp đã warm, một thread.
+ * Không chạy trong build thường: mvn test -Dtest=RequestLoggingFilterBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RequestLoggingFilterBenchmarkTest extends IntegrationTest {
+
+    private static final int ROUNDS = 2;
+    private static final int REQUESTS = 100_000;
+
+    @Autowired
+    private RequestLoggingFilter requestLoggingFilter;
+
+    @Autowired
+    private JwtAuthenticationFilter jwtAuthenticationFilter;
+
+    @Autowired
+    private RequestLoggingService requestLoggingService;
+
+    private RequestLogSettingsDTO original;
+
+    @AfterEach
+    void restoreSettings() {
+        if (original != null) {
+            requestLoggingService.updateSettings(original);
+        }
+    }
+
+    @Test
+    void throughputBySamplingRate() throws Exception {
+        original = requestLoggingService.getSettings();
+        Filter legacy = legacyFilter();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            requestLoggingService.updateSettings(new RequestLogSettingsDTO(false, null, null, null, null, null));
+            long off = run(requestLoggingFilter, REQUESTS);
+            requestLoggingService.updateSettings(new RequestLogSettingsDTO(true, 0.01, 1000L, Map.of(), null, null));
+            long sampled = run(requestLoggingFilter, REQUESTS);
+            requestLoggingService.updateSettings(new RequestLogSettingsDTO(true, 1.0, 1000L, Map.of(), null, null));
+            long all = run(requestLoggingFilter, REQUESTS);
+            long old = run(legacy, REQUESTS);
+            System.out.printf("round %d req/s: off %d, 1%% sampled %d, all async %d, legacy 3x WARN sync %d%n",
+                    round, perSecond(off), perSecond(sampled), perSecond(all), perSecond(old));
+        }
+
+        // Override theo path thắng tỉ lệ chung
+        requestLoggingService.updateSettings(new RequestLogSettingsDTO(true, 0.0, 1000L,
+                Map.of("/api/quotes/", 1.0, "/api", 0.0), null, null));
+        long before = requestLoggingService.getSettings().getLogged();
+        run(requestLoggingFilter, 10);
+        assertEquals(before + 10, requestLoggingService.getSettings().getLogged());
+    }
+
+    private long run(Filter outer, int requests) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/quotes/" + (i % 100));
+            request.setServletPath("/api/quotes");
+            outer.doFilter(request, new MockHttpServletResponse(),
+                    (req, res) -> jwtAuthenticationFilter.doFilter(req, res, new MockFilterChain()));
+            SecurityContextHolder.clearContext();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long perSecond(long nanos) {
+        return (long) (REQUESTS / (nanos / 1e9));
+    }
+
+    /**
+     * Kiểu log cũ của JwtAuthenticationFilter: URL, URI, servlet path ở mức WARN, ghi thẳng ra console
+     */
+    private static Filter legacyFilter() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p ${PID:- } --- [%15.15t] %-40.40logger{39} : %m%n");
+        encoder.start();
+        ConsoleAppender<ILoggingEvent> console = new ConsoleAppender<>();
+        console.setContext(context);
+        console.setEncoder(encoder);
+        console.start();
+        ch.qos.logback.classic.Logger legacy = context.getLogger("LEGACY_REQUEST_LOG");
+        legacy.setAdditive(false);
+        legacy.addAppender(console);
+
+        return (req, res, chain) -> {
+            HttpServletRequest request = (HttpServletRequest) req;
+            legacy.warn("### REQUEST URL = {}", request.getRequestURL());
+            legacy.warn("### REQUEST URI = {}", request.getRequestURI());
+            legacy.warn("### SERVLET PATH = {}", request.getServletPath());
+            chain.doFilter(req, res);
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.UserDTO;
+import com.example.demo.entity.User;
+import com.example.demo.service.JwtService;
+import com.example.demo.service.UserService;
+import com.example.demo.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@AutoConfigureMockMvc
+class AuthAdminControllerTest extends IntegrationTest {
+
+    private static final String STATS = "/api/admin/auth/principal-cache-stats";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Test
+    void principalCacheStatsRequireAdmin() throws Exception {
+        String admin = tokenFor("stats-admin@example.com", User.Role.ADMIN, "0900000101");
+        String staff = tokenFor("stats-staff@example.com", User.Role.DEALER_STAFF, "0900000102");
+
+        mockMvc.perform(get(STATS)).andExpect(status().is(not(200)));
+        mockMvc.perform(get(STATS).header("Authorization", "Bearer " + staff)).andExpect(status().isForbidden());
+        mockMvc.perform(get(STATS).header("Authorization", "Bearer " + admin)).andExpect(status().isOk());
+    }
+
+    private String tokenFor(String email, User.Role role, String phone) {
+        UserDTO user = new UserDTO();
+        user.setEmail(email);
+        user.setPassword("password");
+        user.setFullName(role.name());
+        user.setPhoneNumber(phone);
+        user.setRole(role);
+        userService.createUser(user);
+        return jwtService.generateToken(email, role.name());
+    }
+}
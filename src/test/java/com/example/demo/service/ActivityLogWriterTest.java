@@ -0,0 +1,62 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.ActivityLog;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ActivityLogWriterTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    void flushInsertsQueuedEntriesInBatches() {
+        ActivityLogWriter writer = new ActivityLogWriter(jdbcTemplate, 10, 2);
+        for (int i = 0; i < 5; i++) {
+            writer.submit(entry("A" + i));
+        }
+
+        assertEquals(5, writer.flush());
+
+        assertEquals(List.of(List.of("A0", "A1"), List.of("A2", "A3"), List.of("A4")), insertedBatches());
+        assertEquals(0, writer.flush());
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void fullQueueDropsNewEntriesAndFailedBatchDoesNotBlockLaterBatches() {
+        ActivityLogWriter writer = new ActivityLogWriter(jdbcTemplate, 3, 2);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("db down"))
+                .thenReturn(new int[]{1});
+        for (int i = 0; i < 4; i++) {
+            writer.submit(entry("A" + i));
+        }
+
+        // A3 bị bỏ vì hàng đợi đầy; lô [A0, A1] lỗi, lô [A2] vẫn được ghi
+        assertEquals(1, writer.flush());
+        assertEquals(List.of(List.of("A0", "A1"), List.of("A2")), insertedBatches());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<String>> insertedBatches() {
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(anyString(), batches.capture());
+        return batches.getAllValues().stream()
+                .map(batch -> batch.stream().map(row -> (String) row[2]).toList())
+                .toList();
+    }
+
+    private static ActivityLog entry(String action) {
+        return ActivityLog.builder().actorId(1L).action(action).createdAt(Instant.now()).build();
+    }
+}
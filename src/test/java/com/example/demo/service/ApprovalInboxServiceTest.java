@@ -0,0 +1,177 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.ApprovalInboxItem;
+import com.example.demo.entity.Dealer;
+import com.example.demo.entity.Order;
+import com.example.demo.entity.Quote;
+import com.example.demo.entity.User;
+import com.example.demo.repository.DealerRepository;
+import com.example.demo.repository.JobLockRepository;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.QuoteRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.support.IntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Approval_inbox trên H2 (MODE=MySQL): upsert ON DUPLICATE KEY UPDATE của ApprovalInboxProjector và rebuild
+ */
+class ApprovalInboxServiceTest extends IntegrationTest {
+
+    @Autowired
+    private ApprovalInboxService approvalInboxService;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Integer dealerId;
+    private Integer userId;
+
+    @BeforeEach
+    void seedDealerAndUser() {
+        String key = UUID.randomUUID().toString().substring(0, 12);
+        Dealer dealer = new Dealer();
+        dealer.setName("Inbox dealer " + key);
+        dealer.setAddress("a");
+        dealer.setPhone("d-" + key);
+        dealer.setRegion("r");
+        dealer.setRepresentativeName("x");
+        dealer.setStatus(Dealer.DealerStatus.ACTIVE);
+        dealerId = dealerRepository.save(dealer).getDealerId();
+
+        User user = new User();
+        user.setUsername("inbox-" + key);
+        user.setEmail("inbox-" + key + "@test.local");
+        user.setPassword("x");
+        user.setFullName("Inbox user");
+        user.setPhoneNumber("u-" + key);
+        user.setRole(User.Role.DEALER_STAFF);
+        user.setStatus(User.UserStatus.ACTIVE);
+        user.setDealerId(dealerId);
+        userId = userRepository.save(user).getUserId();
+    }
+
+    @Test
+    void quoteMovesThroughApprovalQueues() {
+        Quote quote = new Quote();
+        quote.setCreatedDate(LocalDate.now());
+        quote.setStatus(Quote.QuoteStatus.DRAFT);
+        quote.setApprovalStatus(Quote.QuoteApprovalStatus.DRAFT);
+        quote.setCreatorRole(User.Role.DEALER_STAFF);
+        quote.setDealerId(dealerId);
+        quote.setUserId(userId);
+        quote.setTotalAmount(new BigDecimal("1000.00"));
+        quote = quoteRepository.save(quote);
+        assertEquals(List.of(), inbox("QUOTE", quote.getId()));
+
+        quote.setApprovalStatus(Quote.QuoteApprovalStatus.PENDING_DEALER_MANAGER_APPROVAL);
+        quote = quoteRepository.save(quote);
+        assertEquals(List.of("DEALER_MANAGER_QUOTE|PENDING_DEALER_MANAGER_APPROVAL|1000.00"), inbox("QUOTE", quote.getId()));
+
+        quote.setApprovalStatus(Quote.QuoteApprovalStatus.INSUFFICIENT_INVENTORY);
+        quote = quoteRepository.save(quote);
+        assertEquals(List.of("DEALER_MANAGER_QUOTE|INSUFFICIENT_INVENTORY|1000.00"), inbox("QUOTE", quote.getId()));
+
+        quote.setApprovalStatus(Quote.QuoteApprovalStatus.PENDING_EVM_APPROVAL);
+        quote.setTotalAmount(new BigDecimal("1200.00"));
+        quote = quoteRepository.save(quote);
+        assertEquals(List.of("EVM_QUOTE|PENDING_EVM_APPROVAL|1200.00"), inbox("QUOTE", quote.getId()));
+        Integer quoteId = quote.getId();
+        assertTrue(approvalInboxService.getQueue(ApprovalInboxItem.Queue.EVM_QUOTE, dealerId)
+                .stream().anyMatch(i -> i.getItemId().equals(quoteId)));
+
+        quote.setApprovalStatus(Quote.QuoteApprovalStatus.APPROVED);
+        quote = quoteRepository.save(quote);
+        assertEquals(List.of(), inbox("QUOTE", quote.getId()));
+    }
+
+    @Test
+    void orderMovesThroughApprovalQueue() {
+        Quote quote = new Quote();
+        quote.setCreatedDate(LocalDate.now());
+        quote.setStatus(Quote.QuoteStatus.ACCEPTED);
+        quote.setApprovalStatus(Quote.QuoteApprovalStatus.APPROVED);
+        quote.setCreatorRole(User.Role.DEALER_STAFF);
+        quote.setDealerId(dealerId);
+        quote = quoteRepository.save(quote);
+
+        Order order = new Order();
+        order.setQuoteId(quote.getId());
+        order.setDealerId(dealerId);
+        order.setUserId(userId);
+        order.setOrderDate(LocalDate.now());
+        order.setStatus(Order.OrderStatus.PENDING);
+        order.setPaymentMethod(Order.PaymentMethod.CASH);
+        order.setApprovalStatus(Order.OrderApprovalStatus.PENDING_APPROVAL);
+        order.setTotalAmount(new BigDecimal("500.00"));
+        order = orderRepository.save(order);
+        assertEquals(List.of("ORDER_APPROVAL|PENDING_APPROVAL|500.00"), inbox("ORDER", order.getId()));
+
+        order.setTotalAmount(new BigDecimal("450.00"));
+        order = orderRepository.save(order);
+        assertEquals(List.of("ORDER_APPROVAL|PENDING_APPROVAL|450.00"), inbox("ORDER", order.getId()));
+
+        order.setApprovalStatus(Order.OrderApprovalStatus.APPROVED);
+        order = orderRepository.save(order);
+        assertEquals(List.of(), inbox("ORDER", order.getId()));
+    }
+
+    @Test
+    void rebuildPicksUpRowsWrittenOutsideJpaAndIsLocked() {
+        // Ghi thẳng bằng SQL: listener không chạy, chỉ rebuild mới đưa vào hộp việc
+        jdbcTemplate.update("INSERT INTO quote (created_date, status, approval_status, creator_role, dealer_id, total_amount) " +
+                "VALUES (?, 'DRAFT', 'PENDING_EVM_APPROVAL', 'DEALER_MANAGER', ?, 700.00)", LocalDate.now(), dealerId);
+        Integer quoteId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM quote WHERE dealer_id = ?", Integer.class, dealerId);
+        assertEquals(List.of(), inbox("QUOTE", quoteId));
+
+        assertTrue(approvalInboxService.rebuild() >= 1);
+        assertEquals(List.of("EVM_QUOTE|PENDING_EVM_APPROVAL|700.00"), inbox("QUOTE", quoteId));
+
+        // Node khác đang dựng lại -> bỏ qua, không xoá bảng
+        JobLockService otherNode = new JobLockService(jobLockRepository, transactionManager);
+        AtomicInteger skipped = new AtomicInteger();
+        assertTrue(otherNode.runLocked("approval-inbox-rebuild", Duration.ofMinutes(5),
+                () -> skipped.set(approvalInboxService.rebuild())));
+        assertEquals(-1, skipped.get());
+        assertEquals(List.of("EVM_QUOTE|PENDING_EVM_APPROVAL|700.00"), inbox("QUOTE", quoteId));
+    }
+
+    private List<String> inbox(String itemType, Integer itemId) {
+        return jdbcTemplate.query("SELECT queue, approval_status, total_amount FROM approval_inbox " +
+                        "WHERE item_type = ? AND item_id = ?",
+                (rs, i) -> rs.getString("queue") + "|" + rs.getString("approval_status") + "|"
+                        + rs.getBigDecimal("total_amount").setScale(2),
+                itemType, itemId);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.AuditLog;
+import com.example.demo.support.IntegrationTest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AuditArchiveServiceTest extends IntegrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JobLockService jobLockService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void archivedHistoryIsReadableFromAnyNode() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            LocalDateTime createdAt = LocalDateTime.now().minusDays(40 + i % 2).withHour(i % 24);
+            rows.add(new Object[]{"UPDATE", i % 2 == 0 ? "QUOTE" : "ORDER", String.valueOf(i % 10), "user", "ip",
+                    "{\"i\":" + i + "}", Timestamp.valueOf(createdAt)});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO audit_logs (action, entity_type, entity_id, username, ip_address, " +
+                "details, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+
+        AuditArchiveService archivingNode = node();
+        assertEquals(100, archivingNode.archiveOldLogs());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs", Integer.class));
+        assertEquals(0, archivingNode.archiveOldLogs());
+
+        // Node khác (không có gì trên đĩa, không nạp trước) vẫn thấy đủ lịch sử
+        List<AuditLog> history = node().findEntityHistory("QUOTE", "4");
+        assertEquals(10, history.size());
+        assertEquals(0, node().findEntityHistory("quote", "4").size());
+        assertEquals(0, node().findEntityHistory("QUOTE", "5").size());
+    }
+
+    private AuditArchiveService node() {
+        return new AuditArchiveService(jdbcTemplate, jobLockService, objectMapper, transactionManager, 30, 8, 31, 60);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AuditLogWriterTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void blockDropsAfterTimeoutWhenNobodyDrains() {
+        AuditLogWriter writer = writer(AuditLogWriter.Overflow.BLOCK, 50);
+        writer.submit(entry("a"));
+        writer.submit(entry("b"));
+
+        long start = System.nanoTime();
+        writer.submit(entry("c"));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertEquals(1L, writer.getStats().getDropped());
+        assertEquals(2, writer.flush());
+        assertEquals(List.of("a", "b"), insertedActions());
+    }
+
+    @Test
+    void blockWaitsForRoomWhenQueueDrains() throws Exception {
+        AuditLogWriter writer = writer(AuditLogWriter.Overflow.BLOCK, 10_000);
+        writer.submit(entry("a"));
+        writer.submit(entry("b"));
+
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> writer.submit(entry("c")));
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+        writer.flush();
+        blocked.get(5, TimeUnit.SECONDS);
+        writer.flush();
+
+        assertEquals(0L, writer.getStats().getDropped());
+        assertEquals(List.of("a", "b", "c"), insertedActions());
+    }
+
+    @Test
+    void dropOldestKeepsNewestEntries() {
+        AuditLogWriter writer = writer(AuditLogWriter.Overflow.DROP_OLDEST, 0);
+        for (String action : List.of("a", "b", "c", "d")) {
+            writer.submit(entry(action));
+        }
+
+        assertEquals(2L, writer.getStats().getDropped());
+        assertEquals(2, writer.flush());
+        assertEquals(List.of("c", "d"), insertedActions());
+    }
+
+    @Test
+    void spillWritesOverflowToFileAndReplaysItOnceQueueIsEmpty() throws Exception {
+        AuditLogWriter writer = writer(AuditLogWriter.Overflow.SPILL, 0);
+        for (String action : List.of("a", "b", "c", "d")) {
+            writer.submit(entry(action));
+        }
+
+        Path spillFile = dir.resolve("audit-spill.jsonl");
+        List<String> lines = Files.readAllLines(spillFile, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("c", objectMapper.readValue(lines.get(0), AuditLog.class).getAction());
+        assertEquals(2L, writer.getStats().getSpilled());
+        assertEquals(0L, writer.getStats().getDropped());
+
+        // Lượt flush định kỳ: rút hàng đợi rồi nạp lại file spill
+        writer.scheduledFlush();
+
+        assertEquals(List.of("a", "b", "c", "d"), insertedActions());
+        assertFalse(Files.exists(spillFile));
+        assertFalse(Files.exists(dir.resolve("audit-spill.jsonl.replay")));
+        assertEquals(2L, writer.getStats().getReplayed());
+        assertEquals(4L, writer.getStats().getWritten());
+    }
+
+    @Test
+    void failedBatchIsSpilledAndReplayedLater() throws Exception {
+        AuditLogWriter writer = writer(AuditLogWriter.Overflow.BLOCK, 0);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("db down"))
+                .thenReturn(new int[]{1});
+        writer.submit(entry("a"));
+
+        assertEquals(0, writer.flush());
+        assertEquals(1, Files.readAllLines(dir.resolve("audit-spill.jsonl")).size());
+
+        writer.scheduledFlush();
+        assertEquals(1L, writer.getStats().getReplayed());
+        assertFalse(Files.exists(dir.resolve("audit-spill.jsonl")));
+    }
+
+    @Test
+    void shutdownFlushesWhatIsQueued() {
+        AuditLogWriter writer = writer(AuditLogWriter.Overflow.BLOCK, 0);
+        writer.submit(entry("a"));
+        writer.submit(entry("b"));
+
+        writer.flushOnShutdown();
+
+        assertEquals(List.of("a", "b"), insertedActions());
+        assertEquals(0, writer.getStats().getQueued());
+    }
+
+    // capacity 2, batch 2
+    private AuditLogWriter writer(AuditLogWriter.Overflow overflow, long blockTimeoutMs) {
+        return new AuditLogWriter(jdbcTemplate, objectMapper, 2, 2, overflow, blockTimeoutMs,
+                dir.resolve("audit-spill.jsonl").toString());
+    }
+
+    private static AuditLog entry(String action) {
+        return AuditLog.builder().action(action).entityType("QUOTE").entityId("1").username("user")
+                .ipAddress("127.0.0.1").details("{}").createdAt(LocalDateTime.now()).build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> insertedActions() {
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeast(0)).batchUpdate(anyString(), batches.capture());
+        List<String> actions = new ArrayList<>();
+        for (List<Object[]> batch : batches.getAllValues()) {
+            batch.forEach(row -> actions.add((String) row[0]));
+        }
+        return actions;
+    }
+}
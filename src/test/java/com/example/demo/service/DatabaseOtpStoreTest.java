@@ -0,0 +1,49 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.User;
+import com.example.demo.repository.ForgotPasswordRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DatabaseOtpStoreTest extends IntegrationTest {
+
+    @Autowired
+    private ForgotPasswordRepository forgotPasswordRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void emailIsNormalizedLikeTheInMemoryStore() {
+        String key = UUID.randomUUID().toString().substring(0, 12);
+        User user = new User();
+        user.setUsername("otp-" + key);
+        user.setEmail("otp-" + key + "@example.com");
+        user.setPassword("x");
+        user.setFullName("Otp user");
+        user.setPhoneNumber("otp-" + key);
+        user.setRole(User.Role.DEALER_STAFF);
+        user.setStatus(User.UserStatus.ACTIVE);
+        userRepository.save(user);
+
+        // Store tạo tay (bean chỉ có khi otp.store=database); transaction như proxy @Transactional
+        DatabaseOtpStore store = new DatabaseOtpStore(forgotPasswordRepository, userRepository, 70, 5);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        tx.executeWithoutResult(s -> store.put("  OTP-" + key.toUpperCase() + "@Example.com ", 123456));
+        assertEquals(OtpStore.Result.INVALID, tx.execute(s -> store.verify("Otp-" + key + "@EXAMPLE.COM", 1)));
+        assertEquals(OtpStore.Result.VERIFIED, tx.execute(s -> store.verify(" otp-" + key + "@example.com", 123456)));
+        assertEquals(OtpStore.Result.INVALID, tx.execute(s -> store.verify("otp-" + key + "@example.com", 123456)));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.IdempotencyRecord;
+import com.example.demo.exception.ConflictException;
+import com.example.demo.repository.IdempotencyRecordRepository;
+import com.example.demo.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest extends IntegrationTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+
+    @Test
+    void repeatedKeyReplaysStoredResponse() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String first = idempotencyService.execute("TEST", "replay", "request", String.class,
+                () -> "response-" + calls.incrementAndGet());
+        String second = idempotencyService.execute("TEST", "replay", "request", String.class,
+                () -> "response-" + calls.incrementAndGet());
+
+        assertEquals("response-1", first);
+        assertEquals("response-1", second);
+        assertEquals(1, calls.get());
+        assertEquals(IdempotencyRecord.Status.COMPLETED,
+                recordRepository.findByScopeAndIdempotencyKey("TEST", "replay").orElseThrow().getStatus());
+    }
+
+    @Test
+    void keyReusedForDifferentRequestIsAConflict() {
+        idempotencyService.execute("TEST", "conflict", "request-a", String.class, () -> "a");
+
+        assertThrows(ConflictException.class,
+                () -> idempotencyService.execute("TEST", "conflict", "request-b", String.class, () -> "b"));
+    }
+
+    @Test
+    void keyStillInProgressIsAConflict() {
+        recordRepository.saveAndFlush(inProgress("running", LocalDateTime.now()));
+
+        assertThrows(ConflictException.class,
+                () -> idempotencyService.execute("TEST", "running", "request", String.class, () -> "response"));
+    }
+
+    @Test
+    void failedActionReleasesKeyForRetry() {
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("TEST", "failure", "request",
+                String.class, () -> {
+                    throw new IllegalStateException("boom");
+                }));
+        assertTrue(recordRepository.findByScopeAndIdempotencyKey("TEST", "failure").isEmpty());
+
+        assertEquals("retried", idempotencyService.execute("TEST", "failure", "request", String.class, () -> "retried"));
+    }
+
+    @Test
+    void staleInProgressKeyIsReclaimedAfterLease() {
+        recordRepository.saveAndFlush(inProgress("stale", LocalDateTime.now().minusMinutes(10)));
+
+        assertEquals("recovered", idempotencyService.execute("TEST", "stale", "request", String.class, () -> "recovered"));
+        assertEquals(IdempotencyRecord.Status.COMPLETED,
+                recordRepository.findByScopeAndIdempotencyKey("TEST", "stale").orElseThrow().getStatus());
+    }
+
+    private static IdempotencyRecord inProgress(String key, LocalDateTime createdAt) {
+        return IdempotencyRecord.builder()
+                .scope("TEST")
+                .idempotencyKey(key)
+                .requestHash("0".repeat(64))
+                .status(IdempotencyRecord.Status.IN_PROGRESS)
+                .createdAt(createdAt)
+                .expiresAt(createdAt.plusHours(24))
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InMemoryOtpStoreTest {
+
+    // ttl 1s, tick 100ms, wheel 4 ô: một OTP đi qua nhiều vòng wheel trước khi hết hạn
+    private final InMemoryOtpStore store = new InMemoryOtpStore(1, 5, 100, 4);
+
+    @Test
+    void otpExpiresAfterTtl() throws Exception {
+        store.put("user@example.com", 123456);
+
+        Thread.sleep(1100);
+
+        assertEquals(OtpStore.Result.EXPIRED, store.verify("user@example.com", 123456));
+        assertEquals(OtpStore.Result.INVALID, store.verify("user@example.com", 123456));
+    }
+
+    @Test
+    void wheelReschedulesEarlyEntriesAndRemovesExpiredOnes() throws Exception {
+        store.put("user@example.com", 123456);
+
+        // Quay đủ 10 tick ngay lập tức: entry tới ô của nó trước khi hết hạn -> được xếp lại, không bị xóa
+        int expired = 0;
+        for (int i = 0; i < 10; i++) {
+            expired += store.tick();
+        }
+        assertEquals(0, expired);
+        assertEquals(1, store.size());
+
+        Thread.sleep(1100);
+        for (int i = 0; i < 20 && store.size() > 0; i++) {
+            expired += store.tick();
+        }
+        assertEquals(1, expired);
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void newOtpReplacesOldOne() {
+        store.put("User@Example.com ", 111111);
+        store.put("user@example.com", 222222);
+
+        assertEquals(OtpStore.Result.INVALID, store.verify("user@example.com", 111111));
+        assertEquals(OtpStore.Result.VERIFIED, store.verify(" USER@example.com", 222222));
+    }
+
+    @Test
+    void fifthWrongAttemptIsTooManyAttempts() {
+        store.put("user@example.com", 123456);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(OtpStore.Result.INVALID, store.verify("user@example.com", 1));
+        }
+        assertEquals(OtpStore.Result.TOO_MANY_ATTEMPTS, store.verify("user@example.com", 1));
+        // OTP đã bị hủy: nhập đúng cũng không được
+        assertEquals(OtpStore.Result.INVALID, store.verify("user@example.com", 123456));
+    }
+
+    @Test
+    void correctOtpIsRejectedOnReuse() {
+        store.put("user@example.com", 123456);
+
+        assertEquals(OtpStore.Result.VERIFIED, store.verify("user@example.com", 123456));
+        assertEquals(OtpStore.Result.INVALID, store.verify("user@example.com", 123456));
+        assertEquals(0, store.size());
+    }
+}
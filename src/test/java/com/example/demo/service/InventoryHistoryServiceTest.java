@@ -0,0 +1,60 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.InventoryHistoryDTO;
+import com.example.demo.entity.InventorySnapshot;
+import com.example.demo.entity.Vehicle;
+import com.example.demo.repository.VehicleRepository;
+import com.example.demo.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryHistoryServiceTest extends IntegrationTest {
+
+    @Autowired
+    private InventoryHistoryService inventoryHistoryService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void snapshotLeavesRecentMovementsToReplayIncludingLateCommits() {
+        Vehicle vehicle = vehicleRepository.save(Vehicle.builder().modelName("History").brand("Test").build());
+        inventoryService.createFactoryInventory(vehicle.getId(), 10);
+        inventoryService.deductFactoryInventory(vehicle.getId(), 3);
+
+        InventorySnapshot snapshot = inventoryHistoryService.takeSnapshot();
+        assertTrue(snapshot.getTakenAt().isBefore(LocalDateTime.now().minusMinutes(10)));
+        assertEquals(7, factoryStockAt(vehicle.getId(), LocalDateTime.now()));
+
+        // Transaction commit muộn: occurredAt trong khoảng trễ, sau snapshot vẫn phải được replay
+        jdbcTemplate.update("INSERT INTO inventory_movement (dealer_id, vehicle_id, inventory_type, movement_type, " +
+                        "available_delta, reserved_delta, occurred_at) VALUES (NULL, ?, 'FACTORY', 'DEDUCT', -2, 0, ?)",
+                vehicle.getId(), Timestamp.valueOf(LocalDateTime.now().minusMinutes(5)));
+        inventoryHistoryService.takeSnapshot();
+
+        assertEquals(5, factoryStockAt(vehicle.getId(), LocalDateTime.now()));
+        assertEquals(0, factoryStockAt(vehicle.getId(), LocalDateTime.now().minusMinutes(10)));
+    }
+
+    private int factoryStockAt(Integer vehicleId, LocalDateTime at) {
+        List<InventoryHistoryDTO> history = inventoryHistoryService.getVehicleStockAt(vehicleId, at);
+        return history.stream()
+                .filter(h -> h.getDealerId() == null)
+                .mapToInt(InventoryHistoryDTO::getAvailableQuantity)
+                .sum();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Inventory;
+import com.example.demo.repository.InventoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class InventoryLedgerTest {
+
+    private final InventoryRepository inventoryRepository = mock(InventoryRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private InventoryLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        when(inventoryRepository.findLedgerRows()).thenReturn(List.of(
+                new Object[]{7, 1, Inventory.InventoryType.DEALER, 10},
+                new Object[]{null, 1, Inventory.InventoryType.FACTORY, 10}));
+        ledger = new InventoryLedger(inventoryRepository, jdbcTemplate, transactionManager, 4);
+        ledger.warm();
+    }
+
+    @Test
+    void failedFactoryBatchRollsBackDealerBatchAndRequeuesBoth() {
+        assertTrue(ledger.tryDeduct(7, 1, Inventory.InventoryType.DEALER, 2));
+        assertTrue(ledger.tryDeduct(null, 1, Inventory.InventoryType.FACTORY, 3));
+        when(jdbcTemplate.batchUpdate(startsWith("UPDATE inventory SET available_quantity = available_quantity + ?, " +
+                "last_updated = ?, version = version + 1 WHERE dealer_id IS NULL"), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("factory batch failed"))
+                .thenReturn(new int[]{1});
+
+        assertThrows(DataAccessResourceFailureException.class, ledger::flush);
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+
+        // Lần flush sau ghi lại đúng một lần mỗi phần chênh, cả hai lô trong một transaction
+        assertEquals(2, ledger.flush());
+        verify(transactionManager, times(1)).commit(any());
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("UPDATE inventory SET available_quantity = available_quantity + ?, " +
+                "last_updated = ?, version = version + 1 WHERE dealer_id = ?"), anyList());
+        assertEquals(0, ledger.flush());
+        assertEquals(8, ledger.getAvailable(7, 1, Inventory.InventoryType.DEALER));
+        assertEquals(7, ledger.getAvailable(null, 1, Inventory.InventoryType.FACTORY));
+    }
+
+    @Test
+    void writeBehindDeductIsCreditedBackOnRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertTrue(ledger.tryDeduct(7, 1, Inventory.InventoryType.DEALER, 4));
+            assertEquals(6, ledger.getAvailable(7, 1, Inventory.InventoryType.DEALER));
+
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        }
+
+        assertEquals(10, ledger.getAvailable(7, 1, Inventory.InventoryType.DEALER));
+        // Phần chênh đã bù về 0 -> không còn gì để ghi xuống DB
+        assertEquals(0, ledger.flush());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Dealer;
+import com.example.demo.entity.Inventory;
+import com.example.demo.entity.QuoteDetail;
+import com.example.demo.entity.Vehicle;
+import com.example.demo.repository.DealerRepository;
+import com.example.demo.repository.InventoryRepository;
+import com.example.demo.repository.VehicleRepository;
+import com.example.demo.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryReservationServiceTest extends IntegrationTest {
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private InventoryReservationService inventoryReservationService;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void transferForQuoteConsumesFactoryReservation() {
+        Vehicle vehicle = vehicleRepository.save(Vehicle.builder().modelName("Transfer").brand("Test").build());
+        Dealer dealer = dealerRepository.save(dealer("0900000001"));
+        inventoryService.createFactoryInventory(vehicle.getId(), 10);
+
+        int quoteId = 9001;
+        inventoryReservationService.reserveForQuote(quoteId, null, Inventory.InventoryType.FACTORY,
+                List.of(line(quoteId, vehicle.getId(), 3)));
+
+        inventoryService.transferFactoryToDealer(quoteId, dealer.getDealerId(), vehicle.getId(), 3);
+
+        Inventory factory = inventoryRepository.findFactoryInventoryByVehicleId(vehicle.getId()).orElseThrow();
+        assertEquals(7, factory.getAvailableQuantity());
+        assertEquals(0, factory.getReservedQuantity());
+        assertTrue(inventoryReservationService.getActiveReservations(quoteId, Inventory.InventoryType.FACTORY).isEmpty());
+        assertEquals(3, inventoryRepository.findByDealerIdAndVehicleIdAndInventoryType(
+                dealer.getDealerId(), vehicle.getId(), Inventory.InventoryType.DEALER).orElseThrow().getAvailableQuantity());
+    }
+
+    @Test
+    void transferBeyondReservationDeductsRemainderFromAvailable() {
+        Vehicle vehicle = vehicleRepository.save(Vehicle.builder().modelName("Transfer").brand("Test").build());
+        Dealer dealer = dealerRepository.save(dealer("0900000002"));
+        inventoryService.createFactoryInventory(vehicle.getId(), 10);
+
+        int quoteId = 9002;
+        inventoryReservationService.reserveForQuote(quoteId, null, Inventory.InventoryType.FACTORY,
+                List.of(line(quoteId, vehicle.getId(), 2)));
+
+        inventoryService.transferFactoryToDealer(quoteId, dealer.getDealerId(), vehicle.getId(), 5);
+
+        Inventory factory = inventoryRepository.findFactoryInventoryByVehicleId(vehicle.getId()).orElseThrow();
+        assertEquals(5, factory.getAvailableQuantity());
+        assertEquals(0, factory.getReservedQuantity());
+    }
+
+    @Test
+    void releaseRestoresFactoryAndDealerStockOnce() {
+        Vehicle vehicle = vehicleRepository.save(Vehicle.builder().modelName("Release").brand("Test").build());
+        Vehicle untouched = vehicleRepository.save(Vehicle.builder().modelName("Untouched").brand("Test").build());
+        Dealer dealer = dealerRepository.save(dealer("0900000003"));
+        inventoryService.createFactoryInventory(vehicle.getId(), 10);
+        inventoryService.createFactoryInventory(untouched.getId(), 4);
+        inventoryService.createDealerInventory(dealer.getDealerId(), vehicle.getId(), 1);
+        jdbcTemplate.update("UPDATE inventory SET available_quantity = 5 WHERE dealer_id = ? AND vehicle_id = ?",
+                dealer.getDealerId(), vehicle.getId());
+
+        inventoryReservationService.reserveForQuote(9003, null, Inventory.InventoryType.FACTORY,
+                List.of(line(9003, vehicle.getId(), 3)));
+        inventoryReservationService.reserveForQuote(9004, dealer.getDealerId(), Inventory.InventoryType.DEALER,
+                List.of(line(9004, vehicle.getId(), 2)));
+
+        assertEquals(1, inventoryReservationService.releaseForQuote(9003));
+        assertEquals(1, inventoryReservationService.releaseForQuote(9004));
+        assertEquals(0, inventoryReservationService.releaseForQuote(9003));
+
+        assertStock(factory(vehicle.getId()), 10, 0);
+        assertStock(dealerStock(dealer.getDealerId(), vehicle.getId()), 5, 0);
+        assertStock(factory(untouched.getId()), 4, 0);
+    }
+
+    @Test
+    void expiredReservationsAreRestoredOnce() {
+        Vehicle vehicle = vehicleRepository.save(Vehicle.builder().modelName("Expire").brand("Test").build());
+        inventoryService.createFactoryInventory(vehicle.getId(), 10);
+
+        inventoryReservationService.reserveForQuote(9005, null, Inventory.InventoryType.FACTORY,
+                List.of(line(9005, vehicle.getId(), 4)));
+        inventoryReservationService.reserveForQuote(9006, null, Inventory.InventoryType.FACTORY,
+                List.of(line(9006, vehicle.getId(), 1)));
+        assertStock(factory(vehicle.getId()), 5, 5);
+
+        jdbcTemplate.update("UPDATE inventory_reservation SET expires_at = ? WHERE quote_id IN (9005, 9006)",
+                Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)));
+        assertTrue(inventoryReservationService.releaseExpired() >= 2);
+        inventoryReservationService.releaseExpired();
+
+        assertStock(factory(vehicle.getId()), 10, 0);
+        assertTrue(inventoryReservationService.getActiveReservations(9005, Inventory.InventoryType.FACTORY).isEmpty());
+    }
+
+    private Inventory factory(Integer vehicleId) {
+        return inventoryRepository.findFactoryInventoryByVehicleId(vehicleId).orElseThrow();
+    }
+
+    private Inventory dealerStock(Integer dealerId, Integer vehicleId) {
+        return inventoryRepository.findByDealerIdAndVehicleIdAndInventoryType(
+                dealerId, vehicleId, Inventory.InventoryType.DEALER).orElseThrow();
+    }
+
+    private static void assertStock(Inventory inventory, int available, int reserved) {
+        assertEquals(available, inventory.getAvailableQuantity());
+        assertEquals(reserved, inventory.getReservedQuantity());
+    }
+
+    private static QuoteDetail line(int quoteId, Integer vehicleId, int quantity) {
+        QuoteDetail detail = new QuoteDetail();
+        detail.setQuoteId(quoteId);
+        detail.setVehicleId(vehicleId);
+        detail.setQuantity(quantity);
+        return detail;
+    }
+
+    private static Dealer dealer(String phone) {
+        Dealer dealer = new Dealer();
+        dealer.setName("Dealer " + phone);
+        dealer.setPhone(phone);
+        dealer.setRepresentativeName("Test");
+        dealer.setStatus(Dealer.DealerStatus.ACTIVE);
+        return dealer;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.InventoryAllocationDTO;
+import com.example.demo.dto.InventoryAllocationResultDTO;
+import com.example.demo.entity.Dealer;
+import com.example.demo.entity.Vehicle;
+import com.example.demo.repository.DealerRepository;
+import com.example.demo.repository.VehicleRepository;
+import com.example.demo.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryServiceConcurrencyTest extends IntegrationTest {
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void parallelDeductionsNeverOversellOneVehicle() throws Exception {
+        Vehicle vehicle = vehicleRepository.save(Vehicle.builder().modelName("Concurrency").brand("Test").build());
+        inventoryService.createFactoryInventory(vehicle.getId(), 100);
+
+        int attempts = 300;
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < attempts; i++) {
+            executor.submit(() -> {
+                start.await();
+                try {
+                    inventoryService.deductFactoryInventory(vehicle.getId(), 1);
+                    succeeded.incrementAndGet();
+                } catch (RuntimeException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(100, succeeded.get());
+        assertEquals(attempts - 100, rejected.get());
+        assertEquals(0, inventoryService.getFactoryInventoryQuantity(vehicle.getId()));
+    }
+
+    @Test
+    void parallelAllocationsToNewDealerRowKeepOneRow() throws Exception {
+        Vehicle vehicle = vehicleRepository.save(Vehicle.builder().modelName("Allocation race").brand("Test").build());
+        inventoryService.createFactoryInventory(vehicle.getId(), 100);
+        Dealer dealer = new Dealer();
+        dealer.setName("Allocation race dealer");
+        dealer.setAddress("a");
+        dealer.setPhone("alloc-race");
+        dealer.setRegion("r");
+        dealer.setRepresentativeName("x");
+        dealer.setStatus(Dealer.DealerStatus.ACTIVE);
+        dealer = dealerRepository.save(dealer);
+        Integer dealerId = dealer.getDealerId();
+
+        int attempts = 8;
+        AtomicInteger applied = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(attempts);
+        for (int i = 0; i < attempts; i++) {
+            executor.submit(() -> {
+                start.await();
+                InventoryAllocationResultDTO result = inventoryService.allocateFactoryToDealers(
+                        List.of(new InventoryAllocationDTO(dealerId, vehicle.getId(), 3)));
+                if (result.isApplied()) {
+                    applied.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(attempts, applied.get());
+        List<Integer> dealerRows = jdbcTemplate.queryForList("SELECT available_quantity FROM inventory " +
+                "WHERE dealer_id = ? AND vehicle_id = ? AND inventory_type = 'DEALER'", Integer.class, dealerId, vehicle.getId());
+        assertEquals(List.of(attempts * 3), dealerRows);
+        assertEquals(100 - attempts * 3, inventoryService.getFactoryInventoryQuantity(vehicle.getId()));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update("INSERT INTO inventory " +
+                "(dealer_id, vehicle_id, available_quantity, reserved_quantity, inventory_type, last_updated, version) " +
+                "VALUES (?, ?, 1, 0, 'DEALER', CURRENT_TIMESTAMP, 0)", dealerId, vehicle.getId()));
+    }
+}
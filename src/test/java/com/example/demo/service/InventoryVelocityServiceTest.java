@@ -0,0 +1,54 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.InventoryVelocityDTO;
+import com.example.demo.entity.Vehicle;
+import com.example.demo.repository.InventoryMovementRepository;
+import com.example.demo.repository.InventoryRepository;
+import com.example.demo.repository.VehicleRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InventoryVelocityServiceTest {
+
+    private final InventoryMovementRepository movementRepository = mock(InventoryMovementRepository.class);
+    private final InventoryRepository inventoryRepository = mock(InventoryRepository.class);
+    private final VehicleRepository vehicleRepository = mock(VehicleRepository.class);
+    private final InventoryVelocityService velocityService =
+            new InventoryVelocityService(movementRepository, inventoryRepository, vehicleRepository, 30, 7);
+
+    @Test
+    void vehiclesOfTheSameModelShareOneVelocityRow() {
+        when(vehicleRepository.findById(1)).thenReturn(Optional.of(vehicle(1, "VF8")));
+        when(vehicleRepository.findById(2)).thenReturn(Optional.of(vehicle(2, "VF8")));
+        when(vehicleRepository.findById(3)).thenReturn(Optional.of(vehicle(3, "VF9")));
+        when(inventoryRepository.findDealerStockRows(5)).thenReturn(List.of(
+                new Object[]{5, 1, "VF8", 1},
+                new Object[]{5, 2, "VF8", 1},
+                new Object[]{5, 3, "VF9", 10}));
+
+        velocityService.recordDelivery(5, 1, 3);
+        velocityService.recordDelivery(5, 2, 3);
+        velocityService.recordDelivery(5, 3, 1);
+
+        List<InventoryVelocityDTO> velocity = velocityService.getVelocity(5);
+
+        assertEquals(2, velocity.size());
+        InventoryVelocityDTO vf8 = velocity.stream().filter(v -> "VF8".equals(v.getModelName())).findFirst().orElseThrow();
+        assertEquals(6, vf8.getUnitsSold());
+        assertEquals(2, vf8.getAvailableQuantity());
+        assertEquals("MEDIUM", vf8.getStockOutRisk());
+        InventoryVelocityDTO vf9 = velocity.stream().filter(v -> "VF9".equals(v.getModelName())).findFirst().orElseThrow();
+        assertEquals(1, vf9.getUnitsSold());
+        assertEquals("LOW", vf9.getStockOutRisk());
+    }
+
+    private static Vehicle vehicle(int id, String modelName) {
+        return Vehicle.builder().id(id).modelName(modelName).brand("Test").build();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.JobLockRepository;
+import com.example.demo.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobLockServiceTest extends IntegrationTest {
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void secondHolderCannotTakeAnUnexpiredLock() {
+        // Hai instance = hai node: owner khác nhau, cùng bảng job_lock
+        JobLockService nodeA = new JobLockService(jobLockRepository, transactionManager);
+        JobLockService nodeB = new JobLockService(jobLockRepository, transactionManager);
+        String name = "test-" + UUID.randomUUID();
+        AtomicBoolean bRanWhileAHeld = new AtomicBoolean();
+
+        assertTrue(nodeA.runLocked(name, Duration.ofMinutes(5), () ->
+                bRanWhileAHeld.set(nodeB.runLocked(name, Duration.ofMinutes(5), () -> fail("lock taken twice")))));
+        assertFalse(bRanWhileAHeld.get());
+
+        // A đã nhả khóa -> B lấy được
+        AtomicInteger bRuns = new AtomicInteger();
+        assertTrue(nodeB.runLocked(name, Duration.ofMinutes(5), bRuns::incrementAndGet));
+        assertEquals(1, bRuns.get());
+    }
+
+    @Test
+    void lockLeftByACrashedNodeIsTakenAfterTheLeaseExpires() {
+        JobLockService node = new JobLockService(jobLockRepository, transactionManager);
+        String held = "test-" + UUID.randomUUID();
+        String expired = "test-" + UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("INSERT INTO job_lock (name, locked_by, locked_at, locked_until) VALUES (?, 'crashed', ?, ?)",
+                held, now, now.plusMinutes(10));
+        jdbcTemplate.update("INSERT INTO job_lock (name, locked_by, locked_at, locked_until) VALUES (?, 'crashed', ?, ?)",
+                expired, now.minusMinutes(20), now.minusMinutes(1));
+
+        assertFalse(node.runLocked(held, Duration.ofMinutes(5), () -> fail("unexpired lock taken")));
+        assertTrue(node.runLocked(expired, Duration.ofMinutes(5), () -> { }));
+        assertEquals("crashed", jdbcTemplate.queryForObject("SELECT locked_by FROM job_lock WHERE name = ?",
+                String.class, held));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Promotion;
+import com.example.demo.repository.PromotionRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PromotionIndexTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 1, 1);
+
+    private final PromotionRepository promotionRepository = mock(PromotionRepository.class);
+    private final PromotionIndex index = new PromotionIndex(promotionRepository);
+
+    @Test
+    void saveDuringReloadReadIsNotOverwrittenBySnapshot() throws Exception {
+        AtomicReference<Thread> saver = new AtomicReference<>();
+        when(promotionRepository.findIndexRows(any())).thenAnswer(invocation -> {
+            Thread thread = new Thread(() -> index.onSaved(promotion(2, DAY, DAY.plusDays(9), 20.0)));
+            thread.start();
+            saver.set(thread);
+            Thread.sleep(100);
+            return rows(new Object[]{1, "Old", DAY, DAY.plusDays(9), 10.0, null});
+        });
+
+        index.reload();
+        saver.get().join();
+
+        assertEquals(List.of(1, 2), ids(DAY.plusDays(5)));
+    }
+
+    @Test
+    void incrementalUpdatesMatchFullRebuild() {
+        when(promotionRepository.findIndexRows(any())).thenReturn(rows(
+                new Object[]{1, "A", DAY, DAY.plusDays(9), 10.0, null},
+                new Object[]{2, "B", DAY.plusDays(5), DAY.plusDays(14), 5.0, null}));
+        index.reload();
+
+        index.onSaved(promotion(3, DAY.plusDays(3), DAY.plusDays(6), 15.0));
+        index.onSaved(promotion(1, DAY.plusDays(2), DAY.plusDays(4), 12.0));
+        index.onDeleted(2);
+
+        assertEquals(List.of(), ids(DAY));
+        assertEquals(List.of(1), ids(DAY.plusDays(2)));
+        assertEquals(List.of(1, 3), ids(DAY.plusDays(4)));
+        assertEquals(List.of(3), ids(DAY.plusDays(6)));
+        assertEquals(List.of(), ids(DAY.plusDays(7)));
+        assertEquals(List.of(), ids(DAY.plusDays(12)));
+
+        index.onDeleted(3);
+        index.onDeleted(1);
+        assertEquals(List.of(), ids(DAY.plusDays(3)));
+    }
+
+    private List<Integer> ids(LocalDate date) {
+        return index.findActive(null, date).stream().map(PromotionIndex.Entry::id).sorted().toList();
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+
+    private static Promotion promotion(int id, LocalDate start, LocalDate end, double discount) {
+        Promotion promotion = new Promotion();
+        promotion.setId(id);
+        promotion.setProgramName("P" + id);
+        promotion.setStartDate(start);
+        promotion.setEndDate(end);
+        promotion.setDiscountValue(discount);
+        promotion.setStatus(Promotion.PromotionStatus.ACTIVE);
+        return promotion;
+    }
+}
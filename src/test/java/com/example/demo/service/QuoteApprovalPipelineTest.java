@@ -0,0 +1,80 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.QuoteApprovalResultDTO;
+import com.example.demo.entity.Inventory;
+import com.example.demo.entity.Quote;
+import com.example.demo.exception.InsufficientInventoryException;
+import com.example.demo.repository.CustomerRepository;
+import com.example.demo.repository.QuoteDetailRepository;
+import com.example.demo.repository.QuoteRepository;
+import com.example.demo.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class QuoteApprovalPipelineTest {
+
+    private final QuoteRepository quoteRepository = mock(QuoteRepository.class);
+    private final InventoryReservationService inventoryReservationService = mock(InventoryReservationService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final QuoteApprovalPipeline pipeline = new QuoteApprovalPipeline(quoteRepository,
+            mock(QuoteDetailRepository.class), mock(CustomerRepository.class), mock(UserRepository.class),
+            mock(InventoryService.class), inventoryReservationService, mock(QuoteCalculationService.class),
+            mock(AuditLogService.class), Runnable::run, transactionManager);
+
+    private Quote quote;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        quote = new Quote();
+        quote.setId(1);
+        quote.setApprovalStatus(Quote.QuoteApprovalStatus.PENDING_EVM_APPROVAL);
+        when(quoteRepository.findAllById(any())).thenReturn(List.of(quote));
+        when(quoteRepository.findById(1)).thenReturn(Optional.of(quote));
+    }
+
+    @Test
+    void reservationShortageIsReportedAsInsufficientInventory() {
+        when(inventoryReservationService.reserveForQuote(eq(1), isNull(), eq(Inventory.InventoryType.FACTORY), anyList()))
+                .thenThrow(new InsufficientInventoryException("Insufficient FACTORY inventory"));
+        when(quoteRepository.save(quote)).thenReturn(quote);
+
+        assertEquals(QuoteApprovalPipeline.INSUFFICIENT_INVENTORY, approve().getStatus());
+        assertEquals(Quote.QuoteApprovalStatus.INSUFFICIENT_INVENTORY, quote.getApprovalStatus());
+    }
+
+    @Test
+    void optimisticLockFailureIsReportedAsConflict() {
+        when(quoteRepository.save(quote)).thenThrow(new ObjectOptimisticLockingFailureException(Quote.class, 1));
+
+        assertEquals(QuoteApprovalPipeline.CONFLICT, approve().getStatus());
+    }
+
+    @Test
+    void unexpectedFailuresKeepTheirMessage() {
+        when(inventoryReservationService.reserveForQuote(eq(1), isNull(), eq(Inventory.InventoryType.FACTORY), anyList()))
+                .thenThrow(new IllegalStateException("Connection reset"));
+
+        QuoteApprovalResultDTO result = approve();
+        assertEquals(QuoteApprovalPipeline.ERROR, result.getStatus());
+        assertEquals("Connection reset", result.getMessage());
+        verify(quoteRepository, never()).save(any());
+    }
+
+    private QuoteApprovalResultDTO approve() {
+        return pipeline.approve(QuoteApprovalPipeline.Level.EVM, List.of(1), 9, "ok").get(0);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Customer;
+import com.example.demo.entity.Quote;
+import com.example.demo.entity.QuoteDetail;
+import com.example.demo.repository.CustomerRepository;
+import com.example.demo.repository.QuoteDetailRepository;
+import com.example.demo.repository.QuoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class QuoteCalculationServiceTest {
+
+    private final QuoteDetailRepository quoteDetailRepository = mock(QuoteDetailRepository.class);
+    private final CustomerRepository customerRepository = mock(CustomerRepository.class);
+    private final QuoteRepository quoteRepository = mock(QuoteRepository.class);
+    private final QuoteCalculationService calculationService = new QuoteCalculationService(quoteDetailRepository,
+            customerRepository, quoteRepository,
+            new PricingEngine(new BigDecimal("0.10"), new BigDecimal("0.05"), new BigDecimal("5000000000")), 100);
+
+    @BeforeEach
+    void setUp() {
+        Quote quote = new Quote();
+        quote.setId(1);
+        quote.setCustomerId(2);
+        quote.setVersion(3L);
+        Customer customer = new Customer();
+        customer.setId(2);
+        customer.setIsVip(false);
+        QuoteDetail detail = new QuoteDetail();
+        detail.setQuoteId(1);
+        detail.setVehicleId(4);
+        detail.setQuantity(2);
+        detail.setUnitPrice(new BigDecimal("1000"));
+
+        when(quoteRepository.findPricingKey(1)).thenReturn(List.<Object[]>of(new Object[]{3L, 2, false}));
+        when(quoteRepository.findById(1)).thenReturn(Optional.of(quote));
+        when(customerRepository.findById(2)).thenReturn(Optional.of(customer));
+        when(quoteDetailRepository.findByQuoteId(1)).thenReturn(List.of(detail));
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void cacheHitByIdDoesNotLoadQuoteOrCustomer() {
+        assertEquals(new BigDecimal("2200.00"), calculationService.calculateQuoteTotal(1).finalTotal().setScale(2));
+        calculationService.calculateQuoteTotal(1);
+        calculationService.calculateQuoteTotal(1);
+
+        verify(quoteRepository, times(3)).findPricingKey(1);
+        verify(quoteRepository, times(1)).findById(1);
+        verify(customerRepository, times(1)).findById(2);
+        verify(quoteDetailRepository, times(1)).findByQuoteId(1);
+    }
+
+    @Test
+    void invalidateInsideTransactionEvictsOnlyAfterCommit() {
+        calculationService.calculateQuoteTotal(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        calculationService.invalidate(1);
+        calculationService.calculateQuoteTotal(1);
+        verify(quoteDetailRepository, times(1)).findByQuoteId(1);
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        calculationService.calculateQuoteTotal(1);
+        verify(quoteDetailRepository, times(2)).findByQuoteId(1);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.service;
+
+import com.example.demo.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QuoteDetailConstraintCheckTest extends IntegrationTest {
+
+    @Autowired
+    private QuoteDetailConstraintCheck constraintCheck;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void missingUniqueConstraintFailsLoudly() {
+        assertDoesNotThrow(constraintCheck::verifyUniqueConstraint);
+
+        jdbcTemplate.execute("ALTER TABLE quote_detail DROP CONSTRAINT uk_quote_detail_vehicle");
+        try {
+            assertThrows(IllegalStateException.class, constraintCheck::verifyUniqueConstraint);
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE quote_detail ADD CONSTRAINT uk_quote_detail_vehicle UNIQUE (quote_id, vehicle_id)");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.demo.service;
+
+import com.example.demo.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteExpiryServiceTest extends IntegrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JobLockService jobLockService;
+
+    @Test
+    void onlySentQuotesPastValidUntilAreExpired() {
+        LocalDate today = LocalDate.now();
+        int sentPast1 = insertQuote("SENT", today.minusDays(3));
+        int sentPast2 = insertQuote("SENT", today.minusDays(1));
+        int sentPast3 = insertQuote("SENT", today.minusDays(10));
+        int sentToday = insertQuote("SENT", today);
+        int sentFuture = insertQuote("SENT", today.plusDays(5));
+        int sentOpen = insertQuote("SENT", null);
+        int draftPast = insertQuote("DRAFT", today.minusDays(3));
+        int acceptedPast = insertQuote("ACCEPTED", today.minusDays(3));
+
+        // chunk 2 để lượt chạy phải đi qua nhiều chunk
+        QuoteExpiryService expiryService = new QuoteExpiryService(jdbcTemplate, jobLockService, 2, 1000, 30);
+        int expired = expiryService.expireOldQuotes();
+
+        assertTrue(expired >= 3, "expired " + expired);
+        for (int id : new int[]{sentPast1, sentPast2, sentPast3}) {
+            assertEquals(Map.of("status", "EXPIRED", "version", 1L), statusAndVersion(id));
+        }
+        assertEquals(Map.of("status", "SENT", "version", 0L), statusAndVersion(sentToday));
+        assertEquals(Map.of("status", "SENT", "version", 0L), statusAndVersion(sentFuture));
+        assertEquals(Map.of("status", "SENT", "version", 0L), statusAndVersion(sentOpen));
+        assertEquals(Map.of("status", "DRAFT", "version", 0L), statusAndVersion(draftPast));
+        assertEquals(Map.of("status", "ACCEPTED", "version", 0L), statusAndVersion(acceptedPast));
+
+        // Lượt sau không đụng lại quote đã EXPIRED
+        expiryService.expireOldQuotes();
+        assertEquals(Map.of("status", "EXPIRED", "version", 1L), statusAndVersion(sentPast1));
+        assertTrue(expiryService.getStats().getLastChunks() >= 1);
+        assertEquals(2L, expiryService.getStats().getTotalRuns());
+    }
+
+    private int insertQuote(String status, LocalDate validUntil) {
+        jdbcTemplate.update("INSERT INTO quote (created_date, status, approval_status, creator_role, dealer_id, valid_until, version) " +
+                "VALUES (?, ?, 'DRAFT', 'ADMIN', 1, ?, 0)", LocalDate.now().minusDays(30), status, validUntil);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM quote", Integer.class);
+    }
+
+    private Map<String, Object> statusAndVersion(int quoteId) {
+        return jdbcTemplate.queryForObject("SELECT status, version FROM quote WHERE id = ?",
+                (rs, i) -> Map.of("status", rs.getString("status"), "version", rs.getLong("version")), quoteId);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RateLimiterTest {
+
+    @Test
+    void emailBucketLimitsAnAccountAcrossIps() {
+        RateLimiter rateLimiter = new RateLimiter(new MockEnvironment()
+                .withProperty("rate-limit.endpoints.login.capacity", "5")
+                .withProperty("rate-limit.endpoints.login.ip-capacity", "30")
+                .withProperty("rate-limit.endpoints.login.email-capacity", "3")
+                .withProperty("rate-limit.endpoints.login.email-refill-per-minute", "1"), true);
+
+        for (int i = 0; i < 3; i++) {
+            String ip = "198.51.100." + i;
+            assertDoesNotThrow(() -> rateLimiter.acquire("login", ip, "Victim@Example.com"));
+        }
+        assertThrows(TooManyRequestsException.class,
+                () -> rateLimiter.acquire("login", "198.51.100.99", "victim@example.com"));
+        // Tài khoản khác từ cùng IP không bị ảnh hưởng
+        assertDoesNotThrow(() -> rateLimiter.acquire("login", "198.51.100.99", "other@example.com"));
+    }
+
+    @Test
+    void unknownClientIpSkipsTheSharedIpBucket() {
+        RateLimiter rateLimiter = new RateLimiter(new MockEnvironment()
+                .withProperty("rate-limit.endpoints.login.capacity", "2")
+                .withProperty("rate-limit.endpoints.login.ip-capacity", "3")
+                .withProperty("rate-limit.endpoints.login.email-capacity", "10"), true);
+
+        // Sau proxy chưa cấu hình: mọi người dùng chung IP proxy, không được khóa lẫn nhau
+        for (int i = 0; i < 10; i++) {
+            String email = "user" + i + "@example.com";
+            assertDoesNotThrow(() -> rateLimiter.acquire("login", null, email));
+        }
+        // Giới hạn theo email vẫn còn
+        assertDoesNotThrow(() -> rateLimiter.acquire("login", null, "user0@example.com"));
+        assertThrows(TooManyRequestsException.class, () -> rateLimiter.acquire("login", null, "user0@example.com"));
+    }
+}
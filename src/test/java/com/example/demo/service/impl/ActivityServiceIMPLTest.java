@@ -0,0 +1,90 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.ActivityLogDTO;
+import com.example.demo.dto.CursorPageDTO;
+import com.example.demo.entity.ActivityLog;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.service.ActivityLogWriter;
+import com.example.demo.service.ActivityService;
+import com.example.demo.support.IntegrationTest;
+import com.example.demo.util.KeysetCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActivityServiceIMPLTest extends IntegrationTest {
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void pagingThroughTiedTimestampsHasNoDuplicatesOrGaps() {
+        int actorId = ThreadLocalRandom.current().nextInt(1_000_000, Integer.MAX_VALUE);
+        Instant tied = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        // Writer riêng lô 3 dòng: 7 dòng cùng thời điểm + 3 dòng sớm hơn, xen kẽ hai action
+        ActivityLogWriter writer = new ActivityLogWriter(jdbcTemplate, 100, 3);
+        for (int i = 0; i < 10; i++) {
+            writer.submit(ActivityLog.builder()
+                    .actorId((long) actorId)
+                    .action(i % 2 == 0 ? "LOGIN" : "LOGOUT")
+                    .message("activity " + i)
+                    .metadataJson("{\"i\":" + i + "}")
+                    .createdAt(i < 7 ? tied : tied.minusSeconds(1))
+                    .build());
+        }
+        assertEquals(10, writer.flush());
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, created_at, action FROM activity_log WHERE actor_id = ?", (long) actorId);
+        assertEquals(10, rows.size());
+        List<Long> expected = rows.stream()
+                .sorted(Comparator.comparing((Map<String, Object> r) -> r.get("created_at").toString())
+                        .thenComparing(r -> ((Number) r.get("id")).longValue()).reversed())
+                .map(r -> ((Number) r.get("id")).longValue())
+                .toList();
+
+        assertEquals(expected, collectPages(actorId, null, 3));
+        assertEquals(expected, collectPages(actorId, null, 7));
+
+        List<Long> logins = rows.stream().filter(r -> "LOGIN".equals(r.get("action")))
+                .map(r -> ((Number) r.get("id")).longValue()).toList();
+        assertEquals(expected.stream().filter(logins::contains).toList(), collectPages(actorId, "LOGIN", 2));
+
+        ActivityLogDTO first = activityService.listMine(actorId, null, null, 1, true).getItems().get(0);
+        assertTrue(first.getMetadata() instanceof Map);
+    }
+
+    @Test
+    void malformedCursorIsABadRequest() {
+        assertThrows(BadRequestException.class, () -> activityService.listMine(1, null, "%%", 10, false));
+        assertThrows(BadRequestException.class,
+                () -> activityService.listMine(1, null, KeysetCursor.encode("not-an-instant", 1), 10, false));
+        assertThrows(BadRequestException.class,
+                () -> activityService.listMine(1, null, KeysetCursor.encode(Instant.now(), "x"), 10, false));
+    }
+
+    private List<Long> collectPages(int actorId, String action, int size) {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDTO<ActivityLogDTO> page = activityService.listMine(actorId, action, cursor, size, false);
+            assertTrue(page.getItems().size() <= size);
+            page.getItems().forEach(item -> seen.add(item.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return seen;
+    }
+}
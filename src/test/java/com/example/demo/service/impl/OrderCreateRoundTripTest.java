@@ -0,0 +1,128 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.repository.CustomerRepository;
+import com.example.demo.repository.DealerRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.VehicleRepository;
+import com.example.demo.service.OrderService;
+import com.example.demo.support.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Đếm số round trip tới DB của createOrder theo số dòng quote (1, 10, 100) qua DataSource bọc đếm lệnh execute*.
+ * Trước khi nạp xe một lần và insert chi tiết theo lô: 7 / 25 / 205; sau: không đổi theo số dòng.
+ */
+class OrderCreateRoundTripTest extends IntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderCreateRoundTripTest.class);
+
+    private static final AtomicInteger ROUND_TRIPS = new AtomicInteger();
+    private static volatile boolean counting;
+
+    @TestConfiguration
+    static class CountingDataSourceConfig {
+
+        private static final Set<String> EXECUTE_METHODS =
+                Set.of("execute", "executeQuery", "executeUpdate", "executeBatch", "executeLargeUpdate");
+
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? wrap(dataSource, DataSource.class) : bean;
+                }
+            };
+        }
+
+        private static Object wrap(Object target, Class<?> type) {
+            return Proxy.newProxyInstance(CountingDataSourceConfig.class.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> {
+                        if (counting && EXECUTE_METHODS.contains(method.getName())) {
+                            ROUND_TRIPS.incrementAndGet();
+                        }
+                        Object result = invoke(method, target, args);
+                        if (result instanceof Connection connection) {
+                            return wrap(connection, Connection.class);
+                        }
+                        if (result instanceof Statement statement) {
+                            return wrap(statement, method.getReturnType());
+                        }
+                        return result;
+                    });
+        }
+
+        private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Test
+    void roundTripsDoNotGrowWithQuoteLines() {
+        OrderServiceImplTest.Parties parties =
+                OrderServiceImplTest.seedParties(dealerRepository, userRepository, customerRepository);
+
+        Map<Integer, Integer> roundTrips = new LinkedHashMap<>();
+        int quoteId = 800;
+        for (int lines : new int[]{1, 10, 100}) {
+            quoteId++;
+            OrderServiceImplTest.insertQuote(jdbcTemplate, vehicleRepository, parties, quoteId, lines);
+            ROUND_TRIPS.set(0);
+            counting = true;
+            try {
+                orderService.createOrder(OrderServiceImplTest.orderFor(quoteId, parties));
+            } finally {
+                counting = false;
+            }
+            roundTrips.put(lines, ROUND_TRIPS.get());
+        }
+
+        log.info("createOrder round trips by quote lines: {}", roundTrips);
+        assertTrue(roundTrips.get(1) > 0, "counting DataSource saw no statements");
+        assertEquals(roundTrips.get(1), roundTrips.get(10), () -> "round trips by quote lines: " + roundTrips);
+        assertEquals(roundTrips.get(1), roundTrips.get(100), () -> "round trips by quote lines: " + roundTrips);
+    }
+}
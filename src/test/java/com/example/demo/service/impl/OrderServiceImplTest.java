@@ -0,0 +1,167 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.OrderDTO;
+import com.example.demo.entity.Customer;
+import com.example.demo.entity.Dealer;
+import com.example.demo.entity.Order;
+import com.example.demo.entity.User;
+import com.example.demo.entity.Vehicle;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.exception.ConflictException;
+import com.example.demo.repository.CustomerRepository;
+import com.example.demo.repository.DealerRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.VehicleRepository;
+import com.example.demo.service.OrderService;
+import com.example.demo.support.IntegrationTest;
+import com.example.demo.util.KeysetCursor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderServiceImplTest extends IntegrationTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    private Parties parties;
+
+    @BeforeEach
+    void seedParties() {
+        parties = seedParties(dealerRepository, userRepository, customerRepository);
+    }
+
+    @Test
+    void secondOrderForSameQuoteIsAConflict() {
+        int quoteId = insertQuote(701, 1);
+
+        orderService.createOrder(orderFor(quoteId, parties));
+
+        assertThrows(ConflictException.class, () -> orderService.createOrder(orderFor(quoteId, parties)));
+    }
+
+    @Test
+    void onlyTheQuoteUniqueConstraintIsTranslated() {
+        assertTrue(OrderServiceImpl.isQuoteUniqueViolation(violation("order_table.uk_order_quote")));
+        assertTrue(OrderServiceImpl.isQuoteUniqueViolation(violation("PUBLIC.UK_ORDER_QUOTE_INDEX_8")));
+        assertFalse(OrderServiceImpl.isQuoteUniqueViolation(violation("fk_order_dealer")));
+        assertFalse(OrderServiceImpl.isQuoteUniqueViolation(violation(null)));
+        assertFalse(OrderServiceImpl.isQuoteUniqueViolation(new DataIntegrityViolationException("no cause")));
+    }
+
+    @Test
+    void invalidPageFiltersAndCursorsAreBadRequests() {
+        BadRequestException status = assertThrows(BadRequestException.class,
+                () -> orderService.getOrdersPage(null, "shipped-ish", null, null, null, null, null, 10));
+        assertTrue(status.getMessage().contains("status"));
+        assertThrows(BadRequestException.class,
+                () -> orderService.getOrdersPage(null, null, "maybe", null, null, null, null, 10));
+        assertThrows(BadRequestException.class,
+                () -> orderService.getOrdersPage(null, null, null, "free", null, null, null, 10));
+        assertThrows(BadRequestException.class,
+                () -> orderService.getOrdersPage(null, null, null, null, null, null, "%%not-base64%%", 10));
+        assertThrows(BadRequestException.class,
+                () -> orderService.getOrdersPage(null, null, null, null, null, null, KeysetCursor.encode("yesterday", 5), 10));
+        assertThrows(BadRequestException.class,
+                () -> orderService.getOrdersPage(null, null, null, null, null, null, KeysetCursor.encode(LocalDate.now(), "x"), 10));
+
+        assertNotNull(orderService.getOrdersPage(null, "pending", null, null, null, null,
+                KeysetCursor.encode(LocalDate.now(), 1), 10));
+    }
+
+    private static DataIntegrityViolationException violation(String constraintName) {
+        return new DataIntegrityViolationException("violation",
+                new ConstraintViolationException("violation", new SQLException("violation"), constraintName));
+    }
+
+    private int insertQuote(int quoteId, int lines) {
+        insertQuote(jdbcTemplate, vehicleRepository, parties, quoteId, lines);
+        return quoteId;
+    }
+
+    // Đại lý, người dùng, khách hàng thật cho các khóa ngoại của quote/order; khóa unique lấy theo UUID vì context dùng chung
+    record Parties(int dealerId, int userId, int customerId) {
+    }
+
+    static Parties seedParties(DealerRepository dealerRepository, UserRepository userRepository,
+                               CustomerRepository customerRepository) {
+        String key = UUID.randomUUID().toString().substring(0, 12);
+
+        Dealer dealer = new Dealer();
+        dealer.setName("Order dealer " + key);
+        dealer.setAddress("a");
+        dealer.setPhone("d-" + key);
+        dealer.setRegion("r");
+        dealer.setRepresentativeName("x");
+        dealer.setStatus(Dealer.DealerStatus.ACTIVE);
+        dealer = dealerRepository.save(dealer);
+
+        User user = new User();
+        user.setUsername("order-" + key);
+        user.setEmail("order-" + key + "@test.local");
+        user.setPassword("x");
+        user.setFullName("Order user");
+        user.setPhoneNumber("u-" + key);
+        user.setRole(User.Role.ADMIN);
+        user.setStatus(User.UserStatus.ACTIVE);
+        user.setDealerId(dealer.getDealerId());
+        user = userRepository.save(user);
+
+        Customer customer = new Customer();
+        customer.setFullName("Order customer");
+        customer.setPhone("c-" + key);
+        customer.setEmail("customer-" + key + "@test.local");
+        customer.setDealerId(dealer.getDealerId());
+        customer = customerRepository.save(customer);
+
+        return new Parties(dealer.getDealerId(), user.getUserId(), customer.getId());
+    }
+
+    static void insertQuote(JdbcTemplate jdbcTemplate, VehicleRepository vehicleRepository, Parties parties,
+                            int quoteId, int lines) {
+        jdbcTemplate.update("INSERT INTO quote (id, created_date, status, approval_status, creator_role, dealer_id, customer_id, user_id) " +
+                "VALUES (?, ?, 'DRAFT', 'DRAFT', 'ADMIN', ?, ?, ?)",
+                quoteId, LocalDate.now(), parties.dealerId(), parties.customerId(), parties.userId());
+        for (int i = 0; i < lines; i++) {
+            Vehicle vehicle = vehicleRepository.save(Vehicle.builder().modelName("Order").brand("Test")
+                    .listedPrice(BigDecimal.TEN).build());
+            jdbcTemplate.update("INSERT INTO quote_detail (quote_id, vehicle_id, quantity, unit_price, promotion_discount, total_amount) " +
+                    "VALUES (?, ?, 1, 1000, 5, 950)", quoteId, vehicle.getId());
+        }
+    }
+
+    static OrderDTO orderFor(int quoteId, Parties parties) {
+        OrderDTO dto = new OrderDTO();
+        dto.setQuoteId(quoteId);
+        dto.setDealerId(parties.dealerId());
+        dto.setUserId(parties.userId());
+        dto.setStatus(Order.OrderStatus.PENDING.name());
+        dto.setPaymentMethod(Order.PaymentMethod.CASH.name());
+        return dto;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.CursorPageDTO;
+import com.example.demo.dto.QuoteDTO;
+import com.example.demo.dto.QuoteDetailDTO;
+import com.example.demo.dto.QuoteResponseDTO;
+import com.example.demo.entity.QuoteDetail;
+import com.example.demo.entity.User;
+import com.example.demo.entity.Vehicle;
+import com.example.demo.exception.BadRequestException;
+import com.example.demo.repository.CustomerRepository;
+import com.example.demo.repository.DealerRepository;
+import com.example.demo.repository.QuoteDetailRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.VehicleRepository;
+import com.example.demo.service.QuoteService;
+import com.example.demo.support.IntegrationTest;
+import com.example.demo.util.KeysetCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuoteServiceImplTest extends IntegrationTest {
+
+    @Autowired
+    private QuoteService quoteService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    @Autowired
+    private QuoteDetailRepository quoteDetailRepository;
+
+    private OrderServiceImplTest.Parties parties;
+
+    @BeforeEach
+    void seedParties() {
+        parties = OrderServiceImplTest.seedParties(dealerRepository, userRepository, customerRepository);
+    }
+
+    @Test
+    void pagingThroughTiedDatesHasNoDuplicatesOrGaps() {
+        LocalDate today = LocalDate.now();
+        List<Integer> expected = new ArrayList<>();
+        // 5 quote cùng ngày (hoà khóa ngày, phân biệt bằng id) rồi 2 quote ngày trước
+        for (int i = 0; i < 5; i++) {
+            expected.add(insertQuote(today));
+        }
+        for (int i = 0; i < 2; i++) {
+            expected.add(insertQuote(today.minusDays(1)));
+        }
+        // Thứ tự trang: ngày giảm dần, cùng ngày thì id giảm dần
+        List<Integer> expectedOrder = List.of(expected.get(4), expected.get(3), expected.get(2), expected.get(1),
+                expected.get(0), expected.get(6), expected.get(5));
+
+        List<Integer> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPageDTO<QuoteResponseDTO> page = quoteService.getQuotesPage(null, null, parties.dealerId(), cursor, 2);
+            page.getItems().forEach(q -> seen.add(q.getId()));
+            cursor = page.getNextCursor();
+            assertEquals(cursor != null, page.isHasMore());
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(expectedOrder, seen);
+        assertEquals(4, pages);
+    }
+
+    @Test
+    void malformedCursorIsABadRequest() {
+        assertThrows(BadRequestException.class,
+                () -> quoteService.getQuotesPage(null, null, parties.dealerId(), "%%", 10));
+        assertThrows(BadRequestException.class,
+                () -> quoteService.getQuotesPage(null, null, parties.dealerId(), KeysetCursor.encode("2025-13-40", 1), 10));
+        assertThrows(BadRequestException.class,
+                () -> quoteService.getQuotesPage(null, null, parties.dealerId(), KeysetCursor.encode(LocalDate.now(), "one"), 10));
+        assertThrows(BadRequestException.class,
+                () -> quoteService.getQuotesPage(null, null, parties.dealerId(), KeysetCursor.encode(LocalDate.now()), 10));
+    }
+
+    @Test
+    void updateDiffsDetailsByVehicle() {
+        int a = vehicle(), b = vehicle(), c = vehicle(), d = vehicle();
+        int quoteId = quoteService.createQuote(quote(line(a, 1), line(b, 2), line(c, 1))).getId();
+        Map<Integer, QuoteDetail> before = detailsByVehicle(quoteId);
+
+        quoteService.updateQuote(quoteId, quote(line(a, 1), line(b, 5), line(d, 3)));
+
+        Map<Integer, QuoteDetail> after = detailsByVehicle(quoteId);
+        assertEquals(Set.of(a, b, d), after.keySet());
+        // Dòng giữ lại: cùng id; dòng b sửa số lượng tại chỗ
+        assertEquals(before.get(a).getId(), after.get(a).getId());
+        assertEquals(1, after.get(a).getQuantity());
+        assertEquals(before.get(b).getId(), after.get(b).getId());
+        assertEquals(5, after.get(b).getQuantity());
+        assertEquals(0, new BigDecimal("5000.00").compareTo(after.get(b).getTotalAmount()));
+        // Dòng c bị xoá, dòng d là dòng mới
+        assertFalse(quoteDetailRepository.existsById(before.get(c).getId()));
+        assertFalse(before.values().stream().anyMatch(x -> x.getId().equals(after.get(d).getId())));
+        assertEquals(3, after.get(d).getQuantity());
+        assertEquals(0, new BigDecimal("9000.00").compareTo(quoteService.getQuoteById(quoteId).getTotalAmount()));
+    }
+
+    @Test
+    void duplicateVehicleLinesAreBadRequests() {
+        int a = vehicle(), b = vehicle();
+        assertThrows(BadRequestException.class, () -> quoteService.createQuote(quote(line(a, 1), line(a, 2))));
+
+        int quoteId = quoteService.createQuote(quote(line(a, 1), line(b, 1))).getId();
+        assertThrows(BadRequestException.class,
+                () -> quoteService.updateQuote(quoteId, quote(line(a, 1), line(b, 1), line(b, 4))));
+        assertEquals(Map.of(a, 1, b, 1), detailsByVehicle(quoteId).values().stream()
+                .collect(Collectors.toMap(QuoteDetail::getVehicleId, QuoteDetail::getQuantity)));
+    }
+
+    private int vehicle() {
+        return vehicleRepository.save(Vehicle.builder().modelName("Quote").brand("Test")
+                .listedPrice(BigDecimal.TEN).build()).getId();
+    }
+
+    private QuoteDTO quote(QuoteDetailDTO... lines) {
+        QuoteDTO dto = new QuoteDTO();
+        dto.setCustomerId(parties.customerId());
+        dto.setUserId(parties.userId());
+        dto.setCreatorRole(User.Role.ADMIN);
+        dto.setDealerId(parties.dealerId());
+        dto.setQuoteDetails(List.of(lines));
+        return dto;
+    }
+
+    private static QuoteDetailDTO line(int vehicleId, int quantity) {
+        QuoteDetailDTO dto = new QuoteDetailDTO();
+        dto.setVehicleId(vehicleId);
+        dto.setQuantity(quantity);
+        dto.setUnitPrice(new BigDecimal("1000"));
+        dto.setPromotionDiscount(BigDecimal.ZERO);
+        return dto;
+    }
+
+    private Map<Integer, QuoteDetail> detailsByVehicle(int quoteId) {
+        return quoteDetailRepository.findByQuoteIdOrderById(quoteId).stream()
+                .collect(Collectors.toMap(QuoteDetail::getVehicleId, Function.identity()));
+    }
+
+    private int insertQuote(LocalDate createdDate) {
+        jdbcTemplate.update("INSERT INTO quote (created_date, status, approval_status, creator_role, dealer_id, customer_id, user_id) " +
+                "VALUES (?, 'DRAFT', 'DRAFT', 'ADMIN', ?, ?, ?)",
+                createdDate, parties.dealerId(), parties.customerId(), parties.userId());
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM quote WHERE dealer_id = ?", Integer.class, parties.dealerId());
+    }
+}
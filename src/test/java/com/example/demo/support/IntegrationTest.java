@@ -0,0 +1,18 @@
+package com.example.demo.support;
+
+import com.example.demo.service.EmailService;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Nền cho test tích hợp chạy trên H2 (profile test). EmailService bị thay bằng mock vì cần SENDGRID_API_KEY.
+ * Các lớp con dùng chung một Spring context nên dữ liệu phải tự tạo với khóa riêng của từng test.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public abstract class IntegrationTest {
+
+    @MockitoBean
+    protected EmailService emailService;
+}
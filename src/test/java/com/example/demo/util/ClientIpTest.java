@@ -0,0 +1,48 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientIpTest {
+
+    private final ClientIp clientIp = new ClientIp("10.0.0.0/8, 192.168.1.5", false);
+
+    @Test
+    void forwardedForIsIgnoredFromUntrustedPeer() {
+        assertEquals("203.0.113.9", clientIp.resolve(request("203.0.113.9", "198.51.100.1")));
+        assertEquals("203.0.113.9", new ClientIp("", false).resolve(request("203.0.113.9", "198.51.100.1")));
+    }
+
+    @Test
+    void trustedProxyChainIsWalkedFromTheRight() {
+        // Client tự thêm 1.1.1.1; proxy của mình ghi IP thật 198.51.100.1 rồi qua proxy nội bộ 10.1.2.3
+        assertEquals("198.51.100.1", clientIp.resolve(request("192.168.1.5", "1.1.1.1, 198.51.100.1, 10.1.2.3")));
+        assertEquals("198.51.100.1", clientIp.resolve(request("10.9.9.9", "198.51.100.1")));
+        assertEquals("10.9.9.9", clientIp.resolve(request("10.9.9.9", null)));
+    }
+
+    @Test
+    void addressIsPerClientOnlyWithTrustedProxiesOrDirectConnections() {
+        assertTrue(clientIp.isPerClient());
+        assertFalse(new ClientIp("", false).isPerClient());
+        assertTrue(new ClientIp("", true).isPerClient());
+    }
+
+    @Test
+    void nonAddressEntriesAreNeverTrusted() {
+        assertEquals("proxy.internal", clientIp.resolve(request("10.0.0.1", "198.51.100.1, proxy.internal")));
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+}